@@ -56,6 +56,12 @@ public class ActiveLearningRecommendationEventAdapter
         return aEvent.getDocument().getProject().getId();
     }
 
+    @Override
+    public Long getRecommender(ActiveLearningRecommendationEvent aEvent)
+    {
+        return aEvent.getCurrentRecommendation().getRecommenderId();
+    }
+
     @Override
     public String getDetails(ActiveLearningRecommendationEvent aEvent)
     {
@@ -57,6 +57,12 @@ public class ActiveLearningSuggestionOfferedAdapter
         return aEvent.getDocument().getProject().getId();
     }
 
+    @Override
+    public Long getRecommender(ActiveLearningSuggestionOfferedEvent aEvent)
+    {
+        return aEvent.getCurrentRecommendation().getRecommenderId();
+    }
+
     @Override
     public String getDetails(ActiveLearningSuggestionOfferedEvent aEvent)
     {
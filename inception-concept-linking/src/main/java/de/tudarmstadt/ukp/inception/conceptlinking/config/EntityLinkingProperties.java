@@ -30,7 +30,13 @@ public class EntityLinkingProperties
     private int mentionContextSize = 5;
     private int candidateQueryLimit = 2500;
     private int candidateDisplayLimit = 100;
+    private int candidateQueryThreads = 4;
+    private long candidateQueryTimeout = 10_000;
     private int signatureQueryLimit = Integer.MAX_VALUE;
+    private boolean remoteSemanticSignatureEnabled = false;
+    private boolean adjacencyIndexEnabled = true;
+    private long adjacencyIndexMaxStatements = 1_000_000;
+    private int adjacencyIndexMaxKnowledgeBases = 2;
 
     public int getCacheSize()
     {
@@ -72,6 +78,26 @@ public class EntityLinkingProperties
         this.candidateDisplayLimit = candidateDisplayLimit;
     }
 
+    public int getCandidateQueryThreads()
+    {
+        return candidateQueryThreads;
+    }
+
+    public void setCandidateQueryThreads(int candidateQueryThreads)
+    {
+        this.candidateQueryThreads = candidateQueryThreads;
+    }
+
+    public long getCandidateQueryTimeout()
+    {
+        return candidateQueryTimeout;
+    }
+
+    public void setCandidateQueryTimeout(long candidateQueryTimeout)
+    {
+        this.candidateQueryTimeout = candidateQueryTimeout;
+    }
+
     public int getSignatureQueryLimit()
     {
         return signatureQueryLimit;
@@ -81,5 +107,44 @@ public class EntityLinkingProperties
     {
         this.signatureQueryLimit = signatureQueryLimit;
     }
-}
 
+    public boolean isRemoteSemanticSignatureEnabled()
+    {
+        return remoteSemanticSignatureEnabled;
+    }
+
+    public void setRemoteSemanticSignatureEnabled(boolean remoteSemanticSignatureEnabled)
+    {
+        this.remoteSemanticSignatureEnabled = remoteSemanticSignatureEnabled;
+    }
+
+    public boolean isAdjacencyIndexEnabled()
+    {
+        return adjacencyIndexEnabled;
+    }
+
+    public void setAdjacencyIndexEnabled(boolean adjacencyIndexEnabled)
+    {
+        this.adjacencyIndexEnabled = adjacencyIndexEnabled;
+    }
+
+    public long getAdjacencyIndexMaxStatements()
+    {
+        return adjacencyIndexMaxStatements;
+    }
+
+    public void setAdjacencyIndexMaxStatements(long adjacencyIndexMaxStatements)
+    {
+        this.adjacencyIndexMaxStatements = adjacencyIndexMaxStatements;
+    }
+
+    public int getAdjacencyIndexMaxKnowledgeBases()
+    {
+        return adjacencyIndexMaxKnowledgeBases;
+    }
+
+    public void setAdjacencyIndexMaxKnowledgeBases(int adjacencyIndexMaxKnowledgeBases)
+    {
+        this.adjacencyIndexMaxKnowledgeBases = adjacencyIndexMaxKnowledgeBases;
+    }
+}
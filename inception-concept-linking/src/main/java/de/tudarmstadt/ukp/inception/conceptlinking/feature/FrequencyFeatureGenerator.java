@@ -21,24 +21,29 @@ import static de.tudarmstadt.ukp.inception.conceptlinking.model.CandidateEntity.
 import static de.tudarmstadt.ukp.inception.kb.IriConstants.PREFIX_WIKIDATA_ENTITY;
 
 import java.io.File;
-import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
 
 import de.tudarmstadt.ukp.clarin.webanno.api.RepositoryProperties;
 import de.tudarmstadt.ukp.inception.conceptlinking.model.CandidateEntity;
-import de.tudarmstadt.ukp.inception.conceptlinking.util.FileUtils;
+import de.tudarmstadt.ukp.inception.conceptlinking.util.FrequencyTable;
 
 /**
  * Assigns frequency priors from a pre-defined dictionary.
  */
-// @Component
+@Component
 public class FrequencyFeatureGenerator
     implements EntityRankingFeatureGenerator
 {
-    private Map<String, Integer> entityFrequencyMap;
+    private static final int NO_FREQUENCY = -1;
+    
+    private final FrequencyTable entityFrequencyTable;
 
+    @Autowired
     public FrequencyFeatureGenerator(RepositoryProperties aRepoProperties)
     {
-        entityFrequencyMap = FileUtils.loadEntityFrequencyMap(
+        entityFrequencyTable = FrequencyTable.open(
                 new File(aRepoProperties.getPath(), "/resources/wikidata_entity_freqs.map"));
     }
 
@@ -46,13 +51,11 @@ public class FrequencyFeatureGenerator
     public void apply(CandidateEntity aCandidate)
     {
         // Set frequency
-        if (entityFrequencyMap != null) {
-            String key = aCandidate.getIRI();
-            key = key.replace(PREFIX_WIKIDATA_ENTITY, "");
-            Integer frequency = entityFrequencyMap.get(key);
-            if (frequency != null) {
-                aCandidate.put(KEY_FREQUENCY, frequency);
-            }
+        String key = aCandidate.getIRI();
+        key = key.replace(PREFIX_WIKIDATA_ENTITY, "");
+        int frequency = entityFrequencyTable.getFrequency(key, NO_FREQUENCY);
+        if (frequency != NO_FREQUENCY) {
+            aCandidate.put(KEY_FREQUENCY, frequency);
         }
     }
 }
@@ -27,6 +27,7 @@ import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 
@@ -48,27 +49,33 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
 
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.LoadingCache;
 
 import de.tudarmstadt.ukp.clarin.webanno.api.RepositoryProperties;
 import de.tudarmstadt.ukp.inception.conceptlinking.config.EntityLinkingProperties;
+import de.tudarmstadt.ukp.inception.conceptlinking.index.EntityAdjacencyIndex;
+import de.tudarmstadt.ukp.inception.conceptlinking.index.EntityAdjacencyIndexManager;
 import de.tudarmstadt.ukp.inception.conceptlinking.model.CandidateEntity;
 import de.tudarmstadt.ukp.inception.conceptlinking.model.Property;
 import de.tudarmstadt.ukp.inception.conceptlinking.model.SemanticSignature;
 import de.tudarmstadt.ukp.inception.conceptlinking.util.FileUtils;
 import de.tudarmstadt.ukp.inception.kb.KnowledgeBaseService;
+import de.tudarmstadt.ukp.inception.kb.RepositoryType;
 import de.tudarmstadt.ukp.inception.kb.event.KnowledgeBaseConfigurationChangedEvent;
 import de.tudarmstadt.ukp.inception.kb.model.KnowledgeBase;
 
-/*
+/**
  * This feature generator tries to create a "semantic context" from the vicinity of candidates
- * so we can compare the mention context to the KB context. However, the present implementation
- * is very slow and doesn't help much. Before reenabling this we need to properly evaluate this, 
- * test this, and see how performance can be improved.
+ * so we can compare the mention context to the KB context. For local knowledge bases, the context
+ * is computed from an in-memory {@link EntityAdjacencyIndex} unless the index is disabled.
+ * Computing the context for remote knowledge bases requires a SPARQL query per candidate which is
+ * very slow, so it is disabled by default. If neither is available, this generator does not
+ * contribute any features.
  */
-//@Component
+@Component
 public class SemanticSignatureFeatureGenerator
     implements EntityRankingFeatureGenerator
 {
@@ -93,13 +100,16 @@ public class SemanticSignatureFeatureGenerator
 
     private final EntityLinkingProperties properties;
     private final KnowledgeBaseService kbService;
+    private final EntityAdjacencyIndexManager adjacencyIndexManager;
     
     @Autowired
     public SemanticSignatureFeatureGenerator(KnowledgeBaseService aKbService,
-            RepositoryProperties aRepoProperties, EntityLinkingProperties aProperties)
+            RepositoryProperties aRepoProperties, EntityLinkingProperties aProperties,
+            EntityAdjacencyIndexManager aAdjacencyIndexManager)
     {
         kbService = aKbService;
         properties = aProperties;
+        adjacencyIndexManager = aAdjacencyIndexManager;
 
         semanticSignatureCache = Caffeine.newBuilder()
                 .maximumSize(properties.getCacheSize())
@@ -122,8 +132,14 @@ public class SemanticSignatureFeatureGenerator
         
         Set<String> mentionContext = new HashSet<>(optMentionContext.get());
         
-        SemanticSignature sig = getSemanticSignature(aCandidate.getHandle().getKB(),
+        Optional<SemanticSignature> optSig = getSemanticSignature(aCandidate.getHandle().getKB(),
                 aCandidate.getIRI());
+        
+        if (!optSig.isPresent()) {
+            return;
+        }
+        
+        SemanticSignature sig = optSig.get();
         Set<String> relatedEntities = sig.getRelatedEntities();
         Set<String> signatureOverlap = new HashSet<>();
         for (String entityLabel : relatedEntities) {
@@ -150,20 +166,48 @@ public class SemanticSignatureFeatureGenerator
     public void onKnowledgeBaseConfigurationChangedEvent(
         KnowledgeBaseConfigurationChangedEvent aEvent)
     {
-        // FIXME instead of maintaining one global cache, we might maintain a cascaded cache
-        // where the top level is the project and then for each project we have sub-caches.
-        // Then we could invalidate only a specific project's cache. However, right now,
-        // we don't have that and there is no way to properly iterate over the caches and
-        // invalidate only entries belonging to a specific project. Thus, we need to
-        // invalidate all.
-        semanticSignatureCache.invalidateAll();
+        semanticSignatureCache.asMap().keySet().removeIf(key -> 
+                Objects.equals(key.getKnowledgeBase().getProject(), aEvent.getProject()));
     }
+    
     /**
      * Retrieves the semantic signature of an entity. See documentation of SemanticSignature class.
+     * 
+     * @return the signature or nothing if the signature cannot be computed (yet).
      */
-    private SemanticSignature getSemanticSignature(KnowledgeBase aKB, String aIri)
+    private Optional<SemanticSignature> getSemanticSignature(KnowledgeBase aKB, String aIri)
     {
-        return semanticSignatureCache.get(new SemanticSignatureCacheKey(aKB, aIri));
+        if (RepositoryType.LOCAL.equals(aKB.getType())) {
+            return adjacencyIndexManager.getIndex(aKB)
+                    .map(index -> index.getSemanticSignature(aIri,
+                            properties.getSignatureQueryLimit(), this::isRelevant));
+        }
+        
+        if (properties.isRemoteSemanticSignatureEnabled()) {
+            return Optional.of(
+                    semanticSignatureCache.get(new SemanticSignatureCacheKey(aKB, aIri)));
+        }
+        
+        return Optional.empty();
+    }
+    
+    private boolean isRelevant(String aProperty, String aLabel)
+    {
+        if (propertyWithLabels != null) {
+            Property property = propertyWithLabels.get(aLabel);
+            int frequencyThreshold = 0;
+            boolean isBlacklisted =
+                (propertyBlacklist != null && propertyBlacklist.contains(aProperty)
+                || (property != null && (typeBlacklist != null
+                    && typeBlacklist.contains(property.getType()))));
+            boolean isUnfrequent = property != null
+                && property.getFreq() < frequencyThreshold;
+            if (isBlacklisted || isUnfrequent) {
+                return false;
+            }
+        }
+        
+        return true;
     }
 
     private SemanticSignature loadSemanticSignature(SemanticSignatureCacheKey aKey)
@@ -178,18 +222,8 @@ public class SemanticSignatureFeatureGenerator
                     BindingSet sol = result.next();
                     String propertyString = sol.getValue("p").stringValue();
                     String labelString = sol.getValue("label").stringValue();
-                    if (propertyWithLabels != null) {
-                        Property property = propertyWithLabels.get(labelString);
-                        int frequencyThreshold = 0;
-                        boolean isBlacklisted =
-                            (propertyBlacklist != null && propertyBlacklist.contains(propertyString)
-                            || (property != null && (typeBlacklist != null
-                                && typeBlacklist.contains(property.getType()))));
-                        boolean isUnfrequent = property != null
-                            && property.getFreq() < frequencyThreshold;
-                        if (isBlacklisted || isUnfrequent) {
-                            continue;
-                        }
+                    if (!isRelevant(propertyString, labelString)) {
+                        continue;
                     }
                     relatedEntities.add(labelString);
                     relatedRelations.add(propertyString);
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.conceptlinking.index;
+
+import static java.util.Collections.emptySet;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiPredicate;
+
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+
+import de.tudarmstadt.ukp.inception.conceptlinking.model.SemanticSignature;
+
+/**
+ * In-memory adjacency index over the resources of a knowledge base. Resources are connected by
+ * every statement which has a resource (IRI or blank node) in the object position. Statements
+ * using the label property of the knowledge base and having a literal in the object position are
+ * recorded as labels. All other statements are ignored.
+ * <p>
+ * The index can be updated incrementally and is safe for concurrent use.
+ */
+public class EntityAdjacencyIndex
+{
+    private final String labelProperty;
+
+    private final Map<String, Set<Edge>> outgoing = new HashMap<>();
+    private final Map<String, Set<Edge>> incoming = new HashMap<>();
+    private final Map<String, Set<String>> labels = new HashMap<>();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public EntityAdjacencyIndex(String aLabelProperty)
+    {
+        labelProperty = aLabelProperty;
+    }
+
+    public void add(Statement aStatement)
+    {
+        lock.writeLock().lock();
+        try {
+            String subject = aStatement.getSubject().stringValue();
+            String predicate = aStatement.getPredicate().stringValue();
+            Value object = aStatement.getObject();
+
+            if (object instanceof Resource) {
+                outgoing.computeIfAbsent(subject, k -> new HashSet<>())
+                        .add(new Edge(predicate, object.stringValue()));
+                incoming.computeIfAbsent(object.stringValue(), k -> new HashSet<>())
+                        .add(new Edge(predicate, subject));
+            }
+            else if (object instanceof Literal && labelProperty.equals(predicate)) {
+                labels.computeIfAbsent(subject, k -> new HashSet<>()).add(object.stringValue());
+            }
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Statement aStatement)
+    {
+        lock.writeLock().lock();
+        try {
+            String subject = aStatement.getSubject().stringValue();
+            String predicate = aStatement.getPredicate().stringValue();
+            Value object = aStatement.getObject();
+
+            if (object instanceof Resource) {
+                removeFrom(outgoing, subject, new Edge(predicate, object.stringValue()));
+                removeFrom(incoming, object.stringValue(), new Edge(predicate, subject));
+            }
+            else if (object instanceof Literal && labelProperty.equals(predicate)) {
+                removeFrom(labels, subject, object.stringValue());
+            }
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static <T> void removeFrom(Map<String, Set<T>> aMap, String aKey, T aValue)
+    {
+        Set<T> values = aMap.get(aKey);
+        if (values != null) {
+            values.remove(aValue);
+            if (values.isEmpty()) {
+                aMap.remove(aKey);
+            }
+        }
+    }
+
+    /**
+     * Computes the semantic signature of the given entity. These are the labels of all entities
+     * which are connected to the given entity via a path of length two (in either direction) and
+     * the properties via which the path connects to the given entity.
+     *
+     * @param aIri
+     *            the entity.
+     * @param aLimit
+     *            the maximum number of entity/relation pairs to consider.
+     * @param aFilter
+     *            a filter receiving the relation and the label of the related entity - only pairs
+     *            which are accepted by the filter contribute to the signature.
+     * @return the semantic signature.
+     */
+    public SemanticSignature getSemanticSignature(String aIri, int aLimit,
+            BiPredicate<String, String> aFilter)
+    {
+        Set<String> relatedEntities = new HashSet<>();
+        Set<String> relatedRelations = new HashSet<>();
+
+        lock.readLock().lock();
+        try {
+            int count = 0;
+
+            // ?e1 ?rd ?m . ?m ?p ?e2
+            for (Edge in : incoming.getOrDefault(aIri, emptySet())) {
+                for (Edge in2 : incoming.getOrDefault(in.node, emptySet())) {
+                    for (String label : labels.getOrDefault(in2.node, emptySet())) {
+                        if (count >= aLimit) {
+                            return new SemanticSignature(relatedEntities, relatedRelations);
+                        }
+                        if (aFilter.test(in.property, label)) {
+                            relatedEntities.add(label);
+                            relatedRelations.add(in.property);
+                        }
+                        count++;
+                    }
+                }
+            }
+
+            // ?e2 ?p ?m . ?m ?rr ?e1
+            for (Edge out : outgoing.getOrDefault(aIri, emptySet())) {
+                for (Edge out2 : outgoing.getOrDefault(out.node, emptySet())) {
+                    for (String label : labels.getOrDefault(out2.node, emptySet())) {
+                        if (count >= aLimit) {
+                            return new SemanticSignature(relatedEntities, relatedRelations);
+                        }
+                        if (aFilter.test(out.property, label)) {
+                            relatedEntities.add(label);
+                            relatedRelations.add(out.property);
+                        }
+                        count++;
+                    }
+                }
+            }
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+
+        return new SemanticSignature(relatedEntities, relatedRelations);
+    }
+
+    private static final class Edge
+    {
+        private final String property;
+        private final String node;
+
+        public Edge(String aProperty, String aNode)
+        {
+            property = aProperty;
+            node = aNode;
+        }
+
+        @Override
+        public boolean equals(Object aOther)
+        {
+            if (this == aOther) {
+                return true;
+            }
+            if (!(aOther instanceof Edge)) {
+                return false;
+            }
+            Edge other = (Edge) aOther;
+            return property.equals(other.property) && node.equals(other.node);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(property, node);
+        }
+    }
+}
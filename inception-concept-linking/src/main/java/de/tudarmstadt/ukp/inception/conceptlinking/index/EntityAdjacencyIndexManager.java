@@ -0,0 +1,183 @@
+/*
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.conceptlinking.index;
+
+import static java.lang.System.currentTimeMillis;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.repository.RepositoryConnection;
+import org.eclipse.rdf4j.repository.RepositoryResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import de.tudarmstadt.ukp.inception.conceptlinking.config.EntityLinkingProperties;
+import de.tudarmstadt.ukp.inception.kb.KnowledgeBaseService;
+import de.tudarmstadt.ukp.inception.kb.RepositoryType;
+import de.tudarmstadt.ukp.inception.kb.event.KnowledgeBaseConfigurationChangedEvent;
+import de.tudarmstadt.ukp.inception.kb.event.KnowledgeBaseStatementsChangedEvent;
+import de.tudarmstadt.ukp.inception.kb.model.KnowledgeBase;
+
+/**
+ * Maintains an {@link EntityAdjacencyIndex} for each local knowledge base. Indexes are built in
+ * the background on first access and are afterwards kept up-to-date using the changes reported
+ * by the {@link KnowledgeBaseService}. Bulk changes (e.g. imports) cause the index to be rebuilt.
+ * <p>
+ * The indexes are kept on the heap. An index takes roughly 200-300 bytes per statement linking
+ * two resources, i.e. up to about 300 MB for a knowledge base at the default limit of 1 million
+ * statements. Knowledge bases which are larger than the configured limit are not indexed and
+ * only the indexes of a configurable number of recently used knowledge bases are kept. Indexing
+ * can also be turned off entirely, in which case no semantic signatures are computed for local
+ * knowledge bases.
+ */
+@Component
+public class EntityAdjacencyIndexManager
+    implements DisposableBean
+{
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final KnowledgeBaseService kbService;
+    private final EntityLinkingProperties properties;
+
+    private final Cache<String, CompletableFuture<Optional<EntityAdjacencyIndex>>> indexes;
+    private final ExecutorService indexBuilder = Executors.newSingleThreadExecutor();
+
+    @Autowired
+    public EntityAdjacencyIndexManager(KnowledgeBaseService aKbService,
+            EntityLinkingProperties aProperties)
+    {
+        kbService = aKbService;
+        properties = aProperties;
+        indexes = Caffeine.newBuilder()
+                .maximumSize(properties.getAdjacencyIndexMaxKnowledgeBases())
+                .build();
+    }
+
+    @Override
+    public void destroy()
+    {
+        indexBuilder.shutdownNow();
+    }
+
+    /**
+     * Obtain the adjacency index for the given knowledge base. If the index is not available yet,
+     * building it is triggered in the background.
+     *
+     * @param aKB
+     *            a knowledge base.
+     * @return the index if indexing is enabled, the knowledge base is a local knowledge base and
+     *         the index is ready.
+     */
+    public Optional<EntityAdjacencyIndex> getIndex(KnowledgeBase aKB)
+    {
+        if (!properties.isAdjacencyIndexEnabled()
+                || !RepositoryType.LOCAL.equals(aKB.getType())) {
+            return Optional.empty();
+        }
+
+        CompletableFuture<Optional<EntityAdjacencyIndex>> future = indexes.get(
+                aKB.getRepositoryId(),
+                k -> CompletableFuture.supplyAsync(() -> buildIndex(aKB), indexBuilder));
+
+        if (future.isDone() && !future.isCompletedExceptionally()) {
+            return future.join();
+        }
+
+        return Optional.empty();
+    }
+
+    private Optional<EntityAdjacencyIndex> buildIndex(KnowledgeBase aKB)
+    {
+        long startTime = currentTimeMillis();
+
+        EntityAdjacencyIndex index = new EntityAdjacencyIndex(aKB.getLabelIri().stringValue());
+        long count = 0;
+
+        try (RepositoryConnection conn = kbService.getConnection(aKB);
+                RepositoryResult<Statement> statements = conn.getStatements(null, null, null,
+                        false)) {
+            while (statements.hasNext()) {
+                count++;
+                if (count > properties.getAdjacencyIndexMaxStatements()) {
+                    log.info("Not building adjacency index for knowledge base [{}]: more than "
+                            + "{} statements", aKB.getName(),
+                            properties.getAdjacencyIndexMaxStatements());
+                    return Optional.empty();
+                }
+
+                index.add(statements.next());
+            }
+        }
+        catch (Exception e) {
+            log.error("Unable to build adjacency index for knowledge base [{}]", aKB.getName(),
+                    e);
+            return Optional.empty();
+        }
+
+        log.info("Built adjacency index for knowledge base [{}] from {} statements in {}ms",
+                aKB.getName(), count, currentTimeMillis() - startTime);
+
+        return Optional.of(index);
+    }
+
+    @EventListener
+    public void onKnowledgeBaseStatementsChangedEvent(KnowledgeBaseStatementsChangedEvent aEvent)
+    {
+        String repositoryId = aEvent.getKnowledgeBase().getRepositoryId();
+        CompletableFuture<Optional<EntityAdjacencyIndex>> future = indexes
+                .getIfPresent(repositoryId);
+
+        if (future == null) {
+            return;
+        }
+
+        // If the index is still being built, we cannot be sure whether the change is included in
+        // the index or not, so we rebuild it the next time it is needed. The same applies to bulk
+        // changes for which we do not know which statements were affected.
+        if (aEvent.isBulkChange() || !future.isDone() || future.isCompletedExceptionally()) {
+            indexes.invalidate(repositoryId);
+            return;
+        }
+
+        future.join().ifPresent(index -> {
+            aEvent.getRemovedStatements().forEach(index::remove);
+            aEvent.getAddedStatements().forEach(index::add);
+        });
+    }
+
+    @EventListener
+    public void onKnowledgeBaseConfigurationChangedEvent(
+            KnowledgeBaseConfigurationChangedEvent aEvent)
+    {
+        // The label property may have changed, so we need to rebuild the indexes of the project
+        for (KnowledgeBase kb : kbService.getKnowledgeBases(aEvent.getProject())) {
+            indexes.invalidate(kb.getRepositoryId());
+        }
+    }
+}
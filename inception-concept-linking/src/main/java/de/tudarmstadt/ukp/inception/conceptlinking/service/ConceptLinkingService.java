@@ -60,7 +60,8 @@ public interface ConceptLinkingService
      * aRepositoryId, all enabled knowledge bases in the project are considered. If the given
      * aRepositoryId can not be found the method will return an empty list. This method calls
      * {@link #disambiguate} to determine the instances
-     * for a single knowledge base
+     * for a single knowledge base. If the typed string consists only of wildcards and a scope is
+     * given, the first items in the scope are listed instead.
      *
      * @param aRepositoryId
      *            the RepositoryId of the knowledge base that defines the scope. If this
@@ -24,7 +24,9 @@ import static de.tudarmstadt.ukp.inception.conceptlinking.model.CandidateEntity.
 import static de.tudarmstadt.ukp.inception.conceptlinking.model.CandidateEntity.KEY_QUERY;
 import static java.lang.System.currentTimeMillis;
 import static java.util.Arrays.asList;
+import static java.util.Collections.emptySet;
 import static java.util.Collections.unmodifiableList;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 import java.io.File;
 import java.net.URISyntaxException;
@@ -32,19 +34,29 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.apache.commons.lang3.ClassUtils;
 import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.apache.uima.cas.CAS;
 import org.apache.uima.cas.text.AnnotationFS;
 import org.eclipse.rdf4j.common.net.ParsedIRI;
-import org.eclipse.rdf4j.repository.RepositoryConnection;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Lazy;
@@ -65,15 +77,21 @@ import de.tudarmstadt.ukp.inception.kb.KnowledgeBaseService;
 import de.tudarmstadt.ukp.inception.kb.RepositoryType;
 import de.tudarmstadt.ukp.inception.kb.graph.KBHandle;
 import de.tudarmstadt.ukp.inception.kb.model.KnowledgeBase;
+import de.tudarmstadt.ukp.inception.kb.querybuilder.SPARQLQuery;
 import de.tudarmstadt.ukp.inception.kb.querybuilder.SPARQLQueryBuilder;
 import de.tudarmstadt.ukp.inception.kb.querybuilder.SPARQLQueryPrimaryConditions;
 
 @Component
 public class ConceptLinkingServiceImpl
-    implements InitializingBean, ConceptLinkingService
+    implements InitializingBean, DisposableBean, ConceptLinkingService
 {
     private final Logger log = LoggerFactory.getLogger(getClass());
 
+    private static final String TAG_IRI = "iri";
+    private static final String TAG_EXACT = "exact";
+    private static final String TAG_STARTING_WITH = "startingWith";
+    private static final String TAG_CONTAINING = "containing";
+
     private final KnowledgeBaseService kbService;
     private final EntityLinkingProperties properties;
     private final RepositoryProperties repoProperties;
@@ -83,6 +101,12 @@ public class ConceptLinkingServiceImpl
     private final List<EntityRankingFeatureGenerator> featureGeneratorsProxy;
     private List<EntityRankingFeatureGenerator> featureGenerators;
 
+    /**
+     * Queries the knowledge bases for candidates. Querying a remote knowledge base blocks on I/O,
+     * so this is done on a dedicated pool rather than on the common fork-join pool.
+     */
+    private final ExecutorService candidateQueryExecutor;
+
     @Autowired
     public ConceptLinkingServiceImpl(KnowledgeBaseService aKbService,
             EntityLinkingProperties aProperties,
@@ -97,6 +121,11 @@ public class ConceptLinkingServiceImpl
         properties = aProperties;
         featureGeneratorsProxy = aFeatureGenerators;
         repoProperties = aRepoProperties;
+        candidateQueryExecutor = Executors.newFixedThreadPool(
+                properties.getCandidateQueryThreads(), new BasicThreadFactory.Builder()
+                        .namingPattern("concept-linking-%d")
+                        .daemon(true)
+                        .build());
     }
 
     @Override
@@ -105,6 +134,12 @@ public class ConceptLinkingServiceImpl
         File stopwordsFile = new File(repoProperties.getPath(), "resources/stopwords-en.txt");
         stopwords = FileUtils.loadStopwordFile(stopwordsFile);
     }
+
+    @Override
+    public void destroy()
+    {
+        candidateQueryExecutor.shutdownNow();
+    }
     
     @EventListener
     public void onContextRefreshedEvent(ContextRefreshedEvent aEvent)
@@ -156,114 +191,95 @@ public class ConceptLinkingServiceImpl
         final int threshold = RepositoryType.LOCAL.equals(aKB.getType()) ? 0 : 3;
         
         long startTime = currentTimeMillis();
-        Set<KBHandle> result = new HashSet<>();
         
-        try (RepositoryConnection conn = kbService.getConnection(aKB)) {
-            if (aQuery != null) {
-                ParsedIRI iri = null;
-                try {
-                    iri = new ParsedIRI(aQuery);
-                }
-                catch (URISyntaxException | NullPointerException e) {
-                    // Skip match by IRI.
-                }
-                if (iri != null && iri.isAbsolute()) {
-                    SPARQLQueryPrimaryConditions iriMatchBuilder = newQueryBuilder(aValueType, aKB)
-                            .withIdentifier(aQuery);
-                    
-                    if (aConceptScope != null) {
-                        iriMatchBuilder.descendantsOf(aConceptScope);
-                    }
-                    
-                    List<KBHandle> exactMatches = iriMatchBuilder
-                            .retrieveLabel()
-                            .retrieveDescription()
-                            .asHandles(conn, true);
-    
-                    log.debug("Found [{}] candidates exactly matching IRI {}",
-                            exactMatches.size(), asList(aQuery));
-    
-                    result.addAll(exactMatches);
-                }
+        // All the candidate queries are combined into a single query such that we only need a
+        // single round-trip to the KB. Each of the queries still has its own limit.
+        Map<String, SPARQLQuery> queries = new LinkedHashMap<>();
+        
+        if (aQuery != null) {
+            ParsedIRI iri = null;
+            try {
+                iri = new ParsedIRI(aQuery);
             }
-            
-            SPARQLQueryPrimaryConditions exactBuilder = newQueryBuilder(aValueType, aKB);
-            
-            if (aConceptScope != null) {
-                // Scope-limiting must always happen before label matching!
-                exactBuilder.descendantsOf(aConceptScope);
+            catch (URISyntaxException | NullPointerException e) {
+                // Skip match by IRI.
             }
-            
-            // Collect exact matches - although exact matches are theoretically contained in the
-            // set of containing matches, due to the ranking performed by the KB/FTS, we might
-            // not actually see the exact matches within the first N results. So we query for
-            // the exact matches separately to ensure we have them.
-            String[] exactLabels = asList(
-                    (aQuery != null && aQuery.length() <= threshold) ? aQuery : null, aMention)
-                    .stream()
-                    .filter(Objects::nonNull)
-                    .toArray(String[]::new);
-            exactBuilder.withLabelMatchingExactlyAnyOf(exactLabels);
-            
-            List<KBHandle> exactMatches = exactBuilder
-                    .retrieveLabel()
-                    .retrieveDescription()
-                    .asHandles(conn, true);
-
-            log.debug("Found [{}] candidates exactly matching {}",
-                    exactMatches.size(), asList(exactLabels));
-
-            result.addAll(exactMatches);
-
-            if (aQuery != null && aQuery.length() > threshold) {
-                SPARQLQueryPrimaryConditions startingWithBuilder = newQueryBuilder(aValueType, aKB);
+            if (iri != null && iri.isAbsolute()) {
+                SPARQLQueryPrimaryConditions iriMatchBuilder = newQueryBuilder(aValueType, aKB)
+                        .withIdentifier(aQuery);
                 
                 if (aConceptScope != null) {
-                    // Scope-limiting must always happen before label matching!
-                    startingWithBuilder.descendantsOf(aConceptScope);
+                    iriMatchBuilder.descendantsOf(aConceptScope);
                 }
                 
-                // Collect matches starting with the query - this is the main driver for the
-                // auto-complete functionality
-                startingWithBuilder.withLabelStartingWith(aQuery);
-                
-                List<KBHandle> startingWithMatches = startingWithBuilder
+                queries.put(TAG_IRI, iriMatchBuilder
                         .retrieveLabel()
-                        .retrieveDescription()
-                        .asHandles(conn, true);
-                
-                log.debug("Found [{}] candidates starting with [{}]]",
-                        startingWithMatches.size(), aQuery);            
-                
-                result.addAll(startingWithMatches);
+                        .retrieveDescription());
             }
-            
-            
-            // Collect containing matches
-            SPARQLQueryPrimaryConditions containingBuilder = newQueryBuilder(aValueType, aKB);
+        }
+        
+        SPARQLQueryPrimaryConditions exactBuilder = newQueryBuilder(aValueType, aKB);
+        
+        if (aConceptScope != null) {
+            // Scope-limiting must always happen before label matching!
+            exactBuilder.descendantsOf(aConceptScope);
+        }
+        
+        // Collect exact matches - although exact matches are theoretically contained in the
+        // set of containing matches, due to the ranking performed by the KB/FTS, we might
+        // not actually see the exact matches within the first N results. So we query for
+        // the exact matches separately to ensure we have them.
+        String[] exactLabels = asList(
+                (aQuery != null && aQuery.length() <= threshold) ? aQuery : null, aMention)
+                .stream()
+                .filter(Objects::nonNull)
+                .toArray(String[]::new);
+        exactBuilder.withLabelMatchingExactlyAnyOf(exactLabels);
+        
+        queries.put(TAG_EXACT, exactBuilder
+                .retrieveLabel()
+                .retrieveDescription());
 
+        if (aQuery != null && aQuery.length() > threshold) {
+            SPARQLQueryPrimaryConditions startingWithBuilder = newQueryBuilder(aValueType, aKB);
+            
             if (aConceptScope != null) {
                 // Scope-limiting must always happen before label matching!
-                containingBuilder.descendantsOf(aConceptScope);
+                startingWithBuilder.descendantsOf(aConceptScope);
             }
             
-            String[] containingLabels = asList(
-                    (aQuery != null && aQuery.length() > threshold) ? aQuery : null, aMention)
-                    .stream()
-                    .filter(Objects::nonNull)
-                    .toArray(String[]::new);
-            containingBuilder.withLabelContainingAnyOf(containingLabels);
+            // Collect matches starting with the query - this is the main driver for the
+            // auto-complete functionality
+            startingWithBuilder.withLabelStartingWith(aQuery);
             
-            List<KBHandle> containingMatches = containingBuilder
+            queries.put(TAG_STARTING_WITH, startingWithBuilder
                     .retrieveLabel()
-                    .retrieveDescription()
-                    .asHandles(conn, true);
-            
-            log.debug("Found [{}] candidates using containing {}",
-                    containingMatches.size(), asList(containingLabels));
-            
-            result.addAll(containingMatches);
+                    .retrieveDescription());
         }
+        
+        // Collect containing matches
+        SPARQLQueryPrimaryConditions containingBuilder = newQueryBuilder(aValueType, aKB);
+
+        if (aConceptScope != null) {
+            // Scope-limiting must always happen before label matching!
+            containingBuilder.descendantsOf(aConceptScope);
+        }
+        
+        String[] containingLabels = asList(
+                (aQuery != null && aQuery.length() > threshold) ? aQuery : null, aMention)
+                .stream()
+                .filter(Objects::nonNull)
+                .toArray(String[]::new);
+        containingBuilder.withLabelContainingAnyOf(containingLabels);
+        
+        queries.put(TAG_CONTAINING, containingBuilder
+                .retrieveLabel()
+                .retrieveDescription());
+        
+        Set<KBHandle> result = new HashSet<>();
+        
+        result.addAll(kbService.read(aKB,
+            conn -> SPARQLQueryBuilder.unionOf(aKB, queries).asHandles(conn, true)));
 
         log.debug("Generated [{}] candidates in {}ms", result.size(),
                 currentTimeMillis() - startTime);
@@ -372,16 +388,99 @@ public class ConceptLinkingServiceImpl
             knowledgeBases.addAll(kbService.getEnabledKnowledgeBases(aProject));
         }
         
-        // Query the knowledge bases for candidates
-        Set<KBHandle> candidates = new HashSet<>();
+        // If the user typed only wildcards, there is nothing to rank - just list the first items
+        // in the scope so the user can browse it
+        if (query.isEmpty() && aConceptScope != null) {
+            return listItemsInScope(knowledgeBases, aConceptScope, aValueType);
+        }
+        
+        // Query the knowledge bases for candidates - the knowledge bases are queried
+        // concurrently, so the overall latency is bound by the slowest knowledge base. Knowledge
+        // bases which do not respond in time are skipped.
+        List<CandidateQuery> queries = new ArrayList<>();
         for (KnowledgeBase kb : knowledgeBases) {
-            candidates.addAll(generateCandidates(kb, aConceptScope, aValueType, query, aMention));
+            CandidateQuery candidateQuery = new CandidateQuery(kb);
+            candidateQuery.future = candidateQueryExecutor.submit(() -> {
+                candidateQuery.started();
+                return generateCandidates(kb, aConceptScope, aValueType, query, aMention);
+            });
+            queries.add(candidateQuery);
+        }
+        
+        Set<KBHandle> candidates = new HashSet<>();
+        for (CandidateQuery candidateQuery : queries) {
+            candidates.addAll(awaitCandidates(candidateQuery));
         }
         
         // Rank the candidates and return them
         return rankCandidates(query, aMention, candidates, aCas, aMentionBeginOffset);
     }
 
+    private List<KBHandle> listItemsInScope(List<KnowledgeBase> aKnowledgeBases,
+            String aConceptScope, ConceptFeatureValueType aValueType)
+    {
+        int limit = properties.getCandidateDisplayLimit();
+        List<KBHandle> items = new ArrayList<>();
+        for (KnowledgeBase kb : aKnowledgeBases) {
+            if (items.size() >= limit) {
+                break;
+            }
+            
+            int remaining = limit - items.size();
+            items.addAll(kbService.read(kb, conn -> {
+                // The stream holds on to the connection, so it must be consumed right here
+                try (Stream<KBHandle> handles = newQueryBuilder(aValueType, kb)
+                        .descendantsOf(aConceptScope)
+                        .retrieveLabel()
+                        .retrieveDescription()
+                        .orderBySubject()
+                        .limit(remaining)
+                        .asHandleStream(conn, false)) {
+                    return handles.collect(Collectors.toList());
+                }
+            }));
+        }
+        return items;
+    }
+
+    /**
+     * Wait for the candidates of the given query. The timeout only starts once the query runs, so
+     * a query which has to wait for a thread because many knowledge bases are queried at once
+     * still gets the full time. Waiting for a thread is limited by the timeout as well.
+     */
+    private Set<KBHandle> awaitCandidates(CandidateQuery aQuery)
+    {
+        long timeout = properties.getCandidateQueryTimeout();
+        try {
+            if (!aQuery.started.await(
+                    Math.max(0, aQuery.submitTime + timeout - currentTimeMillis()),
+                    MILLISECONDS)) {
+                aQuery.future.cancel(true);
+                log.warn("Query for candidates in knowledge base [{}] did not start within {}ms "
+                        + "- skipping it", aQuery.kb.getName(), timeout);
+                return emptySet();
+            }
+            
+            return aQuery.future.get(
+                    Math.max(0, aQuery.startTime + timeout - currentTimeMillis()), MILLISECONDS);
+        }
+        catch (TimeoutException e) {
+            aQuery.future.cancel(true);
+            log.warn("Knowledge base [{}] did not return candidates within {}ms - skipping it",
+                    aQuery.kb.getName(), timeout);
+        }
+        catch (InterruptedException e) {
+            aQuery.future.cancel(true);
+            Thread.currentThread().interrupt();
+        }
+        catch (ExecutionException e) {
+            log.error("Unable to retrieve candidates from knowledge base [{}] - skipping it",
+                    aQuery.kb.getName(), e.getCause());
+        }
+        
+        return emptySet();
+    }
+
     /**
      * Find KB items (classes and instances) matching the given query.
      */
@@ -390,4 +489,28 @@ public class ConceptLinkingServiceImpl
     {
         return disambiguate(aKB, null, ConceptFeatureValueType.ANY_OBJECT, aQuery, null, 0, null);
     }
+
+    /**
+     * Query for candidates in a single knowledge base which has been submitted to the
+     * {@link #candidateQueryExecutor}.
+     */
+    private static class CandidateQuery
+    {
+        private final KnowledgeBase kb;
+        private final long submitTime = currentTimeMillis();
+        private final CountDownLatch started = new CountDownLatch(1);
+        private volatile long startTime;
+        private Future<Set<KBHandle>> future;
+
+        public CandidateQuery(KnowledgeBase aKB)
+        {
+            kb = aKB;
+        }
+
+        public void started()
+        {
+            startTime = currentTimeMillis();
+            started.countDown();
+        }
+    }
 }
@@ -0,0 +1,355 @@
+/*
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.conceptlinking.util;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.READ;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Read-only table mapping keys (e.g. Wikidata entity IDs) to integer frequencies. The table is
+ * compiled once from the tab-separated text format into a compact binary file which is then
+ * memory-mapped. Lookups are binary searches directly on the mapped file, so the table occupies
+ * practically no heap and lookups do not allocate. If the binary file cannot be written or
+ * mapped (e.g. because the directory is read-only), the text file is loaded into a map on the
+ * heap instead. The table is safe for concurrent use.
+ * <p>
+ * Binary layout (big endian):
+ * <ul>
+ * <li>{@code int} magic number</li>
+ * <li>{@code int} number of entries {@code n}</li>
+ * <li>{@code int[n + 1]} start offsets of the keys relative to the key section; the last value
+ * is the length of the key section</li>
+ * <li>{@code int[n]} frequencies</li>
+ * <li>key section: the UTF-8 encoded keys in ascending unsigned byte order</li>
+ * </ul>
+ */
+public class FrequencyTable
+{
+    private final static Logger log = LoggerFactory.getLogger(FrequencyTable.class);
+
+    public static final String COMPILED_SUFFIX = ".bin";
+
+    private static final int MAGIC = 0x494E4346; // "INCF"
+    private static final int HEADER_SIZE = 8;
+
+    private static final FrequencyTable EMPTY = new FrequencyTable(null, 0);
+
+    private final MappedByteBuffer buffer;
+    private final Map<String, Integer> fallback;
+    private final int size;
+    private final int offsetsStart;
+    private final int frequenciesStart;
+    private final int keysStart;
+
+    private FrequencyTable(MappedByteBuffer aBuffer, int aSize)
+    {
+        buffer = aBuffer;
+        fallback = null;
+        size = aSize;
+        offsetsStart = HEADER_SIZE;
+        frequenciesStart = offsetsStart + (size + 1) * Integer.BYTES;
+        keysStart = frequenciesStart + size * Integer.BYTES;
+    }
+
+    private FrequencyTable(Map<String, Integer> aFallback)
+    {
+        buffer = null;
+        fallback = aFallback;
+        size = aFallback.size();
+        offsetsStart = 0;
+        frequenciesStart = 0;
+        keysStart = 0;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @param aKey
+     *            the key to look up.
+     * @param aDefault
+     *            the value to return if the key is not in the table.
+     * @return the frequency of the given key or the default value.
+     */
+    public int getFrequency(String aKey, int aDefault)
+    {
+        if (size == 0) {
+            return aDefault;
+        }
+
+        if (fallback != null) {
+            return fallback.getOrDefault(aKey, aDefault);
+        }
+
+        byte[] key = aKey.getBytes(UTF_8);
+
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareKeyAt(mid, key);
+            if (cmp < 0) {
+                low = mid + 1;
+            }
+            else if (cmp > 0) {
+                high = mid - 1;
+            }
+            else {
+                return buffer.getInt(frequenciesStart + mid * Integer.BYTES);
+            }
+        }
+
+        return aDefault;
+    }
+
+    /**
+     * Compares the key at the given index with the given key using unsigned byte order. Uses only
+     * absolute reads on the buffer so that concurrent lookups do not interfere.
+     */
+    private int compareKeyAt(int aIndex, byte[] aKey)
+    {
+        int start = keysStart + buffer.getInt(offsetsStart + aIndex * Integer.BYTES);
+        int end = keysStart + buffer.getInt(offsetsStart + (aIndex + 1) * Integer.BYTES);
+        int length = end - start;
+
+        int n = Math.min(length, aKey.length);
+        for (int i = 0; i < n; i++) {
+            int cmp = Integer.compare(buffer.get(start + i) & 0xFF, aKey[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+
+        return Integer.compare(length, aKey.length);
+    }
+
+    /**
+     * Opens the frequency table for the given text file. If there is no compiled version of the
+     * file next to it or if the compiled version is older than the text file, the text file is
+     * compiled first. If the compiled file cannot be written or mapped, the text file is loaded
+     * into memory instead. If the text file does not exist, an empty table is returned.
+     *
+     * @param aTextFile
+     *            a file where each line consists of a key and its frequency, tab-separated.
+     *            Lines starting with {@code #} are ignored.
+     * @return the frequency table.
+     */
+    public static FrequencyTable open(File aTextFile)
+    {
+        File compiledFile = new File(aTextFile.getPath() + COMPILED_SUFFIX);
+
+        try {
+            if (aTextFile.exists() && (!compiledFile.exists()
+                    || compiledFile.lastModified() < aTextFile.lastModified())) {
+                compile(aTextFile, compiledFile);
+            }
+
+            if (!compiledFile.exists()) {
+                log.warn("File [{}] is missing - Using entity linking support without entity "
+                        + "frequency file will have a negative impact on the suggestion ranking.",
+                        aTextFile.getName());
+                return EMPTY;
+            }
+
+            return map(compiledFile);
+        }
+        catch (IOException e) {
+            if (!aTextFile.exists()) {
+                log.error("Unable to load frequency table [{}]", compiledFile, e);
+                return EMPTY;
+            }
+
+            log.warn("Unable to use compiled frequency table [{}] - loading [{}] into memory "
+                    + "instead: {}", compiledFile, aTextFile.getName(), e.getMessage());
+        }
+
+        try {
+            return load(aTextFile);
+        }
+        catch (IOException e) {
+            log.error("Unable to load frequency table [{}]", aTextFile, e);
+            return EMPTY;
+        }
+    }
+
+    private static FrequencyTable load(File aTextFile) throws IOException
+    {
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (Entry e : read(aTextFile)) {
+            frequencies.put(new String(e.key, UTF_8), e.frequency);
+        }
+
+        log.info("Loaded frequency table [{}] with {} entries into memory", aTextFile.getName(),
+                frequencies.size());
+
+        return new FrequencyTable(frequencies);
+    }
+
+    private static FrequencyTable map(File aCompiledFile) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(aCompiledFile.toPath(), READ)) {
+            MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+
+            if (buffer.getInt(0) != MAGIC) {
+                throw new IOException("Not a compiled frequency table: [" + aCompiledFile + "]");
+            }
+
+            FrequencyTable table = new FrequencyTable(buffer, buffer.getInt(4));
+
+            log.info("Mapped frequency table [{}] with {} entries", aCompiledFile.getName(),
+                    table.size());
+
+            return table;
+        }
+    }
+
+    /**
+     * Compile the tab-separated text format into the binary format. The target file is written
+     * to a temporary file first and then moved into place such that a concurrently opening
+     * reader never sees a partially written file.
+     */
+    static void compile(File aTextFile, File aCompiledFile) throws IOException
+    {
+        long startTime = System.currentTimeMillis();
+
+        List<Entry> entries = read(aTextFile);
+
+        Entry[] sorted = entries.toArray(new Entry[entries.size()]);
+        Arrays.sort(sorted, (a, b) -> compareUnsigned(a.key, b.key));
+
+        // Drop duplicate keys - the last occurrence in the text file wins as it would have when
+        // loading the file into a map
+        List<Entry> unique = new ArrayList<>(sorted.length);
+        for (Entry e : sorted) {
+            if (!unique.isEmpty()
+                    && compareUnsigned(unique.get(unique.size() - 1).key, e.key) == 0) {
+                unique.set(unique.size() - 1, e);
+            }
+            else {
+                unique.add(e);
+            }
+        }
+
+        File tempFile = File.createTempFile(aCompiledFile.getName(), ".tmp",
+                aCompiledFile.getAbsoluteFile().getParentFile());
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(unique.size());
+
+                int offset = 0;
+                for (Entry e : unique) {
+                    out.writeInt(offset);
+                    offset += e.key.length;
+                }
+                out.writeInt(offset);
+
+                for (Entry e : unique) {
+                    out.writeInt(e.frequency);
+                }
+
+                for (Entry e : unique) {
+                    out.write(e.key);
+                }
+            }
+
+            Files.move(tempFile.toPath(), aCompiledFile.toPath(), REPLACE_EXISTING, ATOMIC_MOVE);
+        }
+        finally {
+            Files.deleteIfExists(tempFile.toPath());
+        }
+
+        log.info("Compiled frequency table [{}] with {} entries in {}ms", aTextFile.getName(),
+                unique.size(), System.currentTimeMillis() - startTime);
+    }
+
+    private static List<Entry> read(File aTextFile) throws IOException
+    {
+        List<Entry> entries = new ArrayList<>();
+        try (BufferedReader br = new BufferedReader(
+                new InputStreamReader(new FileInputStream(aTextFile), UTF_8))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (line.startsWith("#") || line.isEmpty()) {
+                    continue;
+                }
+
+                int tab = line.indexOf('\t');
+                if (tab < 0) {
+                    continue;
+                }
+
+                entries.add(new Entry(line.substring(0, tab).getBytes(UTF_8),
+                        Integer.parseInt(line.substring(tab + 1).trim())));
+            }
+        }
+
+        return entries;
+    }
+
+    private static int compareUnsigned(byte[] aLeft, byte[] aRight)
+    {
+        int n = Math.min(aLeft.length, aRight.length);
+        for (int i = 0; i < n; i++) {
+            int cmp = Integer.compare(aLeft[i] & 0xFF, aRight[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+
+        return Integer.compare(aLeft.length, aRight.length);
+    }
+
+    private static class Entry
+    {
+        private final byte[] key;
+        private final int frequency;
+
+        public Entry(byte[] aKey, int aFrequency)
+        {
+            key = aKey;
+            frequency = aFrequency;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.conceptlinking.index;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+import org.eclipse.rdf4j.model.vocabulary.RDFS;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.tudarmstadt.ukp.inception.conceptlinking.config.EntityLinkingProperties;
+import de.tudarmstadt.ukp.inception.kb.KnowledgeBaseService;
+import de.tudarmstadt.ukp.inception.kb.RepositoryType;
+import de.tudarmstadt.ukp.inception.kb.model.KnowledgeBase;
+
+public class EntityAdjacencyIndexManagerTest
+{
+    private KnowledgeBaseService kbService;
+    private EntityLinkingProperties properties;
+    private KnowledgeBase kb;
+    private EntityAdjacencyIndexManager sut;
+
+    @Before
+    public void setup()
+    {
+        kbService = mock(KnowledgeBaseService.class);
+        properties = new EntityLinkingProperties();
+
+        kb = new KnowledgeBase();
+        kb.setRepositoryId("kb");
+        kb.setType(RepositoryType.LOCAL);
+        kb.setLabelIri(RDFS.LABEL);
+    }
+
+    @After
+    public void tearDown()
+    {
+        if (sut != null) {
+            sut.destroy();
+        }
+    }
+
+    @Test
+    public void thatNoIndexIsBuiltWhenDisabled()
+    {
+        properties.setAdjacencyIndexEnabled(false);
+        sut = new EntityAdjacencyIndexManager(kbService, properties);
+
+        assertThat(sut.getIndex(kb)).isEmpty();
+        verifyZeroInteractions(kbService);
+    }
+
+    @Test
+    public void thatNoIndexIsBuiltForRemoteKnowledgeBases()
+    {
+        kb.setType(RepositoryType.REMOTE);
+        sut = new EntityAdjacencyIndexManager(kbService, properties);
+
+        assertThat(sut.getIndex(kb)).isEmpty();
+        verifyZeroInteractions(kbService);
+    }
+}
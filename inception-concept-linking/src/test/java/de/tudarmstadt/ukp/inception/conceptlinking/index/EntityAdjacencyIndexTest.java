@@ -0,0 +1,102 @@
+/*
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.conceptlinking.index;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.RDFS;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.tudarmstadt.ukp.inception.conceptlinking.model.SemanticSignature;
+
+public class EntityAdjacencyIndexTest
+{
+    private static final String NS = "http://example.org/#";
+
+    private ValueFactory vf;
+    private EntityAdjacencyIndex sut;
+
+    @Before
+    public void setup()
+    {
+        vf = SimpleValueFactory.getInstance();
+        sut = new EntityAdjacencyIndex(RDFS.LABEL.stringValue());
+
+        // berlin -capitalOf-> stmt1 -value-> germany
+        sut.add(stmt("berlin", "capitalOf", "stmt1"));
+        sut.add(stmt("stmt1", "value", "germany"));
+        // paris -mentions-> stmt2 -about-> berlin
+        sut.add(stmt("paris", "mentions", "stmt2"));
+        sut.add(stmt("stmt2", "about", "berlin"));
+        sut.add(label("germany", "Germany"));
+        sut.add(label("paris", "Paris"));
+    }
+
+    @Test
+    public void thatSignatureContainsEntitiesAtDistanceTwo()
+    {
+        SemanticSignature sig = sut.getSemanticSignature(NS + "berlin", Integer.MAX_VALUE,
+            (p, l) -> true);
+
+        assertThat(sig.getRelatedEntities()).containsExactlyInAnyOrder("Germany", "Paris");
+        assertThat(sig.getRelatedRelations()).containsExactlyInAnyOrder(NS + "capitalOf",
+                NS + "about");
+    }
+
+    @Test
+    public void thatRemovedStatementsAreNoLongerConsidered()
+    {
+        sut.remove(stmt("stmt1", "value", "germany"));
+        sut.remove(label("paris", "Paris"));
+
+        SemanticSignature sig = sut.getSemanticSignature(NS + "berlin", Integer.MAX_VALUE,
+            (p, l) -> true);
+
+        assertThat(sig.getRelatedEntities()).isEmpty();
+    }
+
+    @Test
+    public void thatFilterAndLimitAreApplied()
+    {
+        assertThat(sut.getSemanticSignature(NS + "berlin", Integer.MAX_VALUE,
+                (p, l) -> !p.equals(NS + "about")).getRelatedEntities())
+                        .containsExactly("Germany");
+        assertThat(sut.getSemanticSignature(NS + "berlin", 1, (p, l) -> true)
+                .getRelatedEntities()).hasSize(1);
+    }
+
+    private Statement stmt(String aSubject, String aPredicate, String aObject)
+    {
+        return vf.createStatement(iri(aSubject), iri(aPredicate), iri(aObject));
+    }
+
+    private Statement label(String aSubject, String aLabel)
+    {
+        return vf.createStatement(iri(aSubject), RDFS.LABEL, vf.createLiteral(aLabel));
+    }
+
+    private IRI iri(String aLocalName)
+    {
+        return vf.createIRI(NS + aLocalName);
+    }
+}
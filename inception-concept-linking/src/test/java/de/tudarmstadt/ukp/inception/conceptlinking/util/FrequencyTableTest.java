@@ -0,0 +1,89 @@
+/*
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.conceptlinking.util;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FrequencyTableTest
+{
+    public @Rule TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void thatFrequenciesCanBeLookedUp() throws Exception
+    {
+        File mapFile = temp.newFile("freqs.map");
+        Files.write(mapFile.toPath(), String.join("\n",
+                "# ID\tfrequency",
+                "Q4664130\t409104",
+                "Q30\t205747",
+                "Q1\t5",
+                "Q1\t6").getBytes(UTF_8));
+
+        FrequencyTable table = FrequencyTable.open(mapFile);
+
+        assertThat(new File(mapFile.getPath() + FrequencyTable.COMPILED_SUFFIX)).exists();
+        assertThat(table.size()).isEqualTo(3);
+        assertThat(table.getFrequency("Q4664130", -1)).isEqualTo(409104);
+        assertThat(table.getFrequency("Q30", -1)).isEqualTo(205747);
+        assertThat(table.getFrequency("Q1", -1))
+                .as("Last occurrence of a duplicate key wins")
+                .isEqualTo(6);
+        assertThat(table.getFrequency("Q3", -1)).isEqualTo(-1);
+        assertThat(table.getFrequency("", -1)).isEqualTo(-1);
+    }
+
+    @Test
+    public void thatTextFileIsLoadedIfCompiledFileCannotBeWritten() throws Exception
+    {
+        File mapFile = temp.newFile("freqs.map");
+        Files.write(mapFile.toPath(), String.join("\n",
+                "Q30\t205747",
+                "Q1\t5",
+                "Q1\t6").getBytes(UTF_8));
+
+        // A non-empty directory in place of the compiled file cannot be replaced
+        File compiledFile = new File(mapFile.getPath() + FrequencyTable.COMPILED_SUFFIX);
+        compiledFile.mkdir();
+        new File(compiledFile, "blocker").createNewFile();
+        compiledFile.setLastModified(0);
+
+        FrequencyTable table = FrequencyTable.open(mapFile);
+
+        assertThat(table.size()).isEqualTo(2);
+        assertThat(table.getFrequency("Q30", -1)).isEqualTo(205747);
+        assertThat(table.getFrequency("Q1", -1)).isEqualTo(6);
+        assertThat(table.getFrequency("Q3", -1)).isEqualTo(-1);
+    }
+
+    @Test
+    public void thatMissingFileYieldsEmptyTable() throws Exception
+    {
+        FrequencyTable table = FrequencyTable.open(new File(temp.getRoot(), "missing.map"));
+
+        assertThat(table.size()).isEqualTo(0);
+        assertThat(table.getFrequency("Q30", -1)).isEqualTo(-1);
+    }
+}
@@ -18,12 +18,17 @@
 package de.tudarmstadt.ukp.inception.htmleditor;
 
 import static de.tudarmstadt.ukp.clarin.webanno.api.WebAnnoConst.CHAIN_TYPE;
+import static java.util.Comparator.comparingInt;
 import static org.apache.uima.fit.util.CasUtil.getType;
 import static org.apache.uima.fit.util.CasUtil.select;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.StringUtils;
@@ -62,6 +67,7 @@ import de.tudarmstadt.ukp.clarin.webanno.api.annotation.rendering.model.VSpan;
 import de.tudarmstadt.ukp.clarin.webanno.api.annotation.util.TypeUtil;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
 import de.tudarmstadt.ukp.clarin.webanno.model.Mode;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
 import de.tudarmstadt.ukp.clarin.webanno.support.JSONUtil;
 import de.tudarmstadt.ukp.clarin.webanno.support.lambda.LambdaModel;
 import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Div;
@@ -70,6 +76,7 @@ import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Paragraph;
 import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Sentence;
 import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Token;
 import de.tudarmstadt.ukp.inception.htmleditor.annotatorjs.model.Annotation;
+import de.tudarmstadt.ukp.inception.htmleditor.annotatorjs.model.AnnotationUpdate;
 import de.tudarmstadt.ukp.inception.htmleditor.annotatorjs.model.Range;
 import de.tudarmstadt.ukp.inception.htmleditor.annotatorjs.resources.AnnotatorJsCssResourceReference;
 import de.tudarmstadt.ukp.inception.htmleditor.annotatorjs.resources.AnnotatorJsJavascriptResourceReference;
@@ -83,6 +90,20 @@ public class HtmlAnnotationEditor
     private Label vis;
     private StoreAdapter storeAdapter;
 
+    /**
+     * HTML generated for the document text and its structure. It is only regenerated when the
+     * document or its structure changes.
+     */
+    private transient String html;
+    private transient SourceDocument htmlDocument;
+    private transient int htmlFingerprint;
+
+    /**
+     * JSON of the annotations currently shown by AnnotatorJS by annotation ID or {@code null} if
+     * AnnotatorJS needs to load all annotations.
+     */
+    private Map<String, String> renderedAnnotations;
+
     private @SpringBean PreRenderer preRenderer;
     private @SpringBean AnnotationSchemaService annotationService;
 
@@ -110,7 +131,9 @@ public class HtmlAnnotationEditor
                 JavaScriptHeaderItem.forReference(AnnotatorJsJavascriptResourceReference.get()));
 
         if (getModelObject().getDocument() != null) {
-            initAnnotatorJs(aResponse, vis, storeAdapter);
+            // A new annotator instance loads all annotations
+            renderedAnnotations = null;
+            aResponse.render(OnDomReadyHeaderItem.forScript(initAnnotatorJs(vis, storeAdapter)));
             //render(RequestCycle.get().find(AjaxRequestTarget.class));
         }
     }
@@ -126,7 +149,7 @@ public class HtmlAnnotationEditor
             return "";
         }
         
-        StringBuilder buf = new StringBuilder(Strings.escapeMarkup(cas.getDocumentText()));
+        String text = cas.getDocumentText();
 
         List<Node> nodes = new ArrayList<>();
         for (AnnotationFS div : select(cas, getType(cas, Div.class))) {
@@ -154,16 +177,36 @@ public class HtmlAnnotationEditor
             }
         }
 
-        // Sort backwards
-        nodes.sort((a, b) -> {
-            return b.position - a.position;
-        });
+        // Tags at the same position are emitted in reverse order of their creation
+        Collections.reverse(nodes);
+        nodes.sort(comparingInt(n -> n.position));
 
+        int fingerprint = text.hashCode();
         for (Node n : nodes) {
-            buf.insert(n.position, n.type);
+            fingerprint = 31 * (31 * fingerprint + n.position) + n.type.hashCode();
         }
 
-        return buf.toString();
+        SourceDocument document = getModelObject().getDocument();
+        if (html != null && Objects.equals(htmlDocument, document)
+                && htmlFingerprint == fingerprint) {
+            return html;
+        }
+
+        // Build the HTML in a single pass. The positions refer to the unescaped text, so each
+        // segment is escaped separately.
+        StringBuilder buf = new StringBuilder(text.length() + nodes.size() * 5);
+        int pos = 0;
+        for (Node n : nodes) {
+            buf.append(Strings.escapeMarkup(text.substring(pos, n.position)));
+            buf.append(n.type);
+            pos = n.position;
+        }
+        buf.append(Strings.escapeMarkup(text.substring(pos)));
+
+        html = buf.toString();
+        htmlDocument = document;
+        htmlFingerprint = fingerprint;
+        return html;
     }
 
     private void handleError(String aMessage, Throwable aCause)
@@ -185,8 +228,7 @@ public class HtmlAnnotationEditor
         return json;
     }
 
-    private static void initAnnotatorJs(IHeaderResponse aResponse, WebComponent aContainer,
-            StoreAdapter aAdapter)
+    private static String initAnnotatorJs(WebComponent aContainer, StoreAdapter aAdapter)
     {
         String callbackUrl = aAdapter.getCallbackUrl().toString();
         StringBuilder script = new StringBuilder();
@@ -205,13 +247,25 @@ public class HtmlAnnotationEditor
         script.append("    }");
         script.append("});");
         // script.append("Wicket.$('" + vis.getMarkupId() + "').annotator = ann;");
-        aResponse.render(OnDomReadyHeaderItem.forScript(script.toString()));
+        return script.toString();
     }
 
     @Override
     protected void render(AjaxRequestTarget aTarget)
     {
-        aTarget.add(vis);
+        String previousHtml = html;
+        if (renderHtml() == previousHtml) {
+            // The markup has not changed, so we only ask AnnotatorJS to reload the annotations
+            // which then receives the changes since the last time
+            aTarget.appendJavaScript("var ann = $('#" + vis.getMarkupId() + "').data('annotator');"
+                    + "ann && ann.plugins.Store.loadAnnotations();");
+        }
+        else {
+            // Replacing the markup drops the annotator, so set up a new one
+            renderedAnnotations = null;
+            aTarget.add(vis);
+            aTarget.appendJavaScript(initAnnotatorJs(vis, storeAdapter));
+        }
     }
     
     private class StoreAdapter
@@ -328,13 +382,42 @@ public class HtmlAnnotationEditor
                 }
             }
 
-            String json = toJson(annotations);
+            String json = toJson(toUpdate(annotations));
             // Since we cannot pass the JSON directly to Brat, we attach it to the HTML
             // element into which AnnotatorJS governs. In our modified annotator-full.js, we pick it
             // up from there and then pass it on to AnnotatorJS to do the rendering.
             aTarget.prependJavaScript("Wicket.$('" + vis.getMarkupId() + "').temp = " + json + ";");
         }
 
+        /**
+         * Returns the given annotations if AnnotatorJS needs to load all of them, otherwise an
+         * {@link AnnotationUpdate} containing only the changes since the last time.
+         */
+        private Object toUpdate(List<Annotation> aAnnotations)
+        {
+            Map<String, String> annotations = new HashMap<>();
+            for (Annotation anno : aAnnotations) {
+                annotations.put(anno.getId(), toJson(anno));
+            }
+
+            Map<String, String> previous = renderedAnnotations;
+            renderedAnnotations = annotations;
+            if (previous == null) {
+                return aAnnotations;
+            }
+
+            // Changed annotations are removed and loaded again so their highlights are updated
+            List<String> removed = previous.entrySet().stream()
+                    .filter(e -> !e.getValue().equals(annotations.get(e.getKey())))
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toList());
+            List<Annotation> changed = aAnnotations.stream()
+                    .filter(anno -> !annotations.get(anno.getId())
+                            .equals(previous.get(anno.getId())))
+                    .collect(Collectors.toList());
+            return new AnnotationUpdate(removed, changed);
+        }
+
         private List<Range> toRanges(List<VRange> aRanges)
         {
             return aRanges.stream().map(r -> new Range(r.getBegin(), r.getEnd()))
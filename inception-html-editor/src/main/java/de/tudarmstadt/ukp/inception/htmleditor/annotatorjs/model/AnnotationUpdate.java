@@ -0,0 +1,61 @@
+/*
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.htmleditor.annotatorjs.model;
+
+import java.util.List;
+
+// {
+//   "removed":["1", "2"],
+//   "annotations":[{"id":"3","ranges":[...],"quote":"","text":"PER"}]
+// }
+/**
+ * Incremental update of the annotations shown by AnnotatorJS. The annotations listed as removed
+ * are taken out of the view before the given annotations are loaded. Changed annotations are
+ * listed in both.
+ */
+public class AnnotationUpdate
+{
+    private List<String> removed;
+    private List<Annotation> annotations;
+
+    public AnnotationUpdate(List<String> aRemoved, List<Annotation> aAnnotations)
+    {
+        removed = aRemoved;
+        annotations = aAnnotations;
+    }
+
+    public List<String> getRemoved()
+    {
+        return removed;
+    }
+
+    public void setRemoved(List<String> aRemoved)
+    {
+        removed = aRemoved;
+    }
+
+    public List<Annotation> getAnnotations()
+    {
+        return annotations;
+    }
+
+    public void setAnnotations(List<Annotation> aAnnotations)
+    {
+        annotations = aAnnotations;
+    }
+}
@@ -2309,6 +2309,24 @@
 // This is necessary because we channel the AnnotatorJS Ajax events though Wicket and channel
 // responses back through a "temp" variable on the DOM element to which the annotator is attached.
       data = this.annotator.element[0].temp;
+// An incremental update lists the IDs of annotations to be taken out of the view before the
+// annotations it contains are loaded. Highlights are removed directly instead of deleting the
+// annotations via the annotator because that would send a delete request to the server.
+      if (data != null && !$.isArray(data)) {
+        var removed = data.removed || [];
+        this.annotations = $.grep(this.annotations, function(a) {
+          if ($.inArray(a.id, removed) < 0) {
+            return true;
+          }
+          $(a.highlights || []).each(function() {
+            if (this.parentNode != null) {
+              $(this).replaceWith(this.childNodes);
+            }
+          });
+          return false;
+        });
+        data = data.annotations;
+      }
 // INCEPTION EXTENSION END
       var a, annotation, annotationMap, newData, _k, _l, _len2, _len3, _ref3;
       if (data == null) {
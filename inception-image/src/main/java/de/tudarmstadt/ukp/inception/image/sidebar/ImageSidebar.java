@@ -19,15 +19,18 @@ package de.tudarmstadt.ukp.inception.image.sidebar;
 
 import static de.tudarmstadt.ukp.clarin.webanno.api.WebAnnoConst.RELATION_TYPE;
 import static de.tudarmstadt.ukp.clarin.webanno.api.WebAnnoConst.SPAN_TYPE;
+import static de.tudarmstadt.ukp.inception.image.thumbnail.ThumbnailResourceReference.PARAM_KEY;
 import static java.util.Collections.emptyList;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 import static org.apache.uima.fit.util.CasUtil.getType;
-import static org.apache.uima.fit.util.CasUtil.selectCovered;
+import static org.apache.uima.fit.util.CasUtil.select;
 
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
 
 import org.apache.uima.cas.CAS;
 import org.apache.uima.cas.Feature;
@@ -41,12 +44,13 @@ import org.apache.wicket.markup.head.IHeaderResponse;
 import org.apache.wicket.markup.head.JavaScriptHeaderItem;
 import org.apache.wicket.markup.head.OnDomReadyHeaderItem;
 import org.apache.wicket.markup.html.WebMarkupContainer;
-import org.apache.wicket.markup.html.image.ExternalImage;
+import org.apache.wicket.markup.html.image.Image;
 import org.apache.wicket.markup.html.link.ExternalLink;
 import org.apache.wicket.markup.html.list.ListItem;
 import org.apache.wicket.markup.html.list.ListView;
 import org.apache.wicket.model.IModel;
 import org.apache.wicket.model.LoadableDetachableModel;
+import org.apache.wicket.request.mapper.parameter.PageParameters;
 import org.apache.wicket.spring.injection.annot.SpringBean;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -71,6 +75,8 @@ import de.tudarmstadt.ukp.clarin.webanno.support.spring.ApplicationEventPublishe
 import de.tudarmstadt.ukp.clarin.webanno.ui.annotation.AnnotationPage;
 import de.tudarmstadt.ukp.clarin.webanno.ui.annotation.sidebar.AnnotationSidebar_ImplBase;
 import de.tudarmstadt.ukp.inception.image.feature.ImageFeatureSupport;
+import de.tudarmstadt.ukp.inception.image.thumbnail.ThumbnailCache;
+import de.tudarmstadt.ukp.inception.image.thumbnail.ThumbnailResourceReference;
 
 public class ImageSidebar
     extends AnnotationSidebar_ImplBase
@@ -82,9 +88,12 @@ public class ImageSidebar
     private @SpringBean DocumentService documentService;
     private @SpringBean AnnotationSchemaService annotationService;
     private @SpringBean ApplicationEventPublisherHolder applicationEventPublisher;
+    private @SpringBean ThumbnailCache thumbnailCache;
 
     final WebMarkupContainer mainContainer;
 
+    private ImageIndex imageIndex;
+
     public ImageSidebar(String aId, IModel<AnnotatorState> aModel,
             AnnotationActionHandler aActionHandler, CasProvider aCasProvider,
             AnnotationPage aAnnotationPage)
@@ -106,7 +115,11 @@ public class ImageSidebar
                 LambdaAjaxLink jumpToLink = new LambdaAjaxLink("jumpTo",
                     _target -> actionJumpTo(_target, item.getModelObject()));
                 item.add(jumpToLink);
-                jumpToLink.add(new ExternalImage("image", item.getModelObject().getUrl()));
+                // Images are shown as thumbnails served by INCEpTION instead of loading the
+                // originals into the browser
+                PageParameters params = new PageParameters().add(PARAM_KEY,
+                        thumbnailCache.register(item.getModelObject().getUrl()));
+                jumpToLink.add(new Image("image", ThumbnailResourceReference.get(), params));
             }
         };
         images.setModel(LoadableDetachableModel.of(this::listImageUrls));
@@ -202,12 +215,17 @@ public class ImageSidebar
     private List<ImageHandle> listImageUrls()
     {
         AnnotatorState state = getModelObject();
-        Project project = state.getProject();
-        
-        // Get the CAS
-        CAS cas;
+
+        // The index covers the whole document and is only rebuilt when the annotations have
+        // been saved since it was built
         try {
-            cas = getCasProvider().get();
+            long timestamp = documentService.getAnnotationCasTimestamp(state.getDocument(),
+                    state.getUser().getUsername()).orElse(-1l);
+            if (imageIndex == null || !imageIndex.isValidFor(state.getDocument(),
+                    state.getUser().getUsername(), timestamp)) {
+                imageIndex = new ImageIndex(state.getDocument(), state.getUser().getUsername(),
+                        timestamp, buildImageIndex());
+            }
         }
         catch (IOException e) {
             error("Unable to load CAS");
@@ -215,6 +233,20 @@ public class ImageSidebar
             return emptyList();
         }
 
+        return imageIndex.getImages().stream()
+                .filter(image -> image.getBegin() >= state.getWindowBeginOffset()
+                        && image.getEnd() <= state.getWindowEndOffset())
+                .collect(Collectors.toList());
+    }
+
+    private List<ImageHandle> buildImageIndex() throws IOException
+    {
+        AnnotatorState state = getModelObject();
+        Project project = state.getProject();
+        
+        // Get the CAS
+        CAS cas = getCasProvider().get();
+
         // Collect all image features
         List<AnnotationFeature> imageFeatures = new ArrayList<>();
         for (AnnotationLayer layer : annotationService.listAnnotationLayer(project)) {
@@ -238,10 +270,7 @@ public class ImageSidebar
             
             Feature f = t.getFeatureByBaseName(feat.getName());
             
-            List<AnnotationFS> annotations = selectCovered(cas, t,
-                    state.getWindowBeginOffset(), state.getWindowEndOffset());
-            
-            for (AnnotationFS anno : annotations) {
+            for (AnnotationFS anno : select(cas, t)) {
                 String url = anno.getFeatureValueAsString(f);
                 
                 if (isNotBlank(url)) {
@@ -298,6 +327,37 @@ public class ImageSidebar
         }
     }
     
+    private static class ImageIndex
+        implements Serializable
+    {
+        private static final long serialVersionUID = -4386164458418935232L;
+
+        private final SourceDocument document;
+        private final String user;
+        private final long timestamp;
+        private final List<ImageHandle> images;
+
+        public ImageIndex(SourceDocument aDocument, String aUser, long aTimestamp,
+                List<ImageHandle> aImages)
+        {
+            document = aDocument;
+            user = aUser;
+            timestamp = aTimestamp;
+            images = aImages;
+        }
+
+        public boolean isValidFor(SourceDocument aDocument, String aUser, long aTimestamp)
+        {
+            return Objects.equals(document, aDocument) && Objects.equals(user, aUser)
+                    && timestamp == aTimestamp;
+        }
+
+        public List<ImageHandle> getImages()
+        {
+            return images;
+        }
+    }
+    
     private static class ImageHandle
         implements Serializable
     {
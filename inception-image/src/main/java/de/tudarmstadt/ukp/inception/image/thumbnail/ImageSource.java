@@ -0,0 +1,35 @@
+/*
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.image.thumbnail;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Source from which the original images are fetched when creating thumbnails.
+ */
+public interface ImageSource
+{
+    /**
+     * Open the image at the given URL.
+     * 
+     * @throws IOException
+     *             if the image cannot be accessed or the URL is not supported by this source.
+     */
+    InputStream open(String aUrl) throws IOException;
+}
@@ -0,0 +1,380 @@
+/*
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.image.thumbnail;
+
+import static java.lang.System.currentTimeMillis;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.RepositoryProperties;
+
+/**
+ * Creates downsized versions of images referenced by image features and keeps them on disk.
+ * Thumbnails are keyed by the SHA-256 hash of the image URL.
+ * <p>
+ * Only URLs which have been registered via {@link #register(String)} are fetched. This keeps the
+ * thumbnail endpoint from being used as a general purpose proxy. Thumbnails which already exist
+ * on disk are served for their key without registration.
+ * <p>
+ * Concurrent requests for the same thumbnail wait for a single fetch of the image. If an image
+ * cannot be fetched, this is remembered for {@code image.thumbnail.failure-expiry} milliseconds
+ * during which the thumbnail is reported as not available without trying again. Thumbnails older
+ * than {@code image.thumbnail.cache-max-age-days} are removed from the disk and the oldest
+ * thumbnails are removed if the cache exceeds {@code image.thumbnail.cache-max-mb}.
+ */
+@Component
+public class ThumbnailCache
+{
+    public static final String THUMBNAIL_FOLDER = "image-thumbnails";
+
+    private static final String SUFFIX = ".png";
+    private static final Pattern KEY_PATTERN = Pattern.compile("[0-9a-f]{64}");
+    private static final int MAX_REGISTERED_URLS = 10000;
+    private static final int MAX_IMAGE_BYTES = 20 * 1024 * 1024;
+    private static final long MAX_IMAGE_PIXELS = 50_000_000;
+    private static final long EVICTION_INTERVAL = TimeUnit.HOURS.toMillis(1);
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final File cacheDir;
+    private final ImageSource imageSource;
+    private final Map<String, String> registeredUrls = Collections.synchronizedMap(
+            new LinkedHashMap<String, String>(16, 0.75f, true)
+            {
+                private static final long serialVersionUID = 2406003327950733497L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, String> aEldest)
+                {
+                    return size() > MAX_REGISTERED_URLS;
+                }
+            });
+    // Keys of images which could not be fetched recently along with the time until which they
+    // are not fetched again
+    private final Map<String, Long> failures = Collections.synchronizedMap(
+            new LinkedHashMap<String, Long>(16, 0.75f, true)
+            {
+                private static final long serialVersionUID = -3811380591632307416L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Long> aEldest)
+                {
+                    return size() > MAX_REGISTERED_URLS;
+                }
+            });
+    private final Map<String, CompletableFuture<File>> pending = new ConcurrentHashMap<>();
+    private final AtomicLong lastEviction = new AtomicLong();
+
+    private @Value("${image.thumbnail.max-size:300}") int maxSize = 300;
+    private @Value("${image.thumbnail.failure-expiry:300000}") long failureExpiry = 300_000;
+    private @Value("${image.thumbnail.cache-max-age-days:30}") int cacheMaxAgeDays = 30;
+    private @Value("${image.thumbnail.cache-max-mb:500}") long cacheMaxMb = 500;
+
+    @Autowired
+    public ThumbnailCache(RepositoryProperties aRepositoryProperties, ImageSource aImageSource)
+    {
+        this(new File(aRepositoryProperties.getPath(), THUMBNAIL_FOLDER), aImageSource);
+    }
+
+    public ThumbnailCache(File aCacheDir, ImageSource aImageSource)
+    {
+        cacheDir = aCacheDir;
+        imageSource = aImageSource;
+    }
+
+    /**
+     * Register the given image URL for thumbnail generation.
+     * 
+     * @return the key under which the thumbnail can be obtained.
+     */
+    public String register(String aUrl)
+    {
+        String key = toKey(aUrl);
+        registeredUrls.put(key, aUrl);
+        return key;
+    }
+
+    /**
+     * Get the thumbnail for the given key, creating it if necessary.
+     * 
+     * @return the thumbnail file or {@code null} if the key is unknown or if fetching the image
+     *         has failed recently.
+     * @throws IOException
+     *             if the original image cannot be fetched or decoded.
+     */
+    public File getThumbnail(String aKey) throws IOException
+    {
+        if (aKey == null || !KEY_PATTERN.matcher(aKey).matches()) {
+            return null;
+        }
+
+        File file = new File(cacheDir, aKey + SUFFIX);
+        if (file.exists()) {
+            return file;
+        }
+
+        String url = registeredUrls.get(aKey);
+        if (url == null) {
+            return null;
+        }
+
+        Long retryAfter = failures.get(aKey);
+        if (retryAfter != null) {
+            if (retryAfter > currentTimeMillis()) {
+                return null;
+            }
+            failures.remove(aKey);
+        }
+
+        CompletableFuture<File> future = new CompletableFuture<>();
+        CompletableFuture<File> running = pending.putIfAbsent(aKey, future);
+        if (running != null) {
+            // Another request is already creating the thumbnail
+            return await(running);
+        }
+
+        try {
+            // The thumbnail may have been created just before we got here
+            if (!file.exists()) {
+                createThumbnail(aKey, url, file);
+            }
+            future.complete(file);
+        }
+        catch (Throwable e) {
+            failures.put(aKey, currentTimeMillis() + failureExpiry);
+            future.completeExceptionally(e);
+            throw e;
+        }
+        finally {
+            pending.remove(aKey);
+        }
+
+        evictIfDue();
+
+        return file;
+    }
+
+    private static File await(CompletableFuture<File> aFuture) throws IOException
+    {
+        try {
+            return aFuture.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for thumbnail");
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private void createThumbnail(String aKey, String aUrl, File aFile) throws IOException
+    {
+        long start = currentTimeMillis();
+        BufferedImage original;
+        try (InputStream is = imageSource.open(aUrl)) {
+            original = decode(readLimited(is), aUrl);
+        }
+
+        // Write to a temporary file first so that concurrent requests never see a partial file
+        Files.createDirectories(cacheDir.toPath());
+        Path tempFile = Files.createTempFile(cacheDir.toPath(), aKey, ".tmp");
+        try {
+            ImageIO.write(scale(original, maxSize), "png", tempFile.toFile());
+            Files.move(tempFile, aFile.toPath(), ATOMIC_MOVE, REPLACE_EXISTING);
+        }
+        finally {
+            Files.deleteIfExists(tempFile);
+        }
+
+        log.debug("Created thumbnail for [{}] ({}ms)", aUrl, currentTimeMillis() - start);
+    }
+
+    private void evictIfDue()
+    {
+        long last = lastEviction.get();
+        long now = currentTimeMillis();
+        if (now - last > EVICTION_INTERVAL && lastEviction.compareAndSet(last, now)) {
+            evict(TimeUnit.DAYS.toMillis(cacheMaxAgeDays), cacheMaxMb * 1024 * 1024);
+        }
+    }
+
+    /**
+     * Remove thumbnails which are older than the given age. Then remove the oldest thumbnails
+     * until the remaining ones do not exceed the given size.
+     */
+    void evict(long aMaxAge, long aMaxBytes)
+    {
+        File[] files = cacheDir.listFiles((dir, name) -> name.endsWith(SUFFIX));
+        if (files == null) {
+            return;
+        }
+
+        long[] lastModified = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        long size = 0;
+        for (int i = 0; i < files.length; i++) {
+            lastModified[i] = files[i].lastModified();
+            order[i] = i;
+            size += files[i].length();
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> lastModified[i]));
+
+        long cutoff = currentTimeMillis() - aMaxAge;
+        int removed = 0;
+        for (int i : order) {
+            if (lastModified[i] >= cutoff && size <= aMaxBytes) {
+                break;
+            }
+
+            long length = files[i].length();
+            if (files[i].delete()) {
+                size -= length;
+                removed++;
+            }
+        }
+
+        if (removed > 0) {
+            log.info("Removed {} thumbnail(s) from cache", removed);
+        }
+    }
+
+    /**
+     * Decode the image after checking its dimensions. A small compressed image can still decode
+     * to a huge number of pixels, so the size limit on the data alone is not sufficient.
+     */
+    static BufferedImage decode(byte[] aData, String aUrl) throws IOException
+    {
+        try (ImageInputStream iis = ImageIO.createImageInputStream(
+                new ByteArrayInputStream(aData))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+            if (!readers.hasNext()) {
+                throw new IOException("Unsupported image format at [" + aUrl + "]");
+            }
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(iis, true, true);
+                long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                if (pixels > MAX_IMAGE_PIXELS) {
+                    throw new IOException("Image at [" + aUrl + "] has " + pixels
+                            + " pixels, exceeding the limit of " + MAX_IMAGE_PIXELS);
+                }
+                return reader.read(0);
+            }
+            finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static byte[] readLimited(InputStream aIs) throws IOException
+    {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = aIs.read(buffer)) != -1) {
+            bos.write(buffer, 0, n);
+            if (bos.size() > MAX_IMAGE_BYTES) {
+                throw new IOException("Image exceeds " + MAX_IMAGE_BYTES + " bytes");
+            }
+        }
+        return bos.toByteArray();
+    }
+
+    /**
+     * Scale the image such that neither width nor height exceed the given size. Smaller images
+     * are not enlarged.
+     */
+    static BufferedImage scale(BufferedImage aImage, int aMaxSize)
+    {
+        double factor = Math.min(1.0, (double) aMaxSize
+                / Math.max(aImage.getWidth(), aImage.getHeight()));
+        int width = Math.max(1, (int) Math.round(aImage.getWidth() * factor));
+        int height = Math.max(1, (int) Math.round(aImage.getHeight() * factor));
+
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = scaled.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                    RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(aImage, 0, 0, width, height, null);
+        }
+        finally {
+            g.dispose();
+        }
+        return scaled;
+    }
+
+    static String toKey(String aUrl)
+    {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(aUrl.getBytes(UTF_8));
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        }
+        catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
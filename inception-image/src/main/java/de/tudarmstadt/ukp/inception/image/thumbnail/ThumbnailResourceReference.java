@@ -0,0 +1,114 @@
+/*
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.image.thumbnail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.apache.wicket.request.resource.AbstractResource;
+import org.apache.wicket.request.resource.IResource;
+import org.apache.wicket.request.resource.ResourceReference;
+import org.apache.wicket.util.time.Duration;
+import org.apache.wicket.util.time.Time;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.tudarmstadt.ukp.clarin.webanno.support.ApplicationContextProvider;
+
+/**
+ * Serves thumbnails created by the {@link ThumbnailCache}. The thumbnail is selected via the
+ * {@code key} parameter which is obtained from {@link ThumbnailCache#register(String)}.
+ */
+public class ThumbnailResourceReference
+    extends ResourceReference
+{
+    private static final long serialVersionUID = -2376497779183101154L;
+
+    public static final String PARAM_KEY = "key";
+
+    private static final int SC_NOT_FOUND = 404;
+
+    private static final ThumbnailResourceReference INSTANCE = new ThumbnailResourceReference();
+
+    public static ThumbnailResourceReference get()
+    {
+        return INSTANCE;
+    }
+
+    private ThumbnailResourceReference()
+    {
+        super(ThumbnailResourceReference.class, "thumbnail");
+    }
+
+    @Override
+    public IResource getResource()
+    {
+        return new ThumbnailResource();
+    }
+
+    private static class ThumbnailResource
+        extends AbstractResource
+    {
+        private static final long serialVersionUID = 2922104883929364442L;
+
+        private static final Logger LOG = LoggerFactory.getLogger(ThumbnailResource.class);
+
+        @Override
+        protected ResourceResponse newResourceResponse(Attributes aAttributes)
+        {
+            ResourceResponse response = new ResourceResponse();
+
+            String key = aAttributes.getParameters().get(PARAM_KEY).toOptionalString();
+            File thumbnail;
+            try {
+                thumbnail = ApplicationContextProvider.getApplicationContext()
+                        .getBean(ThumbnailCache.class).getThumbnail(key);
+            }
+            catch (IOException e) {
+                // Broken image links are common, so do not flood the log with stack traces
+                LOG.warn("Unable to create thumbnail [{}]: {}", key, e.getMessage());
+                thumbnail = null;
+            }
+
+            if (thumbnail == null) {
+                response.setError(SC_NOT_FOUND);
+                return response;
+            }
+
+            final File file = thumbnail;
+
+            // Thumbnails never change for a given key, so browsers may keep them
+            response.setContentType("image/png");
+            response.setContentLength(file.length());
+            response.setLastModified(Time.millis(file.lastModified()));
+            response.setCacheDuration(Duration.days(7));
+            if (response.dataNeedsToBeWritten(aAttributes)) {
+                response.setWriteCallback(new WriteCallback()
+                {
+                    @Override
+                    public void writeData(Attributes aAttributes) throws IOException
+                    {
+                        Files.copy(file.toPath(), aAttributes.getResponse().getOutputStream());
+                    }
+                });
+            }
+            return response;
+        }
+    }
+}
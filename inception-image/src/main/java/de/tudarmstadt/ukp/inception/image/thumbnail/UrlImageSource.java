@@ -0,0 +1,171 @@
+/*
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.image.thumbnail;
+
+import static java.lang.System.currentTimeMillis;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import okhttp3.Dns;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Fetches images from HTTP(S) URLs. Other protocols are rejected so that the thumbnail endpoint
+ * cannot be used to read local files.
+ * <p>
+ * Since the URLs are entered by annotators, hosts which resolve to loopback, link-local,
+ * site-local or other private addresses are rejected as well, so the server cannot be made to
+ * access internal services. The addresses are checked when the host name is resolved for the
+ * connection and only the checked addresses are connected to, so a host name which resolves
+ * differently on a second lookup cannot bypass the check. Redirects are followed manually and
+ * each target is checked the same way. Setting {@code image.thumbnail.allow-private-addresses}
+ * lifts the address restriction, e.g. for installations which serve images from an intranet.
+ * <p>
+ * Fetching an image including all redirects and reading the response is limited to
+ * {@code image.thumbnail.timeout}.
+ */
+@Component
+public class UrlImageSource
+    implements ImageSource
+{
+    private static final int MAX_REDIRECTS = 5;
+
+    private @Value("${image.thumbnail.connect-timeout:5000}") int connectTimeout = 5000;
+    private @Value("${image.thumbnail.read-timeout:10000}") int readTimeout = 10000;
+    private @Value("${image.thumbnail.timeout:15000}") int timeout = 15000;
+    private @Value("${image.thumbnail.allow-private-addresses:false}") boolean allowPrivate;
+
+    // Created on first use since the settings are injected after construction
+    private volatile OkHttpClient client;
+
+    @Override
+    public InputStream open(String aUrl) throws IOException
+    {
+        long deadline = currentTimeMillis() + timeout;
+
+        HttpUrl url = HttpUrl.parse(aUrl);
+        if (url == null) {
+            throw new IOException("Unsupported URL [" + aUrl + "]");
+        }
+
+        for (int redirects = 0; redirects <= MAX_REDIRECTS; redirects++) {
+            long remaining = deadline - currentTimeMillis();
+            if (remaining <= 0) {
+                throw new IOException("Timeout fetching [" + aUrl + "]");
+            }
+
+            // The call timeout also covers reading the image from the returned stream
+            Response response = getClient().newBuilder()
+                    .callTimeout(remaining, MILLISECONDS)
+                    .build()
+                    .newCall(new Request.Builder().url(url).build())
+                    .execute();
+
+            if (!response.isRedirect()) {
+                if (!response.isSuccessful() || response.body() == null) {
+                    response.close();
+                    throw new IOException(
+                            "Unable to fetch [" + url + "]: HTTP " + response.code());
+                }
+                return response.body().byteStream();
+            }
+
+            String location = response.header("Location");
+            response.close();
+            if (location == null) {
+                throw new IOException("Redirect without location at [" + url + "]");
+            }
+
+            // Only resolves to HTTP(S) URLs
+            HttpUrl target = url.resolve(location);
+            if (target == null) {
+                throw new IOException("Unsupported redirect to [" + location + "] at [" + url
+                        + "]");
+            }
+            url = target;
+        }
+
+        throw new IOException("Too many redirects for [" + aUrl + "]");
+    }
+
+    private OkHttpClient getClient()
+    {
+        OkHttpClient c = client;
+        if (c == null) {
+            c = new OkHttpClient.Builder()
+                    .connectTimeout(connectTimeout, MILLISECONDS)
+                    .readTimeout(readTimeout, MILLISECONDS)
+                    .followRedirects(false)
+                    .followSslRedirects(false)
+                    .dns(this::lookup)
+                    .build();
+            client = c;
+        }
+        return c;
+    }
+
+    /**
+     * Resolves the given host name for a connection. The connection is only made to the addresses
+     * returned here.
+     */
+    List<InetAddress> lookup(String aHost) throws UnknownHostException
+    {
+        List<InetAddress> addresses = Dns.SYSTEM.lookup(aHost);
+
+        if (!allowPrivate) {
+            for (InetAddress address : addresses) {
+                if (!isPublicAddress(address)) {
+                    throw new UnknownHostException("Host [" + aHost
+                            + "] resolves to non-public address [" + address.getHostAddress()
+                            + "]");
+                }
+            }
+        }
+
+        return addresses;
+    }
+
+    static boolean isPublicAddress(InetAddress aAddress)
+    {
+        if (aAddress.isAnyLocalAddress() || aAddress.isLoopbackAddress()
+                || aAddress.isLinkLocalAddress() || aAddress.isSiteLocalAddress()
+                || aAddress.isMulticastAddress()) {
+            return false;
+        }
+
+        byte[] bytes = aAddress.getAddress();
+        if (bytes.length == 4) {
+            // Carrier-grade NAT 100.64.0.0/10
+            return !((bytes[0] & 0xff) == 100 && (bytes[1] & 0xc0) == 64);
+        }
+
+        // IPv6 unique local addresses fc00::/7
+        return (bytes[0] & 0xfe) != 0xfc;
+    }
+}
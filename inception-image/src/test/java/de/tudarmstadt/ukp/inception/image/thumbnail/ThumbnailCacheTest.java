@@ -0,0 +1,178 @@
+/*
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.image.thumbnail;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ThumbnailCacheTest
+{
+    public @Rule TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private File sourceDir;
+    private FileImageSource imageSource;
+    private ThumbnailCache sut;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        sourceDir = tempFolder.newFolder("source");
+        imageSource = new FileImageSource(sourceDir);
+        sut = new ThumbnailCache(tempFolder.newFolder("cache"), imageSource);
+    }
+
+    @Test
+    public void thatThumbnailIsDownsized() throws Exception
+    {
+        ImageIO.write(new BufferedImage(1200, 600, BufferedImage.TYPE_INT_RGB), "png",
+                new File(sourceDir, "large.png"));
+
+        File thumbnail = sut.getThumbnail(sut.register("http://example.org/large.png"));
+
+        BufferedImage image = ImageIO.read(thumbnail);
+        assertThat(image.getWidth()).isEqualTo(300);
+        assertThat(image.getHeight()).isEqualTo(150);
+    }
+
+    @Test
+    public void thatThumbnailIsCreatedOnlyOnce() throws Exception
+    {
+        ImageIO.write(new BufferedImage(100, 100, BufferedImage.TYPE_INT_RGB), "png",
+                new File(sourceDir, "small.png"));
+
+        String key = sut.register("http://example.org/small.png");
+        File first = sut.getThumbnail(key);
+        File second = sut.getThumbnail(key);
+
+        assertThat(second).isEqualTo(first);
+        assertThat(imageSource.requests).containsExactly("http://example.org/small.png");
+        assertThat(ImageIO.read(first).getWidth()).isEqualTo(100);
+    }
+
+    @Test
+    public void thatUnregisteredUrlsAreNotFetched() throws Exception
+    {
+        assertThat(sut.getThumbnail(ThumbnailCache.toKey("http://example.org/x.png"))).isNull();
+        assertThat(sut.getThumbnail("../../etc/passwd")).isNull();
+        assertThat(imageSource.requests).isEmpty();
+    }
+
+    @Test
+    public void thatFailedImagesAreNotFetchedAgainRightAway() throws Exception
+    {
+        String key = sut.register("http://example.org/missing.png");
+
+        assertThatThrownBy(() -> sut.getThumbnail(key)).isInstanceOf(IOException.class);
+        assertThat(sut.getThumbnail(key)).isNull();
+        assertThat(imageSource.requests).containsExactly("http://example.org/missing.png");
+    }
+
+    @Test
+    public void thatOldThumbnailsAreEvicted() throws Exception
+    {
+        File cacheDir = tempFolder.newFolder("evict");
+        ThumbnailCache cache = new ThumbnailCache(cacheDir, imageSource);
+        File old = new File(cacheDir, ThumbnailCache.toKey("old") + ".png");
+        File older = new File(cacheDir, ThumbnailCache.toKey("older") + ".png");
+        File recent = new File(cacheDir, ThumbnailCache.toKey("recent") + ".png");
+        Files.write(older.toPath(), new byte[100]);
+        Files.write(old.toPath(), new byte[100]);
+        Files.write(recent.toPath(), new byte[100]);
+        long now = System.currentTimeMillis();
+        older.setLastModified(now - 3_000_000);
+        old.setLastModified(now - 2_000_000);
+        recent.setLastModified(now);
+
+        // Nothing is too old, but the cache is too large
+        cache.evict(10_000_000, 250);
+        assertThat(cacheDir.list()).hasSize(2);
+        assertThat(older).doesNotExist();
+
+        // Everything fits, but one thumbnail is too old
+        cache.evict(1_000_000, 1000);
+        assertThat(old).doesNotExist();
+        assertThat(recent).exists();
+    }
+
+    @Test
+    public void thatImagesWithTooManyPixelsAreRejected() throws Exception
+    {
+        // Only the header is needed since the dimensions are checked before decoding
+        ByteArrayOutputStream ihdr = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(ihdr);
+        out.writeBytes("IHDR");
+        out.writeInt(100_000);
+        out.writeInt(100_000);
+        out.write(new byte[] { 8, 2, 0, 0, 0 });
+        CRC32 crc = new CRC32();
+        crc.update(ihdr.toByteArray());
+
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        DataOutputStream pngOut = new DataOutputStream(png);
+        pngOut.write(new byte[] { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n' });
+        pngOut.writeInt(13);
+        pngOut.write(ihdr.toByteArray());
+        pngOut.writeInt((int) crc.getValue());
+
+        assertThatThrownBy(() -> ThumbnailCache.decode(png.toByteArray(), "bomb.png"))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("pixels");
+    }
+
+    /**
+     * Stand-in for remote image sources which serves the file named like the last path segment
+     * of the URL from a local folder.
+     */
+    private static class FileImageSource
+        implements ImageSource
+    {
+        private final File dir;
+        private final List<String> requests = new ArrayList<>();
+
+        public FileImageSource(File aDir)
+        {
+            dir = aDir;
+        }
+
+        @Override
+        public InputStream open(String aUrl) throws IOException
+        {
+            requests.add(aUrl);
+            return new FileInputStream(new File(dir, aUrl.substring(aUrl.lastIndexOf('/') + 1)));
+        }
+    }
+}
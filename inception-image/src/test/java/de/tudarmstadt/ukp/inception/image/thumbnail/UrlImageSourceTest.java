@@ -0,0 +1,52 @@
+/*
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.image.thumbnail;
+
+import static de.tudarmstadt.ukp.inception.image.thumbnail.UrlImageSource.isPublicAddress;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.InetAddress;
+
+import org.junit.Test;
+
+public class UrlImageSourceTest
+{
+    @Test
+    public void thatInternalAddressesAreRejected() throws Exception
+    {
+        assertThat(isPublicAddress(InetAddress.getByName("127.0.0.1"))).isFalse();
+        assertThat(isPublicAddress(InetAddress.getByName("0.0.0.0"))).isFalse();
+        assertThat(isPublicAddress(InetAddress.getByName("10.1.2.3"))).isFalse();
+        assertThat(isPublicAddress(InetAddress.getByName("172.16.0.1"))).isFalse();
+        assertThat(isPublicAddress(InetAddress.getByName("192.168.1.1"))).isFalse();
+        assertThat(isPublicAddress(InetAddress.getByName("169.254.169.254"))).isFalse();
+        assertThat(isPublicAddress(InetAddress.getByName("100.64.0.1"))).isFalse();
+        assertThat(isPublicAddress(InetAddress.getByName("::1"))).isFalse();
+        assertThat(isPublicAddress(InetAddress.getByName("fe80::1"))).isFalse();
+        assertThat(isPublicAddress(InetAddress.getByName("fd00::1"))).isFalse();
+        assertThat(isPublicAddress(InetAddress.getByName("::ffff:127.0.0.1"))).isFalse();
+    }
+
+    @Test
+    public void thatPublicAddressesAreAccepted() throws Exception
+    {
+        assertThat(isPublicAddress(InetAddress.getByName("93.184.216.34"))).isTrue();
+        assertThat(isPublicAddress(InetAddress.getByName("100.128.0.1"))).isTrue();
+        assertThat(isPublicAddress(InetAddress.getByName("2606:2800:220:1::1"))).isTrue();
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.kb;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+import org.eclipse.rdf4j.repository.Repository;
+import org.eclipse.rdf4j.repository.RepositoryConnection;
+import org.eclipse.rdf4j.repository.RepositoryException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps a bounded number of idle connections per knowledge base repository so that read
+ * operations do not have to set up a new connection every time. The number of connections per
+ * repository which are in use at the same time is bounded as well. If all of them are in use,
+ * borrowing a connection waits until one is returned.
+ * <p>
+ * Closing a connection obtained from the pool returns it to the pool. Connections which are still
+ * in a transaction or which do not fit into the pool anymore are closed for real. When the
+ * configuration of a repository changes or the repository is removed, the pool for that
+ * repository must be {@link #invalidate invalidated}.
+ */
+class KnowledgeBaseConnectionPool
+{
+    public static final int DEFAULT_MAX_IDLE = 4;
+    public static final int DEFAULT_MAX_ACTIVE = 16;
+    public static final long DEFAULT_MAX_WAIT = 30_000;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final Map<String, RepositoryPool> pools = new ConcurrentHashMap<>();
+    private final int maxIdle;
+    private final int maxActive;
+    private final long maxWait;
+
+    public KnowledgeBaseConnectionPool()
+    {
+        this(DEFAULT_MAX_IDLE, DEFAULT_MAX_ACTIVE, DEFAULT_MAX_WAIT);
+    }
+
+    /**
+     * @param aMaxIdle
+     *            the maximum number of idle connections kept per repository.
+     * @param aMaxActive
+     *            the maximum number of connections per repository which are in use at the same
+     *            time.
+     * @param aMaxWait
+     *            the time in milliseconds to wait for a connection if all are in use.
+     */
+    public KnowledgeBaseConnectionPool(int aMaxIdle, int aMaxActive, long aMaxWait)
+    {
+        maxIdle = aMaxIdle;
+        maxActive = aMaxActive;
+        maxWait = aMaxWait;
+    }
+
+    /**
+     * Obtain a connection to the given repository. An idle connection is reused if possible,
+     * otherwise a new connection is opened.
+     * 
+     * @param aRepositoryId
+     *            the ID of the repository.
+     * @param aRepository
+     *            supplies the repository if a new connection needs to be opened.
+     * @return a connection which returns to the pool when it is closed.
+     * @throws RepositoryException
+     *             if no connection became available in time.
+     */
+    public RepositoryConnection borrow(String aRepositoryId, Supplier<Repository> aRepository)
+    {
+        RepositoryPool pool = pools.computeIfAbsent(aRepositoryId,
+            k -> new RepositoryPool(maxIdle, maxActive));
+
+        try {
+            if (!pool.permits.tryAcquire(maxWait, MILLISECONDS)) {
+                throw new RepositoryException("Timed out waiting for a connection to repository ["
+                        + aRepositoryId + "]");
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RepositoryException("Interrupted while waiting for a connection to "
+                    + "repository [" + aRepositoryId + "]", e);
+        }
+
+        try {
+            PooledRepositoryConnection conn;
+            while ((conn = pool.idle.poll()) != null) {
+                if (conn.getDelegate().isOpen()) {
+                    conn.borrowed();
+                    return conn;
+                }
+            }
+
+            Repository repo = aRepository.get();
+            conn = new PooledRepositoryConnection(this, aRepositoryId, pool, repo,
+                    repo.getConnection());
+            conn.borrowed();
+            return conn;
+        }
+        catch (RuntimeException e) {
+            pool.permits.release();
+            throw e;
+        }
+    }
+
+    void release(PooledRepositoryConnection aConnection)
+    {
+        RepositoryPool pool = aConnection.getRepositoryPool();
+
+        try {
+            // If the pool was invalidated in the meantime, it is no longer registered and the
+            // connection may refer to a repository which no longer exists
+            if (isReusable(aConnection) && pools.get(aConnection.getRepositoryId()) == pool
+                    && pool.idle.offer(aConnection)) {
+                return;
+            }
+
+            aConnection.destroy();
+        }
+        finally {
+            pool.permits.release();
+        }
+    }
+
+    private boolean isReusable(PooledRepositoryConnection aConnection)
+    {
+        try {
+            return aConnection.getDelegate().isOpen() && !aConnection.getDelegate().isActive();
+        }
+        catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * Close all idle connections to the given repository. Connections which are currently in use
+     * are closed when they are returned.
+     * 
+     * @param aRepositoryId
+     *            the ID of the repository.
+     */
+    public void invalidate(String aRepositoryId)
+    {
+        RepositoryPool pool = pools.remove(aRepositoryId);
+        if (pool == null) {
+            return;
+        }
+
+        PooledRepositoryConnection conn;
+        while ((conn = pool.idle.poll()) != null) {
+            try {
+                conn.destroy();
+            }
+            catch (Exception e) {
+                log.warn("Unable to close pooled connection to repository [{}]",
+                        aRepositoryId, e);
+            }
+        }
+    }
+
+    /**
+     * Close all idle connections.
+     */
+    public void invalidateAll()
+    {
+        pools.keySet().forEach(this::invalidate);
+    }
+
+    /**
+     * Idle connections and permits for connections in use of a single repository.
+     */
+    static class RepositoryPool
+    {
+        private final BlockingQueue<PooledRepositoryConnection> idle;
+        private final Semaphore permits;
+
+        private RepositoryPool(int aMaxIdle, int aMaxActive)
+        {
+            idle = new ArrayBlockingQueue<>(aMaxIdle);
+            permits = new Semaphore(aMaxActive);
+        }
+    }
+}
@@ -41,6 +41,7 @@ import de.tudarmstadt.ukp.inception.kb.graph.KBProperty;
 import de.tudarmstadt.ukp.inception.kb.graph.KBQualifier;
 import de.tudarmstadt.ukp.inception.kb.graph.KBStatement;
 import de.tudarmstadt.ukp.inception.kb.model.KnowledgeBase;
+import de.tudarmstadt.ukp.inception.kb.querybuilder.SPARQLQuery;
 import de.tudarmstadt.ukp.inception.kb.yaml.KnowledgeBaseProfile;
 
 public interface KnowledgeBaseService
@@ -286,6 +287,24 @@ public interface KnowledgeBaseService
     List<KBHandle> listInstances(KnowledgeBase kb, String aConceptIri, boolean aAll)
         throws QueryEvaluationException;
 
+    /**
+     * Returns a page of the instances for the given concept. Unlike
+     * {@link #listInstances(KnowledgeBase, String, boolean)}, the instances are ordered by their
+     * identifier, so the next page can be obtained by passing the identifier of the last
+     * instance of the previous page.
+     *
+     * @param kb          The knowledge base to query
+     * @param aConceptIri The URI of the concept finding instances for
+     * @param aAll        True if entities with implicit namespaces (e.g. defined by RDF)
+     * @param aStartAfter The identifier of the last instance of the previous page or
+     *                    {@code null} to obtain the first page
+     * @param aLimit      The maximum number of instances to return
+     * @return The instances on the requested page
+     */
+    List<KBHandle> listInstances(KnowledgeBase kb, String aConceptIri, boolean aAll,
+            String aStartAfter, int aLimit)
+        throws QueryEvaluationException;
+
     // Statements
 
     /**
@@ -340,6 +359,11 @@ public interface KnowledgeBaseService
         T accept(RepositoryConnection aConnection);
     }
 
+    /**
+     * Run the given action on a pooled connection. The connection is returned to the pool when
+     * the action completes, so the result must not hold on to it. In particular, streams
+     * obtained from {@link SPARQLQuery#asHandleStream} must be consumed within the action.
+     */
     <T> T read(KnowledgeBase kb, ReadAction<T> aAction);
 
     void update(KnowledgeBase kb, UpdateAction aAction);
@@ -39,6 +39,7 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import javax.persistence.EntityManager;
 import javax.persistence.NoResultException;
@@ -67,12 +68,16 @@ import org.eclipse.rdf4j.repository.config.RepositoryImplConfig;
 import org.eclipse.rdf4j.repository.manager.RepositoryManager;
 import org.eclipse.rdf4j.repository.manager.RepositoryProvider;
 import org.eclipse.rdf4j.repository.sail.SailRepository;
+import org.eclipse.rdf4j.repository.sail.SailRepositoryConnection;
 import org.eclipse.rdf4j.repository.sail.config.SailRepositoryConfig;
 import org.eclipse.rdf4j.repository.sparql.config.SPARQLRepositoryConfig;
 import org.eclipse.rdf4j.rio.RDFFormat;
 import org.eclipse.rdf4j.rio.RDFParseException;
 import org.eclipse.rdf4j.rio.RDFWriter;
 import org.eclipse.rdf4j.rio.Rio;
+import org.eclipse.rdf4j.sail.NotifyingSailConnection;
+import org.eclipse.rdf4j.sail.SailConnection;
+import org.eclipse.rdf4j.sail.SailConnectionListener;
 import org.eclipse.rdf4j.sail.lucene.LuceneSail;
 import org.eclipse.rdf4j.sail.lucene.config.LuceneSailConfig;
 import org.eclipse.rdf4j.sail.nativerdf.config.NativeStoreConfig;
@@ -87,6 +92,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
@@ -101,6 +107,7 @@ import de.tudarmstadt.ukp.clarin.webanno.api.annotation.feature.FeatureSupportRe
 import de.tudarmstadt.ukp.clarin.webanno.model.Project;
 import de.tudarmstadt.ukp.clarin.webanno.support.SettingsUtil;
 import de.tudarmstadt.ukp.clarin.webanno.support.StopWatch;
+import de.tudarmstadt.ukp.inception.kb.event.KnowledgeBaseStatementsChangedEvent;
 import de.tudarmstadt.ukp.inception.kb.graph.KBConcept;
 import de.tudarmstadt.ukp.inception.kb.graph.KBHandle;
 import de.tudarmstadt.ukp.inception.kb.graph.KBInstance;
@@ -111,6 +118,7 @@ import de.tudarmstadt.ukp.inception.kb.graph.KBStatement;
 import de.tudarmstadt.ukp.inception.kb.model.KnowledgeBase;
 import de.tudarmstadt.ukp.inception.kb.querybuilder.Path;
 import de.tudarmstadt.ukp.inception.kb.querybuilder.SPARQLQueryBuilder;
+import de.tudarmstadt.ukp.inception.kb.querybuilder.SPARQLQueryOptionalElements;
 import de.tudarmstadt.ukp.inception.kb.reification.NoReification;
 import de.tudarmstadt.ukp.inception.kb.reification.ReificationStrategy;
 import de.tudarmstadt.ukp.inception.kb.reification.WikiDataReification;
@@ -128,8 +136,10 @@ public class KnowledgeBaseServiceImpl
     private @PersistenceContext EntityManager entityManager;
     private final RepositoryManager repoManager;
     private final File kbRepositoriesRoot;
+    private final KnowledgeBaseConnectionPool connectionPool = new KnowledgeBaseConnectionPool();
 
     private @SpringBean FeatureSupportRegistry featureSupportRegistry;
+    private @Autowired(required = false) ApplicationEventPublisher applicationEventPublisher;
 
     @Autowired
     public KnowledgeBaseServiceImpl(RepositoryProperties aRepoProperties)
@@ -210,6 +220,7 @@ public class KnowledgeBaseServiceImpl
     @Override
     public void destroy() throws Exception
     {
+        connectionPool.invalidateAll();
         repoManager.shutDown();
     }
 
@@ -293,6 +304,7 @@ public class KnowledgeBaseServiceImpl
         throws RepositoryException, RepositoryConfigException
     {
         assertRegistration(kb);
+        connectionPool.invalidate(kb.getRepositoryId());
         repoManager.addRepositoryConfig(new RepositoryConfig(kb.getRepositoryId(), cfg));
         entityManager.merge(kb);
     }
@@ -335,9 +347,12 @@ public class KnowledgeBaseServiceImpl
     {
         assertRegistration(aKB);
         
+        connectionPool.invalidate(aKB.getRepositoryId());
         repoManager.removeRepository(aKB.getRepositoryId());
 
         entityManager.remove(entityManager.contains(aKB) ? aKB : entityManager.merge(aKB));
+        
+        publishBulkChange(aKB);
     }
 
     @Override
@@ -405,6 +420,8 @@ public class KnowledgeBaseServiceImpl
             String prefix = StringUtils.removeEnd(kb.getBasePrefix(), "#");
             conn.add(is, prefix, format);
         }
+        
+        publishBulkChange(kb);
     }
     
     @Override
@@ -426,6 +443,8 @@ public class KnowledgeBaseServiceImpl
         try (RepositoryConnection conn = getConnection(kb)) {
             conn.clear();
         }
+        
+        publishBulkChange(kb);
     }
 
     @Override
@@ -664,6 +683,31 @@ public class KnowledgeBaseServiceImpl
         }
     }
 
+    @Override
+    public List<KBHandle> listInstances(KnowledgeBase aKB, String aConceptIri, boolean aAll,
+            String aStartAfter, int aLimit)
+    {
+        try (StopWatch watch = new StopWatch(log, "listInstances(%s)", aConceptIri)) {
+            return read(aKB, conn -> {
+                SPARQLQueryOptionalElements query = SPARQLQueryBuilder
+                        .forInstances(aKB)
+                        .childrenOf(aConceptIri)
+                        .retrieveLabel()
+                        .retrieveDescription()
+                        .orderBySubject()
+                        .limit(aLimit);
+                if (aStartAfter != null) {
+                    query.startingAfter(aStartAfter);
+                }
+
+                // The stream holds on to the connection, so it must be consumed right here
+                try (Stream<KBHandle> instances = query.asHandleStream(conn, aAll)) {
+                    return instances.collect(Collectors.toList());
+                }
+            });
+        }
+    }
+
     // Statements
 
     @Override
@@ -731,6 +775,8 @@ public class KnowledgeBaseServiceImpl
         }
 
         try (RepositoryConnection conn = getConnection(kb)) {
+            StatementChangeCollector changes = attachChangeCollector(kb, conn);
+            
             boolean error = true;
             try {
                 conn.begin();
@@ -743,13 +789,55 @@ public class KnowledgeBaseServiceImpl
                     conn.rollback();
                 }
             }
+            
+            if (changes != null) {
+                applicationEventPublisher.publishEvent(new KnowledgeBaseStatementsChangedEvent(
+                        this, kb, changes.added, changes.removed));
+            }
+        }
+    }
+    
+    /**
+     * If the KB is a local KB and anybody is interested in changes, attach a listener to the 
+     * connection which records the statements being added and removed.
+     */
+    private StatementChangeCollector attachChangeCollector(KnowledgeBase aKB,
+            RepositoryConnection aConn)
+    {
+        if (applicationEventPublisher == null || !RepositoryType.LOCAL.equals(aKB.getType())
+                || !(aConn instanceof SailRepositoryConnection)) {
+            return null;
+        }
+        
+        SailConnection sailConn = ((SailRepositoryConnection) aConn).getSailConnection();
+        if (!(sailConn instanceof NotifyingSailConnection)) {
+            return null;
+        }
+        
+        StatementChangeCollector collector = new StatementChangeCollector();
+        ((NotifyingSailConnection) sailConn).addConnectionListener(collector);
+        return collector;
+    }
+    
+    private void publishBulkChange(KnowledgeBase aKB)
+    {
+        if (applicationEventPublisher != null && RepositoryType.LOCAL.equals(aKB.getType())) {
+            applicationEventPublisher
+                    .publishEvent(new KnowledgeBaseStatementsChangedEvent(this, aKB));
         }
     }
 
+    /**
+     * Read operations use pooled connections because they are frequent (e.g. lookups from the UI)
+     * and setting up a connection can be expensive, in particular for remote repositories. The
+     * pool also bounds the number of connections to a repository which are in use at once.
+     */
     @Override
     public <T> T read(KnowledgeBase kb, ReadAction<T> aAction)
     {
-        try (RepositoryConnection conn = getConnection(kb)) {
+        assertRegistration(kb);
+        try (RepositoryConnection conn = connectionPool.borrow(kb.getRepositoryId(),
+                () -> repoManager.getRepository(kb.getRepositoryId()))) {
             return aAction.accept(conn);
         }
     }
@@ -1077,6 +1165,7 @@ public class KnowledgeBaseServiceImpl
         
         RepositoryImplConfig config = getNativeConfig();
         setIndexDir(aKB, config);
+        connectionPool.invalidate(aKB.getRepositoryId());
         repoManager.addRepositoryConfig(new RepositoryConfig(aKB.getRepositoryId(), config));
     }
     
@@ -1135,4 +1224,23 @@ public class KnowledgeBaseServiceImpl
         }
         return kb.isPresent() && kb.get().isEnabled();
     }
+
+    private static class StatementChangeCollector
+        implements SailConnectionListener
+    {
+        private final List<Statement> added = new ArrayList<>();
+        private final List<Statement> removed = new ArrayList<>();
+        
+        @Override
+        public void statementAdded(Statement aStatement)
+        {
+            added.add(aStatement);
+        }
+
+        @Override
+        public void statementRemoved(Statement aStatement)
+        {
+            removed.add(aStatement);
+        }
+    }
 }
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.kb;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.rdf4j.repository.Repository;
+import org.eclipse.rdf4j.repository.RepositoryConnection;
+import org.eclipse.rdf4j.repository.RepositoryException;
+import org.eclipse.rdf4j.repository.base.RepositoryConnectionWrapper;
+
+/**
+ * Connection handed out by the {@link KnowledgeBaseConnectionPool}. Closing the connection
+ * returns it to the pool. Closing it more than once has no further effect until it is borrowed
+ * again.
+ */
+class PooledRepositoryConnection
+    extends RepositoryConnectionWrapper
+{
+    private final KnowledgeBaseConnectionPool pool;
+    private final String repositoryId;
+    private final KnowledgeBaseConnectionPool.RepositoryPool repositoryPool;
+    private final AtomicBoolean borrowed = new AtomicBoolean();
+
+    public PooledRepositoryConnection(KnowledgeBaseConnectionPool aPool, String aRepositoryId,
+            KnowledgeBaseConnectionPool.RepositoryPool aRepositoryPool, Repository aRepository,
+            RepositoryConnection aDelegate)
+    {
+        super(aRepository, aDelegate);
+        pool = aPool;
+        repositoryId = aRepositoryId;
+        repositoryPool = aRepositoryPool;
+    }
+
+    String getRepositoryId()
+    {
+        return repositoryId;
+    }
+
+    KnowledgeBaseConnectionPool.RepositoryPool getRepositoryPool()
+    {
+        return repositoryPool;
+    }
+
+    void borrowed()
+    {
+        borrowed.set(true);
+    }
+
+    /**
+     * Returns the connection to the pool instead of closing it.
+     */
+    @Override
+    public void close() throws RepositoryException
+    {
+        if (borrowed.compareAndSet(true, false)) {
+            pool.release(this);
+        }
+    }
+
+    /**
+     * Actually close the underlying connection.
+     */
+    void destroy()
+    {
+        super.close();
+    }
+}
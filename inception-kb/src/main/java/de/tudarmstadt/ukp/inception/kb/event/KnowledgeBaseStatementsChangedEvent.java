@@ -0,0 +1,94 @@
+/*
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.tudarmstadt.ukp.inception.kb.event;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.unmodifiableList;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.eclipse.rdf4j.model.Statement;
+import org.springframework.context.ApplicationEvent;
+
+import de.tudarmstadt.ukp.inception.kb.model.KnowledgeBase;
+
+/**
+ * Fired after statements in a local knowledge base have been changed. If the individual changes
+ * are known (e.g. when creating, updating or deleting an item), they are included in the event.
+ * For bulk changes such as importing or clearing a knowledge base, the event only indicates that
+ * the entire content may have changed.
+ */
+public class KnowledgeBaseStatementsChangedEvent
+    extends ApplicationEvent
+{
+    private static final long serialVersionUID = 3906467312981302867L;
+
+    private final KnowledgeBase knowledgeBase;
+    private final boolean bulkChange;
+    private final List<Statement> addedStatements;
+    private final List<Statement> removedStatements;
+
+    /**
+     * Creates an event signalling that the entire content of the knowledge base may have changed.
+     */
+    public KnowledgeBaseStatementsChangedEvent(Object aSource, KnowledgeBase aKnowledgeBase)
+    {
+        super(aSource);
+        knowledgeBase = aKnowledgeBase;
+        bulkChange = true;
+        addedStatements = emptyList();
+        removedStatements = emptyList();
+    }
+
+    public KnowledgeBaseStatementsChangedEvent(Object aSource, KnowledgeBase aKnowledgeBase,
+            Collection<Statement> aAddedStatements, Collection<Statement> aRemovedStatements)
+    {
+        super(aSource);
+        knowledgeBase = aKnowledgeBase;
+        bulkChange = false;
+        addedStatements = unmodifiableList(new ArrayList<>(aAddedStatements));
+        removedStatements = unmodifiableList(new ArrayList<>(aRemovedStatements));
+    }
+
+    public KnowledgeBase getKnowledgeBase()
+    {
+        return knowledgeBase;
+    }
+
+    /**
+     * @return whether the entire content of the knowledge base may have changed. In this case,
+     *         the added and removed statements are not available.
+     */
+    public boolean isBulkChange()
+    {
+        return bulkChange;
+    }
+
+    public List<Statement> getAddedStatements()
+    {
+        return addedStatements;
+    }
+
+    public List<Statement> getRemovedStatements()
+    {
+        return removedStatements;
+    }
+}
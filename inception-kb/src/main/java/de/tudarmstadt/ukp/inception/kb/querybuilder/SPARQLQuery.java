@@ -19,6 +19,7 @@ package de.tudarmstadt.ukp.inception.kb.querybuilder;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import org.eclipse.rdf4j.repository.RepositoryConnection;
 import org.eclipse.rdf4j.sparqlbuilder.core.query.SelectQuery;
@@ -45,6 +46,29 @@ public interface SPARQLQuery
      */
     List<KBHandle> asHandles(RepositoryConnection aConnection, boolean aAll);
 
+    /**
+     * Execute the query and stream the results as {@link KBHandle KBHandles} while they are
+     * received from the triple store. Unlike {@link #asHandles}, the results are not collected
+     * and sorted by label but are ordered by their identifier, so the query must be built with
+     * {@link SPARQLQueryOptionalElements#orderBySubject}. In combination with
+     * {@link SPARQLQueryOptionalElements#startingAfter} and
+     * {@link SPARQLQueryOptionalElements#limit}, this can be used to page through large result
+     * sets.
+     * <p>
+     * The stream holds on to the query result and must be closed before the connection is
+     * closed, e.g. using a try-with-resources block.
+     * 
+     * @param aConnection
+     *            a connection to a triple store.
+     * @param aAll
+     *            if items from implicit namespaces (e.g. defined by RDF) should be included.
+     * @return a stream of the retrieved handles.
+     */
+    default Stream<KBHandle> asHandleStream(RepositoryConnection aConnection, boolean aAll)
+    {
+        return asHandles(aConnection, aAll).stream();
+    }
+
     /**
      * Execute the query and see if it returns any results.
      * 
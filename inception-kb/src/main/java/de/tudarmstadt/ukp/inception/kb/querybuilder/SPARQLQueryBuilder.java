@@ -33,6 +33,9 @@ import static de.tudarmstadt.ukp.inception.kb.querybuilder.SPARQLQueryBuilder.Pr
 import static java.lang.Integer.toHexString;
 import static java.lang.System.currentTimeMillis;
 import static java.util.Collections.emptyList;
+import static java.util.Spliterator.NONNULL;
+import static java.util.Spliterator.ORDERED;
+import static java.util.Spliterators.spliteratorUnknownSize;
 import static org.eclipse.rdf4j.sparqlbuilder.constraint.Expressions.and;
 import static org.eclipse.rdf4j.sparqlbuilder.constraint.Expressions.function;
 import static org.eclipse.rdf4j.sparqlbuilder.constraint.Expressions.notEquals;
@@ -56,13 +59,18 @@ import static org.eclipse.rdf4j.sparqlbuilder.rdf.Rdf.literalOfLanguage;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.apache.commons.lang3.StringUtils;
 import org.eclipse.rdf4j.model.IRI;
@@ -72,6 +80,7 @@ import org.eclipse.rdf4j.model.vocabulary.RDF;
 import org.eclipse.rdf4j.model.vocabulary.RDFS;
 import org.eclipse.rdf4j.query.Binding;
 import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.BooleanQuery;
 import org.eclipse.rdf4j.query.QueryEvaluationException;
 import org.eclipse.rdf4j.query.TupleQuery;
 import org.eclipse.rdf4j.query.TupleQueryResult;
@@ -96,6 +105,7 @@ import org.eclipse.rdf4j.sparqlbuilder.util.SparqlBuilderUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import de.tudarmstadt.ukp.inception.kb.IriConstants;
 import de.tudarmstadt.ukp.inception.kb.graph.KBHandle;
 import de.tudarmstadt.ukp.inception.kb.graph.KBObject;
 import de.tudarmstadt.ukp.inception.kb.model.KnowledgeBase;
@@ -128,6 +138,7 @@ public class SPARQLQueryBuilder
     public static final String VAR_DESCRIPTION_CANDIDATE_NAME = "dc";
     public static final String VAR_RANGE_NAME = "range";
     public static final String VAR_DOMAIN_NAME = "domain";
+    public static final String VAR_MATCH_TAG_NAME = "matchTag";
     
     public static final Variable VAR_SUBJECT = var(VAR_SUBJECT_NAME);
     public static final Variable VAR_PREDICATE = var(VAR_PREDICATE_NAME);
@@ -139,6 +150,7 @@ public class SPARQLQueryBuilder
     public static final Variable VAR_LABEL_PROPERTY = var(VAR_LABEL_PROPERTY_NAME);
     public static final Variable VAR_DESCRIPTION = var(VAR_DESCRIPTION_NAME);
     public static final Variable VAR_DESC_CANDIDATE = var(VAR_DESCRIPTION_CANDIDATE_NAME);
+    public static final Variable VAR_MATCH_TAG = var(VAR_MATCH_TAG_NAME);
 
     public static final Prefix PREFIX_LUCENE_SEARCH = prefix("search",
             iri("http://www.openrdf.org/contrib/lucenesail#"));
@@ -165,6 +177,21 @@ public class SPARQLQueryBuilder
     
     private boolean labelImplicitlyRetrieved = false;
     
+    /**
+     * If this builder has been created via {@link #unionOf}, then these are the queries which are
+     * combined into a single query. The key is the tag which is bound to {@link #VAR_MATCH_TAG}
+     * for all results produced by the respective query.
+     */
+    private final Map<String, SPARQLQueryBuilder> unionBranches = new LinkedHashMap<>();
+    
+    /**
+     * Whether the primary patterns contain a SERVICE clause (i.e. the Wikidata entity search).
+     * Such patterns are not nested into sub-selects because the service may not be evaluated
+     * correctly there. Unions of such queries are sent as separate queries and paging by
+     * subject falls back to limiting the result rows.
+     */
+    private boolean primaryPatternsUseService = false;
+    
     enum Priority {
         PRIMARY, PRIMARY_RESTRICTIONS, SECONDARY
     }
@@ -187,6 +214,15 @@ public class SPARQLQueryBuilder
     
     private int limitOverride = DEFAULT_LIMIT;
     
+    /**
+     * Whether the results should be ordered by their identifier. This is required when paging
+     * through the results and when streaming them because the client-side reduction of redundant
+     * results then relies on all results for the same item being adjacent. In this mode, the
+     * limit applies to the number of items instead of the number of result rows, so the rows of
+     * the last item on a page are not cut off.
+     */
+    private boolean orderBySubject = false;
+    
     private boolean includeInferred = true;
     
     private boolean forceDisableFTS = false;
@@ -495,6 +531,56 @@ public class SPARQLQueryBuilder
         return builder;
     }
 
+    /**
+     * Combine multiple queries against the same KB into a single query such that only a single
+     * round-trip to the server is required. Each of the queries is run as a sub-select with its
+     * own limit, so e.g. a large number of partial matches cannot push the exact matches out of
+     * the results. Every result row is tagged with the key under which the producing query was
+     * passed in. Queries which would not return any results anyway are skipped.
+     * <p>
+     * If any of the queries uses a SERVICE clause for full text search (Wikidata), the queries
+     * are sent separately instead and their results are merged.
+     * <p>
+     * <b>NOTE:</b> the given queries must have been created by this builder and must not be
+     * modified after they have been combined.
+     * 
+     * @param aKB
+     *            the KB against which all the queries are run.
+     * @param aQueries
+     *            the queries to combine, keyed by their tag.
+     * @return the combined query.
+     */
+    public static SPARQLQuery unionOf(KnowledgeBase aKB,
+            Map<String, ? extends SPARQLQuery> aQueries)
+    {
+        SPARQLQueryBuilder builder = new SPARQLQueryBuilder(aKB, Mode.ITEM);
+        
+        for (Entry<String, ? extends SPARQLQuery> e : aQueries.entrySet()) {
+            if (!(e.getValue() instanceof SPARQLQueryBuilder)) {
+                throw new IllegalArgumentException("Unsupported query type: ["
+                        + e.getValue().getClass().getName() + "]");
+            }
+            
+            SPARQLQueryBuilder branch = (SPARQLQueryBuilder) e.getValue();
+            
+            if (branch.kb != aKB) {
+                throw new IllegalArgumentException(
+                        "Can only combine queries against the same knowledge base");
+            }
+            
+            if (branch.returnEmptyResult) {
+                continue;
+            }
+            
+            builder.unionBranches.put(e.getKey(), branch);
+            builder.includeInferred &= branch.includeInferred;
+        }
+        
+        builder.returnEmptyResult = builder.unionBranches.isEmpty();
+        
+        return builder;
+    }
+
     private SPARQLQueryBuilder(KnowledgeBase aKB, Mode aMode)
     {
         kb = aKB;
@@ -569,6 +655,22 @@ public class SPARQLQueryBuilder
         return this;
     }
 
+    @Override
+    public SPARQLQueryOptionalElements startingAfter(String aIdentifier)
+    {
+        String filter = "FILTER(STR(" + VAR_SUBJECT.getQueryString() + ") > "
+                + literalOf(aIdentifier).getQueryString() + ")";
+        addPattern(PRIMARY_RESTRICTIONS, () -> filter);
+        return this;
+    }
+
+    @Override
+    public SPARQLQueryOptionalElements orderBySubject()
+    {
+        orderBySubject = true;
+        return this;
+    }
+
     @Override
     public SPARQLQueryOptionalElements caseSensitive()
     {
@@ -673,6 +775,7 @@ public class SPARQLQueryBuilder
         }
         else if (FTS_WIKIDATA.equals(ftsMode)) {
             addPattern(PRIMARY, withLabelMatchingExactlyAnyOf_Wikidata_FTS(aValues));
+            primaryPatternsUseService = true;
         }
         else if (FTS_NONE.equals(ftsMode) || ftsMode == null) {
             addPattern(PRIMARY, withLabelMatchingExactlyAnyOf_No_FTS(aValues));
@@ -829,6 +932,7 @@ public class SPARQLQueryBuilder
         }
         else if (FTS_WIKIDATA.equals(ftsMode)) {
             addPattern(PRIMARY, withLabelContainingAnyOf_Wikidata_FTS(aValues));
+            primaryPatternsUseService = true;
         }
         else if (FTS_NONE.equals(ftsMode) || ftsMode == null) {
             addPattern(PRIMARY, withLabelContainingAnyOf_No_FTS(aValues));
@@ -982,6 +1086,7 @@ public class SPARQLQueryBuilder
         }
         else if (FTS_WIKIDATA.equals(ftsMode)) {
             addPattern(PRIMARY, withLabelStartingWith_Wikidata_FTS(aPrefixQuery));
+            primaryPatternsUseService = true;
         }
         else if (FTS_NONE.equals(ftsMode) || ftsMode == null) {
             addPattern(PRIMARY, withLabelStartingWith_No_FTS(aPrefixQuery));
@@ -1476,12 +1581,79 @@ public class SPARQLQueryBuilder
     
     private int getLimit()
     {
-        return limitOverride > 0 ? limitOverride : kb.getMaxResults();
+        if (limitOverride > 0) {
+            return limitOverride;
+        }
+        
+        if (!unionBranches.isEmpty()) {
+            return unionBranches.values().stream().mapToInt(SPARQLQueryBuilder::getLimit).sum();
+        }
+        
+        return kb.getMaxResults();
+    }
+    
+    private int getServerLimit()
+    {
+        int actualLimit = getLimit();
+        
+        if (!serverSideReduce) {
+            // If we do not do a server-side reduce, then we may get two results for every item
+            // from the server (one with and one without the language), so we need to double the
+            // query limit and cut down results locally later.
+            actualLimit = actualLimit * 2;
+        }
+        
+        return actualLimit;
+    }
+    
+    /**
+     * The primary patterns and high-level restrictions (e.g. limits to classes or instances) as a
+     * single group. Grouping them is important because Virtuoso has trouble when combining UNIONS,
+     * property paths FILTERS and OPTIONALS (which we do a lot). It seems to help when we put
+     * the FILTERS together with the primary part of the query into a group.
+     * See: https://github.com/openlink/virtuoso-opensource/issues/831
+     */
+    private GraphPattern primaryPattern()
+    {
+        return () -> SparqlBuilderUtils.getBracedString(
+                GraphPatterns.and(concat(primaryPatterns.stream(), primaryRestrictions.stream())
+                        .toArray(GraphPattern[]::new)).getQueryString());
+    }
+    
+    /**
+     * A sub-select retrieving only the identifiers of the first items matching the primary
+     * patterns. Joining it with the rest of the query limits the number of items while still
+     * retrieving all result rows (e.g. labels in different languages) for each of them.
+     */
+    private GraphPattern subjectPage(int aLimit)
+    {
+        return () -> SparqlBuilderUtils.getBracedString(String.join(" ",
+                "SELECT DISTINCT", VAR_SUBJECT.getQueryString(),
+                "WHERE", primaryPattern().getQueryString(),
+                "ORDER BY", VAR_SUBJECT.getQueryString(),
+                "LIMIT", String.valueOf(aLimit)));
+    }
+    
+    private List<GraphPattern> wherePatterns()
+    {
+        List<GraphPattern> patterns = new ArrayList<>();
+        
+        // First add the primary patterns and high-level restrictions
+        patterns.add(primaryPattern());
+        
+        // Then add the optional elements
+        patterns.addAll(secondaryPatterns);
+        
+        return patterns;
     }
     
     @Override
     public SelectQuery selectQuery()
     {
+        if (!unionBranches.isEmpty()) {
+            return unionSelectQuery();
+        }
+        
         // Must add it anyway because we group by it
         projections.add(VAR_SUBJECT);
 
@@ -1489,37 +1661,108 @@ public class SPARQLQueryBuilder
         prefixes.forEach(query::prefix);
         projections.forEach(query::select);
         
-        // First add the primary patterns and high-level restrictions (e.g. limits to classes or
-        // instances) - this is important because Virtuoso has trouble when combining UNIONS,
-        // property paths FILTERS and OPTIONALS (which we do a lot). It seems to help when we put
-        // the FILTERS together with the primary part of the query into a group.
-        // See: https://github.com/openlink/virtuoso-opensource/issues/831
-        query.where(() -> SparqlBuilderUtils.getBracedString(
-                GraphPatterns.and(concat(primaryPatterns.stream(), primaryRestrictions.stream())
-                        .toArray(GraphPattern[]::new)).getQueryString()));
+        boolean pageBySubject = orderBySubject && !primaryPatternsUseService;
+        if (pageBySubject) {
+            query.where(subjectPage(getLimit()));
+        }
         
-        // Then add the optional elements
-        secondaryPatterns.stream().forEach(query::where);
+        wherePatterns().forEach(query::where);
         
         if (serverSideReduce) {
             query.groupBy(VAR_SUBJECT);
         }
         
+        if (orderBySubject) {
+            query.orderBy(VAR_SUBJECT);
+        }
+        
         if (kb.getDefaultDatasetIri() != null) {
             query.from(SparqlBuilder.dataset(
                     SparqlBuilder.from(iri(kb.getDefaultDatasetIri()))));
         }
         
-        int actualLimit = getLimit();
+        if (!pageBySubject) {
+            query.limit(getServerLimit());
+        }
         
-        if (!serverSideReduce) {
-            // If we do not do a server-side reduce, then we may get two results for every item
-            // from the server (one with and one without the language), so we need to double the
-            // query limit and cut down results locally later.
-            actualLimit = actualLimit * 2;
+        return query;
+    }
+    
+    /**
+     * @return whether the branches of the union can be nested into a single query.
+     */
+    private boolean isUnionNestable()
+    {
+        return unionBranches.values().stream().noneMatch(b -> b.primaryPatternsUseService);
+    }
+    
+    /**
+     * Each branch of the union is rendered as a sub-select which carries its own limit and binds
+     * its tag. Prefixes and the default dataset can only be declared on the outer query.
+     */
+    private SelectQuery unionSelectQuery()
+    {
+        Set<Prefix> allPrefixes = new LinkedHashSet<>();
+        Set<Projectable> allProjections = new LinkedHashSet<>();
+        List<String> subSelects = new ArrayList<>();
+        
+        for (Entry<String, SPARQLQueryBuilder> e : unionBranches.entrySet()) {
+            SPARQLQueryBuilder branch = e.getValue();
+            
+            branch.projections.add(VAR_SUBJECT);
+            allPrefixes.addAll(branch.prefixes);
+            allProjections.addAll(branch.projections);
+            
+            StringBuilder subSelect = new StringBuilder();
+            subSelect.append("SELECT DISTINCT ");
+            subSelect.append(branch.projections.stream()
+                    .map(Projectable::getQueryString)
+                    .collect(Collectors.joining(" ")));
+            subSelect.append(" ").append(VAR_MATCH_TAG.getQueryString());
+            subSelect.append(" WHERE {\n");
+            if (orderBySubject) {
+                subSelect.append(branch.subjectPage(branch.getLimit()).getQueryString())
+                        .append("\n");
+            }
+            for (GraphPattern pattern : branch.wherePatterns()) {
+                subSelect.append(pattern.getQueryString()).append("\n");
+            }
+            subSelect.append("BIND(").append(literalOf(e.getKey()).getQueryString())
+                    .append(" AS ").append(VAR_MATCH_TAG.getQueryString()).append(")\n");
+            subSelect.append("}");
+            if (branch.serverSideReduce) {
+                subSelect.append(" GROUP BY ").append(VAR_SUBJECT.getQueryString())
+                        .append(" ").append(VAR_MATCH_TAG.getQueryString());
+            }
+            if (!orderBySubject) {
+                subSelect.append(" LIMIT ").append(branch.getServerLimit());
+            }
+            
+            subSelects.add(SparqlBuilderUtils.getBracedString(subSelect.toString()));
+        }
+        
+        allProjections.add(VAR_MATCH_TAG);
+        
+        SelectQuery query = Queries.SELECT().distinct();
+        allPrefixes.forEach(query::prefix);
+        allProjections.forEach(query::select);
+        
+        query.where(() -> String.join(" UNION ", subSelects));
+        
+        if (orderBySubject) {
+            query.orderBy(VAR_SUBJECT);
         }
         
-        query.limit(actualLimit);
+        if (kb.getDefaultDatasetIri() != null) {
+            query.from(SparqlBuilder.dataset(
+                    SparqlBuilder.from(iri(kb.getDefaultDatasetIri()))));
+        }
+        
+        // The branches are already limited individually - only apply a global limit if it was
+        // explicitly requested, e.g. by exists()
+        if (limitOverride > 0 && !orderBySubject) {
+            query.limit(getServerLimit());
+        }
         
         return query;
     }
@@ -1530,11 +1773,6 @@ public class SPARQLQueryBuilder
         long startTime = currentTimeMillis();
         String queryId = toHexString(hashCode());
 
-        String queryString = selectQuery().getQueryString();
-        //queryString = QueryParserUtil.parseQuery(QueryLanguage.SPARQL, queryString, null)
-        //        .toString();
-        LOG.trace("[{}] Query: {}", queryId, queryString);
-
         List<KBHandle> results;
         if (returnEmptyResult) {
             results = emptyList();
@@ -1542,7 +1780,23 @@ public class SPARQLQueryBuilder
             LOG.debug("[{}] Query was skipped because it would not return any results anyway",
                     queryId);
         }
+        else if (!unionBranches.isEmpty() && !isUnionNestable()) {
+            List<KBHandle> handles = new ArrayList<>();
+            for (SPARQLQueryBuilder branch : unionBranches.values()) {
+                handles.addAll(branch.asHandles(aConnection, aAll));
+            }
+            results = reduceRedundantResults(handles);
+            results.sort(Comparator.comparing(KBObject::getUiLabel, String.CASE_INSENSITIVE_ORDER));
+            
+            LOG.debug("[{}] Separate queries returned {} results in {}ms", queryId,
+                    results.size(), currentTimeMillis() - startTime);
+        }
         else {
+            String queryString = selectQuery().getQueryString();
+            //queryString = QueryParserUtil.parseQuery(QueryLanguage.SPARQL, queryString, null)
+            //        .toString();
+            LOG.trace("[{}] Query: {}", queryId, queryString);
+            
             TupleQuery tupleQuery = aConnection.prepareTupleQuery(queryString);
             tupleQuery.setIncludeInferred(includeInferred);
             results = evaluateListQuery(tupleQuery, aAll);
@@ -1555,10 +1809,48 @@ public class SPARQLQueryBuilder
         return results;
     }
     
+    @Override
+    public Stream<KBHandle> asHandleStream(RepositoryConnection aConnection, boolean aAll)
+    {
+        String queryId = toHexString(hashCode());
+
+        if (returnEmptyResult) {
+            LOG.debug("[{}] Query was skipped because it would not return any results anyway",
+                    queryId);
+            
+            return Stream.empty();
+        }
+        
+        if (!orderBySubject) {
+            throw new IllegalStateException(
+                    "Streaming requires the results to be ordered by subject - "
+                    + "call orderBySubject() first");
+        }
+        
+        if (!unionBranches.isEmpty() && !isUnionNestable()) {
+            return asHandles(aConnection, aAll).stream()
+                    .sorted(Comparator.comparing(KBHandle::getIdentifier));
+        }
+        
+        String queryString = selectQuery().getQueryString();
+        LOG.trace("[{}] Query: {}", queryId, queryString);
+        
+        TupleQuery tupleQuery = aConnection.prepareTupleQuery(queryString);
+        tupleQuery.setIncludeInferred(includeInferred);
+        TupleQueryResult result = tupleQuery.evaluate();
+        
+        return StreamSupport
+                .stream(spliteratorUnknownSize(new HandleIterator(result, aAll),
+                        ORDERED | NONNULL), false)
+                .onClose(result::close)
+                .limit(getLimit());
+    }
+    
     /**
-     * Execute the query and return {@code true} if the result set is not empty. This internally
-     * limits the number of results requested via SPARQL to 1 and should complete faster than
-     * retrieving the entire results set and checking whether it is empty.
+     * Execute the query and return {@code true} if the result set is not empty. This uses an ASK
+     * query which only contains the primary patterns of the query, i.e. no labels, descriptions,
+     * etc. are retrieved and the triple store can stop at the first match. Items from implicit
+     * namespaces are excluded on the server side unless {@code aAll} is set.
      * 
      * @param aConnection
      *            a connection to a triple store.
@@ -1572,28 +1864,96 @@ public class SPARQLQueryBuilder
         long startTime = currentTimeMillis();
         String queryId = toHexString(hashCode());
 
-        limit(1);
-        
-        SelectQuery query = selectQuery();
-        
-        String queryString = query.getQueryString();
-        LOG.trace("[{}] Query: {}", queryId, queryString);
-
         if (returnEmptyResult) {
             LOG.debug("[{}] Query was skipped because it would not return any results anyway",
                     queryId);
             
             return false;
         }
-        else {
+        
+        boolean result;
+        if (!unionBranches.isEmpty() && !isUnionNestable()) {
+            result = false;
+            for (SPARQLQueryBuilder branch : unionBranches.values()) {
+                if (branch.exists(aConnection, aAll)) {
+                    result = true;
+                    break;
+                }
+            }
+        }
+        else if (!unionBranches.isEmpty()) {
+            // The branches of a union are sub-selects which cannot be turned into an ASK query,
+            // so we fall back to requesting a single result
+            limit(1);
+            
+            String queryString = selectQuery().getQueryString();
+            LOG.trace("[{}] Query: {}", queryId, queryString);
+            
             TupleQuery tupleQuery = aConnection.prepareTupleQuery(queryString);
-            boolean result = !evaluateListQuery(tupleQuery, aAll).isEmpty();
+            tupleQuery.setIncludeInferred(includeInferred);
+            result = !evaluateListQuery(tupleQuery, aAll).isEmpty();
+        }
+        else {
+            String queryString = askQuery(aAll);
+            LOG.trace("[{}] Query: {}", queryId, queryString);
             
-            LOG.debug("[{}] Query returned {} in {}ms", queryId, result,
-                    currentTimeMillis() - startTime);
+            BooleanQuery booleanQuery = aConnection.prepareBooleanQuery(queryString);
+            booleanQuery.setIncludeInferred(includeInferred);
+            result = booleanQuery.evaluate();
+        }
+        
+        LOG.debug("[{}] Query returned {} in {}ms", queryId, result,
+                currentTimeMillis() - startTime);
+        
+        return result;
+    }
+    
+    private String askQuery(boolean aAll)
+    {
+        StringBuilder query = new StringBuilder();
+        for (Prefix prefix : prefixes) {
+            query.append(prefix.getQueryString()).append("\n");
+        }
+        query.append("ASK\n");
+        if (kb.getDefaultDatasetIri() != null) {
+            query.append(SparqlBuilder.from(iri(kb.getDefaultDatasetIri())).getQueryString())
+                    .append("\n");
+        }
+        query.append("WHERE {\n");
+        query.append(primaryPattern().getQueryString()).append("\n");
+        query.append("FILTER(").append(existsFilter(aAll)).append(")\n");
+        query.append("}");
+        return query.toString();
+    }
+    
+    /**
+     * Server-side equivalent of the checks applied to each result in {@link #toHandle}.
+     */
+    private String existsFilter(boolean aAll)
+    {
+        String subject = VAR_SUBJECT.getQueryString();
+        
+        // Results must be IRIs - blank nodes are skipped
+        String filter = "isIRI(" + subject + ")";
+        
+        if (!aAll) {
+            // Root concepts are never implicit, see IriConstants.hasImplicitNamespace()
+            String implicit = IriConstants.IMPLICIT_NAMESPACES.stream()
+                    .map(ns -> "STRSTARTS(STR(" + subject + "), "
+                            + literalOf(ns).getQueryString() + ")")
+                    .collect(Collectors.joining(" || "));
+            String notImplicit = "!(" + implicit + ")";
+            
+            if (!kb.getRootConcepts().isEmpty()) {
+                notImplicit = subject + " IN (" + kb.getRootConcepts().stream()
+                        .map(c -> iri(c).getQueryString())
+                        .collect(Collectors.joining(", ")) + ") || " + notImplicit;
+            }
             
-            return result;
+            filter += " && (" + notImplicit + ")";
         }
+        
+        return filter;
     }
     
     @Override
@@ -1640,30 +2000,26 @@ public class SPARQLQueryBuilder
     {
         try (TupleQueryResult result = tupleQuery.evaluate()) {
             List<KBHandle> handles = new ArrayList<>();
+            Map<String, Integer> tagCounts = new LinkedHashMap<>();
             while (result.hasNext()) {
                 BindingSet bindings = result.next();
-                if (bindings.size() == 0) {
+                KBHandle handle = toHandle(bindings, aAll);
+                if (handle == null) {
                     continue;
                 }
                 
-                // LOG.trace("[{}] Bindings: {}", toHexString(hashCode()), bindings);
-    
-                String id = bindings.getBinding(VAR_SUBJECT_NAME).getValue().stringValue();
-                if (!id.contains(":") || (!aAll && hasImplicitNamespace(kb, id))) {
-                    continue;
+                Binding tag = bindings.getBinding(VAR_MATCH_TAG_NAME);
+                if (tag != null) {
+                    tagCounts.merge(tag.getValue().stringValue(), 1, Integer::sum);
                 }
-                
-                KBHandle handle = new KBHandle(id);
-                handle.setKB(kb);
-                
-                extractLabel(handle, bindings);
-                extractDescription(handle, bindings);
-                extractRange(handle, bindings);
-                extractDomain(handle, bindings);
     
                 handles.add(handle);
             }
             
+            if (!tagCounts.isEmpty()) {
+                LOG.debug("[{}] Results per query: {}", toHexString(hashCode()), tagCounts);
+            }
+            
             if (serverSideReduce) {
                 return handles;
             }
@@ -1673,6 +2029,35 @@ public class SPARQLQueryBuilder
         }
     }
     
+    /**
+     * Converts a single result row into a handle.
+     * 
+     * @return the handle or {@code null} if the row should be skipped.
+     */
+    private KBHandle toHandle(BindingSet aBindings, boolean aAll)
+    {
+        if (aBindings.size() == 0) {
+            return null;
+        }
+        
+        // LOG.trace("[{}] Bindings: {}", toHexString(hashCode()), aBindings);
+        
+        String id = aBindings.getBinding(VAR_SUBJECT_NAME).getValue().stringValue();
+        if (!id.contains(":") || (!aAll && hasImplicitNamespace(kb, id))) {
+            return null;
+        }
+        
+        KBHandle handle = new KBHandle(id);
+        handle.setKB(kb);
+        
+        extractLabel(handle, aBindings);
+        extractDescription(handle, aBindings);
+        extractRange(handle, aBindings);
+        extractDomain(handle, aBindings);
+        
+        return handle;
+    }
+    
     /**
      * Make sure that each result is only represented once, preferably in the default language.
      */
@@ -1683,16 +2068,7 @@ public class SPARQLQueryBuilder
             KBHandle current = cMap.get(handle.getIdentifier());
             
             // Not recorded yet -> add it
-            if (current == null) {
-                cMap.put(handle.getIdentifier(), handle);
-            }
-            // Found one with a label while current one doesn't have one
-            else if (current.getName() == null && handle.getName() != null) {
-                cMap.put(handle.getIdentifier(), handle);
-            }
-            // Found an exact language match -> use that one instead
-            // Note that having a language implies that there is a label!
-            else if (kb.getDefaultLanguage().equals(handle.getLanguage())) {
+            if (current == null || isPreferred(handle, current)) {
                 cMap.put(handle.getIdentifier(), handle);
             }
         }
@@ -1703,6 +2079,90 @@ public class SPARQLQueryBuilder
         return cMap.values().stream().limit(getLimit()).collect(Collectors.toList());
     }
     
+    /**
+     * Checks whether a candidate result should replace the current result for the same item.
+     */
+    private boolean isPreferred(KBHandle aCandidate, KBHandle aCurrent)
+    {
+        // Found one with a label while current one doesn't have one
+        if (aCurrent.getName() == null && aCandidate.getName() != null) {
+            return true;
+        }
+        
+        // Found an exact language match -> use that one instead
+        // Note that having a language implies that there is a label!
+        return kb.getDefaultLanguage().equals(aCandidate.getLanguage());
+    }
+    
+    /**
+     * Converts the result rows into handles as they are consumed. If redundant results are
+     * reduced on the client side, the rows for the same item must be adjacent, i.e. the query
+     * must be ordered by {@link #VAR_SUBJECT}.
+     */
+    private class HandleIterator
+        implements Iterator<KBHandle>
+    {
+        private final TupleQueryResult result;
+        private final boolean all;
+        
+        private KBHandle next;
+        
+        public HandleIterator(TupleQueryResult aResult, boolean aAll)
+        {
+            result = aResult;
+            all = aAll;
+        }
+        
+        @Override
+        public boolean hasNext()
+        {
+            if (next == null) {
+                next = fetch();
+            }
+            return next != null;
+        }
+        
+        @Override
+        public KBHandle next()
+        {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            
+            KBHandle best = next;
+            next = null;
+            
+            if (serverSideReduce) {
+                return best;
+            }
+            
+            KBHandle handle;
+            while ((handle = fetch()) != null) {
+                if (!handle.getIdentifier().equals(best.getIdentifier())) {
+                    next = handle;
+                    break;
+                }
+                
+                if (isPreferred(handle, best)) {
+                    best = handle;
+                }
+            }
+            
+            return best;
+        }
+        
+        private KBHandle fetch()
+        {
+            while (result.hasNext()) {
+                KBHandle handle = toHandle(result.next(), all);
+                if (handle != null) {
+                    return handle;
+                }
+            }
+            return null;
+        }
+    }
+    
     private void extractLabel(KBHandle aTargetHandle, BindingSet aSourceBindings)
     {
         // If server-side reduce is used, the label is in VAR_LABEL_NAME
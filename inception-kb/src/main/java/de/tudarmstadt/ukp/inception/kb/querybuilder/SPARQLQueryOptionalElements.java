@@ -38,6 +38,30 @@ public interface SPARQLQueryOptionalElements
     
     SPARQLQueryOptionalElements limit(int aLimit);
 
+    /**
+     * Only return items whose identifier sorts after the given identifier. This enables cursor
+     * paging: pass the identifier of the last item of the previous page to obtain the next page.
+     * Paging by identifier is used instead of an offset because several result rows may be
+     * reduced to a single item on the client side, so a row offset would not reliably correspond
+     * to an item offset.
+     * 
+     * @param aIdentifier
+     *            the identifier of the last item already seen.
+     * @return the builder (fluent API)
+     * @see #orderBySubject
+     */
+    SPARQLQueryOptionalElements startingAfter(String aIdentifier);
+
+    /**
+     * Order the results by their identifier. This is required by
+     * {@link SPARQLQuery#asHandleStream} and for paging with {@link #startingAfter}. The
+     * {@link #limit} then applies to the number of items instead of the number of result rows,
+     * so all labels and descriptions of the last item on a page are still retrieved.
+     * 
+     * @return the builder (fluent API)
+     */
+    SPARQLQueryOptionalElements orderBySubject();
+
     SPARQLQueryOptionalElements caseSensitive();
 
     SPARQLQueryOptionalElements caseSensitive(boolean aEnabled);
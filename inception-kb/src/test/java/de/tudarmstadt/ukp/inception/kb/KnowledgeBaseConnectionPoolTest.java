@@ -0,0 +1,130 @@
+/*
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.kb;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.eclipse.rdf4j.repository.Repository;
+import org.eclipse.rdf4j.repository.RepositoryConnection;
+import org.eclipse.rdf4j.repository.RepositoryException;
+import org.eclipse.rdf4j.repository.sail.SailRepository;
+import org.eclipse.rdf4j.sail.memory.MemoryStore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class KnowledgeBaseConnectionPoolTest
+{
+    private static final String REPO_ID = "repo";
+
+    private Repository repo;
+    private KnowledgeBaseConnectionPool sut;
+
+    @Before
+    public void setUp()
+    {
+        repo = new SailRepository(new MemoryStore());
+        repo.init();
+        sut = new KnowledgeBaseConnectionPool(1, 2, 100);
+    }
+
+    @After
+    public void tearDown()
+    {
+        sut.invalidateAll();
+        repo.shutDown();
+    }
+
+    @Test
+    public void thatClosedConnectionIsReused()
+    {
+        RepositoryConnection conn1 = sut.borrow(REPO_ID, () -> repo);
+        conn1.close();
+
+        RepositoryConnection conn2 = sut.borrow(REPO_ID, () -> repo);
+        assertThat(conn2).isSameAs(conn1);
+        assertThat(conn2.isOpen()).isTrue();
+        conn2.close();
+    }
+
+    @Test
+    public void thatPoolIsBounded()
+    {
+        RepositoryConnection conn1 = sut.borrow(REPO_ID, () -> repo);
+        RepositoryConnection conn2 = sut.borrow(REPO_ID, () -> repo);
+        assertThat(conn2).isNotSameAs(conn1);
+
+        conn1.close();
+        conn2.close();
+
+        assertThat(((PooledRepositoryConnection) conn2).getDelegate().isOpen()).isFalse();
+        assertThat(sut.borrow(REPO_ID, () -> repo)).isSameAs(conn1);
+    }
+
+    @Test
+    public void thatConnectionInTransactionIsNotReused()
+    {
+        RepositoryConnection conn1 = sut.borrow(REPO_ID, () -> repo);
+        conn1.begin();
+        conn1.close();
+
+        assertThat(sut.borrow(REPO_ID, () -> repo)).isNotSameAs(conn1);
+    }
+
+    @Test
+    public void thatInvalidatedConnectionsAreNotReused()
+    {
+        RepositoryConnection conn1 = sut.borrow(REPO_ID, () -> repo);
+        sut.invalidate(REPO_ID);
+        conn1.close();
+
+        assertThat(((PooledRepositoryConnection) conn1).getDelegate().isOpen()).isFalse();
+        assertThat(sut.borrow(REPO_ID, () -> repo)).isNotSameAs(conn1);
+    }
+
+    @Test
+    public void thatConnectionsInUseAreBounded()
+    {
+        RepositoryConnection conn1 = sut.borrow(REPO_ID, () -> repo);
+        RepositoryConnection conn2 = sut.borrow(REPO_ID, () -> repo);
+
+        assertThatThrownBy(() -> sut.borrow(REPO_ID, () -> repo))
+                .isInstanceOf(RepositoryException.class);
+
+        conn1.close();
+        assertThat(sut.borrow(REPO_ID, () -> repo)).isSameAs(conn1);
+        conn2.close();
+    }
+
+    @Test
+    public void thatClosingTwiceReturnsConnectionOnlyOnce()
+    {
+        RepositoryConnection conn1 = sut.borrow(REPO_ID, () -> repo);
+        conn1.close();
+        conn1.close();
+
+        RepositoryConnection conn2 = sut.borrow(REPO_ID, () -> repo);
+        RepositoryConnection conn3 = sut.borrow(REPO_ID, () -> repo);
+        assertThat(conn2).isSameAs(conn1);
+        assertThat(conn3).isNotSameAs(conn1);
+
+        assertThatThrownBy(() -> sut.borrow(REPO_ID, () -> repo))
+                .isInstanceOf(RepositoryException.class);
+    }
+}
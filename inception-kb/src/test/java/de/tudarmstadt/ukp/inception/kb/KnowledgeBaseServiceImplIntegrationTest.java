@@ -1080,6 +1080,34 @@ public class KnowledgeBaseServiceImplIntegrationTest  {
             .matches(h -> h.getIdentifier().startsWith(IriConstants.INCEPTION_NAMESPACE));
     }
 
+    @Test
+    public void listInstances_WithPaging_ShouldReturnAllInstancesOrderedByIdentifier() {
+        sut.registerKnowledgeBase(kb, sut.getNativeConfig());
+        KBConcept concept = buildConcept();
+        sut.createConcept(kb, concept);
+        List<String> identifiers = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            KBInstance instance = buildInstance();
+            instance.setType(URI.create(concept.getIdentifier()));
+            sut.createInstance(kb, instance);
+            identifiers.add(instance.getIdentifier());
+        }
+        identifiers.sort(null);
+
+        List<KBHandle> firstPage = sut.listInstances(kb, concept.getIdentifier(), false, null, 2);
+        List<KBHandle> secondPage = sut.listInstances(kb, concept.getIdentifier(), false,
+                firstPage.get(firstPage.size() - 1).getIdentifier(), 2);
+
+        assertThat(firstPage)
+            .as("Check that the first page contains the first two instances")
+            .extracting(KBHandle::getIdentifier)
+            .containsExactlyElementsOf(identifiers.subList(0, 2));
+        assertThat(secondPage)
+            .as("Check that the second page continues after the first page")
+            .extracting(KBHandle::getIdentifier)
+            .containsExactlyElementsOf(identifiers.subList(2, 3));
+    }
+
     @Test
     public void upsertStatement_WithUnsavedStatement_ShouldCreateStatement() {
         sut.registerKnowledgeBase(kb, sut.getNativeConfig());
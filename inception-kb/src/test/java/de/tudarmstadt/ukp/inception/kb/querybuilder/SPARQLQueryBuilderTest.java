@@ -30,6 +30,7 @@ import static java.net.HttpURLConnection.HTTP_MOVED_TEMP;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.eclipse.rdf4j.rio.RDFFormat.TURTLE;
 
 import java.io.FileInputStream;
@@ -37,9 +38,14 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -49,8 +55,10 @@ import org.eclipse.rdf4j.model.vocabulary.OWL;
 import org.eclipse.rdf4j.model.vocabulary.RDF;
 import org.eclipse.rdf4j.model.vocabulary.RDFS;
 import org.eclipse.rdf4j.model.vocabulary.SKOS;
+import org.eclipse.rdf4j.query.QueryLanguage;
 import org.eclipse.rdf4j.query.TupleQuery;
 import org.eclipse.rdf4j.query.TupleQueryResult;
+import org.eclipse.rdf4j.query.parser.QueryParserUtil;
 import org.eclipse.rdf4j.repository.Repository;
 import org.eclipse.rdf4j.repository.RepositoryConnection;
 import org.eclipse.rdf4j.repository.sail.SailRepository;
@@ -343,6 +351,125 @@ public class SPARQLQueryBuilderTest
         assertThat(result).isFalse();
     }
     
+    /**
+     * Checks that {@code SPARQLQueryBuilder#exists(RepositoryConnection, boolean)} excludes items
+     * from implicit namespaces unless they are explicitly requested.
+     */
+    @Test
+    public void thatExistsExcludesImplicitNamespacesUnlessRequested() throws Exception
+    {
+        try (RepositoryConnection conn = rdf4jLocalRepo.getConnection()) {
+            assertThat(SPARQLQueryBuilder
+                    .forItems(kb)
+                    .withIdentifier(RDFS.LABEL.stringValue())
+                    .exists(conn, false))
+                    .isFalse();
+            assertThat(SPARQLQueryBuilder
+                    .forItems(kb)
+                    .withIdentifier(RDFS.LABEL.stringValue())
+                    .exists(conn, true))
+                    .isTrue();
+        }
+    }
+    
+    /**
+     * Checks that results can be streamed page by page using the identifier of the last item on
+     * a page as the cursor for the next page and that each item is returned only once with its
+     * label in the default language.
+     */
+    @Test
+    public void thatResultsCanBeStreamedInPages() throws Exception
+    {
+        importDataFromString(RDFFormat.TURTLE, TURTLE_PREFIX,
+                DATA_LABELS_AND_DESCRIPTIONS_WITH_LANGUAGE);
+        
+        List<List<KBHandle>> pages = new ArrayList<>();
+        try (RepositoryConnection conn = rdf4jLocalRepo.getConnection()) {
+            String cursor = null;
+            while (true) {
+                SPARQLQueryOptionalElements query = SPARQLQueryBuilder
+                        .forItems(kb)
+                        .withLabelMatchingExactlyAnyOf("Green Goblin", "Lucky Green",
+                                "Red Goblin")
+                        .retrieveLabel()
+                        .orderBySubject()
+                        .limit(2);
+                if (cursor != null) {
+                    query.startingAfter(cursor);
+                }
+                
+                List<KBHandle> page;
+                try (Stream<KBHandle> handles = query.asHandleStream(conn, true)) {
+                    page = handles.collect(Collectors.toList());
+                }
+                
+                if (page.isEmpty()) {
+                    break;
+                }
+                
+                pages.add(page);
+                cursor = page.get(page.size() - 1).getIdentifier();
+            }
+        }
+        
+        assertThat(pages).hasSize(2);
+        assertThat(pages.get(0))
+                .usingElementComparatorOnFields("identifier", "name", "language")
+                .containsExactly(
+                        new KBHandle("http://example.org/#green-goblin", "Green Goblin", null,
+                                "en"),
+                        new KBHandle("http://example.org/#lucky-green", "Lucky Green", null,
+                                "en"));
+        assertThat(pages.get(1))
+                .usingElementComparatorOnFields("identifier", "name", "language")
+                .containsExactly(
+                        new KBHandle("http://example.org/#red-goblin", "Red Goblin"));
+    }
+    
+    /**
+     * Checks that the limit of a query ordered by subject applies to items instead of result
+     * rows, so the last item still gets its label and description in the default language even
+     * if it spans more rows than the limit.
+     */
+    @Test
+    public void thatLimitWhenOrderedBySubjectAppliesToItems() throws Exception
+    {
+        importDataFromString(RDFFormat.TURTLE, TURTLE_PREFIX,
+                DATA_LABELS_AND_DESCRIPTIONS_WITH_LANGUAGE);
+        
+        List<KBHandle> results;
+        try (RepositoryConnection conn = rdf4jLocalRepo.getConnection()) {
+            try (Stream<KBHandle> handles = SPARQLQueryBuilder
+                    .forItems(kb)
+                    .withIdentifier("http://example.org/#green-goblin",
+                            "http://example.org/#lucky-green")
+                    .retrieveLabel()
+                    .retrieveDescription()
+                    .orderBySubject()
+                    .limit(1)
+                    .asHandleStream(conn, true)) {
+                results = handles.collect(Collectors.toList());
+            }
+        }
+        
+        assertThat(results)
+                .usingElementComparatorOnFields("identifier", "name", "description", "language")
+                .containsExactly(new KBHandle("http://example.org/#green-goblin", "Green Goblin",
+                        "Little green monster", "en"));
+    }
+    
+    @Test
+    public void thatStreamingRequiresOrderingBySubject() throws Exception
+    {
+        try (RepositoryConnection conn = rdf4jLocalRepo.getConnection()) {
+            assertThatThrownBy(() -> SPARQLQueryBuilder
+                    .forItems(kb)
+                    .retrieveLabel()
+                    .asHandleStream(conn, true))
+                    .isInstanceOf(IllegalStateException.class);
+        }
+    }
+    
     /**
      * Checks that an explicitly defined class can be retrieved using its identifier.
      */
@@ -987,6 +1114,129 @@ public class SPARQLQueryBuilderTest
                         new KBHandle("http://example.org/#green-goblin", "Green Goblin"));
     }
 
+    @Test
+    public void thatUnionOfLabelMatchesCombinesAllResults() throws Exception
+    {
+        importDataFromString(RDFFormat.TURTLE, TURTLE_PREFIX, DATA_LABELS_WITHOUT_LANGUAGE);
+
+        Map<String, SPARQLQuery> queries = new LinkedHashMap<>();
+        queries.put("exact", SPARQLQueryBuilder
+                .forItems(kb)
+                .withLabelMatchingExactlyAnyOf("Red Goblin")
+                .retrieveLabel());
+        queries.put("startingWith", SPARQLQueryBuilder
+                .forItems(kb)
+                .withLabelStartingWith("Green")
+                .retrieveLabel());
+        queries.put("empty", SPARQLQueryBuilder
+                .forItems(kb)
+                .withLabelContainingAnyOf());
+        
+        List<KBHandle> results = asHandles(rdf4jLocalRepo,
+                SPARQLQueryBuilder.unionOf(kb, queries));
+        
+        assertThat(results).extracting(KBHandle::getIdentifier).doesNotHaveDuplicates();
+        assertThat(results)
+                .usingElementComparatorOnFields(
+                        "identifier", "name", "language")
+                .containsExactlyInAnyOrder(
+                        new KBHandle("http://example.org/#red-goblin", "Red Goblin"),
+                        new KBHandle("http://example.org/#green-goblin", "Green Goblin"));
+    }
+
+    @Test
+    public void thatUnionOfLabelMatchesCombinesAllResults_RDF4J_FTS() throws Exception
+    {
+        kb.setFullTextSearchIri(IriConstants.FTS_LUCENE);
+        
+        thatUnionOfLabelMatchesCombinesAllResults();
+    }
+
+    /**
+     * Checks that the FTS patterns of Virtuoso can be nested into the sub-selects of a union.
+     */
+    @Test
+    public void thatUnionOfLabelMatchesIsValidQuery_Virtuoso_FTS() throws Exception
+    {
+        kb.setType(REMOTE);
+        kb.setFullTextSearchIri(IriConstants.FTS_VIRTUOSO);
+        
+        Map<String, SPARQLQuery> queries = new LinkedHashMap<>();
+        queries.put("exact", SPARQLQueryBuilder
+                .forItems(kb)
+                .withLabelMatchingExactlyAnyOf("Green Goblin")
+                .retrieveLabel());
+        queries.put("startingWith", SPARQLQueryBuilder
+                .forItems(kb)
+                .withLabelStartingWith("Barack")
+                .retrieveLabel());
+        
+        String query = SPARQLQueryBuilder.unionOf(kb, queries).selectQuery().getQueryString();
+        
+        QueryParserUtil.parseTupleQuery(QueryLanguage.SPARQL, query, null);
+        assertThat(StringUtils.countMatches(query, "bif:contains")).isEqualTo(2);
+        assertThat(StringUtils.countMatches(query, "SELECT DISTINCT")).isEqualTo(3);
+    }
+
+    @Test
+    public void thatUnionOfLabelMatchesCombinesAllResults_Virtuoso_FTS() throws Exception
+    {
+        assertIsReachable(ukpVirtuosoRepo);
+        
+        kb.setType(REMOTE);
+        kb.setFullTextSearchIri(IriConstants.FTS_VIRTUOSO);
+        
+        Map<String, SPARQLQuery> queries = new LinkedHashMap<>();
+        queries.put("exact", SPARQLQueryBuilder
+                .forItems(kb)
+                .withLabelMatchingExactlyAnyOf("Green Goblin")
+                .retrieveLabel());
+        queries.put("startingWith", SPARQLQueryBuilder
+                .forItems(kb)
+                .withLabelStartingWith("Barack")
+                .retrieveLabel());
+        
+        List<KBHandle> results = asHandles(ukpVirtuosoRepo,
+                SPARQLQueryBuilder.unionOf(kb, queries));
+        
+        assertThat(results).extracting(KBHandle::getIdentifier).doesNotHaveDuplicates();
+        assertThat(results).extracting(KBHandle::getUiLabel)
+                .anyMatch(label -> "Green Goblin".equals(label))
+                .anyMatch(label -> label.startsWith("Barack"));
+    }
+
+    /**
+     * The Wikidata entity search is a SERVICE clause which is not nested into sub-selects, so the
+     * queries of the union are sent separately.
+     */
+    @Test
+    public void thatUnionOfLabelMatchesCombinesAllResults_Wikidata_FTS() throws Exception
+    {
+        assertIsReachable(wikidata);
+        
+        kb.setType(REMOTE);
+        kb.setFullTextSearchIri(FTS_WIKIDATA);
+        initWikidataMapping();
+        
+        Map<String, SPARQLQuery> queries = new LinkedHashMap<>();
+        queries.put("exact", SPARQLQueryBuilder
+                .forItems(kb)
+                .withLabelMatchingExactlyAnyOf("Labour")
+                .retrieveLabel());
+        queries.put("startingWith", SPARQLQueryBuilder
+                .forItems(kb)
+                .withLabelStartingWith("Barack")
+                .retrieveLabel());
+        
+        SPARQLQuery union = SPARQLQueryBuilder.unionOf(kb, queries);
+        List<KBHandle> results = asHandles(wikidata, union);
+        
+        assertThat(results).extracting(KBHandle::getIdentifier).doesNotHaveDuplicates();
+        assertThat(results).extracting(KBHandle::getUiLabel)
+                .anyMatch(label -> label.equalsIgnoreCase("Labour"))
+                .anyMatch(label -> label.toLowerCase().startsWith("barack"));
+    }
+
     @Test
     public void testWithLabelStartingWith_RDF4J_withLanguage_noFTS() throws Exception
     {
@@ -18,18 +18,17 @@
 package de.tudarmstadt.ukp.inception.ui.core.docanno.sidebar;
 
 import static java.util.Collections.emptyList;
-import static org.apache.uima.fit.util.CasUtil.selectFS;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import org.apache.uima.cas.AnnotationBaseFS;
 import org.apache.uima.cas.CAS;
-import org.apache.uima.cas.FeatureStructure;
 import org.apache.wicket.ajax.AjaxRequestTarget;
 import org.apache.wicket.markup.html.WebMarkupContainer;
 import org.apache.wicket.markup.html.basic.Label;
@@ -51,16 +50,10 @@ import de.agilecoders.wicket.extensions.markup.html.bootstrap.form.select.Bootst
 import de.tudarmstadt.ukp.clarin.webanno.api.AnnotationSchemaService;
 import de.tudarmstadt.ukp.clarin.webanno.api.CasProvider;
 import de.tudarmstadt.ukp.clarin.webanno.api.annotation.action.AnnotationActionHandler;
-import de.tudarmstadt.ukp.clarin.webanno.api.annotation.adapter.TypeAdapter;
 import de.tudarmstadt.ukp.clarin.webanno.api.annotation.event.FeatureValueUpdatedEvent;
 import de.tudarmstadt.ukp.clarin.webanno.api.annotation.exception.AnnotationException;
-import de.tudarmstadt.ukp.clarin.webanno.api.annotation.layer.LayerSupportRegistry;
 import de.tudarmstadt.ukp.clarin.webanno.api.annotation.model.AnnotatorState;
 import de.tudarmstadt.ukp.clarin.webanno.api.annotation.model.VID;
-import de.tudarmstadt.ukp.clarin.webanno.api.annotation.rendering.Renderer;
-import de.tudarmstadt.ukp.clarin.webanno.api.annotation.util.TypeUtil;
-import de.tudarmstadt.ukp.clarin.webanno.api.annotation.util.WebAnnoCasUtil;
-import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
 import de.tudarmstadt.ukp.clarin.webanno.model.Project;
 import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
@@ -86,8 +79,8 @@ public class DocumentMetadataAnnotationSelectionPanel extends Panel
     private static final String CID_ANNOTATIONS_CONTAINER = "annotationsContainer";
     private static final String CID_ANNOTATION_DETAILS = "annotationDetails";
     
-    private @SpringBean LayerSupportRegistry layerSupportRegistry;
     private @SpringBean AnnotationSchemaService annotationService;
+    private @SpringBean DocumentMetadataSummary documentMetadataSummary;
     
     private final AnnotationPage annotationPage;
     private final CasProvider jcasProvider;
@@ -244,28 +237,25 @@ public class DocumentMetadataAnnotationSelectionPanel extends Panel
     
     private List<AnnotationListItem> listAnnotations()
     {
-        CAS cas;
+        // The summary only loads the CAS if it has changed since the list was last built
+        List<DocumentMetadataSummary.Entry> entries;
         try {
-            cas = jcasProvider.get();
+            entries = documentMetadataSummary.listEntries(sourceDocument.getObject(),
+                    username.getObject(), jcasProvider);
         }
         catch (IOException e) {
             LOG.error("Unable to load CAS", e);
             return emptyList();
         }
         
+        Map<Long, AnnotationLayer> layers = listMetadataLayers().stream()
+                .collect(Collectors.toMap(AnnotationLayer::getId, Function.identity()));
+        
         List<AnnotationListItem> items = new ArrayList<>();
-        for (AnnotationLayer layer : listMetadataLayers()) {            
-            List<AnnotationFeature> features = annotationService.listAnnotationFeature(layer);
-            TypeAdapter adapter = annotationService.getAdapter(layer);
-            Renderer renderer = layerSupportRegistry.getLayerSupport(layer).getRenderer(layer);
-            
-            for (FeatureStructure fs : selectFS(cas, adapter.getAnnotationType(cas))) {
-                Map<String, String> renderedFeatures = renderer.getFeatures(adapter, fs, features);
-                String labelText = TypeUtil.getUiLabelText(adapter, renderedFeatures);
-                if (labelText.isEmpty()) {
-                    labelText = "(" + layer.getUiName() + ")";
-                }
-                items.add(new AnnotationListItem(WebAnnoCasUtil.getAddr(fs), labelText, layer));
+        for (DocumentMetadataSummary.Entry entry : entries) {
+            AnnotationLayer layer = layers.get(entry.getLayerId());
+            if (layer != null) {
+                items.add(new AnnotationListItem(entry.getAddr(), entry.getLabel(), layer));
             }
         }
         
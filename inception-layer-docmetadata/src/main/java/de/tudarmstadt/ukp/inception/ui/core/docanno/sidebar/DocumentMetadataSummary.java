@@ -0,0 +1,388 @@
+/*
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.ui.core.docanno.sidebar;
+
+import static org.apache.uima.fit.util.CasUtil.selectFS;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.FeatureStructure;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.AnnotationSchemaService;
+import de.tudarmstadt.ukp.clarin.webanno.api.CasProvider;
+import de.tudarmstadt.ukp.clarin.webanno.api.DocumentService;
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.adapter.TypeAdapter;
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.event.FeatureValueUpdatedEvent;
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.layer.LayerSupportRegistry;
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.rendering.Renderer;
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.util.TypeUtil;
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.util.WebAnnoCasUtil;
+import de.tudarmstadt.ukp.clarin.webanno.api.event.AfterCasWrittenEvent;
+import de.tudarmstadt.ukp.clarin.webanno.api.event.AfterDocumentResetEvent;
+import de.tudarmstadt.ukp.clarin.webanno.api.event.BeforeDocumentRemovedEvent;
+import de.tudarmstadt.ukp.clarin.webanno.api.event.LayerConfigurationChangedEvent;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.inception.ui.core.docanno.event.DocumentMetadataCreatedEvent;
+import de.tudarmstadt.ukp.inception.ui.core.docanno.event.DocumentMetadataDeletedEvent;
+import de.tudarmstadt.ukp.inception.ui.core.docanno.event.DocumentMetadataEvent;
+import de.tudarmstadt.ukp.inception.ui.core.docanno.layer.DocumentMetadataLayerSupport;
+
+/**
+ * Keeps a list of the document metadata annotations of a document per user, so the metadata
+ * sidebar can be rendered without loading the CAS.
+ * <p>
+ * The list is built from the CAS the first time it is requested. Afterwards, it is updated from
+ * the events published when metadata annotations are created, deleted or changed. When the CAS
+ * is written, the list is built from the written CAS, since that CAS may contain changes for
+ * which no events have been published. A list which has changed without the CAS having been
+ * written or whose CAS has been modified on disk in the meantime is built anew.
+ */
+@Component
+@ConditionalOnProperty(prefix = "documentmetadata", name = "enabled", havingValue = "true", 
+        matchIfMissing = false)
+public class DocumentMetadataSummary
+{
+    private static final int MAX_SUMMARIES = 1000;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final AnnotationSchemaService annotationService;
+    private final LayerSupportRegistry layerSupportRegistry;
+    private final DocumentService documentService;
+
+    private final Map<Key, Summary> summaries = Collections.synchronizedMap(
+            new LinkedHashMap<Key, Summary>(16, 0.75f, true)
+            {
+                private static final long serialVersionUID = -2236392981962329374L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, Summary> aEldest)
+                {
+                    return size() > MAX_SUMMARIES;
+                }
+            });
+
+    @Autowired
+    public DocumentMetadataSummary(AnnotationSchemaService aAnnotationService,
+            LayerSupportRegistry aLayerSupportRegistry, DocumentService aDocumentService)
+    {
+        annotationService = aAnnotationService;
+        layerSupportRegistry = aLayerSupportRegistry;
+        documentService = aDocumentService;
+    }
+
+    /**
+     * List the document metadata annotations of the given document and user. The CAS is only
+     * obtained from the provider if there is no up-to-date list yet.
+     */
+    public List<Entry> listEntries(SourceDocument aDocument, String aUser,
+            CasProvider aCasProvider)
+        throws IOException
+    {
+        Key key = new Key(aDocument, aUser);
+        long timestamp = documentService.getAnnotationCasTimestamp(aDocument, aUser).orElse(-1l);
+
+        Summary summary = summaries.get(key);
+        if (summary != null) {
+            synchronized (summary) {
+                if (!summary.dirty && summary.timestamp == timestamp) {
+                    return new ArrayList<>(summary.entries.values());
+                }
+            }
+        }
+
+        summary = new Summary(timestamp);
+        summary.entries.putAll(render(aDocument.getProject(), aCasProvider.get()));
+        summaries.put(key, summary);
+
+        log.trace("Listed {} document metadata annotations in {}", summary.entries.size(), key);
+
+        return new ArrayList<>(summary.entries.values());
+    }
+
+    private Map<Integer, Entry> render(Project aProject, CAS aCas)
+    {
+        Map<Integer, Entry> entries = new LinkedHashMap<>();
+        for (AnnotationLayer layer : annotationService.listAnnotationLayer(aProject)) {
+            if (!DocumentMetadataLayerSupport.TYPE.equals(layer.getType())) {
+                continue;
+            }
+
+            LabelRenderer renderer = new LabelRenderer(layer);
+            for (FeatureStructure fs : selectFS(aCas, renderer.adapter.getAnnotationType(aCas))) {
+                Entry entry = renderer.render(fs);
+                entries.put(entry.getAddr(), entry);
+            }
+        }
+        return entries;
+    }
+
+    @EventListener
+    public void onDocumentMetadataCreated(DocumentMetadataCreatedEvent aEvent)
+    {
+        update(aEvent, summary -> {
+            Entry entry = new LabelRenderer(aEvent.getLayer()).render(aEvent.getAnnotation());
+            summary.entries.put(entry.getAddr(), entry);
+        });
+    }
+
+    @EventListener
+    public void onDocumentMetadataDeleted(DocumentMetadataDeletedEvent aEvent)
+    {
+        update(aEvent,
+            summary -> summary.entries.remove(WebAnnoCasUtil.getAddr(aEvent.getAnnotation())));
+    }
+
+    @EventListener
+    public void onFeatureValueUpdated(FeatureValueUpdatedEvent aEvent)
+    {
+        AnnotationLayer layer = aEvent.getFeature().getLayer();
+        if (!DocumentMetadataLayerSupport.TYPE.equals(layer.getType())) {
+            return;
+        }
+
+        Summary summary = summaries.get(new Key(aEvent.getDocument(), aEvent.getUser()));
+        if (summary == null) {
+            return;
+        }
+
+        synchronized (summary) {
+            if (summary.entries.containsKey(WebAnnoCasUtil.getAddr(aEvent.getFS()))) {
+                Entry entry = new LabelRenderer(layer).render(aEvent.getFS());
+                summary.entries.put(entry.getAddr(), entry);
+            }
+            summary.changed();
+        }
+    }
+
+    @EventListener
+    public void onAfterCasWritten(AfterCasWrittenEvent aEvent)
+    {
+        SourceDocument document = aEvent.getDocument().getDocument();
+        String user = aEvent.getDocument().getUser();
+        Key key = new Key(document, user);
+        Summary summary = summaries.get(key);
+        if (summary == null) {
+            return;
+        }
+
+        // If the list changes or the CAS is written again while we build the list from the
+        // written CAS, the list may not match the CAS on disk - it then remains dirty
+        long changes;
+        long writes;
+        synchronized (summary) {
+            changes = summary.changes;
+            writes = ++summary.writes;
+        }
+
+        try {
+            Map<Integer, Entry> entries = render(document.getProject(), aEvent.getCas());
+            long timestamp = documentService.getAnnotationCasTimestamp(document, user)
+                    .orElse(-1l);
+            synchronized (summary) {
+                if (summary.changes == changes && summary.writes == writes) {
+                    summary.entries.clear();
+                    summary.entries.putAll(entries);
+                    summary.timestamp = timestamp;
+                    summary.dirty = false;
+                }
+                else {
+                    summary.dirty = true;
+                }
+            }
+        }
+        catch (IOException e) {
+            log.error("Unable to obtain CAS timestamp for {}", key, e);
+            summaries.remove(key);
+        }
+    }
+
+    @EventListener
+    public void onAfterDocumentReset(AfterDocumentResetEvent aEvent)
+    {
+        summaries.remove(
+                new Key(aEvent.getDocument().getDocument(), aEvent.getDocument().getUser()));
+    }
+
+    @EventListener
+    public void onBeforeDocumentRemoved(BeforeDocumentRemovedEvent aEvent)
+    {
+        long documentId = aEvent.getDocument().getId();
+        synchronized (summaries) {
+            summaries.keySet().removeIf(key -> key.documentId == documentId);
+        }
+    }
+
+    @EventListener
+    public void onLayerConfigurationChanged(LayerConfigurationChangedEvent aEvent)
+    {
+        // Labels depend on the layer and feature configuration
+        long projectId = aEvent.getProject().getId();
+        synchronized (summaries) {
+            summaries.keySet().removeIf(key -> key.projectId == projectId);
+        }
+    }
+
+    private void update(DocumentMetadataEvent aEvent, Consumer<Summary> aAction)
+    {
+        Summary summary = summaries.get(new Key(aEvent.getDocument(), aEvent.getUser()));
+        if (summary == null) {
+            return;
+        }
+
+        synchronized (summary) {
+            aAction.accept(summary);
+            summary.changed();
+        }
+    }
+
+    private class LabelRenderer
+    {
+        private final AnnotationLayer layer;
+        private final List<AnnotationFeature> features;
+        private final TypeAdapter adapter;
+        private final Renderer renderer;
+
+        public LabelRenderer(AnnotationLayer aLayer)
+        {
+            layer = aLayer;
+            features = annotationService.listAnnotationFeature(aLayer);
+            adapter = annotationService.getAdapter(aLayer);
+            renderer = layerSupportRegistry.getLayerSupport(aLayer).getRenderer(aLayer);
+        }
+
+        public Entry render(FeatureStructure aFS)
+        {
+            Map<String, String> renderedFeatures = renderer.getFeatures(adapter, aFS, features);
+            String labelText = TypeUtil.getUiLabelText(adapter, renderedFeatures);
+            if (labelText.isEmpty()) {
+                labelText = "(" + layer.getUiName() + ")";
+            }
+            return new Entry(WebAnnoCasUtil.getAddr(aFS), layer.getId(), labelText);
+        }
+    }
+
+    /**
+     * A document metadata annotation as shown in the sidebar.
+     */
+    public static class Entry
+    {
+        private final int addr;
+        private final long layerId;
+        private final String label;
+
+        public Entry(int aAddr, long aLayerId, String aLabel)
+        {
+            addr = aAddr;
+            layerId = aLayerId;
+            label = aLabel;
+        }
+
+        public int getAddr()
+        {
+            return addr;
+        }
+
+        public long getLayerId()
+        {
+            return layerId;
+        }
+
+        public String getLabel()
+        {
+            return label;
+        }
+    }
+
+    private static class Summary
+    {
+        private final Map<Integer, Entry> entries = new LinkedHashMap<>();
+        private long timestamp;
+        private boolean dirty;
+        // Number of changes and of writes seen so far
+        private long changes;
+        private long writes;
+
+        public Summary(long aTimestamp)
+        {
+            timestamp = aTimestamp;
+        }
+
+        public void changed()
+        {
+            changes++;
+            dirty = true;
+        }
+    }
+
+    private static class Key
+    {
+        private final long projectId;
+        private final long documentId;
+        private final String user;
+
+        public Key(SourceDocument aDocument, String aUser)
+        {
+            projectId = aDocument.getProject().getId();
+            documentId = aDocument.getId();
+            user = aUser;
+        }
+
+        @Override
+        public boolean equals(Object aOther)
+        {
+            if (this == aOther) {
+                return true;
+            }
+            if (!(aOther instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) aOther;
+            return documentId == other.documentId && Objects.equals(user, other.user);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(documentId, user);
+        }
+
+        @Override
+        public String toString()
+        {
+            return "[docID=" + documentId + ", user=" + user + "]";
+        }
+    }
+}
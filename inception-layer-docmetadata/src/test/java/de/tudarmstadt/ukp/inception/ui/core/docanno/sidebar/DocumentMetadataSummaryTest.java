@@ -0,0 +1,252 @@
+/*
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.ui.core.docanno.sidebar;
+
+import static de.tudarmstadt.ukp.clarin.webanno.api.annotation.util.WebAnnoCasUtil.getAddr;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonMap;
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.uima.cas.AnnotationBaseFS;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.FeatureStructure;
+import org.apache.uima.cas.Type;
+import org.apache.uima.fit.factory.TypeSystemDescriptionFactory;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.apache.uima.util.CasCreationUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.AnnotationSchemaService;
+import de.tudarmstadt.ukp.clarin.webanno.api.CasProvider;
+import de.tudarmstadt.ukp.clarin.webanno.api.DocumentService;
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.adapter.TypeAdapter;
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.event.FeatureValueUpdatedEvent;
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.layer.LayerSupport;
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.layer.LayerSupportRegistry;
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.rendering.Renderer;
+import de.tudarmstadt.ukp.clarin.webanno.api.event.AfterCasWrittenEvent;
+import de.tudarmstadt.ukp.clarin.webanno.api.event.AfterDocumentResetEvent;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.inception.ui.core.docanno.event.DocumentMetadataCreatedEvent;
+import de.tudarmstadt.ukp.inception.ui.core.docanno.event.DocumentMetadataDeletedEvent;
+import de.tudarmstadt.ukp.inception.ui.core.docanno.layer.DocumentMetadataLayerSupport;
+import de.tudarmstadt.ukp.inception.ui.core.docanno.sidebar.DocumentMetadataSummary.Entry;
+
+public class DocumentMetadataSummaryTest
+{
+    private static final String USER = "user";
+    private static final String METADATA_TYPE = "webanno.custom.Metadata";
+
+    private @Mock AnnotationSchemaService annotationService;
+    private @Mock LayerSupportRegistry layerSupportRegistry;
+    private @Mock DocumentService documentService;
+    private @Mock TypeAdapter adapter;
+    private @Mock Renderer renderer;
+
+    private Project project;
+    private AnnotationLayer layer;
+    private SourceDocument document;
+    private AnnotationDocument annotationDocument;
+    private CAS cas;
+    private long diskTimestamp;
+    private AtomicInteger casReads;
+    private CasProvider casProvider;
+
+    private DocumentMetadataSummary sut;
+
+    @Before
+    public void setup() throws Exception
+    {
+        initMocks(this);
+
+        project = new Project();
+        project.setId(1l);
+
+        layer = new AnnotationLayer();
+        layer.setId(1l);
+        layer.setName(METADATA_TYPE);
+        layer.setUiName("Metadata");
+        layer.setType(DocumentMetadataLayerSupport.TYPE);
+        layer.setProject(project);
+
+        document = new SourceDocument();
+        document.setId(1l);
+        document.setProject(project);
+
+        annotationDocument = new AnnotationDocument();
+        annotationDocument.setDocument(document);
+        annotationDocument.setProject(project);
+        annotationDocument.setUser(USER);
+
+        TypeSystemDescription tsd = TypeSystemDescriptionFactory.createTypeSystemDescription();
+        tsd.addType(METADATA_TYPE, "", CAS.TYPE_NAME_ANNOTATION_BASE);
+        cas = CasCreationUtils.createCas(tsd, null, null);
+
+        casReads = new AtomicInteger();
+        casProvider = () -> {
+            casReads.incrementAndGet();
+            return cas;
+        };
+
+        when(annotationService.listAnnotationLayer(project)).thenReturn(asList(layer));
+        when(annotationService.listAnnotationFeature(layer)).thenReturn(emptyList());
+        doReturn(adapter).when(annotationService).getAdapter(layer);
+        when(adapter.getLayer()).thenReturn(layer);
+        when(adapter.getAnnotationType(any())).thenAnswer(
+            call -> ((CAS) call.getArgument(0)).getTypeSystem().getType(METADATA_TYPE));
+        LayerSupport<?> layerSupport = mock(LayerSupport.class);
+        doReturn(layerSupport).when(layerSupportRegistry).getLayerSupport(layer);
+        doReturn(renderer).when(layerSupport).getRenderer(layer);
+        when(renderer.getFeatures(any(), any(), any())).thenAnswer(call -> singletonMap("id",
+                String.valueOf(getAddr((FeatureStructure) call.getArgument(1)))));
+        when(documentService.getAnnotationCasTimestamp(document, USER))
+                .thenAnswer(call -> Optional.of(diskTimestamp));
+
+        sut = new DocumentMetadataSummary(annotationService, layerSupportRegistry,
+                documentService);
+    }
+
+    @Test
+    public void thatListIsReusedUntilCasChanges() throws Exception
+    {
+        AnnotationBaseFS fs = addMetadata(cas);
+
+        assertThat(listAddresses()).containsExactly(getAddr(fs));
+        assertThat(listAddresses()).containsExactly(getAddr(fs));
+        assertThat(casReads).hasValue(1);
+    }
+
+    @Test
+    public void thatCreatedAndDeletedAnnotationsAreTrackedUntilWritten() throws Exception
+    {
+        listAddresses();
+
+        AnnotationBaseFS fs = addMetadata(cas);
+        sut.onDocumentMetadataCreated(
+                new DocumentMetadataCreatedEvent(this, document, USER, layer, fs));
+        writeCas(cas);
+        assertThat(listAddresses()).containsExactly(getAddr(fs));
+
+        cas.removeFsFromIndexes(fs);
+        sut.onDocumentMetadataDeleted(
+                new DocumentMetadataDeletedEvent(this, document, USER, layer, fs));
+        writeCas(cas);
+        assertThat(listAddresses()).isEmpty();
+
+        assertThat(casReads).hasValue(1);
+    }
+
+    @Test
+    public void thatChangedListIsBuiltAnewIfNotWritten() throws Exception
+    {
+        AnnotationBaseFS fs = addMetadata(cas);
+        listAddresses();
+
+        FeatureValueUpdatedEvent event = mock(FeatureValueUpdatedEvent.class);
+        AnnotationFeature feature = new AnnotationFeature();
+        feature.setLayer(layer);
+        when(event.getFeature()).thenReturn(feature);
+        when(event.getDocument()).thenReturn(document);
+        when(event.getUser()).thenReturn(USER);
+        when(event.getFS()).thenReturn(fs);
+        sut.onFeatureValueUpdated(event);
+
+        assertThat(listAddresses()).containsExactly(getAddr(fs));
+        assertThat(casReads).hasValue(2);
+    }
+
+    @Test
+    public void thatResetDiscardsList() throws Exception
+    {
+        listAddresses();
+
+        AfterDocumentResetEvent event = mock(AfterDocumentResetEvent.class);
+        when(event.getDocument()).thenReturn(annotationDocument);
+        sut.onAfterDocumentReset(event);
+
+        listAddresses();
+        assertThat(casReads).hasValue(2);
+    }
+
+    @Test
+    public void thatListIsBuiltAnewIfCasChangesOnDisk() throws Exception
+    {
+        listAddresses();
+
+        // Written without any event
+        diskTimestamp++;
+
+        listAddresses();
+        assertThat(casReads).hasValue(2);
+    }
+
+    @Test
+    public void thatWriteWithoutMetadataEventsIsPickedUp() throws Exception
+    {
+        listAddresses();
+
+        // E.g. a CAS written by a background process which adds metadata without events
+        CAS otherCas = CasCreationUtils.createCas(cas.getTypeSystem(), null, null, null);
+        AnnotationBaseFS fs = addMetadata(otherCas);
+        writeCas(otherCas);
+
+        assertThat(listAddresses()).containsExactly(getAddr(fs));
+        assertThat(casReads).hasValue(1);
+    }
+
+    private List<Integer> listAddresses() throws Exception
+    {
+        return sut.listEntries(document, USER, casProvider).stream()
+                .map(Entry::getAddr)
+                .collect(toList());
+    }
+
+    private AnnotationBaseFS addMetadata(CAS aCas)
+    {
+        Type type = aCas.getTypeSystem().getType(METADATA_TYPE);
+        AnnotationBaseFS fs = aCas.createFS(type);
+        aCas.addFsToIndexes(fs);
+        return fs;
+    }
+
+    private void writeCas(CAS aCas)
+    {
+        diskTimestamp++;
+        AfterCasWrittenEvent event = mock(AfterCasWrittenEvent.class);
+        when(event.getDocument()).thenReturn(annotationDocument);
+        when(event.getCas()).thenReturn(aCas);
+        sut.onAfterCasWritten(event);
+    }
+}
@@ -22,8 +22,8 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
-import org.apache.commons.collections4.map.HashedMap;
 import org.apache.commons.lang3.ClassUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -45,9 +45,14 @@ public class EventLoggingListener
     private final Logger log = LoggerFactory.getLogger(getClass());
 
     private final List<EventLoggingAdapter<?>> adapterProxy;
-    private List<EventLoggingAdapter<?>> adapters;
+    private volatile List<EventLoggingAdapter<?>> adapters;
 
-    private final Map<Class<?>, EventLoggingAdapter<?>> adapterCache;
+    /**
+     * Adapter to use for each event class seen so far. Event classes which are not logged map to
+     * an empty optional, so that after the first event of a class, resolving the adapter is a
+     * single lookup. All adapters decide based on the class of the event.
+     */
+    private final Map<Class<?>, Optional<EventLoggingAdapter<?>>> adapterCache;
 
     private final EventRepository repo;
 
@@ -57,7 +62,7 @@ public class EventLoggingListener
     {
         repo = aRepo;
         adapterProxy = aAdapters;
-        adapterCache = new HashedMap<>();
+        adapterCache = new ConcurrentHashMap<>();
     }
 
     @EventListener
@@ -81,31 +86,38 @@ public class EventLoggingListener
         }
 
         adapters = Collections.unmodifiableList(exts);
+        adapterCache.clear();
     }
 
     @SuppressWarnings({ "rawtypes", "unchecked" })
     public <T> Optional<EventLoggingAdapter<T>> getAdapter(T aEvent)
     {
-        // Try to obtain the adapter from the cache
-        EventLoggingAdapter<T> adapter = (EventLoggingAdapter) adapterCache.get(aEvent.getClass());
+        // Events generated during application startup arrive before the adapters are known.
+        // Do not cache anything for them, otherwise the generic adapter would stick.
+        if (adapters == null) {
+            return (Optional) findAdapter(aEvent);
+        }
+
+        return (Optional) adapterCache.computeIfAbsent(aEvent.getClass(),
+            k -> findAdapter(aEvent));
+    }
 
-        // This happens for events generated during applications startup.
-        if (adapter == null && adapters != null) {
-            for (EventLoggingAdapter a : adapters) {
+    private Optional<EventLoggingAdapter<?>> findAdapter(Object aEvent)
+    {
+        if (adapters != null) {
+            for (EventLoggingAdapter<?> a : adapters) {
                 if (a.accepts(aEvent)) {
-                    adapter = a;
-                    adapterCache.put(aEvent.getClass(), adapter);
-                    break;
+                    return Optional.of(a);
                 }
             }
         }
 
         // If no adapter could be found, check if the generic adapter applies
-        if (adapter == null && GenericEventAdapter.INSTANCE.accepts(aEvent)) {
-            adapter = (EventLoggingAdapter<T>) GenericEventAdapter.INSTANCE;
+        if (GenericEventAdapter.INSTANCE.accepts(aEvent)) {
+            return Optional.of(GenericEventAdapter.INSTANCE);
         }
 
-        return Optional.ofNullable(adapter);
+        return Optional.empty();
     }
     
     @EventListener
@@ -123,8 +135,17 @@ public class EventLoggingListener
             e.setProject(a.getProject(aEvent));
             e.setDocument(a.getDocument(aEvent));
             e.setAnnotator(a.getAnnotator(aEvent));
+            e.setRecommender(a.getRecommender(aEvent));
             e.setDetails(a.getDetails(aEvent));
-            repo.create(e);
+
+            // Logging must not fail the operation which triggered the event. If the operation
+            // runs in a transaction, the event is stored as part of it.
+            try {
+                repo.create(e);
+            }
+            catch (Exception ex) {
+                log.error("Unable to log event [{}]", aEvent, ex);
+            }
         }
     }
 }
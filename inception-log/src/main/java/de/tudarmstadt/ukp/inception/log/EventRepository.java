@@ -17,6 +17,7 @@
  */
 package de.tudarmstadt.ukp.inception.log;
 
+import java.util.Date;
 import java.util.List;
 import java.util.function.Consumer;
 
@@ -36,7 +37,23 @@ public interface EventRepository
     List<LoggedEvent> listLoggedEventsForRecommender(Project aProject, String aUsername,
             String aEventType, int aMaxSize, long aRecommenderId);
 
-    void forEachLoggedEvent(Project aProject, Consumer<LoggedEvent> aConsumer);
+    default void forEachLoggedEvent(Project aProject, Consumer<LoggedEvent> aConsumer)
+    {
+        forEachLoggedEvent(aProject, null, null, aConsumer);
+    }
+
+    /**
+     * Pass the logged events of the given project to the consumer in the order in which they
+     * were logged. The events are fetched in chunks and detached once they have been consumed, so
+     * the memory required does not grow with the size of the event log.
+     * 
+     * @param aFrom
+     *            if not {@code null}, only events created at or after this time are included.
+     * @param aTo
+     *            if not {@code null}, only events created before this time are included.
+     */
+    void forEachLoggedEvent(Project aProject, Date aFrom, Date aTo,
+            Consumer<LoggedEvent> aConsumer);
 
     /**
      * Get the aMaxSize amount of logged events of the given types, user name and project
@@ -51,4 +68,11 @@ public interface EventRepository
      */
     List<LoggedEvent> listLoggedEventsForDetail(Project aProject, String aUsername,
             String aEventType, int aMaxSize, String aDetail);
+
+    /**
+     * Get the aMaxSize oldest logged events created before the given time, ordered by ID.
+     */
+    List<LoggedEvent> listLoggedEventsCreatedBefore(Date aTime, int aMaxSize);
+
+    void delete(List<LoggedEvent> aEvents);
 }
@@ -17,10 +17,20 @@
  */
 package de.tudarmstadt.ukp.inception.log;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
-import java.util.stream.Stream;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
@@ -28,21 +38,47 @@ import javax.persistence.TypedQuery;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.databind.JsonNode;
 
 import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.support.JSONUtil;
+import de.tudarmstadt.ukp.inception.log.archive.EventArchive;
+import de.tudarmstadt.ukp.inception.log.archive.EventLogRetention;
+import de.tudarmstadt.ukp.inception.log.model.DocumentActivity;
 import de.tudarmstadt.ukp.inception.log.model.LoggedEvent;
 
 @Component
 public class EventRepositoryImpl
     implements EventRepository
 {
+    public static final String EVENT_RECOMMENDER_EVALUATION = "RecommenderEvaluationResultEvent";
+    private static final int MIGRATION_BATCH_SIZE = 1000;
+    private static final int EXPORT_CHUNK_SIZE = 1000;
+
     private final Logger log = LoggerFactory.getLogger(getClass());
 
     @PersistenceContext
     private EntityManager entityManager;
 
+    /**
+     * Events moved out of the database by the {@link EventLogRetention}.
+     */
+    @Autowired(required = false)
+    private EventArchive archive;
+
+    @Autowired(required = false)
+    private PlatformTransactionManager transactionManager;
+
+    private final AtomicBoolean migrated = new AtomicBoolean();
+
     public EventRepositoryImpl()
     {
     }
@@ -52,6 +88,16 @@ public class EventRepositoryImpl
         entityManager = aEntityManager;
     }
 
+    public EventRepositoryImpl(EntityManager aEntityManager, EventArchive aArchive)
+    {
+        entityManager = aEntityManager;
+        archive = aArchive;
+    }
+
+    /**
+     * Store the given events. This happens in the transaction of the operation which triggered
+     * the events, so the events and the summary are rolled back together with that operation.
+     */
     @Override
     @Transactional
     public void create(LoggedEvent... aEvents)
@@ -60,19 +106,219 @@ public class EventRepositoryImpl
         for (LoggedEvent event : aEvents) {
             log.trace("{}", event);
             entityManager.persist(event);
+            updateDocumentActivity(event);
         }
         long duration = System.currentTimeMillis() - start;
         log.debug("... {} events stored ... ({}ms)", aEvents.length, duration);
     }
 
+    /**
+     * Point the document activity summary to the given event. The summary has no unique key, so
+     * two events logged concurrently for a new combination of project, user, document and event
+     * type may both create an entry. Such duplicates are updated together afterwards and are
+     * collapsed when listing the activities.
+     */
+    private void updateDocumentActivity(LoggedEvent aEvent)
+    {
+        if (aEvent.getDocument() == -1) {
+            return;
+        }
+
+        String query = String.join("\n",
+                "FROM DocumentActivity WHERE ",
+                "project = :project AND ",
+                "user = :user AND ",
+                "document = :document AND ",
+                "event = :event");
+
+        List<DocumentActivity> activities = entityManager
+                .createQuery(query, DocumentActivity.class)
+                .setParameter("project", aEvent.getProject())
+                .setParameter("user", aEvent.getUser())
+                .setParameter("document", aEvent.getDocument())
+                .setParameter("event", aEvent.getEvent())
+                .getResultList();
+
+        if (activities.isEmpty()) {
+            entityManager.persist(new DocumentActivity(aEvent));
+            return;
+        }
+
+        for (DocumentActivity activity : activities) {
+            if (!activity.getCreated().after(aEvent.getCreated())) {
+                activity.update(aEvent);
+            }
+        }
+    }
+
+    @EventListener
+    public void onContextRefreshedEvent(ContextRefreshedEvent aEvent)
+    {
+        // Child contexts publish their own refresh events, but the migrations only need to run
+        // once
+        if (!migrated.compareAndSet(false, true)) {
+            return;
+        }
+
+        migrateRecommenderColumn();
+        inTransaction(() -> {
+            migrateDocumentActivities();
+            return null;
+        });
+    }
+
+    /**
+     * Run the given action in a transaction of its own. If no transaction manager is available,
+     * the action participates in the transaction of the caller.
+     */
+    private <T> T inTransaction(Supplier<T> aAction)
+    {
+        if (transactionManager == null) {
+            return aAction.get();
+        }
+
+        return new TransactionTemplate(transactionManager).execute(status -> aAction.get());
+    }
+
+    /**
+     * Initialize the document activity summary from the events logged before the summary was
+     * introduced. The summary is only initialized if it is empty.
+     */
+    /* package private */ void migrateDocumentActivities()
+    {
+        long count = entityManager
+                .createQuery("SELECT COUNT(*) FROM DocumentActivity", Long.class)
+                .getSingleResult();
+        if (count > 0) {
+            return;
+        }
+
+        // Pick the latest event of each combination - if several events share the latest
+        // creation time, the one with the highest ID. The sub-query is answered from the
+        // IDX_logged_event_activity index, so this does not compare every pair of events.
+        String query = String.join("\n",
+                "INSERT INTO DocumentActivity ",
+                "(project, user, document, event, created, loggedEvent) ",
+                "SELECT e.project, e.user, e.document, e.event, e.created, e.id ",
+                "FROM LoggedEvent e WHERE ",
+                "e.document <> -1 AND ",
+                "NOT EXISTS (",
+                "  SELECT l.id FROM LoggedEvent l WHERE ",
+                "  l.project = e.project AND ",
+                "  l.user = e.user AND ",
+                "  l.document = e.document AND ",
+                "  l.event = e.event AND ",
+                "  (l.created > e.created OR (l.created = e.created AND l.id > e.id)))");
+
+        long start = System.currentTimeMillis();
+        int total = entityManager.createQuery(query).executeUpdate();
+        if (total > 0) {
+            log.info("Initialized {} document activities from the event log ({}ms)", total,
+                    System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * Recommender evaluation events logged before the {@code recommender} column was introduced
+     * carry the recommender ID only in their details. Copy it into the column so that these
+     * events are still found by {@link #listLoggedEventsForRecommender}. Events from which no ID
+     * can be obtained are marked with -1 so that they are not looked at again.
+     * <p>
+     * Every batch is committed separately, so a large event log is not migrated in a single
+     * transaction. Once all events have been migrated, this is a single indexed query.
+     */
+    /* package private */ void migrateRecommenderColumn()
+    {
+        long start = System.currentTimeMillis();
+        int total = 0;
+        int batchSize;
+        do {
+            batchSize = inTransaction(this::migrateRecommenderColumnBatch);
+            total += batchSize;
+        }
+        while (batchSize == MIGRATION_BATCH_SIZE);
+
+        if (total > 0) {
+            log.info("Migrated recommender of {} logged events ({}ms)", total,
+                    System.currentTimeMillis() - start);
+        }
+    }
+
+    private int migrateRecommenderColumnBatch()
+    {
+        String query = String.join("\n",
+                "FROM LoggedEvent WHERE ",
+                "event = :event AND ",
+                "recommender IS NULL");
+
+        List<LoggedEvent> batch = entityManager.createQuery(query, LoggedEvent.class)
+                .setParameter("event", EVENT_RECOMMENDER_EVALUATION)
+                .setMaxResults(MIGRATION_BATCH_SIZE)
+                .getResultList();
+
+        for (LoggedEvent event : batch) {
+            event.setRecommender(extractRecommenderId(event.getDetails()));
+        }
+
+        entityManager.flush();
+        entityManager.clear();
+        return batch.size();
+    }
+
+    /**
+     * Obtain the recommender ID from the details of a recommender evaluation event.
+     * 
+     * @return the ID or -1 if the details do not contain one.
+     */
+    public static long extractRecommenderId(String aDetails)
+    {
+        if (aDetails == null) {
+            return -1;
+        }
+
+        try {
+            JsonNode id = JSONUtil.getObjectMapper().readTree(aDetails).get("recommenderId");
+            return id != null && id.canConvertToLong() ? id.asLong() : -1;
+        }
+        catch (IOException e) {
+            return -1;
+        }
+    }
+
     @Override
     @Transactional
     public List<LoggedEvent> listLoggedEventsForRecommender(Project aProject, String aUsername,
             String aEventType, int aMaxSize, long aRecommenderId)
     {
-        String detailStr = "%\"recommenderId\":" + aRecommenderId + "%";
+        String query = String.join("\n", 
+                "FROM LoggedEvent WHERE ", 
+                "user=:user AND ",
+                "project = :project AND ", 
+                "event = :event AND ", 
+                "recommender = :recommender ",
+                "ORDER BY created DESC");
 
-        return listLoggedEventsForDetail(aProject, aUsername, aEventType, aMaxSize, detailStr);
+        List<LoggedEvent> events = entityManager.createQuery(query, LoggedEvent.class)
+                .setParameter("user", aUsername)
+                .setParameter("project", aProject.getId())
+                .setParameter("event", aEventType)
+                .setParameter("recommender", aRecommenderId)
+                .setMaxResults(aMaxSize).getResultList();
+
+        // Archived events are older than any event still in the database, so we only need to
+        // look at the archive if the database does not provide enough events
+        if (archive != null && events.size() < aMaxSize) {
+            events = new ArrayList<>(events);
+            try {
+                events.addAll(archive.listArchivedEvents(aProject.getId(), aUsername,
+                        aEventType, aRecommenderId, aMaxSize - events.size()));
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        return events;
     }
     
     @Override
@@ -101,47 +347,156 @@ public class EventRepositoryImpl
     public List<LoggedEvent> listUniqueLoggedEventsForDoc(Project aProject, String aUsername,
             String[] aEventTypes, int aMaxSize)
     {
-        String query = String.join("\n", 
-                "FROM LoggedEvent WHERE",
-                "id IN",
-                // select one event when time-stamps are the same per document
-                "   (SELECT max(id)",
-                "   FROM LoggedEvent WHERE",
-                "   user=:user AND",
-                "   project=:project AND",
-                "   event in (:eventTypes)",
-                "   AND created in",
-                // select last created events per document
-                "       (SELECT max(created) ",
-                "       FROM LoggedEvent WHERE",
-                "       user=:user AND",
-                "       project=:project AND",
-                "       event in (:eventTypes)",
-                "       GROUP BY document)",
-                "   GROUP BY document)",
-                "ORDER BY created DESC");
+        String query = String.join("\n",
+                "FROM DocumentActivity WHERE ",
+                "user = :user AND ",
+                "project = :project AND ",
+                "event IN (:eventTypes) ",
+                "ORDER BY created DESC, loggedEvent DESC");
 
-        TypedQuery<LoggedEvent> typedQuery = entityManager.createQuery(query, LoggedEvent.class)
+        List<DocumentActivity> activities = entityManager
+                .createQuery(query, DocumentActivity.class)
                 .setParameter("user", aUsername)
                 .setParameter("project", aProject.getId())
-                .setParameter("eventTypes", Arrays.asList(aEventTypes));
-        return typedQuery.setMaxResults(aMaxSize).getResultList();
+                .setParameter("eventTypes", Arrays.asList(aEventTypes))
+                .getResultList();
+
+        // The summary holds the latest event per event type, so a document can appear several
+        // times - keep only its most recent event
+        Set<Long> seenDocuments = new HashSet<>();
+        List<DocumentActivity> latestActivities = new ArrayList<>();
+        for (DocumentActivity activity : activities) {
+            if (latestActivities.size() >= aMaxSize) {
+                break;
+            }
+            if (seenDocuments.add(activity.getDocument())) {
+                latestActivities.add(activity);
+            }
+        }
+
+        if (latestActivities.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        List<Long> eventIds = latestActivities.stream()
+                .map(DocumentActivity::getLoggedEvent)
+                .collect(Collectors.toList());
+        Map<Long, LoggedEvent> events = entityManager
+                .createQuery("FROM LoggedEvent WHERE id IN (:ids)", LoggedEvent.class)
+                .setParameter("ids", eventIds)
+                .getResultList().stream()
+                .collect(Collectors.toMap(LoggedEvent::getId, Function.identity()));
+
+        // Events which have been moved to the archive by the retention are no longer in the
+        // database. The summary still has everything needed to list the document, so these
+        // events are restored from it instead of being dropped.
+        return latestActivities.stream()
+                .map(activity -> {
+                    LoggedEvent event = events.get(activity.getLoggedEvent());
+                    return event != null ? event : toLoggedEvent(activity);
+                })
+                .collect(Collectors.toList());
+    }
+
+    private static LoggedEvent toLoggedEvent(DocumentActivity aActivity)
+    {
+        LoggedEvent event = new LoggedEvent(aActivity.getLoggedEvent());
+        event.setProject(aActivity.getProject());
+        event.setUser(aActivity.getUser());
+        event.setDocument(aActivity.getDocument());
+        event.setEvent(aActivity.getEvent());
+        event.setCreated(aActivity.getCreated());
+        return event;
     }
     
     @Override
     @Transactional
-    public void forEachLoggedEvent(Project aProject, Consumer<LoggedEvent> aConsumer)
+    public void forEachLoggedEvent(Project aProject, Date aFrom, Date aTo,
+            Consumer<LoggedEvent> aConsumer)
+    {
+        // Page through the events by ID instead of using an offset so that each chunk can be
+        // fetched using the primary key index no matter how far into the log we are
+        StringBuilder query = new StringBuilder();
+        query.append("FROM LoggedEvent WHERE project = :project AND id > :lastId ");
+        if (aFrom != null) {
+            query.append("AND created >= :from ");
+        }
+        if (aTo != null) {
+            query.append("AND created < :to ");
+        }
+        query.append("ORDER BY id");
+
+        // Archived events are older than any event still in the database
+        if (archive != null) {
+            try {
+                archive.forEachArchivedEvent(aProject.getId(), aFrom, aTo, aConsumer);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        long lastId = -1;
+        List<LoggedEvent> chunk;
+        do {
+            TypedQuery<LoggedEvent> typedQuery = entityManager
+                    .createQuery(query.toString(), LoggedEvent.class)
+                    .setParameter("project", aProject.getId())
+                    .setParameter("lastId", lastId)
+                    .setMaxResults(EXPORT_CHUNK_SIZE);
+            if (aFrom != null) {
+                typedQuery.setParameter("from", aFrom);
+            }
+            if (aTo != null) {
+                typedQuery.setParameter("to", aTo);
+            }
+
+            chunk = typedQuery.getResultList();
+            for (LoggedEvent event : chunk) {
+                aConsumer.accept(event);
+                entityManager.detach(event);
+                lastId = event.getId();
+            }
+        }
+        while (chunk.size() == EXPORT_CHUNK_SIZE);
+    }
+
+    /**
+     * List events created before the given time. The {@code created} column is indexed, so this
+     * does not need to scan the whole event log when called repeatedly by the
+     * {@link EventLogRetention}.
+     */
+    @Override
+    @Transactional
+    public List<LoggedEvent> listLoggedEventsCreatedBefore(Date aTime, int aMaxSize)
     {
-        // Set up data source
         String query = String.join("\n",
                 "FROM LoggedEvent WHERE ",
-                "project = :project ",
+                "created < :time ",
                 "ORDER BY id");
-        TypedQuery<LoggedEvent> typedQuery = entityManager.createQuery(query, LoggedEvent.class)
-                .setParameter("project", aProject.getId());
 
-        try (Stream<LoggedEvent> eventStream = typedQuery.getResultStream()) {
-            eventStream.forEach(aConsumer);
+        return entityManager.createQuery(query, LoggedEvent.class)
+                .setParameter("time", aTime)
+                .setMaxResults(aMaxSize)
+                .getResultList();
+    }
+
+    /**
+     * Delete the given events. The {@link DocumentActivity} entries pointing to them are kept
+     * since they still describe the latest activity on a document. They are resolved without the
+     * event by {@link #listUniqueLoggedEventsForDoc}.
+     */
+    @Override
+    @Transactional
+    public void delete(List<LoggedEvent> aEvents)
+    {
+        if (aEvents.isEmpty()) {
+            return;
         }
+
+        List<Long> ids = aEvents.stream().map(LoggedEvent::getId).collect(Collectors.toList());
+        entityManager.createQuery("DELETE FROM LoggedEvent WHERE id IN (:ids)")
+                .setParameter("ids", ids)
+                .executeUpdate();
     }
 }
@@ -47,6 +47,15 @@ public interface EventLoggingAdapter<T>
         return null;
     }
 
+    /**
+     * @return the ID of the recommender the event relates to or {@code null} if the event does
+     *         not relate to a recommender.
+     */
+    default Long getRecommender(T aEvent)
+    {
+        return null;
+    }
+
     default Date getCreated(T aEvent)
     {
         if (aEvent instanceof ApplicationEvent) {
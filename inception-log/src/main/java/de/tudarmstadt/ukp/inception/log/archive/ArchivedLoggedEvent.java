@@ -0,0 +1,95 @@
+/*
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.log.archive;
+
+import java.util.Date;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import de.tudarmstadt.ukp.inception.log.model.LoggedEvent;
+
+/**
+ * Representation of a {@link LoggedEvent} in the event archive. Unlike the project export, the
+ * archive refers to projects and documents by ID because it is read back only by the same
+ * instance.
+ */
+@JsonPropertyOrder(alphabetic = true)
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(Include.NON_NULL)
+class ArchivedLoggedEvent
+{
+    @JsonProperty("id")
+    public long id;
+
+    @JsonProperty("event")
+    public String event;
+
+    @JsonProperty("created")
+    public Date created;
+
+    @JsonProperty("user")
+    public String user;
+
+    @JsonProperty("project")
+    public long project;
+
+    @JsonProperty("document")
+    public long document;
+
+    @JsonProperty("annotator")
+    public String annotator;
+
+    @JsonProperty("recommender")
+    public Long recommender;
+
+    @JsonProperty("details")
+    public String details;
+
+    public static ArchivedLoggedEvent of(LoggedEvent aEvent)
+    {
+        ArchivedLoggedEvent archivedEvent = new ArchivedLoggedEvent();
+        archivedEvent.id = aEvent.getId();
+        archivedEvent.event = aEvent.getEvent();
+        archivedEvent.created = aEvent.getCreated();
+        archivedEvent.user = aEvent.getUser();
+        archivedEvent.project = aEvent.getProject();
+        archivedEvent.document = aEvent.getDocument();
+        archivedEvent.annotator = aEvent.getAnnotator();
+        archivedEvent.recommender = aEvent.getRecommender();
+        archivedEvent.details = aEvent.getDetails();
+        return archivedEvent;
+    }
+
+    public LoggedEvent toLoggedEvent()
+    {
+        LoggedEvent loggedEvent = new LoggedEvent(id);
+        loggedEvent.setEvent(event);
+        loggedEvent.setCreated(created);
+        loggedEvent.setUser(user);
+        loggedEvent.setProject(project);
+        loggedEvent.setDocument(document);
+        loggedEvent.setAnnotator(annotator);
+        loggedEvent.setRecommender(recommender);
+        loggedEvent.setDetails(details);
+        return loggedEvent;
+    }
+}
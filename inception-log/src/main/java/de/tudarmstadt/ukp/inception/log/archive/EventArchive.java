@@ -0,0 +1,313 @@
+/*
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.log.archive;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.util.Comparator.comparing;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.RepositoryProperties;
+import de.tudarmstadt.ukp.clarin.webanno.api.event.BeforeProjectRemovedEvent;
+import de.tudarmstadt.ukp.inception.log.model.LoggedEvent;
+
+/**
+ * Archive for logged events which have been moved out of the database. The archive is partitioned
+ * by project and by the month in which the events were created. Every time events are archived,
+ * a new compressed file is added to each partition affected. Files are written under a temporary
+ * name and then renamed, so readers never see a partially written file.
+ * <p>
+ * Next to each file, a {@link PartitionSummary summary} of the users, event types and recommenders
+ * in the file is stored, so that looking for specific events only needs to decompress the files
+ * which may contain them.
+ * <p>
+ * Layout: {@code event-log-archive/<project>/<yyyy-MM>.<first event ID>.log.gz} and
+ * {@code event-log-archive/<project>/<yyyy-MM>.<first event ID>.summary.json}
+ */
+@Component
+public class EventArchive
+{
+    private static final String ARCHIVE_FOLDER = "event-log-archive";
+    private static final String SUFFIX = ".log.gz";
+    private static final String SUMMARY_SUFFIX = ".summary.json";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final File archiveDir;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Autowired
+    public EventArchive(RepositoryProperties aRepositoryProperties)
+    {
+        this(new File(aRepositoryProperties.getPath(), ARCHIVE_FOLDER));
+    }
+
+    public EventArchive(File aArchiveDir)
+    {
+        archiveDir = aArchiveDir;
+    }
+
+    /**
+     * Append the given events to the archive.
+     */
+    public void archive(Collection<LoggedEvent> aEvents) throws IOException
+    {
+        // Group the events by project and month
+        Map<File, Map<YearMonth, List<LoggedEvent>>> partitions = new TreeMap<>();
+        for (LoggedEvent event : aEvents) {
+            partitions.computeIfAbsent(getProjectDir(event.getProject()), k -> new TreeMap<>())
+                    .computeIfAbsent(toMonth(event.getCreated()), k -> new ArrayList<>())
+                    .add(event);
+        }
+
+        for (Map.Entry<File, Map<YearMonth, List<LoggedEvent>>> project : partitions.entrySet()) {
+            Files.createDirectories(project.getKey().toPath());
+            for (Map.Entry<YearMonth, List<LoggedEvent>> month : project.getValue().entrySet()) {
+                writePartitionFile(project.getKey(), month.getKey(), month.getValue());
+            }
+        }
+    }
+
+    private void writePartitionFile(File aProjectDir, YearMonth aMonth, List<LoggedEvent> aEvents)
+        throws IOException
+    {
+        // Zero-pad the ID so that the files of a partition sort in the order they were written
+        String name = String.format("%s.%020d%s", aMonth, aEvents.get(0).getId(), SUFFIX);
+        File file = new File(aProjectDir, name);
+        File tempFile = new File(aProjectDir, name + ".tmp");
+
+        // The summary goes first - a summary without a partition file is simply never read
+        writeSummary(file, PartitionSummary.of(aEvents));
+
+        try (JsonGenerator jGenerator = mapper.getFactory().createGenerator(
+                new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile),
+                        BUFFER_SIZE), BUFFER_SIZE),
+                JsonEncoding.UTF8)) {
+            jGenerator.setPrettyPrinter(new MinimalPrettyPrinter("\n"));
+            for (LoggedEvent event : aEvents) {
+                jGenerator.writeObject(ArchivedLoggedEvent.of(event));
+            }
+        }
+
+        Files.move(tempFile.toPath(), file.toPath(), ATOMIC_MOVE);
+        log.debug("Archived {} events to [{}]", aEvents.size(), file);
+    }
+
+    /**
+     * Pass the archived events of the given project to the consumer in the order in which they
+     * were logged. Partitions outside the given time range are skipped without being read.
+     *
+     * @param aFrom
+     *            if not {@code null}, only events created at or after this time are included.
+     * @param aTo
+     *            if not {@code null}, only events created before this time are included.
+     */
+    public void forEachArchivedEvent(long aProject, Date aFrom, Date aTo,
+            Consumer<LoggedEvent> aConsumer)
+        throws IOException
+    {
+        YearMonth fromMonth = aFrom != null ? toMonth(aFrom) : null;
+        YearMonth toMonth = aTo != null ? toMonth(aTo) : null;
+
+        for (File file : listPartitionFiles(aProject)) {
+            YearMonth month = getMonth(file);
+            if ((fromMonth != null && month.isBefore(fromMonth))
+                    || (toMonth != null && month.isAfter(toMonth))) {
+                continue;
+            }
+
+            readPartitionFile(file, event -> {
+                if ((aFrom == null || !event.getCreated().before(aFrom))
+                        && (aTo == null || event.getCreated().before(aTo))) {
+                    aConsumer.accept(event);
+                }
+            });
+        }
+    }
+
+    /**
+     * List the most recent archived events of the given project which match the given values,
+     * newest first. Values which are {@code null} are not checked. Partitions are read starting
+     * with the most recent one until enough events have been found. Partitions which according
+     * to their summary do not contain any matching events are skipped without being read.
+     */
+    public List<LoggedEvent> listArchivedEvents(long aProject, String aUser, String aEvent,
+            Long aRecommender, int aMaxSize)
+        throws IOException
+    {
+        List<LoggedEvent> result = new ArrayList<>();
+
+        // Files are sorted by month, so reading them backwards and processing one month at a
+        // time yields the events newest first
+        List<File> files = listPartitionFiles(aProject);
+        Collections.reverse(files);
+        Iterator<File> i = files.iterator();
+        File next = i.hasNext() ? i.next() : null;
+        while (next != null && result.size() < aMaxSize) {
+            YearMonth month = getMonth(next);
+            List<LoggedEvent> matches = new ArrayList<>();
+            while (next != null && getMonth(next).equals(month)) {
+                if (readSummary(next).mayContain(aUser, aEvent, aRecommender)) {
+                    readPartitionFile(next, event -> {
+                        if ((aUser == null || aUser.equals(event.getUser()))
+                                && (aEvent == null || aEvent.equals(event.getEvent()))
+                                && (aRecommender == null
+                                        || aRecommender.equals(event.getRecommender()))) {
+                            matches.add(event);
+                        }
+                    });
+                }
+                next = i.hasNext() ? i.next() : null;
+            }
+
+            matches.sort(comparing(LoggedEvent::getCreated).reversed());
+            result.addAll(matches.subList(0, Math.min(matches.size(), aMaxSize - result.size())));
+        }
+
+        return result;
+    }
+
+    /**
+     * Remove the archived events of a project when the project is removed.
+     */
+    @EventListener
+    public void beforeProjectRemove(BeforeProjectRemovedEvent aEvent) throws IOException
+    {
+        Path projectDir = getProjectDir(aEvent.getProject().getId()).toPath();
+        if (!Files.exists(projectDir)) {
+            return;
+        }
+
+        try (Stream<Path> paths = Files.walk(projectDir)) {
+            // Delete the files before the directory containing them
+            for (Path path : (Iterable<Path>) paths.sorted(Collections.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+
+        log.info("Removed archived events of project [{}]({})",
+                aEvent.getProject().getName(), aEvent.getProject().getId());
+    }
+
+    /**
+     * Read the summary of the given partition file. Files archived before summaries were
+     * introduced have none - for these, a summary is created from the file itself.
+     */
+    private PartitionSummary readSummary(File aPartitionFile) throws IOException
+    {
+        File summaryFile = getSummaryFile(aPartitionFile);
+        if (summaryFile.exists()) {
+            return mapper.readValue(summaryFile, PartitionSummary.class);
+        }
+
+        List<LoggedEvent> events = new ArrayList<>();
+        readPartitionFile(aPartitionFile, events::add);
+        PartitionSummary summary = PartitionSummary.of(events);
+        writeSummary(aPartitionFile, summary);
+        return summary;
+    }
+
+    private void writeSummary(File aPartitionFile, PartitionSummary aSummary) throws IOException
+    {
+        File summaryFile = getSummaryFile(aPartitionFile);
+        File tempFile = new File(summaryFile.getParentFile(), summaryFile.getName() + ".tmp");
+        mapper.writeValue(tempFile, aSummary);
+        Files.move(tempFile.toPath(), summaryFile.toPath(), ATOMIC_MOVE);
+    }
+
+    private static File getSummaryFile(File aPartitionFile)
+    {
+        String name = aPartitionFile.getName();
+        return new File(aPartitionFile.getParentFile(),
+                name.substring(0, name.length() - SUFFIX.length()) + SUMMARY_SUFFIX);
+    }
+
+    private void readPartitionFile(File aFile, Consumer<LoggedEvent> aConsumer) throws IOException
+    {
+        try (JsonParser jParser = mapper.getFactory().createParser(new GZIPInputStream(
+                new BufferedInputStream(new FileInputStream(aFile), BUFFER_SIZE), BUFFER_SIZE))) {
+            Iterator<ArchivedLoggedEvent> i = jParser.readValuesAs(ArchivedLoggedEvent.class);
+            while (i.hasNext()) {
+                aConsumer.accept(i.next().toLoggedEvent());
+            }
+        }
+    }
+
+    private List<File> listPartitionFiles(long aProject)
+    {
+        File[] files = getProjectDir(aProject).listFiles(f -> f.getName().endsWith(SUFFIX));
+        if (files == null) {
+            return new ArrayList<>();
+        }
+
+        Arrays.sort(files, comparing(File::getName));
+        return new ArrayList<>(Arrays.asList(files));
+    }
+
+    private File getProjectDir(long aProject)
+    {
+        return new File(archiveDir, Long.toString(aProject));
+    }
+
+    private static YearMonth getMonth(File aPartitionFile)
+    {
+        String name = aPartitionFile.getName();
+        return YearMonth.parse(name.substring(0, name.indexOf('.')));
+    }
+
+    private static YearMonth toMonth(Date aDate)
+    {
+        return YearMonth.from(aDate.toInstant().atZone(ZoneOffset.UTC));
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.log.archive;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import de.tudarmstadt.ukp.inception.log.EventRepository;
+import de.tudarmstadt.ukp.inception.log.model.LoggedEvent;
+
+/**
+ * Keeps the event log in the database bounded by moving events older than a configurable number
+ * of days into the {@link EventArchive}. Archival runs once a day in the background. It is
+ * disabled unless {@code event-log.retention.hot-days} is set to a positive value.
+ */
+@Component
+public class EventLogRetention
+    implements DisposableBean
+{
+    private static final int CHUNK_SIZE = 1000;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final EventRepository eventRepository;
+    private final EventArchive archive;
+
+    private @Value("${event-log.retention.hot-days:-1}") int hotDays;
+
+    private ScheduledExecutorService executor;
+
+    @Autowired
+    public EventLogRetention(EventRepository aEventRepository, EventArchive aArchive)
+    {
+        eventRepository = aEventRepository;
+        archive = aArchive;
+    }
+
+    @EventListener
+    public synchronized void onContextRefreshedEvent(ContextRefreshedEvent aEvent)
+    {
+        if (hotDays <= 0 || executor != null) {
+            return;
+        }
+
+        log.info("Archiving logged events older than {} days", hotDays);
+        executor = Executors.newSingleThreadScheduledExecutor();
+        executor.scheduleWithFixedDelay(this::runArchival, 5, TimeUnit.DAYS.toMinutes(1),
+                TimeUnit.MINUTES);
+    }
+
+    @Override
+    public synchronized void destroy()
+    {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private void runArchival()
+    {
+        try {
+            archiveEventsBefore(
+                    new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(hotDays)));
+        }
+        catch (Exception e) {
+            log.error("Unable to archive logged events", e);
+        }
+    }
+
+    /**
+     * Move all events created before the given time to the archive. The events are processed in
+     * chunks. Each chunk is written to the archive before it is deleted from the database, so an
+     * interruption can at worst leave a chunk both in the archive and in the database.
+     *
+     * @return the number of archived events.
+     */
+    public int archiveEventsBefore(Date aTime) throws IOException
+    {
+        long start = System.currentTimeMillis();
+        int total = 0;
+        List<LoggedEvent> chunk;
+        do {
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+
+            chunk = eventRepository.listLoggedEventsCreatedBefore(aTime, CHUNK_SIZE);
+            archive.archive(chunk);
+            eventRepository.delete(chunk);
+            total += chunk.size();
+        }
+        while (chunk.size() == CHUNK_SIZE);
+
+        if (total > 0) {
+            log.info("Archived {} logged events created before {} ({}ms)", total, aTime,
+                    System.currentTimeMillis() - start);
+        }
+
+        return total;
+    }
+}
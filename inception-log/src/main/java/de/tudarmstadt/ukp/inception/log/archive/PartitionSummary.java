@@ -0,0 +1,70 @@
+/*
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.log.archive;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import de.tudarmstadt.ukp.inception.log.model.LoggedEvent;
+
+/**
+ * Summary of the users, event types and recommenders occurring in a partition file of the
+ * {@link EventArchive}. It is stored next to the partition file and allows skipping files which
+ * cannot contain any matching events without decompressing them.
+ */
+@JsonPropertyOrder(alphabetic = true)
+@JsonIgnoreProperties(ignoreUnknown = true)
+class PartitionSummary
+{
+    @JsonProperty("users")
+    public Set<String> users = new TreeSet<>();
+
+    @JsonProperty("events")
+    public Set<String> events = new TreeSet<>();
+
+    @JsonProperty("recommenders")
+    public Set<Long> recommenders = new TreeSet<>();
+
+    public static PartitionSummary of(Iterable<LoggedEvent> aEvents)
+    {
+        PartitionSummary summary = new PartitionSummary();
+        for (LoggedEvent event : aEvents) {
+            summary.users.add(event.getUser());
+            summary.events.add(event.getEvent());
+            if (event.getRecommender() != null) {
+                summary.recommenders.add(event.getRecommender());
+            }
+        }
+        return summary;
+    }
+
+    /**
+     * @return whether the partition may contain events matching all of the given values. Values
+     *         which are {@code null} are not checked.
+     */
+    public boolean mayContain(String aUser, String aEvent, Long aRecommender)
+    {
+        return (aUser == null || users.contains(aUser))
+                && (aEvent == null || events.contains(aEvent))
+                && (aRecommender == null || recommenders.contains(aRecommender));
+    }
+}
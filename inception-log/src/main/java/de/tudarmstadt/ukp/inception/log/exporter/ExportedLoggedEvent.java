@@ -50,6 +50,9 @@ public class ExportedLoggedEvent
     @JsonProperty("annotator")
     private String annotator;
 
+    @JsonProperty("recommender")
+    private Long recommender;
+
     @JsonProperty("details")
     @JsonRawValue
     @JsonDeserialize(using = RawJsonDeserializer.class)
@@ -115,6 +118,16 @@ public class ExportedLoggedEvent
         annotator = aAnnotator;
     }
 
+    public Long getRecommender()
+    {
+        return recommender;
+    }
+
+    public void setRecommender(Long aRecommender)
+    {
+        recommender = aRecommender;
+    }
+
     public String getDetails()
     {
         return details;
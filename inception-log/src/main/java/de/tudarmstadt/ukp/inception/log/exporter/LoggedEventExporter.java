@@ -17,25 +17,35 @@
  */
 package de.tudarmstadt.ukp.inception.log.exporter;
 
+import static de.tudarmstadt.ukp.inception.log.EventRepositoryImpl.EVENT_RECOMMENDER_EVALUATION;
+import static de.tudarmstadt.ukp.inception.log.EventRepositoryImpl.extractRecommenderId;
 import static java.util.Arrays.asList;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import com.fasterxml.jackson.core.JsonEncoding;
@@ -63,10 +73,18 @@ public class LoggedEventExporter implements ProjectExporter
     private static final Logger LOG = LoggerFactory.getLogger(LoggedEventExporter.class);
 
     private static final String EVENT_LOG = "event.log";
+    private static final String EVENT_LOG_COMPRESSED = "event.log.gz";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
 
     private final EventRepository eventRepository;
     private final DocumentService documentService;
 
+    /**
+     * If positive, only events logged within this number of days before the export are exported.
+     */
+    private @Value("${event-log.export.max-age-days:-1}") int maxAgeDays;
+
     @Autowired
     public LoggedEventExporter(EventRepository aEventRepository, DocumentService aDocumentService)
     {
@@ -97,15 +115,23 @@ public class LoggedEventExporter implements ProjectExporter
             documentNameIndex.put(doc.getId(), doc.getName());
         });
         
-        File eventLog = new File(aFile, EVENT_LOG);
+        Date from = null;
+        if (maxAgeDays > 0) {
+            from = new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(maxAgeDays));
+        }
+
+        // The event log compresses very well and can become large, so it is written compressed
+        File eventLog = new File(aFile, EVENT_LOG_COMPRESSED);
         eventLog.createNewFile();
-        try (JsonGenerator jGenerator = new ObjectMapper().getFactory()
-                .createGenerator(new FileOutputStream(eventLog), JsonEncoding.UTF8)) {
+        try (JsonGenerator jGenerator = new ObjectMapper().getFactory().createGenerator(
+                new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(eventLog),
+                        BUFFER_SIZE), BUFFER_SIZE),
+                JsonEncoding.UTF8)) {
 
             jGenerator.setPrettyPrinter(new MinimalPrettyPrinter("\n"));
             
             // Stream data
-            eventRepository.forEachLoggedEvent(project, event -> {
+            eventRepository.forEachLoggedEvent(project, from, null, event -> {
                 String documentName = null;
                 // If the document ID is -1, then there is no document linked up to this event.
                 // In this case, we do not need to try resolving the IDs to a name.
@@ -130,6 +156,7 @@ public class LoggedEventExporter implements ProjectExporter
                 exportedEvent.setEvent(event.getEvent());
                 exportedEvent.setAnnotator(event.getAnnotator());
                 exportedEvent.setUser(event.getUser());
+                exportedEvent.setRecommender(event.getRecommender());
                 exportedEvent.setDetails(event.getDetails());
                 
                 // Write DTO
@@ -159,7 +186,13 @@ public class LoggedEventExporter implements ProjectExporter
     {
         int eventCount = 0;
         
-        ZipEntry entry = aZip.getEntry(EVENT_LOG);
+        // Archives created by older versions contain an uncompressed event log
+        boolean compressed = true;
+        ZipEntry entry = aZip.getEntry(EVENT_LOG_COMPRESSED);
+        if (entry == null) {
+            compressed = false;
+            entry = aZip.getEntry(EVENT_LOG);
+        }
         
         if (entry == null) {
             LOG.info("No event log available for import in project [{}]", aProject.getName());
@@ -172,8 +205,12 @@ public class LoggedEventExporter implements ProjectExporter
                         .getSourceDocument(aProject, documentName));
 
         
-        try (JsonParser jParser = new ObjectMapper().getFactory()
-                .createParser(aZip.getInputStream(entry))) {
+        InputStream is = new BufferedInputStream(aZip.getInputStream(entry), BUFFER_SIZE);
+        if (compressed) {
+            is = new GZIPInputStream(is, BUFFER_SIZE);
+        }
+
+        try (JsonParser jParser = new ObjectMapper().getFactory().createParser(is)) {
 
             // Persist events in batches to speed up import process
             List<LoggedEvent> batch = new ArrayList<>();
@@ -196,6 +233,13 @@ public class LoggedEventExporter implements ProjectExporter
                 event.setCreated(exportedEvent.getCreated());
                 event.setAnnotator(exportedEvent.getAnnotator());
                 event.setDetails(exportedEvent.getDetails());
+                event.setRecommender(exportedEvent.getRecommender());
+
+                // Archives created by older versions carry the recommender only in the details
+                if (event.getRecommender() == null
+                        && EVENT_RECOMMENDER_EVALUATION.equals(event.getEvent())) {
+                    event.setRecommender(extractRecommenderId(event.getDetails()));
+                }
 
                 // If an event is not associated with a document, then the default ID -1 is used
                 if (exportedEvent.getDocumentName() != null) {
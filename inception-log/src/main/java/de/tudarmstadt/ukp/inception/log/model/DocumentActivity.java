@@ -0,0 +1,127 @@
+/*
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.log.model;
+
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+
+/**
+ * Summary of the {@link LoggedEvent logged events} which is updated whenever an event is logged.
+ * For every combination of project, user, document and event type, it points to the latest
+ * logged event. This allows listing the documents a user has recently worked on without
+ * aggregating over the whole event log.
+ */
+@Entity
+@Table(name = "document_activity")
+public class DocumentActivity
+{
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private long project;
+
+    @Column(nullable = false)
+    private String user;
+
+    @Column(nullable = false)
+    private long document;
+
+    @Column(nullable = false)
+    private String event;
+
+    /**
+     * Creation time of the latest logged event.
+     */
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(nullable = false)
+    private Date created;
+
+    /**
+     * ID of the latest logged event.
+     */
+    @Column(name = "logged_event", nullable = false)
+    private long loggedEvent;
+
+    public DocumentActivity()
+    {
+        // Needed by JPA
+    }
+
+    public DocumentActivity(LoggedEvent aEvent)
+    {
+        project = aEvent.getProject();
+        user = aEvent.getUser();
+        document = aEvent.getDocument();
+        event = aEvent.getEvent();
+        update(aEvent);
+    }
+
+    /**
+     * Point the summary to the given event.
+     */
+    public void update(LoggedEvent aEvent)
+    {
+        created = aEvent.getCreated();
+        loggedEvent = aEvent.getId();
+    }
+
+    public Long getId()
+    {
+        return id;
+    }
+
+    public long getProject()
+    {
+        return project;
+    }
+
+    public String getUser()
+    {
+        return user;
+    }
+
+    public long getDocument()
+    {
+        return document;
+    }
+
+    public String getEvent()
+    {
+        return event;
+    }
+
+    public Date getCreated()
+    {
+        return created;
+    }
+
+    public long getLoggedEvent()
+    {
+        return loggedEvent;
+    }
+}
@@ -69,6 +69,14 @@ public class LoggedEvent
     @Column(nullable = true)
     private String annotator;
     
+    /**
+     * If the event does not relate to a recommender, then the recommender ID should be null. The
+     * recommender ID is also contained in the details, but it is stored in a dedicated indexed
+     * column so that the events of a recommender can be looked up without scanning the details.
+     */
+    @Column(nullable = true)
+    private Long recommender;
+
     @Lob
     @Column(length = 64000, nullable = true)
     private String details;
@@ -79,7 +87,7 @@ public class LoggedEvent
     }
 
     /**
-     * For testing only.
+     * For testing and for restoring events from the event archive.
      */
     public LoggedEvent(long aId)
     {
@@ -136,6 +144,16 @@ public class LoggedEvent
         event = aEvent;
     }
 
+    public Long getRecommender()
+    {
+        return recommender;
+    }
+
+    public void setRecommender(Long aRecommender)
+    {
+        recommender = aRecommender;
+    }
+
     public String getDetails()
     {
         return details;
@@ -185,6 +203,10 @@ public class LoggedEvent
             builder.append(", annotator=");
             builder.append(annotator);
         }
+        if (recommender != null) {
+            builder.append(", recommender=");
+            builder.append(recommender);
+        }
         if (details != null) {
             builder.append(", details=");
             builder.append(details);
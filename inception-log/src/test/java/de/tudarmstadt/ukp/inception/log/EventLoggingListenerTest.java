@@ -0,0 +1,138 @@
+/*
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.log;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.security.core.session.SessionCreationEvent;
+
+import de.tudarmstadt.ukp.inception.log.adapter.EventLoggingAdapter;
+import de.tudarmstadt.ukp.inception.log.adapter.GenericEventAdapter;
+
+public class EventLoggingListenerTest
+{
+    private @Mock EventRepository repo;
+
+    private CountingAdapter adapter;
+
+    private EventLoggingListener sut;
+
+    @Before
+    public void setUp()
+    {
+        MockitoAnnotations.initMocks(this);
+
+        adapter = new CountingAdapter();
+        sut = new EventLoggingListener(repo, asList((EventLoggingAdapter<?>) adapter));
+        sut.init();
+    }
+
+    @Test
+    public void thatAdapterIsResolvedOncePerEventClass()
+    {
+        sut.onApplicationEvent(new TestEvent(this));
+        sut.onApplicationEvent(new TestEvent(this));
+
+        assertThat(adapter.acceptCalls).isEqualTo(1);
+        verify(repo, times(2)).create(any());
+    }
+
+    @Test
+    public void thatEventsWhichAreNotLoggedAreCached()
+    {
+        // Session events are neither accepted by the adapter nor by the generic adapter
+        sut.onApplicationEvent(new SessionCreationEvent(this));
+        sut.onApplicationEvent(new SessionCreationEvent(this));
+
+        assertThat(adapter.acceptCalls).isEqualTo(1);
+        verify(repo, never()).create(any());
+    }
+
+    @Test
+    public void thatFailureToLogDoesNotPropagate()
+    {
+        doThrow(new IllegalStateException("constraint violation")).when(repo).create(any());
+
+        sut.onApplicationEvent(new TestEvent(this));
+
+        verify(repo).create(any());
+    }
+
+    @Test
+    public void thatGenericAdapterIsUsedForOtherEvents()
+    {
+        assertThat(sut.getAdapter(new OtherEvent(this)).get())
+                .isSameAs(GenericEventAdapter.INSTANCE);
+        assertThat(sut.getAdapter(
+                new ContextRefreshedEvent(new StaticApplicationContext()))).isEmpty();
+    }
+
+    private static class TestEvent
+        extends ApplicationEvent
+    {
+        private static final long serialVersionUID = 1L;
+
+        public TestEvent(Object aSource)
+        {
+            super(aSource);
+        }
+    }
+
+    private static class OtherEvent
+        extends ApplicationEvent
+    {
+        private static final long serialVersionUID = 1L;
+
+        public OtherEvent(Object aSource)
+        {
+            super(aSource);
+        }
+    }
+
+    private static class CountingAdapter
+        implements EventLoggingAdapter<TestEvent>
+    {
+        private int acceptCalls;
+
+        @Override
+        public boolean accepts(Object aEvent)
+        {
+            acceptCalls++;
+            return aEvent instanceof TestEvent;
+        }
+
+        @Override
+        public String getUser(TestEvent aEvent)
+        {
+            return "user";
+        }
+    }
+}
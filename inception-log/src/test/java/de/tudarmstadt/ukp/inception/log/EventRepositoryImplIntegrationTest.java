@@ -18,6 +18,7 @@
 package de.tudarmstadt.ukp.inception.log;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 
 import java.text.DateFormat;
 import java.text.ParseException;
@@ -28,7 +29,9 @@ import java.util.List;
 
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
@@ -40,6 +43,8 @@ import org.springframework.transaction.annotation.Transactional;
 import de.tudarmstadt.ukp.clarin.webanno.api.WebAnnoConst;
 import de.tudarmstadt.ukp.clarin.webanno.model.Project;
 import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
+import de.tudarmstadt.ukp.inception.log.archive.EventArchive;
+import de.tudarmstadt.ukp.inception.log.archive.EventLogRetention;
 import de.tudarmstadt.ukp.inception.log.model.LoggedEvent;
 
 @RunWith(SpringJUnit4ClassRunner.class)
@@ -55,6 +60,8 @@ public class EventRepositoryImplIntegrationTest  {
     private static final String EVENT_TYPE_AFTER_ANNO_EVENT = "AfterAnnotationUpdateEvent";
     private static final String SPAN_CREATED_EVENT = "SpanCreatedEvent";
 
+    public @Rule TemporaryFolder tempFolder = new TemporaryFolder();
+
     @Autowired
     private TestEntityManager testEntityManager;
 
@@ -121,6 +128,108 @@ public class EventRepositoryImplIntegrationTest  {
                 .hasSize(2).contains(le, le3);
     }
 
+    @Test
+    public void getLoggedEventsForDoc_WithLaterLoggedEvent_ShouldReturnLaterLoggedEvent()
+        throws ParseException
+    {
+        DateFormat df = new SimpleDateFormat("yy-MM-dd HH:mm:ss");
+        le = buildLoggedEvent(project, USERNAME, EVENT_TYPE_AFTER_ANNO_EVENT,
+                df.parse("19-04-03 10:00:00"), 1, DETAIL_JSON);
+        LoggedEvent laterEvent = buildLoggedEvent(project, USERNAME, SPAN_CREATED_EVENT,
+                df.parse("19-04-03 11:00:00"), 1, DETAIL_JSON);
+        LoggedEvent earlierEvent = buildLoggedEvent(project, USERNAME, SPAN_CREATED_EVENT,
+                df.parse("19-04-03 09:00:00"), 1, DETAIL_JSON);
+
+        sut.create(le);
+        sut.create(laterEvent);
+        sut.create(earlierEvent);
+        List<LoggedEvent> loggedEvents = sut.listUniqueLoggedEventsForDoc(project,
+                user.getUsername(), new String[] {EVENT_TYPE_AFTER_ANNO_EVENT, SPAN_CREATED_EVENT},
+                5);
+
+        assertThat(loggedEvents).as("Check that only the latest logged event is found")
+                .containsExactly(laterEvent);
+    }
+
+    @Test
+    public void getLoggedEventsForDoc_WithEventsLoggedBeforeSummary_ShouldReturnMigratedEvents()
+        throws ParseException
+    {
+        DateFormat df = new SimpleDateFormat("yy-MM-dd HH:mm:ss");
+        le = buildLoggedEvent(project, USERNAME, EVENT_TYPE_AFTER_ANNO_EVENT,
+                df.parse("19-04-03 10:00:00"), 1, DETAIL_JSON);
+        LoggedEvent otherDocEvent = buildLoggedEvent(project, USERNAME,
+                EVENT_TYPE_AFTER_ANNO_EVENT, df.parse("19-04-03 09:00:00"), 2, DETAIL_JSON);
+        // Bypass the repository so that the summary is not updated
+        testEntityManager.persist(le);
+        testEntityManager.persist(otherDocEvent);
+
+        sut.migrateDocumentActivities();
+        List<LoggedEvent> loggedEvents = sut.listUniqueLoggedEventsForDoc(project,
+                user.getUsername(), new String[] {EVENT_TYPE_AFTER_ANNO_EVENT}, 5);
+
+        assertThat(loggedEvents).as("Check that the logged events are found after migration")
+                .extracting(LoggedEvent::getId)
+                .containsExactly(le.getId(), otherDocEvent.getId());
+    }
+
+    @Test
+    public void getLoggedEventsForDoc_WithEventsLoggedOutOfOrder_ShouldReturnLatestMigratedEvent()
+        throws ParseException
+    {
+        DateFormat df = new SimpleDateFormat("yy-MM-dd HH:mm:ss");
+        LoggedEvent laterEvent = buildLoggedEvent(project, USERNAME, EVENT_TYPE_AFTER_ANNO_EVENT,
+                df.parse("19-04-03 11:00:00"), 1, DETAIL_JSON);
+        LoggedEvent earlierEvent = buildLoggedEvent(project, USERNAME,
+                EVENT_TYPE_AFTER_ANNO_EVENT, df.parse("19-04-03 09:00:00"), 1, DETAIL_JSON);
+        // The earlier event gets the higher ID
+        testEntityManager.persist(laterEvent);
+        testEntityManager.persist(earlierEvent);
+
+        sut.migrateDocumentActivities();
+        List<LoggedEvent> loggedEvents = sut.listUniqueLoggedEventsForDoc(project,
+                user.getUsername(), new String[] {EVENT_TYPE_AFTER_ANNO_EVENT}, 5);
+
+        assertThat(loggedEvents).as("Check that the latest event is found after migration")
+                .extracting(LoggedEvent::getId)
+                .containsExactly(laterEvent.getId());
+    }
+
+    @Test
+    public void getLoggedEventsForDoc_WithArchivedLoggedEvents_ShouldReturnAllDocuments()
+        throws Exception
+    {
+        EventArchive archive = new EventArchive(tempFolder.newFolder());
+        sut = new EventRepositoryImpl(testEntityManager.getEntityManager(), archive);
+
+        DateFormat df = new SimpleDateFormat("yy-MM-dd HH:mm:ss");
+        LoggedEvent oldEvent = buildLoggedEvent(project, USERNAME, EVENT_TYPE_AFTER_ANNO_EVENT,
+                df.parse("19-01-03 10:00:00"), 1, DETAIL_JSON);
+        LoggedEvent olderEvent = buildLoggedEvent(project, USERNAME, EVENT_TYPE_AFTER_ANNO_EVENT,
+                df.parse("19-01-02 10:00:00"), 2, DETAIL_JSON);
+        LoggedEvent recentEvent = buildLoggedEvent(project, USERNAME,
+                EVENT_TYPE_AFTER_ANNO_EVENT, df.parse("19-04-03 10:00:00"), 3, DETAIL_JSON);
+        sut.create(oldEvent, olderEvent, recentEvent);
+
+        int archived = new EventLogRetention(sut, archive)
+                .archiveEventsBefore(df.parse("19-02-01 00:00:00"));
+        testEntityManager.clear();
+
+        List<LoggedEvent> loggedEvents = sut.listUniqueLoggedEventsForDoc(project,
+                user.getUsername(), new String[] {EVENT_TYPE_AFTER_ANNO_EVENT}, 3);
+
+        assertThat(archived).isEqualTo(2);
+        assertThat(loggedEvents)
+                .as("Check that documents are still listed after their events were archived")
+                .extracting(LoggedEvent::getId, LoggedEvent::getDocument)
+                .containsExactly(
+                        tuple(recentEvent.getId(), 3l),
+                        tuple(oldEvent.getId(), 1l),
+                        tuple(olderEvent.getId(), 2l));
+        assertThat(loggedEvents.get(1).getCreated().getTime())
+                .isEqualTo(oldEvent.getCreated().getTime());
+    }
+
     @Test
     public void getLoggedEvents_WithOneStoredLoggedEvent_ShouldReturnStoredLoggedEvent()
     {
@@ -249,6 +358,28 @@ public class EventRepositoryImplIntegrationTest  {
         assertThat(loggedEvents).as("Check that no logged event is found").isEmpty();
     }
     
+    @Test
+    public void getLoggedEvents_WithEventLoggedBeforeRecommenderColumn_ShouldReturnMigratedEvent()
+    {
+        le = buildLoggedEvent(project, user.getUsername(), EVENT_TYPE_RECOMMENDER_EVALUATION_EVENT,
+                new Date(), -1, DETAIL_JSON);
+        le.setRecommender(null);
+        LoggedEvent brokenEvent = buildLoggedEvent(project, user.getUsername(),
+                EVENT_TYPE_RECOMMENDER_EVALUATION_EVENT, new Date(), -1, "<ERROR>");
+        brokenEvent.setRecommender(null);
+        sut.create(le, brokenEvent);
+
+        sut.migrateRecommenderColumn();
+
+        List<LoggedEvent> loggedEvents = sut.listLoggedEventsForRecommender(project,
+                user.getUsername(), EVENT_TYPE_RECOMMENDER_EVALUATION_EVENT, 5, RECOMMENDER_ID);
+
+        assertThat(loggedEvents).as("Check that the migrated logged event is found")
+                .extracting(LoggedEvent::getId).containsExactly(le.getId());
+        assertThat(testEntityManager.find(LoggedEvent.class, brokenEvent.getId()).getRecommender())
+                .isEqualTo(-1L);
+    }
+
     // Helper
     private Project createProject(String aName)
     {
@@ -265,6 +396,7 @@ public class EventRepositoryImplIntegrationTest  {
         le.setUser(aUsername);
         le.setProject(aProject.getId());
         le.setDetails(aDetails);
+        le.setRecommender((long) RECOMMENDER_ID);
         le.setCreated(aDate);
         le.setEvent(aEventType);
         le.setDocument(aDocId);
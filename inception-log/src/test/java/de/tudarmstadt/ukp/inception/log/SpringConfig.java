@@ -24,6 +24,8 @@ import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.ComponentScan.Filter;
 import org.springframework.context.annotation.FilterType;
 
+import de.tudarmstadt.ukp.inception.log.archive.EventArchive;
+import de.tudarmstadt.ukp.inception.log.archive.EventLogRetention;
 import de.tudarmstadt.ukp.inception.log.exporter.LoggedEventExporter;
 
 @SpringBootConfiguration
@@ -34,7 +36,9 @@ import de.tudarmstadt.ukp.inception.log.exporter.LoggedEventExporter;
         },
         excludeFilters = {
                 @Filter(type = FilterType.ASSIGNABLE_TYPE, classes = { 
-                        LoggedEventExporter.class
+                        LoggedEventExporter.class,
+                        EventArchive.class,
+                        EventLogRetention.class
                 })
         })
 @EntityScan(
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.log.archive;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.event.BeforeProjectRemovedEvent;
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.inception.log.model.LoggedEvent;
+
+public class EventArchiveTest
+{
+    public @Rule TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private File archiveDir;
+    private EventArchive sut;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        archiveDir = tempFolder.newFolder();
+        sut = new EventArchive(archiveDir);
+    }
+
+    @Test
+    public void thatArchivedEventsCanBeReadBack() throws Exception
+    {
+        sut.archive(asList(
+                event(1, 1, date(2019, 1, 10), null),
+                event(2, 1, date(2019, 2, 10), 7l),
+                event(3, 2, date(2019, 2, 11), null)));
+        sut.archive(asList(
+                event(4, 1, date(2019, 2, 20), null)));
+
+        List<LoggedEvent> events = new ArrayList<>();
+        sut.forEachArchivedEvent(1, null, null, events::add);
+
+        assertThat(events)
+                .extracting(LoggedEvent::getId)
+                .containsExactly(1l, 2l, 4l);
+        assertThat(events.get(1).getRecommender()).isEqualTo(7l);
+        assertThat(events.get(1).getDetails()).isEqualTo("{\"value\":2}");
+    }
+
+    @Test
+    public void thatTimeRangeIsRespected() throws Exception
+    {
+        sut.archive(asList(
+                event(1, 1, date(2019, 1, 10), null),
+                event(2, 1, date(2019, 2, 10), null),
+                event(3, 1, date(2019, 2, 20), null),
+                event(4, 1, date(2019, 3, 10), null)));
+
+        List<LoggedEvent> events = new ArrayList<>();
+        sut.forEachArchivedEvent(1, date(2019, 2, 1), date(2019, 2, 15), events::add);
+
+        assertThat(events)
+                .extracting(LoggedEvent::getId)
+                .containsExactly(2l);
+    }
+
+    @Test
+    public void thatMostRecentMatchingEventsAreListedFirst() throws Exception
+    {
+        sut.archive(asList(
+                event(1, 1, date(2019, 1, 10), 7l),
+                event(2, 1, date(2019, 1, 20), 7l),
+                event(3, 1, date(2019, 2, 10), 8l)));
+        sut.archive(asList(
+                event(4, 1, date(2019, 2, 20), 7l)));
+
+        List<LoggedEvent> events = sut.listArchivedEvents(1, "user", "SomeEvent", 7l, 2);
+
+        assertThat(events)
+                .extracting(LoggedEvent::getId)
+                .containsExactly(4l, 2l);
+    }
+
+    @Test
+    public void thatEmptyArchiveYieldsNoEvents() throws Exception
+    {
+        List<LoggedEvent> events = new ArrayList<>();
+        sut.forEachArchivedEvent(1, null, null, events::add);
+
+        assertThat(events).isEmpty();
+        assertThat(sut.listArchivedEvents(1, null, null, null, 5)).isEmpty();
+    }
+
+    @Test
+    public void thatPartitionsWithoutMatchingEventsAreSkipped() throws Exception
+    {
+        sut.archive(asList(
+                event(1, 1, date(2019, 1, 10), 7l),
+                event(2, 1, date(2019, 2, 10), 8l)));
+
+        // Corrupt the partition which holds no events of recommender 7 - if it were read, the
+        // listing would fail
+        File february = new File(archiveDir, "1").listFiles(
+                f -> f.getName().startsWith("2019-02") && f.getName().endsWith(".log.gz"))[0];
+        Files.write(february.toPath(), new byte[] { 1, 2, 3 });
+
+        assertThat(sut.listArchivedEvents(1, "user", "SomeEvent", 7l, 5))
+                .extracting(LoggedEvent::getId)
+                .containsExactly(1l);
+    }
+
+    @Test
+    public void thatArchiveIsRemovedWithProject() throws Exception
+    {
+        sut.archive(asList(
+                event(1, 1, date(2019, 1, 10), null),
+                event(2, 2, date(2019, 1, 10), null)));
+
+        Project project = new Project();
+        project.setId(1l);
+        project.setName("project");
+        sut.beforeProjectRemove(new BeforeProjectRemovedEvent(this, project));
+
+        assertThat(new File(archiveDir, "1")).doesNotExist();
+        assertThat(new File(archiveDir, "2")).exists();
+    }
+
+    private static Date date(int aYear, int aMonth, int aDay)
+    {
+        return Date.from(LocalDateTime.of(aYear, aMonth, aDay, 12, 0).toInstant(ZoneOffset.UTC));
+    }
+
+    private static LoggedEvent event(long aId, long aProject, Date aCreated, Long aRecommender)
+    {
+        LoggedEvent event = new LoggedEvent(aId);
+        event.setUser("user");
+        event.setProject(aProject);
+        event.setDocument(-1);
+        event.setEvent("SomeEvent");
+        event.setCreated(aCreated);
+        event.setRecommender(aRecommender);
+        event.setDetails("{\"value\":2}");
+        return event;
+    }
+}
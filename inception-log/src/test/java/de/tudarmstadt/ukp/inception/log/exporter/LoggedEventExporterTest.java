@@ -19,7 +19,9 @@ package de.tudarmstadt.ukp.inception.log.exporter;
 
 import static java.util.Arrays.asList;
 import static java.util.stream.Collectors.toList;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
@@ -29,6 +31,7 @@ import static org.mockito.MockitoAnnotations.initMocks;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.nio.file.Files;
 import java.util.Date;
 import java.util.List;
 import java.util.function.Consumer;
@@ -93,15 +96,15 @@ public class LoggedEventExporterTest
     public void thatExportingWorks() throws Exception
     {
         doAnswer((Answer<Void>) invocation -> {
-            Consumer<LoggedEvent> consumer = invocation.getArgument(1);
+            Consumer<LoggedEvent> consumer = invocation.getArgument(3);
             events().forEach(consumer);
             return null;
-        }).when(eventRepository).forEachLoggedEvent(any(), any());
+        }).when(eventRepository).forEachLoggedEvent(any(), any(), any(), any());
         
         ZipFile zipFile = mock(ZipFile.class);
-        when(zipFile.getEntry(any())).thenReturn(new ZipEntry("event.log"));
-        when(zipFile.getInputStream(any()))
-                .thenAnswer(_invocation -> new FileInputStream(new File(workFolder, "event.log")));
+        when(zipFile.getEntry(any())).thenReturn(new ZipEntry("event.log.gz"));
+        when(zipFile.getInputStream(any())).thenAnswer(
+            _invocation -> new FileInputStream(new File(workFolder, "event.log.gz")));
         
         // Export the project and import it again
         ArgumentCaptor<LoggedEvent> captor = runExportImportAndFetchEvents(zipFile);
@@ -117,6 +120,41 @@ public class LoggedEventExporterTest
                 .containsExactlyInAnyOrderElementsOf(expectedEvents);
     }
 
+    @Test
+    public void thatImportingUncompressedEventLogWorks() throws Exception
+    {
+        // Archives created by older versions contain an uncompressed event log
+        File eventLog = new File(workFolder, "event.log");
+        Files.write(eventLog.toPath(), asList(
+                "{\"created\":782341234123,\"details\":{\"value\":1},"
+                        + "\"document_name\":\"doc1\",\"event\":\"SomeEvent1\",\"id\":1,"
+                        + "\"user\":\"user\"}",
+                "{\"created\":782341234126,\"event\":\"SomeEvent3\",\"id\":4,"
+                        + "\"user\":\"user\"}",
+                "{\"created\":782341234127,\"details\":{\"recommenderId\":5},"
+                        + "\"event\":\"RecommenderEvaluationResultEvent\",\"id\":5,"
+                        + "\"user\":\"user\"}"),
+                UTF_8);
+
+        ZipFile zipFile = mock(ZipFile.class);
+        when(zipFile.getEntry("event.log")).thenReturn(new ZipEntry("event.log"));
+        when(zipFile.getInputStream(any()))
+                .thenAnswer(_invocation -> new FileInputStream(eventLog));
+
+        ArgumentCaptor<LoggedEvent> captor = ArgumentCaptor.forClass(LoggedEvent.class);
+        doNothing().when(eventRepository).create(captor.capture());
+        sut.importData(new ProjectImportRequest(true), project, new ExportedProject(), zipFile);
+
+        assertThat(captor.getAllValues())
+                .extracting(LoggedEvent::getEvent, LoggedEvent::getDocument,
+                        LoggedEvent::getDetails, LoggedEvent::getRecommender)
+                .containsExactly(
+                        tuple("SomeEvent1", 1l, "{\"value\":1}", null),
+                        tuple("SomeEvent3", -1l, null, null),
+                        tuple("RecommenderEvaluationResultEvent", -1l,
+                                "{\"recommenderId\":5}", 5l));
+    }
+
     @Test
     public void thatImportingArchiveWithoutEventsWorks() throws Exception
     {
@@ -167,6 +205,7 @@ public class LoggedEventExporterTest
         event3.setProject(project.getId());
         event3.setAnnotator("annotator");
         event3.setDetails("{\"value\":2}");
+        event3.setRecommender(5l);
 
         LoggedEvent event4 = new LoggedEvent(3l);
         event4.setUser("user");
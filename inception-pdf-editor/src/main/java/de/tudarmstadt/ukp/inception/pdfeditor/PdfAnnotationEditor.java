@@ -26,8 +26,10 @@ import java.io.InputStream;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import javax.xml.parsers.ParserConfigurationException;
@@ -65,6 +67,9 @@ import de.tudarmstadt.ukp.inception.pdfeditor.pdfanno.model.DocumentModel;
 import de.tudarmstadt.ukp.inception.pdfeditor.pdfanno.model.Offset;
 import de.tudarmstadt.ukp.inception.pdfeditor.pdfanno.model.PdfAnnoModel;
 import de.tudarmstadt.ukp.inception.pdfeditor.pdfanno.model.PdfExtractFile;
+import de.tudarmstadt.ukp.inception.pdfeditor.pdfanno.model.PdfOffsetMapping;
+import de.tudarmstadt.ukp.inception.pdfeditor.pdfanno.model.Relation;
+import de.tudarmstadt.ukp.inception.pdfeditor.pdfanno.model.Span;
 import de.tudarmstadt.ukp.inception.pdfeditor.pdfanno.render.PdfAnnoRenderer;
 import de.tudarmstadt.ukp.inception.pdfeditor.pdfextract.PDFExtractor;
 
@@ -85,10 +90,17 @@ public class PdfAnnotationEditor
 
     private PdfExtractFile pdfExtractFile;
     private DocumentModel documentModel;
+    private transient PdfOffsetMapping offsetMapping;
     private int page;
     private Offset pageOffset;
     private Map<Integer, Offset> pageOffsetCache;
 
+    /**
+     * Anno file content of the annotations currently shown in PDFAnno by annotation ID or
+     * {@code null} if the state of PDFAnno is unknown and all annotations need to be sent.
+     */
+    private Map<String, String> renderedAnnotations;
+
     private @SpringBean DocumentService documentService;
     private @SpringBean AnnotationSchemaService annotationService;
     private @SpringBean AnnotationEditorExtensionRegistry extensionRegistry;
@@ -138,8 +150,14 @@ public class PdfAnnotationEditor
     /**
      * Renders the PdfAnnoModel.
      * This includes the anno file and the color map.
+     * Only annotations which changed since the last rendering are sent to PDFAnno.
      */
     public void renderPdfAnnoModel(AjaxRequestTarget aTarget)
+    {
+        renderPdfAnnoModel(aTarget, false);
+    }
+
+    private void renderPdfAnnoModel(AjaxRequestTarget aTarget, boolean aFull)
     {
         if (getModelObject().getProject() != null)
         {
@@ -156,7 +174,7 @@ public class PdfAnnotationEditor
 
                 VDocument vdoc = render(cas, begin, end);
                 PdfAnnoModel pdfAnnoModel = PdfAnnoRenderer.render(getModelObject(),
-                    vdoc, cas.getDocumentText(), annotationService, pdfExtractFile, begin);
+                    vdoc, annotationService, pdfExtractFile, getOffsetMapping(), begin);
                 // show unmatched spans to user
                 if (pdfAnnoModel.getUnmatchedSpans().size() > 0) {
                     String annotations = pdfAnnoModel.getUnmatchedSpans().stream()
@@ -165,8 +183,13 @@ public class PdfAnnotationEditor
                     handleError("Could not find a match for the following annotations: "
                         + annotations, aTarget);
                 }
-                String script = getAnnotationsJS(pdfAnnoModel);
-                aTarget.appendJavaScript(script);
+                if (aFull) {
+                    renderedAnnotations = null;
+                }
+                String script = getAnnotationsUpdateJS(pdfAnnoModel);
+                if (script != null) {
+                    aTarget.appendJavaScript(script);
+                }
             }
             catch (IOException e)
             {
@@ -181,8 +204,8 @@ public class PdfAnnotationEditor
         try
         {
             Offset offset = new Offset(aParams);
-            Offset docOffset =
-                PdfAnnoRenderer.convertToDocumentOffset(offset, documentModel, pdfExtractFile);
+            Offset docOffset = PdfAnnoRenderer.convertToDocumentOffset(offset, pdfExtractFile,
+                getOffsetMapping());
             AnnotatorState state = getModelObject();
             if (docOffset.getBegin() > -1 && docOffset.getEnd() > -1) {
                 if (state.isSlotArmed()) {
@@ -283,7 +306,7 @@ public class PdfAnnotationEditor
             // workaround to enable further creation of relations in PDFAnno
             // if existing annotations are not re-rendered after an attempt to create a relation.
             // it can happen that mouse will hang when leaving annotation knob while dragging
-            renderPdfAnnoModel(aTarget);
+            renderPdfAnnoModel(aTarget, true);
         }
     }
 
@@ -328,8 +351,8 @@ public class PdfAnnotationEditor
             VID paramId = VID.parseOptional(aParams.getParameterValue("id").toString());
             if (paramId.isSynthetic()) {
                 Offset offset = new Offset(aParams);
-                Offset docOffset =
-                    PdfAnnoRenderer.convertToDocumentOffset(offset, documentModel, pdfExtractFile);
+                Offset docOffset = PdfAnnoRenderer.convertToDocumentOffset(offset,
+                    pdfExtractFile, getOffsetMapping());
                 if (docOffset.getBegin() > -1 && docOffset.getEnd() > -1) {
                     extensionRegistry.fireAction(getActionHandler(), getModelObject(), aTarget,
                         aCas, paramId, "doAction", docOffset.getBegin(), docOffset.getEnd());
@@ -357,8 +380,8 @@ public class PdfAnnotationEditor
             List<Offset> offsets = new ArrayList<>();
             offsets.add(new Offset(begin, begin));
             offsets.add(new Offset(end + 1, end + 1));
-            offsets =
-                PdfAnnoRenderer.convertToDocumentOffsets(offsets, documentModel, pdfExtractFile);
+            offsets = PdfAnnoRenderer.convertToDocumentOffsets(offsets, pdfExtractFile,
+                getOffsetMapping());
             int newBegin = offsets.stream().mapToInt(Offset::getBegin).min().getAsInt();
             int newEnd = offsets.stream().mapToInt(Offset::getEnd).max().getAsInt();
             pageOffset = new Offset(newBegin, newEnd);
@@ -404,20 +427,81 @@ public class PdfAnnotationEditor
         }
     }
 
+    /**
+     * Returns JavaScript code that brings the annotations shown in PDFAnno in line with the given
+     * model or {@code null} if PDFAnno is already up to date. If the annotations currently shown
+     * are known, only annotations which have been added, changed or removed are transferred.
+     */
+    private String getAnnotationsUpdateJS(PdfAnnoModel aPdfAnnoModel)
+    {
+        Map<String, String> annotations = new HashMap<>();
+        aPdfAnnoModel.getSpans()
+            .forEach(span -> annotations.put(span.getId(), span.toAnnoFileString()));
+        aPdfAnnoModel.getRelations()
+            .forEach(relation -> annotations.put(relation.getId(), relation.toAnnoFileString()));
+
+        Map<String, String> previous = renderedAnnotations;
+        renderedAnnotations = annotations;
+        if (previous == null) {
+            return getAnnotationsJS(aPdfAnnoModel.getAnnoFileContent(), false);
+        }
+
+        Set<String> removed = new HashSet<>();
+        previous.forEach((id, content) -> {
+            if (!content.equals(annotations.get(id))) {
+                removed.add(id);
+            }
+        });
+
+        List<Span> spans = aPdfAnnoModel.getSpans().stream()
+            .filter(span -> !annotations.get(span.getId()).equals(previous.get(span.getId())))
+            .collect(Collectors.toList());
+        // PDFAnno deletes relations together with the spans they connect, so relations attached
+        // to a removed or changed span need to be sent again
+        List<Relation> relations = aPdfAnnoModel.getRelations().stream()
+            .filter(relation -> removed.contains(relation.getHead())
+                || removed.contains(relation.getTail())
+                || !annotations.get(relation.getId()).equals(previous.get(relation.getId())))
+            .collect(Collectors.toList());
+        relations.stream().map(Relation::getId).filter(previous::containsKey)
+            .forEach(removed::add);
+
+        if (removed.isEmpty() && spans.isEmpty() && relations.isEmpty()) {
+            return null;
+        }
+
+        StringBuilder script = new StringBuilder();
+        for (String id : removed) {
+            script.append("var anno = pdfanno.contentWindow.annoPage.findAnnotationById('")
+                .append(id).append("');")
+                .append("anno && anno.destroy();");
+        }
+        if (!spans.isEmpty() || !relations.isEmpty()) {
+            script.append(getAnnotationsJS(aPdfAnnoModel.getAnnoFileContent(spans, relations),
+                true));
+        }
+        return script.toString();
+    }
+
     /**
      * Returns JavaScript code that imports annotation data in PDFAnno
+     *
+     * @param aIncremental
+     *            if {@code true}, the annotations are added to those already shown, otherwise
+     *            they replace them.
      */
-    private String getAnnotationsJS(PdfAnnoModel aPdfAnnoModel)
+    private String getAnnotationsJS(String aAnnoFileContent, boolean aIncremental)
     {
         return String.join("",
             "var annoFile = `\n",
-            aPdfAnnoModel.getAnnoFileContent(),
+            aAnnoFileContent,
             "`;",
             // FIXME: "pdfanno" below is a hard-coded HTML element ID from PdfAnnoPanel.html!
             // This should be replaced by a HTML element ID generated by Wicket for the PdfAnnoPanel
             // instance used by this editor.
             "pdfanno.contentWindow.annoPage.importAnnotation({",
             "'primary': true,",
+            "'incremental': ", String.valueOf(aIncremental), ",",
             "'colorMap': {},",
             "'annotations':[annoFile]}, true);"
         );
@@ -428,6 +512,19 @@ public class PdfAnnotationEditor
         return pdfExtractFile;
     }
 
+    /**
+     * Align the document text and the PDF text once so that annotations can be converted between
+     * both without searching for them every time. The alignment is not stored with the page but
+     * computed again on first use after the editor has been deserialized.
+     */
+    private PdfOffsetMapping getOffsetMapping()
+    {
+        if (offsetMapping == null && documentModel != null && pdfExtractFile != null) {
+            offsetMapping = new PdfOffsetMapping(documentModel, pdfExtractFile);
+        }
+        return offsetMapping;
+    }
+
     public static Map<String, String> getSubstitutionTable()
         throws IOException, ParserConfigurationException, SAXException {
         String substitutionTable =
@@ -460,6 +557,8 @@ public class PdfAnnotationEditor
                 + "with PDFExtractor.", e, aTarget);
         }
 
+        offsetMapping = null;
         pageOffsetCache = new HashMap<>();
+        renderedAnnotations = null;
     }
 }
@@ -105,13 +105,22 @@ public class PdfAnnoModel
     }
 
     public String getAnnoFileContent()
+    {
+        return getAnnoFileContent(spans, relations);
+    }
+
+    /**
+     * Returns the anno file content for the given spans and relations only. Used to send
+     * incremental updates to PDFAnno.
+     */
+    public String getAnnoFileContent(List<Span> aSpans, List<Relation> aRelations)
     {
         StringBuilder sb = new StringBuilder();
         sb.append("pdfanno = \"").append(pdfannoVersion).append("\"\n");
         sb.append("pdfextract = \"").append(pdfextractVersion).append("\"\n");
         sb.append("\n");
-        spans.forEach(span -> sb.append(span.toAnnoFileString()).append("\n"));
-        relations.forEach(relation -> sb.append(relation.toAnnoFileString()).append("\n"));
+        aSpans.forEach(span -> sb.append(span.toAnnoFileString()).append("\n"));
+        aRelations.forEach(relation -> sb.append(relation.toAnnoFileString()).append("\n"));
         return sb.toString();
     }
 }
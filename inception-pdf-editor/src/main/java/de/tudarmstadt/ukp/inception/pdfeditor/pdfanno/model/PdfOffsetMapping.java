@@ -0,0 +1,245 @@
+/*
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.pdfeditor.pdfanno.model;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Character alignment between the document text provided by INCEpTION and the sanitized content
+ * of a PDFExtract file. The alignment is computed once per document, so converting an annotation
+ * between the two representations is a direct lookup.
+ * <p>
+ * Both texts are compared without whitespace. They are walked in parallel and wherever they
+ * differ, e.g. because a glyph has no unicode mapping or a header is only present in one of
+ * them, the alignment skips ahead to the next position where both agree again. Characters which
+ * are skipped remain unaligned and annotations starting or ending on them cannot be converted
+ * via the mapping.
+ * <p>
+ * Searching for long one-sided skips is expensive. The total number of positions tried for them
+ * is limited to {@link #LONG_SKIP_BUDGET} per character of both texts. Once it is used up, e.g.
+ * because the texts never get back in sync, only short skips are tried, so the alignment stays
+ * linear in the text length.
+ */
+public class PdfOffsetMapping
+    implements Serializable
+{
+    private static final long serialVersionUID = -4466521087440427937L;
+
+    /**
+     * Number of characters which need to agree to consider the texts to be in sync again.
+     */
+    private static final int SYNC_LENGTH = 8;
+
+    /**
+     * Maximum number of characters skipped on both sides at once.
+     */
+    private static final int SHORT_SKIP = 16;
+
+    /**
+     * Maximum number of characters skipped on one side only.
+     */
+    private static final int LONG_SKIP = 1000;
+
+    /**
+     * Number of positions which may be tried for long skips per character of both texts.
+     */
+    private static final int LONG_SKIP_BUDGET = 16;
+
+    private final DocumentModel documentModel;
+
+    /**
+     * Index in the whitespaceless text for every offset in the document text.
+     */
+    private final int[] documentToWhitespaceless;
+
+    /**
+     * Index in the sanitized content for every index in the whitespaceless text or -1.
+     */
+    private final int[] whitespacelessToPdf;
+
+    /**
+     * Index in the whitespaceless text for every index in the sanitized content or -1.
+     */
+    private final int[] pdfToWhitespaceless;
+
+    public PdfOffsetMapping(DocumentModel aDocumentModel, PdfExtractFile aPdfExtractFile)
+    {
+        documentModel = aDocumentModel;
+
+        String documentText = aDocumentModel.getDocumentText();
+        documentToWhitespaceless = new int[documentText.length() + 1];
+        int whitespacelessIndex = 0;
+        for (int i = 0; i < documentText.length(); i++) {
+            documentToWhitespaceless[i] = whitespacelessIndex;
+            if (!Character.isWhitespace(documentText.charAt(i))) {
+                whitespacelessIndex++;
+            }
+        }
+        documentToWhitespaceless[documentText.length()] = whitespacelessIndex;
+
+        String whitespacelessText = aDocumentModel.getWhitespacelessText();
+        String pdfText = aPdfExtractFile.getSanitizedContent();
+        whitespacelessToPdf = new int[whitespacelessText.length() + 1];
+        pdfToWhitespaceless = new int[pdfText.length() + 1];
+        align(whitespacelessText, pdfText, whitespacelessToPdf, pdfToWhitespaceless);
+    }
+
+    public DocumentModel getDocumentModel()
+    {
+        return documentModel;
+    }
+
+    /**
+     * Convert a range in the document text to a range in the sanitized content of the PDFExtract
+     * file.
+     *
+     * @return the range or {@code null} if the range cannot be converted via the mapping.
+     */
+    public Offset toPdfOffset(int aDocumentBegin, int aDocumentEnd)
+    {
+        if (aDocumentBegin < 0 || aDocumentEnd >= documentToWhitespaceless.length
+                || aDocumentEnd < aDocumentBegin) {
+            return null;
+        }
+
+        return map(documentToWhitespaceless[aDocumentBegin],
+                documentToWhitespaceless[aDocumentEnd], whitespacelessToPdf);
+    }
+
+    /**
+     * Convert a range in the sanitized content of the PDFExtract file to a range in the document
+     * text.
+     *
+     * @return the range or {@code null} if the range cannot be converted via the mapping.
+     */
+    public Offset toDocumentOffset(int aPdfBegin, int aPdfEnd)
+    {
+        if (aPdfBegin < 0 || aPdfEnd >= pdfToWhitespaceless.length || aPdfEnd < aPdfBegin) {
+            return null;
+        }
+
+        Offset offset = map(aPdfBegin, aPdfEnd, pdfToWhitespaceless);
+        if (offset == null) {
+            return null;
+        }
+
+        // Map the end via the last character so that trailing whitespace is not included
+        int begin = documentModel.getDocumentIndex(offset.getBegin());
+        int end = offset.getEnd() > offset.getBegin()
+                ? documentModel.getDocumentIndex(offset.getEnd() - 1) + 1
+                : begin;
+        return new Offset(begin, end);
+    }
+
+    /**
+     * Map the range [begin, end) via the given alignment. The range is mapped via its first and
+     * its last character, so both need to be aligned.
+     */
+    private static Offset map(int aBegin, int aEnd, int[] aAlignment)
+    {
+        int begin = aAlignment[aBegin];
+        if (begin == -1) {
+            return null;
+        }
+
+        if (aEnd == aBegin) {
+            return new Offset(begin, begin);
+        }
+
+        int last = aAlignment[aEnd - 1];
+        if (last == -1 || last < begin) {
+            return null;
+        }
+
+        return new Offset(begin, last + 1);
+    }
+
+    private static void align(String aLeft, String aRight, int[] aLeftToRight, int[] aRightToLeft)
+    {
+        Arrays.fill(aLeftToRight, -1);
+        Arrays.fill(aRightToLeft, -1);
+
+        long budget = (long) LONG_SKIP_BUDGET * (aLeft.length() + aRight.length());
+        int l = 0;
+        int r = 0;
+        while (l < aLeft.length() && r < aRight.length()) {
+            if (aLeft.charAt(l) == aRight.charAt(r)) {
+                aLeftToRight[l] = r;
+                aRightToLeft[r] = l;
+                l++;
+                r++;
+                continue;
+            }
+
+            int maxSkip = (int) Math.min(LONG_SKIP, budget / 2);
+            int[] skip = findSync(aLeft, l, aRight, r, maxSkip);
+            if (skip != null) {
+                l += skip[0];
+                r += skip[1];
+                budget -= 2 * Math.max(0, skip[0] + skip[1] - SHORT_SKIP);
+            }
+            else {
+                // Treat as a substituted character and hope to get back in sync later
+                l++;
+                r++;
+                budget -= 2 * Math.max(0, maxSkip - SHORT_SKIP);
+            }
+        }
+
+        aLeftToRight[aLeft.length()] = aRight.length();
+        aRightToLeft[aRight.length()] = aLeft.length();
+    }
+
+    /**
+     * @param aMaxSkip
+     *            maximum number of characters skipped on one side only.
+     * @return the number of characters to skip on the left and on the right side to get back in
+     *         sync or {@code null} if no such position was found.
+     */
+    private static int[] findSync(String aLeft, int aL, String aRight, int aR, int aMaxSkip)
+    {
+        // A few characters which differ on both sides, e.g. ligatures or unmapped glyphs
+        for (int d = 1; d <= SHORT_SKIP; d++) {
+            for (int l = 0; l <= d; l++) {
+                if (inSync(aLeft, aL + l, aRight, aR + d - l)) {
+                    return new int[] { l, d - l };
+                }
+            }
+        }
+
+        // Longer runs of text only present on one side, e.g. page headers
+        for (int d = SHORT_SKIP + 1; d <= aMaxSkip; d++) {
+            if (inSync(aLeft, aL + d, aRight, aR)) {
+                return new int[] { d, 0 };
+            }
+            if (inSync(aLeft, aL, aRight, aR + d)) {
+                return new int[] { 0, d };
+            }
+        }
+
+        return null;
+    }
+
+    private static boolean inSync(String aLeft, int aL, String aRight, int aR)
+    {
+        int length = Math.min(SYNC_LENGTH,
+                Math.min(aLeft.length() - aL, aRight.length() - aR));
+        return length > 0 && aLeft.regionMatches(aL, aRight, aR, length);
+    }
+}
@@ -21,9 +21,11 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
+import java.util.stream.Collectors;
 
 import org.ahocorasick.trie.Emit;
 import org.ahocorasick.trie.Trie;
@@ -43,6 +45,7 @@ import de.tudarmstadt.ukp.inception.pdfeditor.pdfanno.model.Offset;
 import de.tudarmstadt.ukp.inception.pdfeditor.pdfanno.model.PdfAnnoModel;
 import de.tudarmstadt.ukp.inception.pdfeditor.pdfanno.model.PdfExtractFile;
 import de.tudarmstadt.ukp.inception.pdfeditor.pdfanno.model.PdfExtractLine;
+import de.tudarmstadt.ukp.inception.pdfeditor.pdfanno.model.PdfOffsetMapping;
 import de.tudarmstadt.ukp.inception.pdfeditor.pdfanno.model.Relation;
 import de.tudarmstadt.ukp.inception.pdfeditor.pdfanno.model.Span;
 
@@ -53,6 +56,20 @@ public class PdfAnnoRenderer
     public static PdfAnnoModel render(AnnotatorState aState, VDocument aVDoc, String aDocumentText,
                                       AnnotationSchemaService aAnnotationService,
                                       PdfExtractFile aPdfExtractFile, int aPageBeginOffset)
+    {
+        return render(aState, aVDoc, aAnnotationService, aPdfExtractFile,
+            new PdfOffsetMapping(new DocumentModel(aDocumentText), aPdfExtractFile),
+            aPageBeginOffset);
+    }
+
+    /**
+     * Renders the given document using a precomputed offset mapping. Callers rendering the same
+     * document repeatedly should build the mapping once and reuse it.
+     */
+    public static PdfAnnoModel render(AnnotatorState aState, VDocument aVDoc,
+                                      AnnotationSchemaService aAnnotationService,
+                                      PdfExtractFile aPdfExtractFile, PdfOffsetMapping aMapping,
+                                      int aPageBeginOffset)
     {
         PdfAnnoModel pdfAnnoModel = new PdfAnnoModel("0.5.0", "0.3.2");
         List<RenderSpan> spans = new ArrayList<>();
@@ -105,7 +122,7 @@ public class PdfAnnoRenderer
                     varc.getSource().toString(), varc.getTarget().toString(), labelText, color));
             }
         }
-        pdfAnnoModel.addSpans(convertToPdfAnnoSpans(spans, aDocumentText, aPdfExtractFile));
+        pdfAnnoModel.addSpans(convertToPdfAnnoSpans(spans, aMapping, aPdfExtractFile));
         return pdfAnnoModel;
     }
 
@@ -125,16 +142,33 @@ public class PdfAnnoRenderer
     }
 
     private static List<Span> convertToPdfAnnoSpans(
-        List<RenderSpan> aSpans, String aDocumentText, PdfExtractFile aPdfExtractFile)
+        List<RenderSpan> aSpans, PdfOffsetMapping aMapping, PdfExtractFile aPdfExtractFile)
     {
-        List<RenderSpan> spans = new ArrayList<>(aSpans);
+        String documentText = aMapping.getDocumentModel().getDocumentText();
+
+        // Spans are looked up directly in the offset mapping. Only spans which are not covered by
+        // the mapping, e.g. because the text order in the PDF differs from the document text,
+        // are searched for in the PDF text.
+        List<RenderSpan> unmapped = new ArrayList<>();
+        for (RenderSpan renderSpan : aSpans) {
+            Offset offset = aMapping.toPdfOffset(renderSpan.getBegin(), renderSpan.getEnd());
+            if (offset != null) {
+                renderSpan.setText(documentText.substring(renderSpan.getBegin(),
+                    renderSpan.getEnd()).replaceAll("\\s", ""));
+                setPdfPosition(renderSpan, offset.getBegin(), offset.getEnd(), aPdfExtractFile);
+            }
+            else {
+                unmapped.add(renderSpan);
+            }
+        }
+
+        List<RenderSpan> spans = unmapped;
         List<RenderSpan> ambiguous = new ArrayList<>();
-        List<Span> processed = new ArrayList<>();
         int windowSize = WINDOW_SIZE_INCREMENT;
 
-        do {
+        while (!spans.isEmpty()) {
             // add context before and after each span
-            addContextToSpans(spans, windowSize, aDocumentText);
+            addContextToSpans(spans, windowSize, documentText);
             // find occurences by using Aho-Corasick algorithm
             Map<String, List<Emit>> occurrenceMap =
                 findOccurrences(spans, aPdfExtractFile.getSanitizedContent());
@@ -149,27 +183,13 @@ public class PdfAnnoRenderer
                     span.setEndPos(-1);
                     span.setPage(-1);
                     span.setText(renderSpan.getText());
-                    processed.add(span);
                 } else if (occurrences.size() == 1) {
                     // if one occurrence was found produce a proper Span for PdfAnno
-                    Span span = renderSpan.getSpan();
                     Emit emit = occurrences.get(0);
                     // get begin/end position of the original text within PDFExtract text
                     int begin = emit.getStart() + renderSpan.getWindowBeforeText().length();
                     int end = emit.getEnd() - renderSpan.getWindowAfterText().length() + 1;
-                    // get according PDFExtract file lines for begin and end of annotation
-                    Offset beginOffset = aPdfExtractFile.getExtractIndex(begin);
-                    Offset endOffset = aPdfExtractFile.getExtractIndex(end);
-                    PdfExtractLine firstLine =
-                        aPdfExtractFile.getStringPdfExtractLine(beginOffset.getBegin());
-                    PdfExtractLine lastLine =
-                        aPdfExtractFile.getStringPdfExtractLine(endOffset.getEnd());
-                    span.setStartPos(firstLine.getPosition());
-                    span.setEndPos(lastLine.getPosition());
-                    // TODO annotation across page boundaries not handled currently
-                    span.setPage(firstLine.getPage());
-                    span.setText(renderSpan.getText());
-                    processed.add(span);
+                    setPdfPosition(renderSpan, begin, end, aPdfExtractFile);
                 } else {
                     // if multiple occurrences found span is ambiguous. add more context and retry
                     ambiguous.add(renderSpan);
@@ -179,9 +199,29 @@ public class PdfAnnoRenderer
             spans = ambiguous;
             ambiguous = new ArrayList<>();
             windowSize += WINDOW_SIZE_INCREMENT;
-        } while (!spans.isEmpty());
+        }
 
-        return processed;
+        return aSpans.stream().map(RenderSpan::getSpan).collect(Collectors.toList());
+    }
+
+    /**
+     * Sets the PDFAnno position of the span for the given begin and end offsets in the sanitized
+     * PDFExtract text.
+     */
+    private static void setPdfPosition(RenderSpan aRenderSpan, int aBegin, int aEnd,
+        PdfExtractFile aPdfExtractFile)
+    {
+        Span span = aRenderSpan.getSpan();
+        // get according PDFExtract file lines for begin and end of annotation
+        Offset beginOffset = aPdfExtractFile.getExtractIndex(aBegin);
+        Offset endOffset = aPdfExtractFile.getExtractIndex(aEnd);
+        PdfExtractLine firstLine = aPdfExtractFile.getStringPdfExtractLine(beginOffset.getBegin());
+        PdfExtractLine lastLine = aPdfExtractFile.getStringPdfExtractLine(endOffset.getEnd());
+        span.setStartPos(firstLine.getPosition());
+        span.setEndPos(lastLine.getPosition());
+        // TODO annotation across page boundaries not handled currently
+        span.setPage(firstLine.getPage());
+        span.setText(aRenderSpan.getText());
     }
 
     /**
@@ -232,36 +272,62 @@ public class PdfAnnoRenderer
     public static List<Offset> convertToDocumentOffsets(
         List<Offset> aOffsets, DocumentModel aDocumentModel, PdfExtractFile aPdfExtractFile)
     {
+        return convertToDocumentOffsets(aOffsets, aPdfExtractFile,
+            new PdfOffsetMapping(aDocumentModel, aPdfExtractFile));
+    }
+
+    /**
+     * Converts PDFAnno offsets to document offsets using a precomputed offset mapping.
+     */
+    public static List<Offset> convertToDocumentOffsets(
+        List<Offset> aOffsets, PdfExtractFile aPdfExtractFile, PdfOffsetMapping aMapping)
+    {
+        DocumentModel documentModel = aMapping.getDocumentModel();
+        Offset[] processed = new Offset[aOffsets.size()];
+
+        // Offsets are looked up directly in the offset mapping. Only offsets which are not
+        // covered by the mapping are searched for in the document text.
         List<RenderSpan> iterList = new ArrayList<>();
-        for (Offset offset : aOffsets) {
+        Map<RenderSpan, Integer> positions = new IdentityHashMap<>();
+        for (int i = 0; i < aOffsets.size(); i++) {
+            Offset offset = aOffsets.get(i);
             Offset begin = aPdfExtractFile.getStringIndex(offset.getBegin());
             Offset end = aPdfExtractFile.getStringIndex(offset.getEnd());
-            iterList.add(new RenderSpan(new Offset(begin.getBegin(), end.getEnd())));
+            Offset docOffset = aMapping.toDocumentOffset(begin.getBegin(), end.getEnd());
+            if (docOffset != null) {
+                processed[i] = docOffset;
+            }
+            else {
+                RenderSpan renderSpan = new RenderSpan(new Offset(begin.getBegin(), end.getEnd()));
+                positions.put(renderSpan, i);
+                iterList.add(renderSpan);
+            }
         }
+
         List<RenderSpan> ambiguous = new ArrayList<>();
-        List<Offset> processed = new ArrayList<>();
         int windowSize = WINDOW_SIZE_INCREMENT;
 
-        do {
+        while (!iterList.isEmpty()) {
             // add context before and after each span
             addContextToSpans(iterList, windowSize, aPdfExtractFile.getSanitizedContent());
             // find occurences by using Aho-Corasick algorithm
             Map<String, List<Emit>> occurrenceMap =
-                findOccurrences(iterList, aDocumentModel.getWhitespacelessText());
+                findOccurrences(iterList, documentModel.getWhitespacelessText());
 
             for (RenderSpan renderSpan : iterList) {
+                int position = positions.get(renderSpan);
                 List<Emit> occurences = occurrenceMap.get(renderSpan.getTextWithWindow());
                 if (occurences == null || occurences.size() == 0) {
                     // if occurrence list is null or empty, no match was found
-                    processed.add(new Offset(-1, -1));
+                    processed[position] = new Offset(-1, -1);
                 } else if (occurences.size() == 1) {
                     // if one occurrence was found produce Offset
                     Emit emit = occurences.get(0);
-                    int begin = aDocumentModel.getDocumentIndex(
+                    int begin = documentModel.getDocumentIndex(
                         emit.getStart() + renderSpan.getWindowBeforeText().length());
-                    int end = aDocumentModel.getDocumentIndex(
+                    int end = documentModel.getDocumentIndex(
                         emit.getEnd() - renderSpan.getWindowAfterText().length() + 1);
-                    processed.add(new Offset(begin, end));
+                    processed[position] = new Offset(begin, end);
                 } else {
                     // if multiple occurrences found span is ambiguous. add more context and retry
                     ambiguous.add(renderSpan);
@@ -271,9 +337,9 @@ public class PdfAnnoRenderer
             iterList = ambiguous;
             ambiguous = new ArrayList<>();
             windowSize += WINDOW_SIZE_INCREMENT;
-        } while (!iterList.isEmpty());
+        }
 
-        return processed;
+        return new ArrayList<>(Arrays.asList(processed));
     }
 
     public static Offset convertToDocumentOffset(
@@ -282,4 +348,11 @@ public class PdfAnnoRenderer
         return convertToDocumentOffsets(
             Arrays.asList(aOffset), aDocumentModel, aPdfExtractFile).get(0);
     }
+
+    public static Offset convertToDocumentOffset(
+        Offset aOffset, PdfExtractFile aPdfExtractFile, PdfOffsetMapping aMapping)
+    {
+        return convertToDocumentOffsets(
+            Arrays.asList(aOffset), aPdfExtractFile, aMapping).get(0);
+    }
 }
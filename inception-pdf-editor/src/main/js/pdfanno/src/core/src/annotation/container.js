@@ -191,7 +191,7 @@ export default class AnnotationContainer {
   }
 
   _findSpan (tomlObject, id) {
-    return tomlObject.spans.find(v => {
+    return (tomlObject.spans || []).find(v => {
       return id === v.id
     })
   }
@@ -214,10 +214,12 @@ export default class AnnotationContainer {
 
     return new Promise((resolve, reject) => {
 
-      // Delete old ones.
-      this.getAllAnnotations()
-        .filter(a => a.readOnly === readOnly)
-        .forEach(a => a.destroy())
+      // Delete old ones unless the annotations are an incremental update.
+      if (!data.incremental) {
+        this.getAllAnnotations()
+          .filter(a => a.readOnly === readOnly)
+          .forEach(a => a.destroy())
+      }
 
       // Add annotations.
       data.annotations.forEach((tomlString, i) => {
@@ -311,8 +313,9 @@ export default class AnnotationContainer {
           } else if (key === 'relations') {
             const span1 = this._findSpan(tomlObject, obj.head)
             const span2 = this._findSpan(tomlObject, obj.tail)
-            obj.rel1 = span1 ? span1.uuid : null
-            obj.rel2 = span2 ? span2.uuid : null
+            // Spans not contained in an incremental update are already in the container.
+            obj.rel1 = span1 ? span1.uuid : obj.head
+            obj.rel2 = span2 ? span2.uuid : obj.tail
             const relation = RelationAnnotation.newInstanceFromTomlObject(obj)
             relation.save()
             relation.render()
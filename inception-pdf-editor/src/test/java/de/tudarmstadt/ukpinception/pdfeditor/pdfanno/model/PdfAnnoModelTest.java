@@ -22,6 +22,7 @@ import static org.assertj.core.api.Assertions.linesOf;
 
 import java.io.File;
 import java.util.Arrays;
+import java.util.Collections;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -51,4 +52,15 @@ public class PdfAnnoModelTest
         assertThat(linesOf(new File("src/test/resources/annoFile.anno"),
             "UTF-8")).isEqualTo(Arrays.asList(annoFileString.split("\n")));
     }
+
+    @Test
+    public void testgetPartialAnnoFileContent()
+    {
+        String annoFileString = pdfAnnoModel.getAnnoFileContent(
+            Arrays.asList(pdfAnnoModel.getSpans().get(1)), Collections.emptyList());
+        assertThat(annoFileString)
+            .contains("id = \"2\"")
+            .doesNotContain("id = \"1\"")
+            .doesNotContain("[[relations]]");
+    }
 }
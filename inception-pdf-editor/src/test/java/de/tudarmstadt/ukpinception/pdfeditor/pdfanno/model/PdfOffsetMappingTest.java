@@ -0,0 +1,112 @@
+/*
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukpinception.pdfeditor.pdfanno.model;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.readAllBytes;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.tudarmstadt.ukp.inception.pdfeditor.PdfAnnotationEditor;
+import de.tudarmstadt.ukp.inception.pdfeditor.pdfanno.model.DocumentModel;
+import de.tudarmstadt.ukp.inception.pdfeditor.pdfanno.model.Offset;
+import de.tudarmstadt.ukp.inception.pdfeditor.pdfanno.model.PdfExtractFile;
+import de.tudarmstadt.ukp.inception.pdfeditor.pdfanno.model.PdfOffsetMapping;
+
+public class PdfOffsetMappingTest
+{
+    private PdfExtractFile pdfExtractFile;
+
+    @Before
+    public void setup() throws Exception
+    {
+        String pdftxt = new String(readAllBytes(Paths.get("src/test/resources/pdfextract.txt")),
+                UTF_8);
+        pdfExtractFile = new PdfExtractFile(pdftxt, PdfAnnotationEditor.getSubstitutionTable());
+    }
+
+    @Test
+    public void testMatchingTexts()
+    {
+        // Sanitized PDF content is "2abc[4]dfiegÀ"
+        PdfOffsetMapping sut = new PdfOffsetMapping(new DocumentModel("2 abc [4] dfieg À"),
+                pdfExtractFile);
+
+        assertThat(sut.toPdfOffset(2, 5)).isEqualTo(new Offset(1, 4));
+        assertThat(sut.toDocumentOffset(1, 4)).isEqualTo(new Offset(2, 5));
+        assertThat(sut.toPdfOffset(10, 15)).isEqualTo(new Offset(7, 12));
+        assertThat(sut.toDocumentOffset(7, 12)).isEqualTo(new Offset(10, 15));
+    }
+
+    @Test
+    public void testDifferingCharacters()
+    {
+        // The document contains an "x" in place of the "[4]" of the PDF
+        PdfOffsetMapping sut = new PdfOffsetMapping(new DocumentModel("2 abc x dfieg À"),
+                pdfExtractFile);
+
+        assertThat(sut.toPdfOffset(8, 13)).isEqualTo(new Offset(7, 12));
+        assertThat(sut.toDocumentOffset(7, 12)).isEqualTo(new Offset(8, 13));
+        assertThat(sut.toPdfOffset(6, 7)).isNull();
+    }
+
+    @Test
+    public void testTextOnlyPresentInDocument() throws Exception
+    {
+        String body = "thequickbrownfoxjumpsoverthelazydog";
+        String header = repeat('h', 100);
+        PdfOffsetMapping sut = new PdfOffsetMapping(new DocumentModel(header + body),
+                toPdfExtractFile(body));
+
+        assertThat(sut.toPdfOffset(100, 105)).isEqualTo(new Offset(0, 5));
+        assertThat(sut.toDocumentOffset(0, 5)).isEqualTo(new Offset(100, 105));
+        assertThat(sut.toPdfOffset(0, 5)).isNull();
+    }
+
+    @Test(timeout = 10000)
+    public void testTextsWhichNeverSync() throws Exception
+    {
+        int length = 200_000;
+        PdfOffsetMapping sut = new PdfOffsetMapping(new DocumentModel(repeat('x', length)),
+                toPdfExtractFile(repeat('y', length)));
+
+        assertThat(sut.toPdfOffset(0, 1)).isNull();
+        assertThat(sut.toDocumentOffset(length - 1, length)).isNull();
+    }
+
+    private static String repeat(char aChar, int aCount)
+    {
+        char[] chars = new char[aCount];
+        Arrays.fill(chars, aChar);
+        return new String(chars);
+    }
+
+    private static PdfExtractFile toPdfExtractFile(String aText) throws Exception
+    {
+        StringBuilder pdftxt = new StringBuilder();
+        for (char c : aText.toCharArray()) {
+            pdftxt.append("1\t").append(c).append("\t0 0 1 1\n");
+        }
+        return new PdfExtractFile(pdftxt.toString(), PdfAnnotationEditor.getSubstitutionTable());
+    }
+}
@@ -60,6 +60,12 @@ public class RecommenderEvaluationResultEventAdapter
         return aEvent.getUser();
     }
 
+    @Override
+    public Long getRecommender(RecommenderEvaluationResultEvent aEvent)
+    {
+        return aEvent.getRecommender().getId();
+    }
+
     @Override
     public String getDetails(RecommenderEvaluationResultEvent aEvent)
     {
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.search;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Receives the results of a query one document at a time.
+ */
+@FunctionalInterface
+public interface DocumentResultsHandler
+{
+    /**
+     * @param aSourceDocumentId
+     *            the ID of the source document the results were found in.
+     * @param aResults
+     *            all results in the document in the order in which they occur.
+     * @return {@code true} to continue with the next document, {@code false} to stop.
+     */
+    boolean handle(long aSourceDocumentId, List<SearchResult> aResults) throws IOException;
+}
@@ -27,6 +27,11 @@ import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
 
 public class SearchQueryRequest
 {
+    /**
+     * Value for the count which requests all results.
+     */
+    public static final long ALL_RESULTS = Long.MAX_VALUE;
+    
     private final Project project;
     private final User user;
     private final String query;
@@ -36,6 +41,9 @@ public class SearchQueryRequest
     private final AnnotationLayer annoationLayer;
     private final AnnotationFeature annotationFeature;
 
+    private final long offset;
+    private final long count;
+
     public SearchQueryRequest(Project aProject, User aUser, String aQuery)
     {
         this(aProject, aUser, aQuery, null);
@@ -50,6 +58,20 @@ public class SearchQueryRequest
     public SearchQueryRequest(Project aProject, User aUser, String aQuery,
         SourceDocument aLimitedToDocument, AnnotationLayer aAnnotationLayer,
         AnnotationFeature aAnnotationFeature)
+    {
+        this(aProject, aUser, aQuery, aLimitedToDocument, aAnnotationLayer, aAnnotationFeature, 0,
+                ALL_RESULTS);
+    }
+
+    /**
+     * @param aOffset
+     *            the number of matches to skip.
+     * @param aCount
+     *            the maximum number of matches to return.
+     */
+    public SearchQueryRequest(Project aProject, User aUser, String aQuery,
+        SourceDocument aLimitedToDocument, AnnotationLayer aAnnotationLayer,
+        AnnotationFeature aAnnotationFeature, long aOffset, long aCount)
     {
         super();
         project = aProject;
@@ -58,6 +80,8 @@ public class SearchQueryRequest
         limitedToDocument = aLimitedToDocument;
         annoationLayer = aAnnotationLayer;
         annotationFeature = aAnnotationFeature;
+        offset = aOffset;
+        count = aCount;
     }
 
     public Project getProject()
@@ -89,4 +113,14 @@ public class SearchQueryRequest
     {
         return annotationFeature;
     }
+
+    public long getOffset()
+    {
+        return offset;
+    }
+
+    public long getCount()
+    {
+        return count;
+    }
 }
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.search;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
+
+/**
+ * Bounded LRU cache for query results and result counts. Entries are keyed by the project, the
+ * user, the normalized query, the query options and the generation of the index the results were
+ * obtained from. When the index changes, its generation changes and the old entries are no longer
+ * hit - they are eventually evicted. Changes which affect the results without changing the index
+ * (e.g. the state of annotation documents) need to be reported via
+ * {@link #invalidate(Project)}.
+ * <p>
+ * Since {@link SearchResult} is mutable, results are copied when they are put into and retrieved
+ * from the cache. The cache is safe for concurrent use.
+ */
+class SearchResultCache
+{
+    public static final int DEFAULT_MAX_ENTRIES = 256;
+
+    /**
+     * Result sets larger than this are not cached in order to keep the memory bounded.
+     */
+    public static final int DEFAULT_MAX_RESULTS_PER_ENTRY = 1000;
+
+    private final Map<Key, Object> entries;
+    private final int maxResultsPerEntry;
+
+    public SearchResultCache()
+    {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_RESULTS_PER_ENTRY);
+    }
+
+    public SearchResultCache(int aMaxEntries, int aMaxResultsPerEntry)
+    {
+        maxResultsPerEntry = aMaxResultsPerEntry;
+        entries = new LinkedHashMap<Key, Object>(16, 0.75f, true)
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Object> aEldest)
+            {
+                return size() > aMaxEntries;
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    public Map<String, List<SearchResult>> getResults(Key aKey,
+            Loader<Map<String, List<SearchResult>>> aLoader)
+        throws IOException, ExecutionException
+    {
+        Object cached;
+        synchronized (entries) {
+            cached = entries.get(aKey);
+        }
+
+        if (cached != null) {
+            return copy((Map<String, List<SearchResult>>) cached);
+        }
+
+        Map<String, List<SearchResult>> results = aLoader.load();
+
+        if (results.values().stream().mapToInt(List::size).sum() <= maxResultsPerEntry) {
+            Map<String, List<SearchResult>> copy = copy(results);
+            synchronized (entries) {
+                entries.put(aKey, copy);
+            }
+        }
+
+        return results;
+    }
+
+    public long getCount(Key aKey, Loader<Long> aLoader) throws IOException, ExecutionException
+    {
+        Object cached;
+        synchronized (entries) {
+            cached = entries.get(aKey);
+        }
+
+        if (cached != null) {
+            return (Long) cached;
+        }
+
+        long count = aLoader.load();
+
+        synchronized (entries) {
+            entries.put(aKey, count);
+        }
+
+        return count;
+    }
+
+    /**
+     * Drop all entries for the given project.
+     */
+    public void invalidate(Project aProject)
+    {
+        synchronized (entries) {
+            entries.keySet().removeIf(key -> Objects.equals(key.projectId, aProject.getId()));
+        }
+    }
+
+    public int size()
+    {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Deep copy of the results. A result which is part of several groups is copied only once such
+     * that the groups continue to share it.
+     */
+    private static Map<String, List<SearchResult>> copy(Map<String, List<SearchResult>> aResults)
+    {
+        Map<SearchResult, SearchResult> copies = new IdentityHashMap<>();
+        Map<String, List<SearchResult>> copy = aResults instanceof TreeMap
+                ? new TreeMap<>(((TreeMap<String, List<SearchResult>>) aResults).comparator())
+                : new LinkedHashMap<>();
+        for (Map.Entry<String, List<SearchResult>> e : aResults.entrySet()) {
+            List<SearchResult> group = new ArrayList<>(e.getValue().size());
+            for (SearchResult result : e.getValue()) {
+                group.add(copies.computeIfAbsent(result, SearchResult::new));
+            }
+            copy.put(e.getKey(), group);
+        }
+        return copy;
+    }
+
+    public static Key resultsKey(User aUser, Project aProject, String aQuery,
+            SourceDocument aDocument, AnnotationLayer aAnnotationLayer,
+            AnnotationFeature aAnnotationFeature, long aOffset, long aCount, long aGeneration)
+    {
+        return new Key(false, aUser, aProject, aQuery, aDocument, aAnnotationLayer,
+                aAnnotationFeature, aOffset, aCount, aGeneration);
+    }
+
+    public static Key countKey(User aUser, Project aProject, String aQuery,
+            SourceDocument aDocument, long aGeneration)
+    {
+        return new Key(true, aUser, aProject, aQuery, aDocument, null, null, -1, -1,
+                aGeneration);
+    }
+
+    /**
+     * Normalize the whitespace in the query such that trivially different queries share the same
+     * cache entry.
+     */
+    static String normalizeQuery(String aQuery)
+    {
+        return aQuery == null ? "" : aQuery.trim().replaceAll("\\s+", " ");
+    }
+
+    @FunctionalInterface
+    public interface Loader<T>
+    {
+        T load() throws IOException, ExecutionException;
+    }
+
+    public static final class Key
+    {
+        private final boolean countOnly;
+        private final Long projectId;
+        private final String user;
+        private final String query;
+        private final Long documentId;
+        private final Long layerId;
+        private final Long featureId;
+        private final long offset;
+        private final long count;
+        private final long generation;
+
+        private Key(boolean aCountOnly, User aUser, Project aProject, String aQuery,
+                SourceDocument aDocument, AnnotationLayer aAnnotationLayer,
+                AnnotationFeature aAnnotationFeature, long aOffset, long aCount,
+                long aGeneration)
+        {
+            countOnly = aCountOnly;
+            projectId = aProject.getId();
+            user = aUser.getUsername();
+            query = normalizeQuery(aQuery);
+            documentId = aDocument != null ? aDocument.getId() : null;
+            layerId = aAnnotationLayer != null ? aAnnotationLayer.getId() : null;
+            featureId = aAnnotationFeature != null ? aAnnotationFeature.getId() : null;
+            offset = aOffset;
+            count = aCount;
+            generation = aGeneration;
+        }
+
+        @Override
+        public boolean equals(Object aOther)
+        {
+            if (this == aOther) {
+                return true;
+            }
+            if (!(aOther instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) aOther;
+            return countOnly == other.countOnly && offset == other.offset
+                    && count == other.count && generation == other.generation
+                    && Objects.equals(projectId, other.projectId)
+                    && Objects.equals(user, other.user) && Objects.equals(query, other.query)
+                    && Objects.equals(documentId, other.documentId)
+                    && Objects.equals(layerId, other.layerId)
+                    && Objects.equals(featureId, other.featureId);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(countOnly, projectId, user, query, documentId, layerId, featureId,
+                    offset, count, generation);
+        }
+    }
+}
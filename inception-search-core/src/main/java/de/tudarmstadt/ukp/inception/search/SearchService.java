@@ -63,8 +63,52 @@ public interface SearchService
         SourceDocument aDocument, AnnotationLayer aAnnotationLayer,
         AnnotationFeature aAnnotationFeature) throws IOException, ExecutionException;
 
+    /**
+     * Receive a page of the search results grouped as described in
+     * {@link #query(User, Project, String, SourceDocument, AnnotationLayer, AnnotationFeature)}.
+     * Only the matches on the page are retrieved from the index.
+     * 
+     * @param aOffset
+     *            the number of matches to skip.
+     * @param aCount
+     *            the maximum number of matches to return.
+     */
+    Map<String, List<SearchResult>> query(User aUser, Project aProject, String aQuery,
+        SourceDocument aDocument, AnnotationLayer aAnnotationLayer,
+        AnnotationFeature aAnnotationFeature, long aOffset, long aCount)
+        throws IOException, ExecutionException;
+
+    /**
+     * Count the matches of the query without retrieving them.
+     * 
+     * @param aDocument
+     *            limit search to this document or search in the whole project if null
+     * @return the number of matches.
+     */
+    long determineNumOfQueryResults(User aUser, Project aProject, String aQuery,
+        SourceDocument aDocument) throws IOException, ExecutionException;
+
+    /**
+     * Pass the search results to the handler one document at a time. Unlike the other query
+     * methods, this does not require all results to be held in memory, so it is suitable for
+     * processing very large numbers of results.
+     * 
+     * @param aDocument
+     *            limit search to this document or search in the whole project if null
+     * @param aHandler
+     *            receives the results of each document and may stop the query.
+     */
+    void query(User aUser, Project aProject, String aQuery, SourceDocument aDocument,
+        DocumentResultsHandler aHandler) throws IOException, ExecutionException;
+
     void reindex(Project aproject) throws IOException;
 
+    /**
+     * Update the index of the project after its layer configuration has changed. Falls back to
+     * rebuilding the index if it cannot be updated.
+     */
+    void reindexChangedLayers(Project aProject) throws IOException;
+
     Index getIndex(Project aProject);
 
     boolean isIndexValid(Project aProject);
@@ -18,11 +18,13 @@
 package de.tudarmstadt.ukp.inception.search;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.persistence.EntityManager;
 import javax.persistence.NoResultException;
@@ -43,6 +45,7 @@ import de.tudarmstadt.ukp.clarin.webanno.api.ProjectService;
 import de.tudarmstadt.ukp.clarin.webanno.api.RepositoryProperties;
 import de.tudarmstadt.ukp.clarin.webanno.api.event.AfterCasWrittenEvent;
 import de.tudarmstadt.ukp.clarin.webanno.api.event.AfterDocumentCreatedEvent;
+import de.tudarmstadt.ukp.clarin.webanno.api.event.AnnotationStateChangeEvent;
 import de.tudarmstadt.ukp.clarin.webanno.api.event.BeforeDocumentRemovedEvent;
 import de.tudarmstadt.ukp.clarin.webanno.api.event.BeforeProjectRemovedEvent;
 import de.tudarmstadt.ukp.clarin.webanno.api.event.LayerConfigurationChangedEvent;
@@ -63,6 +66,12 @@ import de.tudarmstadt.ukp.inception.search.scheduling.IndexScheduler;
 public class SearchServiceImpl
     implements SearchService
 {
+    /**
+     * Number of times an incomplete rebuild is resumed right away. If it still does not complete,
+     * e.g. because the index cannot be written, it is only resumed on the next query.
+     */
+    private static final int MAX_IMMEDIATE_RESUMES = 3;
+
     private final Logger log = LoggerFactory.getLogger(getClass());
 
     @PersistenceContext
@@ -82,6 +91,11 @@ public class SearchServiceImpl
     // The indexes for each project
     private static Map<Long, Index> indexes;
 
+    private final SearchResultCache resultCache = new SearchResultCache();
+
+    // Incomplete rebuilds per project which have been resumed right away
+    private final Map<Long, Integer> resumes = new ConcurrentHashMap<>();
+
     @Autowired
     public SearchServiceImpl()
     {
@@ -157,6 +171,7 @@ public class SearchServiceImpl
 
         // Remove the index entry from the memory map
         indexes.remove(project.getId());
+        resultCache.invalidate(project);
         
         // Delete the index entry from the DB
         deleteIndexByProject(project);
@@ -303,6 +318,16 @@ public class SearchServiceImpl
         }
     }
 
+    /**
+     * Whether results are read-only or visible at all depends on the state of the annotation
+     * document, which is not part of the index.
+     */
+    @EventListener
+    public void onAnnotationStateChange(AnnotationStateChangeEvent aEvent)
+    {
+        resultCache.invalidate(aEvent.getDocument().getProject());
+    }
+
     @TransactionalEventListener(fallbackExecution = true)
     @Transactional
     public void afterAnnotationUpdate(AfterCasWrittenEvent aEvent)
@@ -338,12 +363,82 @@ public class SearchServiceImpl
     public Map<String, List<SearchResult>> query(User aUser,
         Project aProject, String aQuery, SourceDocument aDocument, AnnotationLayer aAnnotationLayer,
         AnnotationFeature aAnnotationFeature) throws IOException, ExecutionException
+    {
+        return query(aUser, aProject, aQuery, aDocument, aAnnotationLayer, aAnnotationFeature, 0,
+                SearchQueryRequest.ALL_RESULTS);
+    }
+
+    @Override
+    @Transactional
+    public Map<String, List<SearchResult>> query(User aUser, Project aProject, String aQuery,
+            SourceDocument aDocument, AnnotationLayer aAnnotationLayer,
+            AnnotationFeature aAnnotationFeature, long aOffset, long aCount)
+        throws IOException, ExecutionException
     {
         log.debug("Starting query for user [{}] in project [{}]({})", aUser.getUsername(),
                 aProject.getName(), aProject.getId());
 
-        Map<String, List<SearchResult>> results = null;
+        PhysicalIndex physicalIndex = getQueryableIndex(aProject).getPhysicalIndex();
+
+        SearchResultCache.Key key = SearchResultCache.resultsKey(aUser, aProject, aQuery,
+                aDocument, aAnnotationLayer, aAnnotationFeature, aOffset, aCount,
+                physicalIndex.getGeneration());
 
+        return resultCache.getResults(key, () -> {
+            log.debug("Running query: [{}] - offset: {}, count: {}", aQuery, aOffset, aCount);
+
+            return physicalIndex.executeQuery(new SearchQueryRequest(aProject, aUser, aQuery,
+                    aDocument, aAnnotationLayer, aAnnotationFeature, aOffset, aCount));
+        });
+    }
+
+    @Override
+    @Transactional
+    public long determineNumOfQueryResults(User aUser, Project aProject, String aQuery,
+            SourceDocument aDocument)
+        throws IOException, ExecutionException
+    {
+        log.debug("Counting query results for user [{}] in project [{}]({})",
+                aUser.getUsername(), aProject.getName(), aProject.getId());
+
+        PhysicalIndex physicalIndex = getQueryableIndex(aProject).getPhysicalIndex();
+
+        SearchResultCache.Key key = SearchResultCache.countKey(aUser, aProject, aQuery,
+                aDocument, physicalIndex.getGeneration());
+
+        return resultCache.getCount(key, () -> {
+            log.debug("Counting results of query: [{}]", aQuery);
+
+            return physicalIndex.numberOfQueryResults(
+                    new SearchQueryRequest(aProject, aUser, aQuery, aDocument));
+        });
+    }
+
+    @Override
+    @Transactional
+    public void query(User aUser, Project aProject, String aQuery, SourceDocument aDocument,
+            DocumentResultsHandler aHandler)
+        throws IOException, ExecutionException
+    {
+        log.debug("Starting streaming query for user [{}] in project [{}]({})",
+                aUser.getUsername(), aProject.getName(), aProject.getId());
+
+        PhysicalIndex physicalIndex = getQueryableIndex(aProject).getPhysicalIndex();
+
+        // Results are streamed, so they do not go through the result cache
+        physicalIndex.executeQuery(new SearchQueryRequest(aProject, aUser, aQuery, aDocument),
+                aHandler);
+    }
+
+    /**
+     * Obtain the index of the given project, making sure it can be queried. If the index is
+     * invalid or does not exist, it is scheduled to be rebuilt.
+     * 
+     * @throws ExecutionException
+     *             if the index cannot be queried at this time.
+     */
+    private Index getQueryableIndex(Project aProject) throws ExecutionException
+    {
         Index index = getIndexFromMemory(aProject);
 
         if (index.getInvalid()) {
@@ -355,39 +450,27 @@ public class SearchServiceImpl
             // Throw execution exception so that the user knows the query was not run
             throw (new ExecutionException("Query not executed because index is in invalid state. Try again later."));
         }
-        else {
-            // Index is valid, try to execute the query
 
-            if (!index.getPhysicalIndex().isCreated()) {
-                // Physical index does not exist.
+        if (!index.getPhysicalIndex().isCreated()) {
+            // Physical index does not exist.
 
-                // Set the invalid flag
-                index.setInvalid(true);
-                updateIndex(index);
-
-                // Schedule new reindexing process
-                indexScheduler.enqueueReindexTask(aProject);
-
-                // Throw execution exception so that the user knows the query was not run
-                throw (new ExecutionException("Query not executed because index is in invalid state. Try again later."));
-            }
-            else {
-                // Physical index exists
-
-                if (!index.getPhysicalIndex().isOpen()) {
-                    // Physical index is not open. Open it.
-                    index.getPhysicalIndex().openPhysicalIndex();
-                }
+            // Set the invalid flag
+            index.setInvalid(true);
+            updateIndex(index);
 
-                log.debug("Running query: [{}]", aQuery);
+            // Schedule new reindexing process
+            indexScheduler.enqueueReindexTask(aProject);
 
-                results = index.getPhysicalIndex().executeQuery(
-                    new SearchQueryRequest(aProject, aUser, aQuery, aDocument,
-                        aAnnotationLayer, aAnnotationFeature));
-            }
+            // Throw execution exception so that the user knows the query was not run
+            throw (new ExecutionException("Query not executed because index is in invalid state. Try again later."));
+        }
 
+        if (!index.getPhysicalIndex().isOpen()) {
+            // Physical index is not open. Open it.
+            index.getPhysicalIndex().openPhysicalIndex();
         }
-        return results;
+        
+        return index;
     }
 
     @TransactionalEventListener(fallbackExecution = true)
@@ -407,16 +490,53 @@ public class SearchServiceImpl
     {
         log.trace("Starting beforeLayerConfigurationChanged");
 
-        Project project = aEvent.getProject();
+        // Schedule updating the documents affected by the change
+        indexScheduler.enqueueUpdateLayersTask(aEvent.getProject());
+    }
 
-        Index index = getIndexFromMemory(project);
+    @Override
+    @Transactional
+    public void reindexChangedLayers(Project aProject) throws IOException
+    {
+        Index index = getIndexFromMemory(aProject);
+
+        if (index.getInvalid()) {
+            // The index is rebuilt anyway, picking up the new layer configuration
+            log.debug("Index of project [{}]({}) is invalid - not updating changed layers",
+                    aProject.getName(), aProject.getId());
+            return;
+        }
+
+        PhysicalIndex physicalIndex = index.getPhysicalIndex();
+        if (physicalIndex.isCreated()) {
+            if (!physicalIndex.isOpen()) {
+                physicalIndex.openPhysicalIndex();
+            }
+
+            try {
+                if (physicalIndex.reindexChangedLayers()) {
+                    return;
+                }
+            }
+            catch (InterruptedIOException e) {
+                // Try again after a restart
+                log.info("Updating the index of project [{}]({}) was interrupted",
+                        aProject.getName(), aProject.getId());
+                indexScheduler.enqueueUpdateLayersTask(aProject);
+                return;
+            }
+        }
+
+        // The affected documents cannot be determined - rebuild the index
+        log.debug("Cannot update changed layers in index of project [{}]({}) - rebuilding it",
+                aProject.getName(), aProject.getId());
 
         // Set the invalid flag
         index.setInvalid(true);
         updateIndex(index);
 
         // Schedule reindexing of the physical index
-        indexScheduler.enqueueReindexTask(aEvent.getProject());
+        indexScheduler.enqueueReindexTask(aProject);
     }
 
     /** 
@@ -430,7 +550,11 @@ public class SearchServiceImpl
         
         Index index = getIndexFromMemory(aProject);
 
-        if (index.getPhysicalIndex().isCreated()) {
+        if (index.getPhysicalIndex().isResumable()) {
+            // A previous rebuild was interrupted, continue where it stopped
+            log.debug("Physical index contains an interrupted rebuild. Resume it.");
+        }
+        else if (index.getPhysicalIndex().isCreated()) {
             // Physical index already exists, drop it
             log.debug("Physical index already exists. Drop it.");
 
@@ -441,6 +565,26 @@ public class SearchServiceImpl
         log.debug("Create new physical index.");
         index.getPhysicalIndex().createPhysicalIndex();
         
+        if (index.getPhysicalIndex().isResumable()) {
+            // The rebuild did not complete, keep the index invalid and resume it
+            int attempt = resumes.merge(aProject.getId(), 1, Integer::sum);
+            if (attempt <= MAX_IMMEDIATE_RESUMES || Thread.currentThread().isInterrupted()) {
+                // If we were interrupted, the task is kept in the journal and resumed on restart
+                log.info("Re-indexing project [{}]({}) did not complete - resuming it",
+                        aProject.getName(), aProject.getId());
+                indexScheduler.enqueueReindexTask(aProject);
+            }
+            else {
+                log.error("Re-indexing project [{}]({}) did not complete after {} attempts - "
+                        + "it is resumed on the next query", aProject.getName(), aProject.getId(),
+                        attempt);
+                resumes.remove(aProject.getId());
+            }
+            return;
+        }
+        
+        resumes.remove(aProject.getId());
+        
         // After reindexing, reset the invalid flag
         log.trace("Set index invalid flag to false.");
 
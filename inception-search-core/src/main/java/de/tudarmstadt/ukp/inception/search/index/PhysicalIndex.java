@@ -26,6 +26,7 @@ import org.apache.uima.cas.CAS;
 
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument;
 import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.inception.search.DocumentResultsHandler;
 import de.tudarmstadt.ukp.inception.search.ExecutionException;
 import de.tudarmstadt.ukp.inception.search.SearchQueryRequest;
 import de.tudarmstadt.ukp.inception.search.SearchResult;
@@ -46,9 +47,54 @@ public interface PhysicalIndex
 
     boolean isOpen();
 
+    /**
+     * @return a number which changes whenever changes to the index become visible to queries.
+     *         Query results obtained for the same generation can be reused.
+     */
+    long getGeneration();
+
+    /**
+     * @return whether the physical index contains a partial rebuild which was interrupted and
+     *         which {@link #createPhysicalIndex()} can resume instead of starting over.
+     */
+    default boolean isResumable()
+    {
+        return false;
+    }
+
+    /**
+     * Update the index after the layer configuration of the project has changed, re-indexing only
+     * the documents affected by the change.
+     * 
+     * @return whether the index has been updated. If not, the index needs to be rebuilt.
+     */
+    default boolean reindexChangedLayers() throws IOException
+    {
+        return false;
+    }
+
+    /**
+     * Execute the query. Only the matches in the range given by the offset and count of the
+     * request are returned and only for those the context is retrieved from the index.
+     */
     Map<String, List<SearchResult>> executeQuery(SearchQueryRequest aRequest)
             throws IOException, ExecutionException;
 
+    /**
+     * Count the matches of the query without retrieving them. The offset and count of the request
+     * are ignored.
+     */
+    long numberOfQueryResults(SearchQueryRequest aRequest)
+            throws IOException, ExecutionException;
+
+    /**
+     * Execute the query and pass the results to the handler one document at a time, such that
+     * only the results of a single document need to be held in memory. The offset, count and
+     * grouping options of the request are ignored.
+     */
+    void executeQuery(SearchQueryRequest aRequest, DocumentResultsHandler aHandler)
+            throws IOException, ExecutionException;
+
     public void indexDocument(SourceDocument aDocument, CAS aJCas) throws IOException;
 
     public void indexDocument(AnnotationDocument aDocument, CAS aJCas) throws IOException;
@@ -17,10 +17,13 @@
  */
 package de.tudarmstadt.ukp.inception.search.scheduling;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Optional;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
 
 import org.apache.commons.lang3.Validate;
 import org.apache.uima.cas.CAS;
@@ -30,35 +33,61 @@ import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 
+import de.tudarmstadt.ukp.clarin.webanno.api.DocumentService;
+import de.tudarmstadt.ukp.clarin.webanno.api.ProjectService;
+import de.tudarmstadt.ukp.clarin.webanno.api.RepositoryProperties;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument;
 import de.tudarmstadt.ukp.clarin.webanno.model.Project;
 import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
 import de.tudarmstadt.ukp.inception.search.scheduling.tasks.IndexAnnotationDocumentTask;
 import de.tudarmstadt.ukp.inception.search.scheduling.tasks.IndexSourceDocumentTask;
 import de.tudarmstadt.ukp.inception.search.scheduling.tasks.ReindexTask;
+import de.tudarmstadt.ukp.inception.search.scheduling.tasks.UpdateLayersTask;
 import de.tudarmstadt.ukp.inception.search.scheduling.tasks.Task;
 
 /**
  * Indexer scheduler. Does the project re-indexing in an asynchronous way.
+ * <p>
+ * Pending tasks are kept in a map keyed by the project or document they refer to, so scheduling a
+ * task for a document which is already pending only updates the pending task (latest state
+ * wins). Tasks are never dropped and scheduling never blocks, so saving a document is not held
+ * up by a busy indexer. Since there is at most one pending task per document, the number of
+ * pending tasks is bounded by the number of documents. Only the first few pending tasks hold on
+ * to their CAS, the others load it from the storage when they are run. All pending tasks are
+ * recorded in a journal on disk and are scheduled again when the application is restarted.
  */
 @Component
 public class IndexScheduler
     implements InitializingBean, DisposableBean
 {
+    private static final String JOURNAL_FILE = "search-index-tasks.journal";
+
+    /**
+     * Maximum number of pending tasks which hold on to a CAS. Tasks scheduled beyond this load
+     * the CAS from the storage when they are run.
+     */
+    private static final int MAX_PENDING_TASKS_WITH_CAS = 100;
+
     private Logger log = LoggerFactory.getLogger(getClass());
 
     private @Autowired ApplicationContext applicationContext;
+    private @Autowired RepositoryProperties repositoryProperties;
+    private @Autowired ProjectService projectService;
+    private @Autowired DocumentService documentService;
 
     private TaskConsumer consumer;
     private Thread consumerThread;
-    private BlockingQueue<Task> queue = new ArrayBlockingQueue<Task>(100);
+    private final Map<String, Task> pending = new LinkedHashMap<>();
+    private IndexTaskJournal journal;
 
     @Override
     public void afterPropertiesSet()
     {
-        consumer = new TaskConsumer(applicationContext, queue);
+        consumer = new TaskConsumer(applicationContext, this);
         consumerThread = new Thread(consumer, "Index task consumer");
         consumerThread.setPriority(Thread.MIN_PRIORITY);
         consumerThread.start();
@@ -66,9 +95,56 @@ public class IndexScheduler
     }
 
     @Override
-    public void destroy()
+    public synchronized void destroy()
     {
         consumerThread.interrupt();
+
+        if (journal != null) {
+            try {
+                journal.close();
+            }
+            catch (IOException e) {
+                log.error("Unable to close index task journal", e);
+            }
+            journal = null;
+        }
+    }
+
+    /**
+     * Replay the tasks which were still pending when the application was shut down. This is done
+     * once the context is ready because the tasks need to be restored from the database.
+     */
+    @EventListener
+    public synchronized void onContextRefreshedEvent(ContextRefreshedEvent aEvent)
+    {
+        if (journal != null) {
+            return;
+        }
+
+        journal = new IndexTaskJournal(new File(repositoryProperties.getPath(), JOURNAL_FILE));
+
+        try {
+            for (String key : journal.open()) {
+                Optional<Task> task = restoreTask(key);
+                if (task.isPresent()) {
+                    pending.put(key, task.get());
+                    log.debug("Restored index task from journal: {}", task.get());
+                }
+                else {
+                    journal.removed(key);
+                }
+            }
+            
+            if (!pending.isEmpty()) {
+                log.info("Restored {} pending index task(s) from journal", pending.size());
+                notifyAll();
+            }
+        }
+        catch (IOException e) {
+            log.error("Unable to open index task journal - pending index tasks will not survive "
+                    + "a restart", e);
+            journal = null;
+        }
     }
 
     public void enqueueReindexTask(Project aProject)
@@ -77,6 +153,12 @@ public class IndexScheduler
         enqueue(new ReindexTask(aProject));
     }
 
+    public void enqueueUpdateLayersTask(Project aProject)
+    {
+        // Add layer update task
+        enqueue(new UpdateLayersTask(aProject));
+    }
+
     public void enqueueIndexDocument(SourceDocument aSourceDocument, CAS aCas)
     {
         // Index source document
@@ -95,77 +177,171 @@ public class IndexScheduler
      *  - Indexing of a whole project
      *  - Indexing of a source document
      *  - Indexing of an annotation document for a given user
+     * If a task for the same project or document is already pending, the pending task is updated
+     * to the latest state of the document instead of scheduling another task. This method never
+     * blocks.
      *  
      * @param aRunnable
      *          The indexing task
      */
     public synchronized void enqueue(Task aRunnable)
     {
-        Optional<Task> alreadyScheduledTask = findAlreadyScheduled(aRunnable);
+        String key = getKey(aRunnable);
         
-        // Project indexing task
-        if (aRunnable instanceof ReindexTask) {
-            if (alreadyScheduledTask.isPresent()) {
-                log.debug("Matching project indexing task already scheduled: [{}] - skipping ...",
-                        aRunnable);
-            }
-            else {
-                queue.offer(aRunnable);
-                log.debug("Enqueued new project indexing task: {}", aRunnable);
+        Task alreadyScheduledTask = pending.get(key);
+        if (alreadyScheduledTask != null) {
+            // Make sure the pending task takes into account the latest changes to the document
+            if (aRunnable.getCas() != null) {
+                // The pending task itself is already counted
+                alreadyScheduledTask.setCas(
+                        mayHoldCas(pending.size() - 1) ? aRunnable.getCas() : null);
             }
+            log.debug("Matching indexing task already scheduled: [{}] - updating CAS",
+                    aRunnable);
+            return;
+        }
+        
+        if (!mayHoldCas(pending.size())) {
+            // The CAS is loaded again when the task is run
+            aRunnable.setCas(null);
         }
-        // Source document indexing task
-        else if (aRunnable instanceof IndexSourceDocumentTask) {
-            if (alreadyScheduledTask.isPresent()) {
-                log.debug(
-                        "Matching source document indexing task already scheduled: [{}] - skipping ...",
-                        aRunnable);
+
+        pending.put(key, aRunnable);
+        if (journal != null) {
+            try {
+                journal.added(key);
             }
-            else {
-                queue.offer(aRunnable);
-                log.debug("Enqueued new source document indexing task: {}", aRunnable);
+            catch (IOException e) {
+                log.error("Unable to record indexing task in journal: {}", aRunnable, e);
             }
         }
-        // Annotation document indexing task
-        else if (aRunnable instanceof IndexAnnotationDocumentTask) {
-            // Try to update the document CAS in the task currently enqueued for the same 
-            // annotation document/user (if there is an enqueued task).
-            // This must be done so that the task will take into account the
-            // latest changes to the annotation document.
-            if (alreadyScheduledTask.isPresent()) {
-                alreadyScheduledTask.get().setCas(aRunnable.getCas());
-                log.debug(
-                        "Matching source document indexing task already scheduled: [{}] - updating CAS",
-                        aRunnable);
+        notifyAll();
+        
+        log.debug("Enqueued new indexing task: {}", aRunnable);
+    }
+
+    /**
+     * @param aOtherPendingTasks
+     *            number of pending tasks other than the task in question.
+     * @return whether the task may hold on to its CAS.
+     */
+    private static boolean mayHoldCas(int aOtherPendingTasks)
+    {
+        return aOtherPendingTasks < MAX_PENDING_TASKS_WITH_CAS;
+    }
+
+    /**
+     * Retrieves the next task, waiting for one to be scheduled if necessary. Called by the
+     * {@link TaskConsumer}.
+     */
+    synchronized Task take() throws InterruptedException
+    {
+        while (pending.isEmpty()) {
+            wait();
+        }
+        
+        Iterator<Task> i = pending.values().iterator();
+        Task task = i.next();
+        i.remove();
+        
+        return task;
+    }
+
+    /**
+     * Called by the {@link TaskConsumer} once a task is no longer running, whether it was
+     * successful or not.
+     */
+    synchronized void complete(Task aTask)
+    {
+        String key = getKey(aTask);
+        
+        // If the same document has been scheduled again while the task was running, the journal
+        // record must remain for the new task
+        if (journal != null && !pending.containsKey(key)) {
+            try {
+                journal.removed(key);
             }
-            else {
-                queue.offer(aRunnable);
-                log.debug("Enqueued new annotation document indexing task: {}", aRunnable);
+            catch (IOException e) {
+                log.error("Unable to record completion of indexing task in journal: {}", aTask,
+                        e);
             }
         }
     }
 
     public synchronized void stopAllTasksForUser(String username)
     {
-        Iterator<Task> taskIterator = queue.iterator();
+        Iterator<Entry<String, Task>> taskIterator = pending.entrySet().iterator();
         while (taskIterator.hasNext()) {
-            Task task = taskIterator.next();
-            if (task.getUser().equals(username)) {
-                queue.remove(task);
+            Entry<String, Task> entry = taskIterator.next();
+            if (username.equals(entry.getValue().getUser())) {
+                taskIterator.remove();
+                complete(entry.getValue());
             }
         }
+        notifyAll();
     }
 
-    public boolean isIndexInProgress(Project aProject)
+    public synchronized boolean isIndexInProgress(Project aProject)
     {
         Validate.notNull(aProject, "Project cannot be null");
         
-        return queue.stream().anyMatch(task -> aProject.equals(task.getProject())) ||
+        return pending.values().stream().anyMatch(task -> aProject.equals(task.getProject())) ||
                 consumer.getActiveTask().map(t -> aProject.equals(t.getProject())).orElse(false);
     }
     
-    private Optional<Task> findAlreadyScheduled(Task aTask)
+    private static String getKey(Task aTask)
+    {
+        if (aTask instanceof ReindexTask) {
+            return "reindex/" + aTask.getProject().getId();
+        }
+        else if (aTask instanceof UpdateLayersTask) {
+            return "layers/" + aTask.getProject().getId();
+        }
+        else if (aTask instanceof IndexSourceDocumentTask) {
+            return "source/" + aTask.getProject().getId() + "/"
+                    + aTask.getSourceDocument().getId();
+        }
+        else if (aTask instanceof IndexAnnotationDocumentTask) {
+            return "annotation/" + aTask.getProject().getId() + "/"
+                    + aTask.getAnnotationDocument().getDocument().getId() + "/"
+                    + aTask.getAnnotationDocument().getId();
+        }
+        else {
+            throw new IllegalArgumentException("Unsupported task type: " + aTask);
+        }
+    }
+    
+    private Optional<Task> restoreTask(String aKey)
     {
-        return queue.stream().filter(aTask::matches).findAny();
+        String[] parts = aKey.split("/");
+        try {
+            Project project = projectService.getProject(Long.parseLong(parts[1]));
+            switch (parts[0]) {
+            case "reindex":
+                return Optional.of(new ReindexTask(project));
+            case "layers":
+                return Optional.of(new UpdateLayersTask(project));
+            case "source":
+                return Optional.of(new IndexSourceDocumentTask(documentService
+                        .getSourceDocument(project.getId(), Long.parseLong(parts[2])), null));
+            case "annotation": {
+                SourceDocument sourceDocument = documentService.getSourceDocument(project.getId(),
+                        Long.parseLong(parts[2]));
+                long annotationDocumentId = Long.parseLong(parts[3]);
+                return documentService.listAnnotationDocuments(sourceDocument).stream()
+                        .filter(d -> d.getId() == annotationDocumentId)
+                        .findFirst()
+                        .map(d -> (Task) new IndexAnnotationDocumentTask(d, null));
+            }
+            default:
+                log.warn("Unknown index task in journal: [{}]", aKey);
+                return Optional.empty();
+            }
+        }
+        catch (Exception e) {
+            // The project or document has probably been deleted in the meantime
+            log.debug("Unable to restore index task [{}] from journal - skipping", aKey, e);
+            return Optional.empty();
+        }
     }
 }
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.search.scheduling;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Append-only journal of the index tasks which have been scheduled but not completed yet. Each
+ * line records a task key being added ({@code +key}) or completed ({@code -key}). Replaying the
+ * journal yields the outstanding tasks in the order in which they were scheduled. The journal is
+ * compacted on opening and whenever it has grown large, so it stays proportional to the number of
+ * outstanding tasks.
+ * <p>
+ * The journal is not thread-safe - the {@link IndexScheduler} only accesses it while holding its
+ * own lock.
+ */
+class IndexTaskJournal
+    implements Closeable
+{
+    private static final char ADDED = '+';
+    private static final char REMOVED = '-';
+
+    private static final int COMPACTION_THRESHOLD = 10_000;
+
+    private final File file;
+    private final Set<String> outstanding = new LinkedHashSet<>();
+    private Writer writer;
+    private int records;
+
+    public IndexTaskJournal(File aFile)
+    {
+        file = aFile;
+    }
+
+    /**
+     * Opens the journal for writing after replaying any existing records.
+     *
+     * @return the keys of the outstanding tasks in the order they were scheduled.
+     */
+    public Set<String> open() throws IOException
+    {
+        outstanding.clear();
+
+        if (file.exists()) {
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(new FileInputStream(file), UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.length() < 2) {
+                        // Partially written last record
+                        continue;
+                    }
+
+                    String key = line.substring(1);
+                    switch (line.charAt(0)) {
+                    case ADDED:
+                        outstanding.add(key);
+                        break;
+                    case REMOVED:
+                        outstanding.remove(key);
+                        break;
+                    default:
+                        // Ignore garbage
+                        break;
+                    }
+                }
+            }
+        }
+
+        compact();
+
+        return new LinkedHashSet<>(outstanding);
+    }
+
+    public void added(String aKey) throws IOException
+    {
+        if (outstanding.add(aKey)) {
+            write(ADDED, aKey);
+        }
+    }
+
+    public void removed(String aKey) throws IOException
+    {
+        if (outstanding.remove(aKey)) {
+            write(REMOVED, aKey);
+
+            if (records >= COMPACTION_THRESHOLD) {
+                compact();
+            }
+        }
+    }
+
+    private void write(char aType, String aKey) throws IOException
+    {
+        if (writer == null) {
+            throw new IOException("Journal [" + file + "] is not open");
+        }
+
+        writer.write(aType);
+        writer.write(aKey);
+        writer.write('\n');
+        writer.flush();
+        records++;
+    }
+
+    /**
+     * Rewrite the journal such that it only contains the outstanding tasks. The new journal is
+     * written to a temporary file first and then moved into place, so a crash during compaction
+     * does not lose any records.
+     */
+    private void compact() throws IOException
+    {
+        close();
+
+        Files.createDirectories(file.getAbsoluteFile().getParentFile().toPath());
+
+        File tempFile = File.createTempFile(file.getName(), ".tmp",
+                file.getAbsoluteFile().getParentFile());
+        try {
+            try (Writer out = new BufferedWriter(
+                    new OutputStreamWriter(new FileOutputStream(tempFile), UTF_8))) {
+                for (String key : outstanding) {
+                    out.write(ADDED);
+                    out.write(key);
+                    out.write('\n');
+                }
+            }
+
+            Files.move(tempFile.toPath(), file.toPath(), REPLACE_EXISTING, ATOMIC_MOVE);
+        }
+        finally {
+            Files.deleteIfExists(tempFile.toPath());
+        }
+
+        records = outstanding.size();
+        writer = new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(file, true), UTF_8));
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+}
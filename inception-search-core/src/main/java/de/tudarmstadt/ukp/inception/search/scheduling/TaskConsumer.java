@@ -20,7 +20,6 @@ package de.tudarmstadt.ukp.inception.search.scheduling;
 import static org.apache.commons.lang3.Validate.notNull;
 
 import java.util.Optional;
-import java.util.concurrent.BlockingQueue;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,15 +34,15 @@ public class TaskConsumer
     private Logger log = LoggerFactory.getLogger(getClass());
 
     private ApplicationContext applicationContext;
-    private BlockingQueue<Task> queue;
-    private Task activeTask;
+    private IndexScheduler scheduler;
+    private volatile Task activeTask;
 
-    public TaskConsumer(ApplicationContext aApplicationContext, BlockingQueue<Task> aQueue)
+    public TaskConsumer(ApplicationContext aApplicationContext, IndexScheduler aScheduler)
     {
-        notNull(aQueue);
+        notNull(aScheduler);
         notNull(aApplicationContext);
 
-        queue = aQueue;
+        scheduler = aScheduler;
         applicationContext = aApplicationContext;
     }
 
@@ -54,7 +53,7 @@ public class TaskConsumer
             while (!Thread.interrupted()) {
                 log.debug("Waiting for new indexing task...");
 
-                activeTask = queue.take();
+                activeTask = scheduler.take();
 
                 try {
                     AutowireCapableBeanFactory factory = applicationContext
@@ -70,6 +69,7 @@ public class TaskConsumer
                     log.error("Indexing task failed: {}", activeTask, e);
                 }
                 finally {
+                    scheduler.complete(activeTask);
                     activeTask = null;
                 }
             }
@@ -17,9 +17,12 @@
  */
 package de.tudarmstadt.ukp.inception.search.scheduling.tasks;
 
+import java.io.IOException;
+
 import org.apache.uima.cas.CAS;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import de.tudarmstadt.ukp.clarin.webanno.api.DocumentService;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument;
 import de.tudarmstadt.ukp.inception.search.SearchService;
 
@@ -30,6 +33,7 @@ public class IndexAnnotationDocumentTask
     extends Task
 {
     private @Autowired SearchService searchService;
+    private @Autowired DocumentService documentService;
     
     public IndexAnnotationDocumentTask(AnnotationDocument aAnnotationDocument, CAS aJCas)
     {
@@ -39,7 +43,18 @@ public class IndexAnnotationDocumentTask
     @Override
     public void run()
     {
-        searchService.indexDocument(super.getAnnotationDocument(), super.getCas());
+        CAS cas = super.getCas();
+        if (cas == null) {
+            // The task was restored from the journal or scheduled while many tasks were pending
+            try {
+                cas = documentService.readAnnotationCas(super.getAnnotationDocument());
+            }
+            catch (IOException e) {
+                throw new IllegalStateException("Unable to load CAS to index", e);
+            }
+        }
+        
+        searchService.indexDocument(super.getAnnotationDocument(), cas);
     }
     
     @Override
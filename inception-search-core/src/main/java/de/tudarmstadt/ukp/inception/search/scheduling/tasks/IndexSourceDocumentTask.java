@@ -17,9 +17,12 @@
  */
 package de.tudarmstadt.ukp.inception.search.scheduling.tasks;
 
+import java.io.IOException;
+
 import org.apache.uima.cas.CAS;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import de.tudarmstadt.ukp.clarin.webanno.api.DocumentService;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument;
 import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
 import de.tudarmstadt.ukp.inception.search.SearchService;
@@ -31,6 +34,7 @@ public class IndexSourceDocumentTask
     extends Task
 {
     private @Autowired SearchService searchService;
+    private @Autowired DocumentService documentService;
     
     public IndexSourceDocumentTask(SourceDocument aSourceDocument, CAS aCas)
     {
@@ -45,7 +49,18 @@ public class IndexSourceDocumentTask
     @Override
     public void run()
     {
-        searchService.indexDocument(super.getSourceDocument(), super.getCas());
+        CAS cas = super.getCas();
+        if (cas == null) {
+            // The task was restored from the journal or scheduled while many tasks were pending
+            try {
+                cas = documentService.createOrReadInitialCas(super.getSourceDocument());
+            }
+            catch (IOException e) {
+                throw new IllegalStateException("Unable to load CAS to index", e);
+            }
+        }
+        
+        searchService.indexDocument(super.getSourceDocument(), cas);
     }
     
     @Override
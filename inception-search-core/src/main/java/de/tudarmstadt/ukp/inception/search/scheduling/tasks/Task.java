@@ -60,7 +60,6 @@ public abstract class Task
     public Task(AnnotationDocument aAnnotationDocument, CAS aCas)
     {
         notNull(aAnnotationDocument);
-        notNull(aCas);
 
         project = aAnnotationDocument.getProject();
         annotationDocument = aAnnotationDocument;
@@ -88,6 +87,11 @@ public abstract class Task
         return annotationDocument;
     }
 
+    /**
+     * @param aCas
+     *            the CAS to index or {@code null} if the task should load the CAS from the storage
+     *            when it is run.
+     */
     public void setCas(CAS aCas)
     {
         cas = aCas;
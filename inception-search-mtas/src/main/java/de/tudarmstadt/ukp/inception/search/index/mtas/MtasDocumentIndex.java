@@ -22,24 +22,45 @@ import static de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocumentState.FI
 import static de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocumentState.IGNORE;
 import static de.tudarmstadt.ukp.inception.search.index.mtas.MtasUimaParser.getIndexedName;
 import static de.tudarmstadt.ukp.inception.search.index.mtas.MtasUtils.decodeFSAddress;
-import static org.apache.uima.cas.SerialFormat.SERIALIZED_TSI;
+import static java.lang.System.currentTimeMillis;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptySet;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.Reader;
 import java.io.StringReader;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.BreakIterator;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -59,21 +80,27 @@ import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.MultiReader;
+import org.apache.lucene.index.SegmentInfos;
 import org.apache.lucene.index.SegmentReader;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.spans.SpanWeight;
 import org.apache.lucene.search.spans.Spans;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
 import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.Type;
 import org.apache.uima.cas.TypeSystem;
-import org.apache.uima.util.CasIOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -92,6 +119,7 @@ import de.tudarmstadt.ukp.clarin.webanno.model.Project;
 import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
 import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
 import de.tudarmstadt.ukp.clarin.webanno.support.ApplicationContextProvider;
+import de.tudarmstadt.ukp.inception.search.DocumentResultsHandler;
 import de.tudarmstadt.ukp.inception.search.ExecutionException;
 import de.tudarmstadt.ukp.inception.search.FeatureIndexingSupport;
 import de.tudarmstadt.ukp.inception.search.FeatureIndexingSupportRegistry;
@@ -120,6 +148,13 @@ public class MtasDocumentIndex
             "de.tudarmstadt.ukp.inception.search.index.mtas.MtasUimaParser";
     private static final String MTAS_TOKENIZER = "mtas";
     private static final String INDEX = "indexMtas";
+    
+    /**
+     * Names of the shards within the index folder. The source documents are kept in one shard,
+     * the annotation documents of each user in a separate shard (cf. {@link MtasIndexShard}).
+     */
+    private static final String SOURCE_SHARD = "source";
+    private static final String USER_SHARD_PREFIX = "user-";
 
     /**
      * Constant for the field which carries the unique identifier for the index document consisting:
@@ -151,6 +186,12 @@ public class MtasDocumentIndex
     /** The Constant FIELD_TIMESTAMP. */
     private static final String FIELD_TIMESTAMP = "timestamp";
 
+    /**
+     * Constant for the field which carries the names of the layers which have annotations in the
+     * document. Used to find the documents affected by a change of the layer configuration.
+     */
+    private static final String FIELD_LAYERS = "layers";
+
     // Default prefix for CQL queries
     private static final String DEFAULT_PREFIX = "Token";
 
@@ -158,6 +199,20 @@ public class MtasDocumentIndex
 
     private static final String EMPTY_FEATURE_VALUE_KEY = "<Empty>";
 
+    /**
+     * Commit data keys used to checkpoint a rebuild of the index.
+     */
+    private static final String COMMIT_REINDEX_STATE = "reindexState";
+    private static final String COMMIT_SCHEMA_SIGNATURE = "schemaSignature";
+    private static final String COMMIT_LAYER_SIGNATURE_PREFIX = "layerSignature:";
+    private static final String REINDEX_IN_PROGRESS = "inProgress";
+    private static final String REINDEX_COMPLETE = "complete";
+
+    private static final int REINDEX_THREADS = Math.max(1,
+            Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+    private static final int REINDEX_MAX_DOCUMENTS_IN_FLIGHT = REINDEX_THREADS * 2;
+    private static final int REINDEX_COMMIT_INTERVAL = 100;
+
     // Comparator for feature values. Sort lexicographically and make sure
     // EMPTY_FEATUREVALUE_KEY is the "biggest" value
     private static final Comparator<String> FEATUREVALUE_COMPARATOR = (o1, o2) -> {
@@ -185,8 +240,16 @@ public class MtasDocumentIndex
     private final ProjectService projectService;
     private final Project project;
 
-    // The index writers for this index
-    private IndexWriter indexWriter;
+    // The shards of this index - the index is considered open if the source shard is open
+    private final MtasIndexShard sourceShard;
+    private final Map<String, MtasIndexShard> userShards = new ConcurrentHashMap<>();
+    
+    // Advanced whenever changes to the index are committed
+    private final AtomicLong generation = new AtomicLong();
+    
+    // Layer configuration used for indexing - looked up once instead of for every document and
+    // reset when the layer configuration of the project changes
+    private volatile LayerConfiguration layerConfiguration;
 
     private final File resourceDir;
 
@@ -205,6 +268,7 @@ public class MtasDocumentIndex
         project = aProject;
        
         resourceDir = new File(aDir);
+        sourceShard = new MtasIndexShard(new File(getIndexDir(), SOURCE_SHARD));
         log.debug("New Mtas/Lucene index instance created...");
     }
 
@@ -218,31 +282,99 @@ public class MtasDocumentIndex
     public Map<String, List<SearchResult>> executeQuery(SearchQueryRequest aRequest)
         throws IOException, ExecutionException
     {
-        try {
+        try (IndexReader indexReader = openReader(aRequest.getUser())) {
             log.trace("Executing query {} on index {}", aRequest, getIndexDir());
             
-            Directory directory = FSDirectory.open(getIndexDir().toPath());
-            IndexReader indexReader = DirectoryReader.open(directory);
-
-            String modifiedQuery = parseQuery(aRequest.getQuery());
-            MtasSpanQuery mtasSpanQuery;
-            try (Reader reader = new StringReader(modifiedQuery)) {
-                MtasCQLParser parser = new MtasCQLParser(reader);
-                mtasSpanQuery = parser.parse(FIELD_CONTENT, DEFAULT_PREFIX, null, null, null);
-            }
+            return doQuery(indexReader, aRequest, FIELD_CONTENT, parseSpanQuery(aRequest));
+        }
+        catch (mtas.parser.cql.ParseException e) {
+            log.error("Unable to parse query: [{}]" + aRequest.getQuery(), e);
+            throw new ExecutionException("Unable to parse query [" + aRequest.getQuery() + "]", e);
+        }
+        catch (Exception e) {
+            log.error("Query execution error", e);
+            throw (new ExecutionException("Query execution error", e));
+        }
+    }
+
+    @Override
+    public long numberOfQueryResults(SearchQueryRequest aRequest)
+        throws IOException, ExecutionException
+    {
+        try (IndexReader indexReader = openReader(aRequest.getUser())) {
+            log.trace("Counting results of query {} on index {}", aRequest, getIndexDir());
+            
+            return doCount(indexReader, aRequest, FIELD_CONTENT, parseSpanQuery(aRequest));
+        }
+        catch (mtas.parser.cql.ParseException e) {
+            log.error("Unable to parse query: [{}]" + aRequest.getQuery(), e);
+            throw new ExecutionException("Unable to parse query [" + aRequest.getQuery() + "]", e);
+        }
+        catch (Exception e) {
+            log.error("Query execution error", e);
+            throw (new ExecutionException("Query execution error", e));
+        }
+    }
+
+    @Override
+    public void executeQuery(SearchQueryRequest aRequest, DocumentResultsHandler aHandler)
+        throws IOException, ExecutionException
+    {
+        try (IndexReader indexReader = openReader(aRequest.getUser())) {
+            log.trace("Streaming results of query {} on index {}", aRequest, getIndexDir());
             
-            return doQuery(indexReader, aRequest, FIELD_CONTENT, mtasSpanQuery);
+            doStreamingQuery(indexReader, aRequest, FIELD_CONTENT, parseSpanQuery(aRequest),
+                    aHandler);
         }
         catch (mtas.parser.cql.ParseException e) {
             log.error("Unable to parse query: [{}]" + aRequest.getQuery(), e);
             throw new ExecutionException("Unable to parse query [" + aRequest.getQuery() + "]", e);
         }
+        catch (IOException e) {
+            // Most likely raised by the handler - let the caller deal with it
+            throw e;
+        }
         catch (Exception e) {
             log.error("Query execution error", e);
             throw (new ExecutionException("Query execution error", e));
         }
     }
 
+    /**
+     * Open a reader over the shards containing the documents visible to the given user - i.e.
+     * the source documents and the annotation documents of the user. The shards of other users
+     * are not touched.
+     */
+    private IndexReader openReader(User aUser) throws IOException
+    {
+        List<IndexReader> readers = new ArrayList<>();
+        try {
+            for (MtasIndexShard shard : asList(sourceShard, getUserShard(aUser.getUsername()))) {
+                if (shard.exists()) {
+                    readers.add(shard.openReader());
+                }
+            }
+        }
+        catch (IOException e) {
+            for (IndexReader reader : readers) {
+                reader.close();
+            }
+            throw e;
+        }
+        
+        return new MultiReader(readers.toArray(new IndexReader[readers.size()]), true);
+    }
+
+    private MtasSpanQuery parseSpanQuery(SearchQueryRequest aRequest)
+        throws IOException, mtas.parser.cql.ParseException
+    {
+        String modifiedQuery = parseQuery(aRequest.getQuery());
+        try (Reader reader = new StringReader(modifiedQuery)) {
+            MtasCQLParser parser = new MtasCQLParser(reader);
+            return parser.parse(FIELD_CONTENT, DEFAULT_PREFIX, null, null, null);
+        }
+    }
+
     private String parseQuery(String aQuery)
     {
         String result;
@@ -284,6 +416,98 @@ public class MtasDocumentIndex
     {
         Map<String, List<SearchResult>> results = new TreeMap<>(FEATUREVALUE_COMPARATOR);
 
+        long[] skip = { aRequest.getOffset() };
+        long[] remaining = { aRequest.getCount() };
+        
+        forEachMatch(aIndexReader, aRequest, field, q, (doc, matchStart, matchEnd) -> {
+            // Matches before the requested page are only counted - the expensive retrieval of
+            // the context is only done for the matches on the page
+            if (skip[0] > 0) {
+                skip[0]--;
+                return true;
+            }
+            
+            if (remaining[0] <= 0) {
+                return false;
+            }
+            
+            addMatchToResults(results, doc, aRequest, field, matchStart, matchEnd);
+            
+            remaining[0]--;
+            return remaining[0] > 0;
+        });
+        
+        return results;
+    }
+
+    private void doStreamingQuery(IndexReader aIndexReader, SearchQueryRequest aRequest,
+            String field, MtasSpanQuery q, DocumentResultsHandler aHandler)
+        throws IOException
+    {
+        // All matches of an index document are reported consecutively and there is at most one
+        // index document per source document visible to the user, so we can hand the results
+        // of a document over as soon as the matches of the next document start
+        MatchedDocument[] currentDocument = { null };
+        List<SearchResult> currentResults = new ArrayList<>();
+        boolean[] stopped = { false };
+        IOException[] handlerException = { null };
+        
+        forEachMatch(aIndexReader, aRequest, field, q, (doc, matchStart, matchEnd) -> {
+            if (currentDocument[0] != doc) {
+                if (currentDocument[0] != null && !currentResults.isEmpty()) {
+                    try {
+                        stopped[0] = !aHandler.handle(currentDocument[0].sourceDocumentId,
+                                new ArrayList<>(currentResults));
+                    }
+                    catch (IOException e) {
+                        handlerException[0] = e;
+                        stopped[0] = true;
+                    }
+                    
+                    if (stopped[0]) {
+                        return false;
+                    }
+                }
+                currentDocument[0] = doc;
+                currentResults.clear();
+            }
+            
+            List<MtasTokenString> tokens = getMatchTokens(doc, field, matchStart, matchEnd);
+            if (!tokens.isEmpty()) {
+                currentResults.add(createResult(doc, tokens, matchStart, matchEnd));
+            }
+            return true;
+        });
+        
+        if (handlerException[0] != null) {
+            throw handlerException[0];
+        }
+        
+        if (!stopped[0] && currentDocument[0] != null && !currentResults.isEmpty()) {
+            aHandler.handle(currentDocument[0].sourceDocumentId, currentResults);
+        }
+    }
+
+    private long doCount(IndexReader aIndexReader, SearchQueryRequest aRequest, String field,
+            MtasSpanQuery q)
+        throws IOException
+    {
+        long[] count = { 0 };
+        forEachMatch(aIndexReader, aRequest, field, q, (doc, matchStart, matchEnd) -> {
+            count[0]++;
+            return true;
+        });
+        return count[0];
+    }
+
+    /**
+     * Iterates over all matches of the query which are visible to the user who issued the request.
+     * No context information is retrieved for the matches here.
+     */
+    private void forEachMatch(IndexReader aIndexReader, SearchQueryRequest aRequest, String field,
+            MtasSpanQuery q, MatchHandler aHandler)
+        throws IOException
+    {
         ListIterator<LeafReaderContext> leafReaderContextIterator = aIndexReader.leaves()
                 .listIterator();
 
@@ -380,106 +604,14 @@ public class MtasDocumentIndex
                                 continue;
                             }
 
-                            // Retrieve document title
-                            String documentTitle = document.get(FIELD_TITLE);
-
-                            // String idValue = segmentReader.document(spans.docID())
-                            // .getField(FIELD_ID).stringValue();
-                            // log.debug("******** New doc {}-{}", + spans.docID(), idValue);
+                            MatchedDocument matchedDocument = new MatchedDocument(mtasCodecInfo,
+                                    spans.docID(), sourceDocumentId, document.get(FIELD_TITLE),
+                                    annotationDocument);
 
                             while (spans.nextStartPosition() != Spans.NO_MORE_POSITIONS) {
-                                int matchStart = spans.startPosition();
-                                int matchEnd = spans.endPosition();
-                                
-                                int windowStart = Math.max(matchStart - RESULT_WINDOW_SIZE, 0);
-                                int windowEnd = matchEnd + RESULT_WINDOW_SIZE - 1;
-                                
-                                // Retrieve all indexed objects within the matching range
-                                List<MtasTokenString> tokens = mtasCodecInfo.getObjectsByPositions(
-                                        field, spans.docID(), windowStart, windowEnd);
-                                
-                                tokens.sort(Comparator.comparing(MtasTokenString::getOffsetStart));
-
-                                if (tokens.isEmpty()) {
-                                    continue;
-                                }
-
-                                SearchResult result = new SearchResult();
-                                StringBuilder resultText = new StringBuilder();
-                                StringBuilder leftContext = new StringBuilder();
-                                StringBuilder rightContext = new StringBuilder();
-                                result.setDocumentId(sourceDocumentId);
-                                result.setDocumentTitle(documentTitle);
-                                result.setOffsetStart(tokens.stream()
-                                        .filter(t -> t.getPositionStart() >= matchStart && 
-                                                t.getPositionEnd() < matchEnd)
-                                        .mapToInt(MtasTokenString::getOffsetStart)
-                                        .min()
-                                        .getAsInt());
-                                result.setOffsetEnd(tokens.stream()
-                                        .filter(t -> t.getPositionStart() >= matchStart && 
-                                                t.getPositionEnd() < matchEnd)
-                                        .mapToInt(MtasTokenString::getOffsetEnd)
-                                        .max()
-                                        .getAsInt());
-                                result.setTokenStart(matchStart);
-                                result.setTokenLength(matchEnd - matchStart);
-                                result.setReadOnly(annotationDocument != null
-                                        && FINISHED.equals(annotationDocument.getState()));
-                                result.setSelectedForAnnotation(!result.isReadOnly());
-                                
-                                MtasTokenString prevToken = null;
-                                for (MtasTokenString token : tokens) {
-                                    if (!token.getPrefix().equals(DEFAULT_PREFIX)) {
-                                        continue;
-                                    }
-                                    
-                                    // When searching for an annotation, we don't get the matching
-                                    // text back... not sure why...
-                                    String tokenText = CodecUtil.termValue(token.getValue());
-                                    if (tokenText == null) {
-                                        continue;
-                                    }
-                                    
-                                    if (token.getPositionStart() < matchStart) {
-                                        fill(leftContext, prevToken, token);
-                                        leftContext.append(tokenText);
-                                    }
-                                    else if (token.getPositionStart() >= matchEnd) {
-                                        fill(rightContext, prevToken, token);
-                                        rightContext.append(tokenText);
-                                    }
-                                    else {
-                                        // Only add the whitespace to the match if we already have
-                                        // added any text to the match - otherwise consider the 
-                                        // whitespace to be part of the left contex
-                                        if (resultText.length() > 0) {
-                                            fill(resultText, prevToken, token);
-                                        }
-                                        else {
-                                            fill(leftContext, prevToken, token);
-                                        }
-                                        resultText.append(tokenText);
-                                    }
-                                    prevToken = token;
-                                }
-                                result.setText(resultText.toString());
-                                result.setLeftContext(leftContext.toString());
-                                result.setRightContext(rightContext.toString());
-
-                                AnnotationLayer groupingLayer = aRequest.getAnnoationLayer();
-                                AnnotationFeature groupingFeature = aRequest.getAnnotationFeature();
-
-                                if (groupingLayer != null && groupingFeature != null) {
-                                    List<String> featureValues = featureValuesAtMatch(tokens,
-                                        matchStart, matchEnd, groupingLayer, groupingFeature);
-                                    for (String featureValue : featureValues) {
-                                        addToResults(results, featureValue, result);
-                                    }
-                                }
-                                else {
-                                    // if no annotation feature is specified group by document title
-                                    addToResults(results, result.getDocumentTitle(), result);
+                                if (!aHandler.handle(matchedDocument, spans.startPosition(),
+                                        spans.endPosition())) {
+                                    return;
                                 }
                             }
                         }
@@ -490,7 +622,156 @@ public class MtasDocumentIndex
                 log.error("Unable to process query results", e);
             }
         }
-        return results;
+    }
+
+    private void addMatchToResults(Map<String, List<SearchResult>> aResults,
+            MatchedDocument aDocument, SearchQueryRequest aRequest, String field, int matchStart,
+            int matchEnd)
+        throws IOException
+    {
+        List<MtasTokenString> tokens = getMatchTokens(aDocument, field, matchStart, matchEnd);
+
+        if (tokens.isEmpty()) {
+            return;
+        }
+
+        SearchResult result = createResult(aDocument, tokens, matchStart, matchEnd);
+
+        AnnotationLayer groupingLayer = aRequest.getAnnoationLayer();
+        AnnotationFeature groupingFeature = aRequest.getAnnotationFeature();
+
+        if (groupingLayer != null && groupingFeature != null) {
+            List<String> featureValues = featureValuesAtMatch(tokens,
+                matchStart, matchEnd, groupingLayer, groupingFeature);
+            for (String featureValue : featureValues) {
+                addToResults(aResults, featureValue, result);
+            }
+        }
+        else {
+            // if no annotation feature is specified group by document title
+            addToResults(aResults, result.getDocumentTitle(), result);
+        }
+    }
+
+    /**
+     * Retrieve all indexed objects within the match and the context window around it.
+     */
+    private List<MtasTokenString> getMatchTokens(MatchedDocument aDocument, String field,
+            int matchStart, int matchEnd)
+        throws IOException
+    {
+        int windowStart = Math.max(matchStart - RESULT_WINDOW_SIZE, 0);
+        int windowEnd = matchEnd + RESULT_WINDOW_SIZE - 1;
+        
+        List<MtasTokenString> tokens = aDocument.codecInfo.getObjectsByPositions(field,
+                aDocument.docId, windowStart, windowEnd);
+        
+        tokens.sort(Comparator.comparing(MtasTokenString::getOffsetStart));
+        
+        return tokens;
+    }
+
+    private SearchResult createResult(MatchedDocument aDocument, List<MtasTokenString> tokens,
+            int matchStart, int matchEnd)
+    {
+        AnnotationDocument annotationDocument = aDocument.annotationDocument;
+        
+        SearchResult result = new SearchResult();
+        StringBuilder resultText = new StringBuilder();
+        StringBuilder leftContext = new StringBuilder();
+        StringBuilder rightContext = new StringBuilder();
+        result.setDocumentId(aDocument.sourceDocumentId);
+        result.setDocumentTitle(aDocument.documentTitle);
+        result.setOffsetStart(tokens.stream()
+                .filter(t -> t.getPositionStart() >= matchStart && 
+                        t.getPositionEnd() < matchEnd)
+                .mapToInt(MtasTokenString::getOffsetStart)
+                .min()
+                .getAsInt());
+        result.setOffsetEnd(tokens.stream()
+                .filter(t -> t.getPositionStart() >= matchStart && 
+                        t.getPositionEnd() < matchEnd)
+                .mapToInt(MtasTokenString::getOffsetEnd)
+                .max()
+                .getAsInt());
+        result.setTokenStart(matchStart);
+        result.setTokenLength(matchEnd - matchStart);
+        result.setReadOnly(annotationDocument != null
+                && FINISHED.equals(annotationDocument.getState()));
+        result.setSelectedForAnnotation(!result.isReadOnly());
+        
+        MtasTokenString prevToken = null;
+        for (MtasTokenString token : tokens) {
+            if (!token.getPrefix().equals(DEFAULT_PREFIX)) {
+                continue;
+            }
+            
+            // When searching for an annotation, we don't get the matching
+            // text back... not sure why...
+            String tokenText = CodecUtil.termValue(token.getValue());
+            if (tokenText == null) {
+                continue;
+            }
+            
+            if (token.getPositionStart() < matchStart) {
+                fill(leftContext, prevToken, token);
+                leftContext.append(tokenText);
+            }
+            else if (token.getPositionStart() >= matchEnd) {
+                fill(rightContext, prevToken, token);
+                rightContext.append(tokenText);
+            }
+            else {
+                // Only add the whitespace to the match if we already have
+                // added any text to the match - otherwise consider the 
+                // whitespace to be part of the left contex
+                if (resultText.length() > 0) {
+                    fill(resultText, prevToken, token);
+                }
+                else {
+                    fill(leftContext, prevToken, token);
+                }
+                resultText.append(tokenText);
+            }
+            prevToken = token;
+        }
+        result.setText(resultText.toString());
+        result.setLeftContext(leftContext.toString());
+        result.setRightContext(rightContext.toString());
+        
+        return result;
+    }
+
+    @FunctionalInterface
+    private interface MatchHandler
+    {
+        /**
+         * @return {@code true} to continue with the next match, {@code false} to stop.
+         */
+        boolean handle(MatchedDocument aDocument, int aMatchStart, int aMatchEnd)
+            throws IOException;
+    }
+
+    /**
+     * A matched index document which is visible to the user who issued the query.
+     */
+    private static class MatchedDocument
+    {
+        private final CodecInfo codecInfo;
+        private final int docId;
+        private final long sourceDocumentId;
+        private final String documentTitle;
+        private final AnnotationDocument annotationDocument;
+
+        public MatchedDocument(CodecInfo aCodecInfo, int aDocId, long aSourceDocumentId,
+                String aDocumentTitle, AnnotationDocument aAnnotationDocument)
+        {
+            codecInfo = aCodecInfo;
+            docId = aDocId;
+            sourceDocumentId = aSourceDocumentId;
+            documentTitle = aDocumentTitle;
+            annotationDocument = aAnnotationDocument;
+        }
     }
 
     private void addToResults(Map<String, List<SearchResult>> aResultsMap, String aKey,
@@ -567,11 +848,61 @@ public class MtasDocumentIndex
         }
     }
 
+    private Document createLuceneDocument(String aDocumentTitle, long aSourceDocumentId,
+            long aAnnotationDocumentId, String aUser, CAS aCas)
+    {
+        LayerConfiguration layerConfig = getLayerConfiguration();
+        
+        // Extract the tokens to be indexed directly from the CAS and pass them on in a
+        // compact encoding - the parser used by the analyzer only decodes them again. Each
+        // indexing thread re-uses its parser such that the buffers of the parser are re-used.
+        MtasUimaParser parser = layerConfig.getParser();
+        String encodedTokens = new String(
+                MtasUtils.encodeTokenCollection(parser.createTokenCollection(aCas)));
+
+        // Calculate timestamp that will be indexed
+        String timestamp = DateTools.dateToString(new Date(), DateTools.Resolution.MILLISECOND);
+
+        // Create new Lucene document
+        Document doc = new Document();
+        
+        // Add indexed fields
+        doc.add(new StringField(FIELD_ID, documentKey(aSourceDocumentId, aAnnotationDocumentId),
+                Field.Store.YES));
+        doc.add(new StringField(FIELD_SOURCE_DOCUMENT_ID, String.valueOf(aSourceDocumentId),
+                Field.Store.YES));
+        doc.add(new StringField(FIELD_ANNOTATION_DOCUMENT_ID,
+                String.valueOf(aAnnotationDocumentId), Field.Store.YES));
+        doc.add(new StringField(FIELD_TITLE, aDocumentTitle, Field.Store.YES));
+        doc.add(new StringField(FIELD_USER, aUser, Field.Store.YES));
+        doc.add(new StringField(FIELD_TIMESTAMP, timestamp, Field.Store.YES));
+        doc.add(new TextField(FIELD_CONTENT, encodedTokens, Field.Store.NO));
+        for (String layer : layerConfig.signatures.keySet()) {
+            if (hasAnnotations(aCas, layer)) {
+                doc.add(new StringField(FIELD_LAYERS, layer, Field.Store.NO));
+            }
+        }
+        
+        return doc;
+    }
+
+    private static boolean hasAnnotations(CAS aCas, String aTypeName)
+    {
+        Type type = aCas.getTypeSystem().getType(aTypeName);
+        return type != null && aCas.getTypeSystem().subsumes(aCas.getAnnotationType(), type)
+                && aCas.getAnnotationIndex(type).size() > 0;
+    }
+
+    private static String documentKey(long aSourceDocumentId, long aAnnotationDocumentId)
+    {
+        return aSourceDocumentId + "/" + aAnnotationDocumentId;
+    }
+
     private void indexDocument(String aDocumentTitle, long aSourceDocumentId,
             long aAnnotationDocumentId, String aUser, CAS aCas)
         throws IOException
     {
-        if (indexWriter != null) {
+        if (isOpen()) {
             try {
                 log.debug(
                         "Indexing document in project [{}]({}). sourceId: {}, annotationId: {}, "
@@ -579,53 +910,33 @@ public class MtasDocumentIndex
                         project.getName(), project.getId(), aSourceDocumentId,
                         aAnnotationDocumentId, aUser);
                 
-                // Prepare bytearray with document content to be indexed
-                String encodedCAS; 
-                try (ByteArrayOutputStream bos = new ByteArrayOutputStream()) {
-                    //XmiCasSerializer.serialize(aCas, null, bos, true, null);
-                    CasIOUtils.save(aCas, bos, SERIALIZED_TSI);
-                    encodedCAS = new String(MtasUtils.bytesToChars(bos.toByteArray()));
-                }
-
-                // Calculate timestamp that will be indexed
-                String timestamp = DateTools.dateToString(new Date(),
-                        DateTools.Resolution.MILLISECOND);
-
-                // Create new Lucene document
-                Document doc = new Document();
-                
-                // Add indexed fields
-                doc.add(new StringField(FIELD_ID, String.valueOf(aSourceDocumentId) + "/"
-                        + String.valueOf(aAnnotationDocumentId), Field.Store.YES));
-                doc.add(new StringField(FIELD_SOURCE_DOCUMENT_ID, String.valueOf(aSourceDocumentId),
-                        Field.Store.YES));
-                doc.add(new StringField(FIELD_ANNOTATION_DOCUMENT_ID,
-                        String.valueOf(aAnnotationDocumentId), Field.Store.YES));
-                doc.add(new StringField(FIELD_TITLE, aDocumentTitle, Field.Store.YES));
-                doc.add(new StringField(FIELD_USER, aUser, Field.Store.YES));
-                doc.add(new StringField(FIELD_TIMESTAMP, timestamp, Field.Store.YES));
-                doc.add(new TextField(FIELD_CONTENT, encodedCAS, Field.Store.NO));
+                Document doc = createLuceneDocument(aDocumentTitle, aSourceDocumentId,
+                        aAnnotationDocumentId, aUser, aCas);
     
-                // Add document to the Lucene index
-                indexWriter.addDocument(doc);
+                // Add document to the shard of the document's owner
+                MtasIndexShard shard = getShard(aAnnotationDocumentId, aUser);
+                getWriter(shard).addDocument(doc);
     
                 // commit
-                indexWriter.commit();
+                commit(shard);
     
                 log.debug(
                         "Document indexed in project [{}]({}). sourceId: {}, annotationId: {}, "
                                 + "user: {}, timestamp: {}",
                         project.getName(), project.getId(), aSourceDocumentId,
-                        aAnnotationDocumentId, aUser, timestamp);
+                        aAnnotationDocumentId, aUser, doc.get(FIELD_TIMESTAMP));
             }
             catch (Exception e) {
-                log.error("Unable to index document", e);
+                // Let the caller know that the document is not in the index
+                throw new IOException("Unable to index document in project [" + project.getName()
+                        + "](" + project.getId() + "). sourceId: " + aSourceDocumentId
+                        + ", annotationId: " + aAnnotationDocumentId + ", user: " + aUser, e);
             }
         }
         else {
             log.debug(
                     "Aborted indexing of document in project [{}]. sourceId: {}, annotationId: {}, "
-                            + "user: {} - indexWriter was null",
+                            + "user: {} - index was not open",
                     project.getName(), aSourceDocumentId, aAnnotationDocumentId, aUser);
         }
     };
@@ -658,17 +969,23 @@ public class MtasDocumentIndex
     private void deindexDocument(long aSourceDocumentId, long aAnnotationDocumentId, String aUser)
         throws IOException
     {
-        if (indexWriter != null) {
+        MtasIndexShard shard = getShard(aAnnotationDocumentId, aUser);
+        if (isOpen() && !shard.isOpen() && !shard.exists()) {
+            // Nothing to remove
+            return;
+        }
+        
+        if (isOpen()) {
             log.debug(
                     "Removing document from index in project [{}]({}). sourceId: {}, "
                             + "annotationId: {}, user: {}",
                     project.getName(), project.getId(), aSourceDocumentId, aAnnotationDocumentId,
                     aUser);
 
-            indexWriter.deleteDocuments(new Term(FIELD_ID,
-                    String.format("%d/%d", aSourceDocumentId, aAnnotationDocumentId)));
+            getWriter(shard).deleteDocuments(new Term(FIELD_ID,
+                    documentKey(aSourceDocumentId, aAnnotationDocumentId)));
 
-            indexWriter.commit();
+            commit(shard);
 
             log.debug(
                     "Removed document from index in project [{}]({}). sourceId: {}, "
@@ -679,7 +996,7 @@ public class MtasDocumentIndex
         else {
             log.debug(
                     "Aborted removal of document from index in project [{}]. sourceId: {}, "
-                            + "annotationId: {}, " + "user: {} - indexWriter was null.",
+                            + "annotationId: {}, " + "user: {} - index was not open.",
                     project.getName(), aSourceDocumentId, aAnnotationDocumentId, aUser);
         }
         return;
@@ -701,7 +1018,13 @@ public class MtasDocumentIndex
             String aTimestamp)
         throws IOException
     {
-        if (indexWriter != null) {
+        MtasIndexShard shard = getShard(aAnnotationDocumentId, aUser);
+        if (isOpen() && !shard.isOpen() && !shard.exists()) {
+            // Nothing to remove
+            return;
+        }
+        
+        if (isOpen()) {
             log.debug(
                     "Removing document from index in project [{}]({}). sourceId: {}, "
                             + "annotationId: {}, user: {}, timestamp: {}",
@@ -711,15 +1034,15 @@ public class MtasDocumentIndex
             // Prepare boolean query with the two obligatory terms (id and timestamp)
             BooleanQuery.Builder booleanQuery = new BooleanQuery.Builder()
                     .add(new TermQuery(new Term(FIELD_ID,
-                            String.format("%d/%d", aSourceDocumentId, aAnnotationDocumentId))),
+                            documentKey(aSourceDocumentId, aAnnotationDocumentId))),
                             BooleanClause.Occur.MUST)
                     .add(new TermQuery(new Term(FIELD_TIMESTAMP, aTimestamp)),
                             BooleanClause.Occur.MUST);
 
             // Delete document based on the previous query
-            indexWriter.deleteDocuments(booleanQuery.build());
+            getWriter(shard).deleteDocuments(booleanQuery.build());
 
-            indexWriter.commit();
+            commit(shard);
 
             log.debug(
                     "Removed document from index in project [{}]({}). sourceId: {}, "
@@ -730,7 +1053,7 @@ public class MtasDocumentIndex
         else {
             log.debug(
                     "Aborted removal of document from index in project [{}]({}). sourceId: {}, "
-                            + "annotationId: {}, " + "user: {} - indexWriter was null.",
+                            + "annotationId: {}, " + "user: {} - index was not open.",
                     project.getName(), project.getId(), aSourceDocumentId, aAnnotationDocumentId,
                     aUser);
         }
@@ -782,12 +1105,7 @@ public class MtasDocumentIndex
     @Override
     public boolean isOpen()
     {
-        boolean result = false;
-        
-        if (indexWriter != null) {
-            result = indexWriter.isOpen();
-        }
-        return result;
+        return sourceShard.isOpen();
     }
 
     /**
@@ -800,25 +1118,89 @@ public class MtasDocumentIndex
         return new File(resourceDir, "/" + PROJECT_FOLDER + "/" + project.getId() + "/" + INDEX);
     }
 
-    @Override
-    public void closePhysicalIndex()
+    /**
+     * @return the shard holding the given document.
+     */
+    private MtasIndexShard getShard(long aAnnotationDocumentId, String aUser)
     {
-        if (indexWriter != null) {
+        return aAnnotationDocumentId == -1 ? sourceShard : getUserShard(aUser);
+    }
+
+    private MtasIndexShard getUserShard(String aUser)
+    {
+        return userShards.computeIfAbsent(aUser, user -> {
             try {
-                if (indexWriter.isOpen()) {
-                    // Commit and close the index
-                    indexWriter.commit();
-                    indexWriter.close();
-                }
+                return new MtasIndexShard(new File(getIndexDir(),
+                        USER_SHARD_PREFIX + URLEncoder.encode(user, UTF_8.name())));
+            }
+            catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
 
-                log.debug("Index for project [{}]({}) has been closed", project.getName(),
-                        project.getId());
+    /**
+     * @return the source shard followed by the shards of all users which exist on disk or which
+     *         have been opened.
+     */
+    private List<MtasIndexShard> listShards() throws IOException
+    {
+        File[] userShardDirs = getIndexDir().listFiles(
+                file -> file.isDirectory() && file.getName().startsWith(USER_SHARD_PREFIX));
+        if (userShardDirs != null) {
+            for (File dir : userShardDirs) {
+                getUserShard(URLDecoder.decode(dir.getName().substring(USER_SHARD_PREFIX.length()),
+                        UTF_8.name()));
             }
-            catch (IOException e) {
-                log.error("Error closing index for project [{}]", project.getId());
+        }
+        
+        List<MtasIndexShard> shards = new ArrayList<>();
+        shards.add(sourceShard);
+        shards.addAll(userShards.values());
+        return shards;
+    }
+
+    /**
+     * Obtain the writer for the given shard. User shards are opened on demand once the index is
+     * open.
+     */
+    private IndexWriter getWriter(MtasIndexShard aShard) throws IOException
+    {
+        if (!isOpen()) {
+            throw new IOException("Index for project [" + project.getName() + "]("
+                    + project.getId() + ") is not open");
+        }
+        
+        return aShard.open(this::createIndexWriterConfig);
+    }
+
+    @Override
+    public void closePhysicalIndex()
+    {
+        try {
+            // Close the user shards first - the source shard is closed last since it carries
+            // the state of the index
+            for (MtasIndexShard shard : userShards.values()) {
+                closeShard(shard);
             }
+            closeShard(sourceShard);
+
+            log.debug("Index for project [{}]({}) has been closed", project.getName(),
+                    project.getId());
+        }
+        catch (IOException e) {
+            log.error("Error closing index for project [{}]", project.getId());
         }
     }
+    
+    private void closeShard(MtasIndexShard aShard) throws IOException
+    {
+        if (aShard.isOpen()) {
+            // Commit and close the shard
+            commit(aShard);
+        }
+        aShard.close();
+    }
 
     /**
      * Drops the project's index
@@ -827,21 +1209,53 @@ public class MtasDocumentIndex
     @Override
     public void dropPhysicalIndex() throws IOException
     {
-        if (indexWriter != null) {
-            closePhysicalIndex();
-        }
+        closePhysicalIndex();
+        userShards.clear();
 
         // Delete the index directory
         FileUtils.deleteDirectory(getIndexDir());
+        generation.incrementAndGet();
 
         log.debug("Index for project [{}]({}) has been deleted", project.getName(),
                 project.getId());
     }
 
+    /**
+     * Commit the pending changes to the given shard and advance the generation of the index.
+     */
+    private void commit(MtasIndexShard aShard) throws IOException
+    {
+        IndexWriter writer = aShard.getWriter();
+        if (writer != null) {
+            writer.commit();
+            generation.incrementAndGet();
+        }
+    }
+
+    /**
+     * Commit the pending changes to all open shards. The source shard is committed last since it
+     * carries the state of the index.
+     */
+    private void commitAll() throws IOException
+    {
+        for (MtasIndexShard shard : userShards.values()) {
+            commit(shard);
+        }
+        commit(sourceShard);
+    }
+
+    @Override
+    public long getGeneration()
+    {
+        return generation.get();
+    }
+
     @Override
     public boolean isCreated()
     {
-        if (getIndexDir().isDirectory()) {
+        // An index without a source shard has been created with the old single-index layout and
+        // needs to be rebuilt
+        if (sourceShard.getDir().isDirectory()) {
             return true;
         }
         else {
@@ -850,32 +1264,29 @@ public class MtasDocumentIndex
     }
 
     /**
-     * Open a Mtas physical index, setting indexWriter
+     * Open a Mtas physical index, opening the writer of the source shard. The writers of the
+     * user shards are opened on demand.
      */
     @Override
     public void openPhysicalIndex()
     {
-        boolean isOpen;
-        
-        isOpen = (indexWriter == null) ? false : indexWriter.isOpen();
-
-        if (!isOpen) {
+        if (!isOpen()) {
             // Only open if it is not already open
             try {
-                log.debug("indexWriter was not open. Opening it for project [{}]({})",
+                log.debug("Index was not open. Opening it for project [{}]({})",
                         project.getName(), project.getId());
 
-                indexWriter = openLuceneIndex(getIndexDir());
-                indexWriter.commit();
+                sourceShard.open(this::createIndexWriterConfig);
+                commit(sourceShard);
 
-                log.debug("indexWriter has been opened for project [{}]({})", project.getName(),
+                log.debug("Index has been opened for project [{}]({})", project.getName(),
                         project.getId());
             }
             catch (Exception e) {
-                log.error("Unable to open indexWriter", e);
+                log.error("Unable to open index", e);
             }
         } else {
-            log.debug("indexWriter is already open for project [{}]({})", project.getName(),
+            log.debug("Index is already open for project [{}]({})", project.getName(),
                     project.getId());
         }
     }
@@ -889,10 +1300,17 @@ public class MtasDocumentIndex
         File indexDir = getIndexDir();
 
         try {
+            if (indexDir.isDirectory() && !sourceShard.getDir().isDirectory()) {
+                // Remove an index using the old single-index layout
+                log.info("Removing index of project [{}]({}) using outdated layout",
+                        project.getName(), project.getId());
+                FileUtils.deleteDirectory(indexDir);
+            }
+            
             // Create the directory for the new index
             log.debug("Creating index directory for project [{}]({})", project.getName(),
                     project.getId());
-            FileUtils.forceMkdir(indexDir);
+            FileUtils.forceMkdir(sourceShard.getDir());
 
             // Open the index
             log.debug("Opening index directory for project [{}]({})", project.getName(),
@@ -910,16 +1328,19 @@ public class MtasDocumentIndex
                 log.debug("Index has not been opened. No documents have been indexed.");
             }
         }
+        catch (InterruptedException e) {
+            log.info("Indexing of project [{}]({}) was interrupted - it will be resumed on the "
+                    + "next reindex", project.getName(), project.getId());
+            Thread.currentThread().interrupt();
+        }
         catch (Exception e) {
             log.error("Error creating index for project [{}]({})", project.getName(),
                     project.getId(), e);
         }
     }
 
-    public IndexWriter openLuceneIndex(File aIndexDir) throws IOException
+    private IndexWriterConfig createIndexWriterConfig()
     {
-        Directory directory = FSDirectory.open(aIndexDir.toPath());
-
         // Create parser configuration as a JSON object
         JSONObject jsonParserConfiguration = new JSONObject();
         
@@ -947,16 +1368,56 @@ public class MtasDocumentIndex
         config.setUseCompoundFile(false);
         config.setCodec(Codec.forName(MtasCodec.MTAS_CODEC_NAME));
 
-        return new IndexWriter(directory, config);
+        return config;
     }
 
-    private void indexAllDocuments()
+    /**
+     * Index all documents of the project. CASes are read on the calling thread which runs in the
+     * context of the indexing task. They are then parsed and added to the index by a pool of
+     * worker threads. The number of documents in flight is bounded such that only a limited
+     * number of CASes is held in memory at any time.
+     * <p>
+     * The index is committed periodically while the rebuild is running. The commit data marks the
+     * index as being rebuilt for the current layer configuration, so if the rebuild is
+     * interrupted, it can be resumed later (cf. {@link #isResumable()}). Documents which are
+     * already contained in the last commit are then skipped.
+     * <p>
+     * Documents which cannot be indexed are logged and skipped such that a single broken document
+     * does not prevent the index from being built.
+     */
+    private void indexAllDocuments() throws IOException, InterruptedException
     {
-
+        // Pick up the current layer configuration
+        layerConfiguration = null;
+        LayerConfiguration layerConfig = getLayerConfiguration();
+        String schemaSignature = layerConfig.getSchemaSignature();
+        
+        Set<String> alreadyIndexed;
+        if (isResumable(schemaSignature)) {
+            alreadyIndexed = listIndexedDocumentKeys();
+            log.info("Resuming indexing of project [{}]({}) - {} document(s) already indexed",
+                    project.getName(), project.getId(), alreadyIndexed.size());
+        }
+        else {
+            alreadyIndexed = emptySet();
+            deleteUserShards();
+            getWriter(sourceShard).deleteAll();
+        }
+        
+        Map<String, String> commitData = createCommitData(REINDEX_IN_PROGRESS, layerConfig);
+        getWriter(sourceShard).setLiveCommitData(commitData.entrySet());
+        commit(sourceShard);
+
+        long startTime = currentTimeMillis();
+        AtomicInteger annotationDocs = new AtomicInteger();
+        AtomicInteger sourceDocs = new AtomicInteger();
+        AtomicInteger indexed = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
         int users = 0;
-        int annotationDocs = 0;
-        int sourceDocs = 0;
-
+        int skipped = 0;
+        
+        ExecutorService workers = Executors.newFixedThreadPool(REINDEX_THREADS);
+        Semaphore inFlight = new Semaphore(REINDEX_MAX_DOCUMENTS_IN_FLIGHT);
         try {
             log.debug("Indexing all annotation documents of project [{}]({})", project.getName(),
                     project.getId());
@@ -965,8 +1426,16 @@ public class MtasDocumentIndex
                 users++;
                 for (AnnotationDocument document : documentService.listAnnotationDocuments(project,
                         user)) {
-                    indexDocument(document, documentService.readAnnotationCas(document));
-                    annotationDocs++;
+                    if (alreadyIndexed.contains(
+                            documentKey(document.getDocument().getId(), document.getId()))) {
+                        skipped++;
+                        continue;
+                    }
+                    
+                    submitReindex(workers, inFlight, indexed, annotationDocs, failed,
+                            document.getName(), document.getDocument().getId(),
+                            document.getId(), document.getUser(),
+                            () -> documentService.readAnnotationCas(document));
                 }
             }
 
@@ -974,17 +1443,439 @@ public class MtasDocumentIndex
                     project.getId());
 
             for (SourceDocument document : documentService.listSourceDocuments(project)) {
-                indexDocument(document, documentService.createOrReadInitialCas(document));
-                sourceDocs++;
+                if (alreadyIndexed.contains(documentKey(document.getId(), -1))) {
+                    skipped++;
+                    continue;
+                }
+                
+                submitReindex(workers, inFlight, indexed, sourceDocs, failed, document.getName(),
+                        document.getId(), -1, "",
+                        () -> documentService.createOrReadInitialCas(document));
             }
+            
+            workers.shutdown();
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
         }
-        catch (IOException e) {
-            log.error("Unable to index document", e);
+        finally {
+            // If we get here by an exception or interrupt, the workers are stopped and the index
+            // remains marked as being rebuilt such that the rebuild can be resumed later
+            workers.shutdownNow();
+        }
+
+        // Commit the user shards before marking the rebuild as complete
+        commitAll();
+        
+        if (failed.get() > 0) {
+            log.warn("{} document(s) of project [{}]({}) could not be indexed and are missing "
+                    + "from the index", failed.get(), project.getName(), project.getId());
         }
+        
+        commitData.put(COMMIT_REINDEX_STATE, REINDEX_COMPLETE);
+        getWriter(sourceShard).setLiveCommitData(commitData.entrySet());
+        commit(sourceShard);
 
         log.debug(String.format(
-                "Indexing results: %d source doc(s), %d annotation doc(s) for %d user(s)",
-                sourceDocs, annotationDocs, users));
+                "Indexing results: %d source doc(s), %d annotation doc(s) for %d user(s), "
+                        + "%d doc(s) skipped as already indexed, %d doc(s) failed, %dms",
+                sourceDocs.get(), annotationDocs.get(), users, skipped, failed.get(),
+                currentTimeMillis() - startTime));
+    }
+
+    private Map<String, String> createCommitData(String aReindexState,
+            LayerConfiguration aLayerConfig)
+    {
+        Map<String, String> commitData = new HashMap<>();
+        commitData.put(COMMIT_REINDEX_STATE, aReindexState);
+        commitData.put(COMMIT_SCHEMA_SIGNATURE, aLayerConfig.getSchemaSignature());
+        for (Entry<String, String> e : aLayerConfig.signatures.entrySet()) {
+            commitData.put(COMMIT_LAYER_SIGNATURE_PREFIX + e.getKey(), e.getValue());
+        }
+        return commitData;
+    }
+
+    /**
+     * Re-index only the documents which contain annotations on layers whose configuration has
+     * changed since the index was last built or updated. Lucene does not support rewriting only
+     * some of the terms of a document, so each affected document is replaced as a whole - but
+     * documents which are not affected by the change remain untouched.
+     */
+    @Override
+    public boolean reindexChangedLayers() throws IOException
+    {
+        if (!isOpen()) {
+            return false;
+        }
+        
+        Map<String, String> oldCommitData = new HashMap<>();
+        for (Entry<String, String> e : getWriter(sourceShard).getLiveCommitData()) {
+            oldCommitData.put(e.getKey(), e.getValue());
+        }
+        
+        if (!REINDEX_COMPLETE.equals(oldCommitData.get(COMMIT_REINDEX_STATE))
+                || oldCommitData.keySet().stream()
+                        .noneMatch(key -> key.startsWith(COMMIT_LAYER_SIGNATURE_PREFIX))) {
+            // The index is incomplete or it has been built before the layers were tracked per
+            // document - cannot determine which documents are affected
+            return false;
+        }
+        
+        layerConfiguration = null;
+        LayerConfiguration layerConfig = getLayerConfiguration();
+        
+        // Layers which have been added, changed or removed
+        Set<String> changedLayers = new HashSet<>();
+        for (Entry<String, String> e : oldCommitData.entrySet()) {
+            if (e.getKey().startsWith(COMMIT_LAYER_SIGNATURE_PREFIX)) {
+                String layer = e.getKey().substring(COMMIT_LAYER_SIGNATURE_PREFIX.length());
+                if (!e.getValue().equals(layerConfig.signatures.get(layer))) {
+                    changedLayers.add(layer);
+                }
+            }
+        }
+        for (String layer : layerConfig.signatures.keySet()) {
+            if (!oldCommitData.containsKey(COMMIT_LAYER_SIGNATURE_PREFIX + layer)) {
+                changedLayers.add(layer);
+            }
+        }
+        
+        if (changedLayers.isEmpty()) {
+            log.debug("Layer configuration of project [{}]({}) unchanged - nothing to re-index",
+                    project.getName(), project.getId());
+            return true;
+        }
+        
+        long startTime = currentTimeMillis();
+        List<Document> affected = listDocumentsWithLayers(changedLayers);
+        
+        log.info("Re-indexing {} document(s) in project [{}]({}) affected by changes to layers {}",
+                affected.size(), project.getName(), project.getId(), changedLayers);
+        
+        AtomicInteger indexed = new AtomicInteger();
+        AtomicInteger counter = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(REINDEX_THREADS);
+        Semaphore inFlight = new Semaphore(REINDEX_MAX_DOCUMENTS_IN_FLIGHT);
+        try {
+            for (Document document : affected) {
+                long sourceDocumentId = Long.valueOf(document.get(FIELD_SOURCE_DOCUMENT_ID));
+                long annotationDocumentId = Long
+                        .valueOf(document.get(FIELD_ANNOTATION_DOCUMENT_ID));
+                String user = document.get(FIELD_USER);
+                String title = document.get(FIELD_TITLE);
+                
+                submitReindex(workers, inFlight, indexed, counter, failed, title,
+                        sourceDocumentId, annotationDocumentId, user, () -> {
+                            SourceDocument sourceDocument = documentService
+                                    .getSourceDocument(project.getId(), sourceDocumentId);
+                            return annotationDocumentId == -1
+                                    ? documentService.createOrReadInitialCas(sourceDocument)
+                                    : documentService.readAnnotationCas(sourceDocument, user);
+                        });
+            }
+            
+            workers.shutdown();
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Re-indexing of changed layers was interrupted");
+        }
+        finally {
+            workers.shutdownNow();
+        }
+        
+        commitAll();
+        
+        if (failed.get() > 0) {
+            // Keep the previous layer signatures - the index needs to be rebuilt so that the
+            // failed documents are not left with the old layer configuration
+            log.warn("{} document(s) of project [{}]({}) could not be re-indexed", failed.get(),
+                    project.getName(), project.getId());
+            return false;
+        }
+        
+        getWriter(sourceShard).setLiveCommitData(
+                createCommitData(REINDEX_COMPLETE, layerConfig).entrySet());
+        commit(sourceShard);
+        
+        log.info("Re-indexed {} document(s) in project [{}]({}) in {}ms", counter.get(),
+                project.getName(), project.getId(), currentTimeMillis() - startTime);
+        
+        return true;
+    }
+    
+    private List<Document> listDocumentsWithLayers(Set<String> aLayers) throws IOException
+    {
+        BooleanQuery.Builder query = new BooleanQuery.Builder();
+        for (String layer : aLayers) {
+            query.add(new TermQuery(new Term(FIELD_LAYERS, layer)), BooleanClause.Occur.SHOULD);
+        }
+        
+        List<Document> documents = new ArrayList<>();
+        for (MtasIndexShard shard : listShards()) {
+            if (!shard.exists()) {
+                continue;
+            }
+            
+            try (IndexReader reader = shard.openReader()) {
+                IndexSearcher searcher = new IndexSearcher(reader);
+                TopDocs docs = searcher.search(query.build(), Math.max(1, reader.numDocs()));
+                for (ScoreDoc scoreDoc : docs.scoreDocs) {
+                    documents.add(searcher.doc(scoreDoc.doc));
+                }
+            }
+        }
+        return documents;
+    }
+
+    private void submitReindex(ExecutorService aWorkers, Semaphore aInFlight,
+            AtomicInteger aIndexed, AtomicInteger aCounter, AtomicInteger aFailed,
+            String aDocumentTitle, long aSourceDocumentId, long aAnnotationDocumentId,
+            String aUser, CasReader aCasReader)
+        throws InterruptedException
+    {
+        // Block here if too many documents are in flight - this is what bounds the memory used
+        // by the rebuild to a few CASes per worker
+        aInFlight.acquire();
+        
+        // The CAS is read here on the calling thread which runs in the context of the indexing
+        // task (e.g. its transaction) - the workers only extract the tokens from the CAS
+        CAS cas;
+        try {
+            cas = aCasReader.read();
+        }
+        catch (Exception e) {
+            aInFlight.release();
+            aFailed.incrementAndGet();
+            log.error("Unable to read document in project [{}]({}). sourceId: {}, "
+                    + "annotationId: {}, user: {}", project.getName(), project.getId(),
+                    aSourceDocumentId, aAnnotationDocumentId, aUser, e);
+            return;
+        }
+        
+        try {
+            aWorkers.execute(() -> {
+                try {
+                    // Replace any previous version of the document in the shard of its owner
+                    Document doc = createLuceneDocument(aDocumentTitle, aSourceDocumentId,
+                            aAnnotationDocumentId, aUser, cas);
+                    MtasIndexShard shard = getShard(
+                            Long.valueOf(doc.get(FIELD_ANNOTATION_DOCUMENT_ID)),
+                            doc.get(FIELD_USER));
+                    getWriter(shard).updateDocument(new Term(FIELD_ID, doc.get(FIELD_ID)), doc);
+                    aCounter.incrementAndGet();
+                    
+                    // Checkpoint - IndexWriter supports committing concurrently to adding
+                    // documents. Documents not yet added by other workers are simply not part of
+                    // the commit and will be indexed again when resuming.
+                    if (aIndexed.incrementAndGet() % REINDEX_COMMIT_INTERVAL == 0) {
+                        commitAll();
+                    }
+                }
+                catch (Exception e) {
+                    aFailed.incrementAndGet();
+                    log.error("Unable to index document in project [{}]({}). sourceId: {}, "
+                            + "annotationId: {}, user: {}", project.getName(), project.getId(),
+                            aSourceDocumentId, aAnnotationDocumentId, aUser, e);
+                }
+                finally {
+                    aInFlight.release();
+                }
+            });
+        }
+        catch (RejectedExecutionException e) {
+            aInFlight.release();
+            throw e;
+        }
+    }
+    
+    /**
+     * Checks whether the index holds the checkpoint of an interrupted rebuild. Such a rebuild can
+     * be resumed by {@link #createPhysicalIndex()} unless the layer configuration of the project
+     * has changed in the meantime.
+     */
+    @Override
+    public boolean isResumable()
+    {
+        if (!isCreated()) {
+            return false;
+        }
+        
+        return isResumable(loadLayerConfiguration().getSchemaSignature());
+    }
+    
+    private boolean isResumable(String aSchemaSignature)
+    {
+        // The state of the index is recorded in the commit data of the source shard
+        try (Directory directory = FSDirectory.open(sourceShard.getDir().toPath())) {
+            if (!DirectoryReader.indexExists(directory)) {
+                return false;
+            }
+            
+            Map<String, String> commitData = SegmentInfos.readLatestCommit(directory)
+                    .getUserData();
+            return REINDEX_IN_PROGRESS.equals(commitData.get(COMMIT_REINDEX_STATE))
+                    && aSchemaSignature.equals(commitData.get(COMMIT_SCHEMA_SIGNATURE));
+        }
+        catch (IOException e) {
+            log.error("Unable to read commit data of index for project [{}]({})",
+                    project.getName(), project.getId(), e);
+            return false;
+        }
+    }
+
+    private Set<String> listIndexedDocumentKeys() throws IOException
+    {
+        Set<String> keys = new HashSet<>();
+        for (MtasIndexShard shard : listShards()) {
+            if (!shard.exists()) {
+                continue;
+            }
+            
+            try (IndexReader reader = shard.openReader()) {
+                Terms terms = MultiFields.getTerms(reader, FIELD_ID);
+                if (terms != null) {
+                    TermsEnum termsEnum = terms.iterator();
+                    BytesRef term;
+                    while ((term = termsEnum.next()) != null) {
+                        keys.add(term.utf8ToString());
+                    }
+                }
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Remove the shards of all users, e.g. before rebuilding the index from scratch.
+     */
+    private void deleteUserShards() throws IOException
+    {
+        for (MtasIndexShard shard : listShards()) {
+            if (shard != sourceShard) {
+                shard.close();
+                FileUtils.deleteDirectory(shard.getDir());
+            }
+        }
+        userShards.clear();
+        generation.incrementAndGet();
+    }
+
+    private LayerConfiguration getLayerConfiguration()
+    {
+        LayerConfiguration config = layerConfiguration;
+        if (config == null) {
+            config = loadLayerConfiguration();
+            layerConfiguration = config;
+        }
+        return config;
+    }
+    
+    private LayerConfiguration loadLayerConfiguration()
+    {
+        Map<AnnotationLayer, List<AnnotationFeature>> indexedLayers = new LinkedHashMap<>();
+        Map<String, String> signatures = new TreeMap<>();
+        for (AnnotationLayer layer : annotationSchemaService.listAnnotationLayer(project)) {
+            List<AnnotationFeature> features = annotationSchemaService
+                    .listAnnotationFeature(layer);
+            if (layer.isEnabled()) {
+                indexedLayers.put(layer, features);
+            }
+            signatures.put(layer.getName(), getLayerSignature(layer, features));
+        }
+        return new LayerConfiguration(indexedLayers, signatures,
+                () -> new MtasUimaParser(project, annotationSchemaService,
+                        featureIndexingSupportRegistry, indexedLayers));
+    }
+
+    /**
+     * Compact signature of the configuration of a layer and its features including their traits
+     * and tagsets. If this changes, the documents containing annotations on the layer need to be
+     * re-indexed.
+     */
+    private static String getLayerSignature(AnnotationLayer aLayer,
+            List<AnnotationFeature> aFeatures)
+    {
+        StringBuilder signature = new StringBuilder();
+        signature.append(aLayer.getId()).append('|').append(aLayer.getName()).append('|')
+                .append(aLayer.getUiName()).append('|').append(aLayer.getType()).append('|')
+                .append(aLayer.isEnabled()).append('|')
+                .append(aLayer.getAttachFeature() != null ? aLayer.getAttachFeature().getName()
+                        : null);
+        for (AnnotationFeature feature : aFeatures) {
+            signature.append('|').append(feature.getId()).append('|')
+                    .append(feature.getName()).append('|').append(feature.getUiName())
+                    .append('|').append(feature.getType()).append('|')
+                    .append(feature.isEnabled()).append('|')
+                    .append(feature.getMultiValueMode()).append('|')
+                    .append(feature.getLinkMode()).append('|')
+                    .append(feature.getLinkTypeName()).append('|')
+                    .append(feature.getTraits()).append('|')
+                    .append(feature.getTagset() != null ? feature.getTagset().getId() : null)
+                    .append('|')
+                    .append(feature.getTagset() != null ? feature.getTagset().getName() : null);
+        }
+        return sha256(signature.toString());
+    }
+
+    /**
+     * The layers and features used for indexing along with the signatures of all layers of the
+     * project. Also provides one parser per indexing thread for this configuration.
+     */
+    private static final class LayerConfiguration
+    {
+        private final Map<AnnotationLayer, List<AnnotationFeature>> indexedLayers;
+        private final Map<String, String> signatures;
+        private final ThreadLocal<MtasUimaParser> parsers;
+
+        public LayerConfiguration(Map<AnnotationLayer, List<AnnotationFeature>> aIndexedLayers,
+                Map<String, String> aSignatures, Supplier<MtasUimaParser> aParserFactory)
+        {
+            indexedLayers = aIndexedLayers;
+            signatures = aSignatures;
+            parsers = ThreadLocal.withInitial(aParserFactory);
+        }
+
+        /**
+         * @return the parser of the current thread. A parser is not thread-safe but it can
+         *         process any number of CASes one after the other.
+         */
+        public MtasUimaParser getParser()
+        {
+            return parsers.get();
+        }
+
+        /**
+         * Compact signature of the layer configuration of the project. If this changes,
+         * documents indexed by an interrupted rebuild would be stale, so the rebuild cannot be
+         * resumed.
+         */
+        public String getSchemaSignature()
+        {
+            return sha256(signatures.toString());
+        }
+    }
+
+    private static String sha256(String aValue)
+    {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(aValue.getBytes(UTF_8));
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        }
+        catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface CasReader
+    {
+        CAS read() throws IOException;
     }
 
     private String getShortName(String aName)
@@ -1005,29 +1896,35 @@ public class MtasDocumentIndex
     {
         Optional<String> result = Optional.empty();
 
-        // Prepare index searcher for accessing index
-        Directory directory = FSDirectory.open(getIndexDir().toPath());
-        IndexReader indexReader = DirectoryReader.open(directory);
-        IndexSearcher indexSearcher = new IndexSearcher(indexReader);
-
-        // Prepare query for the annotation document for this annotation document
-        Term term = new Term(FIELD_ID,
-                String.format("%d/%d", aDocument.getDocument().getId(), aDocument.getId()));
+        // The annotation document can only be in the shard of its owner
+        MtasIndexShard shard = getUserShard(aDocument.getUser());
+        if (!shard.exists()) {
+            return result;
+        }
         
-        TermQuery query = new TermQuery(term);
-
-        // Do query
-        TopDocs docs = indexSearcher.search(query, 1);
-
-        if (docs.scoreDocs.length > 0) {
-            // If there are results, retrieve first document, since all results should come
-            // from the same document
-            Document document = indexSearcher.doc(docs.scoreDocs[0].doc);
-
-            // Retrieve the timestamp field if it exists
-            if (document.getField(FIELD_TIMESTAMP) != null) {
-                result = Optional.ofNullable(StringUtils
-                        .trimToNull(document.getField(FIELD_TIMESTAMP).stringValue()));
+        // Prepare index searcher for accessing index
+        try (IndexReader indexReader = shard.openReader()) {
+            IndexSearcher indexSearcher = new IndexSearcher(indexReader);
+    
+            // Prepare query for the annotation document for this annotation document
+            Term term = new Term(FIELD_ID,
+                    documentKey(aDocument.getDocument().getId(), aDocument.getId()));
+            
+            TermQuery query = new TermQuery(term);
+    
+            // Do query
+            TopDocs docs = indexSearcher.search(query, 1);
+    
+            if (docs.scoreDocs.length > 0) {
+                // If there are results, retrieve first document, since all results should come
+                // from the same document
+                Document document = indexSearcher.doc(docs.scoreDocs[0].doc);
+    
+                // Retrieve the timestamp field if it exists
+                if (document.getField(FIELD_TIMESTAMP) != null) {
+                    result = Optional.ofNullable(StringUtils
+                            .trimToNull(document.getField(FIELD_TIMESTAMP).stringValue()));
+                }
             }
         }
         
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.search.index.mtas;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.function.Supplier;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+
+/**
+ * A shard of a {@link MtasDocumentIndex}. The index of a project consists of one shard holding
+ * the source documents and one shard per user holding the annotation documents of that user.
+ * Each shard is a Lucene index of its own with its own writer, so indexing the documents of
+ * different users does not contend for the same writer and a query only needs to look at the
+ * source shard and the shard of the user issuing it.
+ */
+class MtasIndexShard
+{
+    private final File dir;
+
+    private Directory directory;
+    private IndexWriter writer;
+
+    public MtasIndexShard(File aDir)
+    {
+        dir = aDir;
+    }
+
+    public File getDir()
+    {
+        return dir;
+    }
+
+    /**
+     * @return whether the shard contains a committed index.
+     */
+    public boolean exists() throws IOException
+    {
+        return dir.isDirectory() && DirectoryReader.indexExists(getDirectory());
+    }
+
+    public synchronized Directory getDirectory() throws IOException
+    {
+        if (directory == null) {
+            directory = FSDirectory.open(dir.toPath());
+        }
+        return directory;
+    }
+
+    public synchronized boolean isOpen()
+    {
+        return writer != null && writer.isOpen();
+    }
+
+    /**
+     * Obtain the writer of the shard, opening it if necessary.
+     */
+    public synchronized IndexWriter open(Supplier<IndexWriterConfig> aConfig) throws IOException
+    {
+        if (!isOpen()) {
+            writer = new IndexWriter(getDirectory(), aConfig.get());
+        }
+        return writer;
+    }
+
+    /**
+     * @return the writer of the shard or {@code null} if the shard is not open.
+     */
+    public synchronized IndexWriter getWriter()
+    {
+        return isOpen() ? writer : null;
+    }
+
+    public DirectoryReader openReader() throws IOException
+    {
+        return DirectoryReader.open(getDirectory());
+    }
+
+    /**
+     * Close the writer and the directory of the shard. The shard can be opened again later.
+     */
+    public synchronized void close() throws IOException
+    {
+        try {
+            if (isOpen()) {
+                writer.close();
+            }
+        }
+        finally {
+            writer = null;
+            if (directory != null) {
+                directory.close();
+                directory = null;
+            }
+        }
+    }
+}
@@ -19,51 +19,36 @@ package de.tudarmstadt.ukp.inception.search.index.mtas;
 
 import static de.tudarmstadt.ukp.clarin.webanno.api.annotation.util.WebAnnoCasUtil.getAddr;
 import static de.tudarmstadt.ukp.inception.search.FeatureIndexingSupport.SPECIAL_SEP;
-import static de.tudarmstadt.ukp.inception.search.index.mtas.MtasUtils.charsToBytes;
+import static de.tudarmstadt.ukp.inception.search.index.mtas.MtasUtils.decodeTokenCollection;
 import static de.tudarmstadt.ukp.inception.search.index.mtas.MtasUtils.encodeFSAddress;
 import static org.apache.commons.io.IOUtils.toCharArray;
 import static org.apache.uima.fit.util.CasUtil.getType;
 import static org.apache.uima.fit.util.CasUtil.select;
-import static org.apache.uima.fit.util.CasUtil.selectAll;
 
-import java.io.ByteArrayInputStream;
-import java.io.IOException;
-import java.io.InputStream;
 import java.io.Reader;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.NavigableMap;
 import java.util.Optional;
-import java.util.TreeMap;
 
 import org.apache.commons.collections4.MultiValuedMap;
-import org.apache.commons.lang3.tuple.Pair;
-import org.apache.uima.UIMAException;
 import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.Type;
+import org.apache.uima.cas.TypeSystem;
 import org.apache.uima.cas.text.AnnotationFS;
 import org.apache.uima.fit.util.FSUtil;
-import org.apache.uima.resource.metadata.TypeSystemDescription;
-import org.apache.uima.util.CasCreationUtils;
-import org.apache.uima.util.CasIOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
-import org.xml.sax.SAXException;
-
-import com.github.openjson.JSONObject;
 
 import de.tudarmstadt.ukp.clarin.webanno.api.AnnotationSchemaService;
-import de.tudarmstadt.ukp.clarin.webanno.api.ProjectService;
 import de.tudarmstadt.ukp.clarin.webanno.api.WebAnnoConst;
 import de.tudarmstadt.ukp.clarin.webanno.api.annotation.adapter.RelationAdapter;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
 import de.tudarmstadt.ukp.clarin.webanno.model.Project;
-import de.tudarmstadt.ukp.clarin.webanno.support.ApplicationContextProvider;
 import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Sentence;
 import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Token;
 import de.tudarmstadt.ukp.inception.search.FeatureIndexingSupport;
@@ -75,8 +60,15 @@ import mtas.analysis.token.MtasTokenString;
 import mtas.analysis.util.MtasConfigException;
 import mtas.analysis.util.MtasConfiguration;
 import mtas.analysis.util.MtasParserException;
-import mtas.analysis.util.MtasTokenizerFactory;
 
+/**
+ * Converts a CAS into an MTAS token collection.
+ * <p>
+ * When used by the MTAS tokenizer during indexing, the parser receives the token collection which
+ * has already been extracted from the CAS by {@link MtasDocumentIndex} and encoded using
+ * {@link MtasUtils#encodeTokenCollection}. It only needs to decode it, so it does not require
+ * access to the CAS, the project or its layers.
+ */
 public class MtasUimaParser
     extends MtasParser
 {
@@ -95,10 +87,8 @@ public class MtasUimaParser
     private static final String SPECIAL_ATTR_REL_SOURCE = "source";
     private static final String SPECIAL_ATTR_REL_TARGET = "target";
     
-    // Annotation schema and project services with knowledge base service
-    private @Autowired AnnotationSchemaService annotationSchemaService;
-    private @Autowired ProjectService projectService;
-    private @Autowired FeatureIndexingSupportRegistry featureIndexingSupportRegistry;
+    private final AnnotationSchemaService annotationSchemaService;
+    private final FeatureIndexingSupportRegistry featureIndexingSupportRegistry;
     
     // Project id
     private final Project project;
@@ -107,60 +97,76 @@ public class MtasUimaParser
     private Map<String, AnnotationLayer> layers;
     private Map<String, List<AnnotationFeature>> layerFeatures;
 
-    private NavigableMap<Integer, Pair<AnnotationFS, Integer>> tokenBeginIndex;
-    private NavigableMap<Integer, Pair<AnnotationFS, Integer>> tokenEndIndex;
+    // Token positions of the current CAS - reused across CASes processed by this parser
+    private final TokenPositionIndex tokenPositions = new TokenPositionIndex();
 
+    /**
+     * This constructor is used by the MTAS tokenizer. The resulting parser can only decode
+     * pre-extracted token collections.
+     */
     public MtasUimaParser(MtasConfiguration config)
     {
         super(config);
         
-        // Perform dependency injection
-        AutowireCapableBeanFactory factory = ApplicationContextProvider.getApplicationContext()
-                .getAutowireCapableBeanFactory();
-        factory.autowireBean(this);
-        factory.initializeBean(this, "transientParser");
-        
-        // Process configuration
-        // Read parser argument that contains the projectId
-        JSONObject jsonParserConfiguration = new JSONObject(
-                config.attributes.get(MtasTokenizerFactory.ARGUMENT_PARSER_ARGS));
-        project = projectService.getProject(jsonParserConfiguration.getInt("projectId"));
-        
-        // Initialize and populate the hash maps for the layers and features
-        initLayerAndFeatureCache();
+        project = null;
+        annotationSchemaService = null;
+        featureIndexingSupportRegistry = null;
     }
     
-    // This constructor is used for testing
+    /**
+     * This constructor is used to extract token collections from CASes.
+     */
     public MtasUimaParser(Project aProject, AnnotationSchemaService aAnnotationSchemaService,
             FeatureIndexingSupportRegistry aFeatureIndexingSupportRegistry)
+    {
+        this(aProject, aAnnotationSchemaService, aFeatureIndexingSupportRegistry,
+                listIndexedLayers(aProject, aAnnotationSchemaService));
+    }
+
+    /**
+     * This constructor is used to extract token collections from CASes using a layer
+     * configuration which has been obtained using
+     * {@link #listIndexedLayers(Project, AnnotationSchemaService)} before. This avoids looking
+     * up the layers and features again for every document.
+     */
+    public MtasUimaParser(Project aProject, AnnotationSchemaService aAnnotationSchemaService,
+            FeatureIndexingSupportRegistry aFeatureIndexingSupportRegistry,
+            Map<AnnotationLayer, List<AnnotationFeature>> aIndexedLayers)
     {
         super(null);
         
-        projectService = null;
         project = aProject;
         annotationSchemaService = aAnnotationSchemaService;
         featureIndexingSupportRegistry = aFeatureIndexingSupportRegistry;
         
         // Initialize and populate the hash maps for the layers and features
-        initLayerAndFeatureCache();
+        layers = new HashMap<String, AnnotationLayer>();
+        layerFeatures = new HashMap<String, List<AnnotationFeature>>();
+        for (Entry<AnnotationLayer, List<AnnotationFeature>> e : aIndexedLayers.entrySet()) {
+            layers.put(e.getKey().getName(), e.getKey());
+            layerFeatures.put(e.getKey().getName(), e.getValue());
+        }
     }
 
-    private void initLayerAndFeatureCache()
+    /**
+     * @return the enabled layers of the project and all their features. The annotations on
+     *         these layers are indexed.
+     */
+    public static Map<AnnotationLayer, List<AnnotationFeature>> listIndexedLayers(
+            Project aProject, AnnotationSchemaService aAnnotationSchemaService)
     {
-        // Initialize and populate the hash maps for the layers and features
-        layers = new HashMap<String, AnnotationLayer>();
-        layerFeatures = new HashMap<String, List<AnnotationFeature>>();
-        for (AnnotationLayer layer : annotationSchemaService.listAnnotationLayer(project)) {
+        Map<AnnotationLayer, List<AnnotationFeature>> indexedLayers = new LinkedHashMap<>();
+        for (AnnotationLayer layer : aAnnotationSchemaService.listAnnotationLayer(aProject)) {
             if (layer.isEnabled()) {
-                layers.put(layer.getName(), layer);
                 List<AnnotationFeature> features = new ArrayList<AnnotationFeature>();
-                for (AnnotationFeature feature : annotationSchemaService
+                for (AnnotationFeature feature : aAnnotationSchemaService
                         .listAnnotationFeature(layer)) {
                     features.add(feature);
                 }
-                layerFeatures.put(layer.getName(), features);
+                indexedLayers.put(layer, features);
             }
         }
+        return indexedLayers;
     }
     
     @Override
@@ -168,66 +174,90 @@ public class MtasUimaParser
         throws MtasParserException, MtasConfigException
     {
         long start = System.currentTimeMillis();
-        log.debug("Starting creation of token collection");
+        log.debug("Starting decoding of token collection");
 
-        CAS cas;
         try {
-            cas = readCas(aReader);
-        }
-        catch (Exception e) {
-            log.error("Unable to decode CAS", e);
-            return new MtasTokenCollection();
-        }
-
-        try {
-            createTokenCollection(cas);
-            log.debug("Created token collection in {} ms", (System.currentTimeMillis() - start));
+            tokenCollection = decodeTokenCollection(toCharArray(aReader));
+            log.debug("Decoded token collection in {} ms", (System.currentTimeMillis() - start));
             return tokenCollection;
         }
         catch (Exception e) {
-            log.error("Unable to create token collection", e);
+            log.error("Unable to decode token collection", e);
             return new MtasTokenCollection();
         }
     }
-    
-    private CAS readCas(Reader aReader) throws UIMAException, IOException, SAXException
-    {
-        CAS cas = CasCreationUtils.createCas((TypeSystemDescription) null, null, null);
-
-        try (InputStream in = new ByteArrayInputStream(charsToBytes(toCharArray(aReader)))) {
-            CasIOUtils.load(in, cas);
-        }
-        
-        return cas;
-    }
 
     public MtasTokenCollection createTokenCollection(CAS aJCas)
     {
+        if (project == null) {
+            throw new IllegalStateException(
+                    "Parser can only decode token collections - no project available");
+        }
+        
         // Initialize state
         tokenCollection = new MtasTokenCollection();
         int mtasId = 0;
-        int tokenNum = 0;
         
-        // Build indexes over the token start and end positions such that we can quickly locate
+        // Build an index over the token start and end positions such that we can quickly locate
         // tokens based on their offsets.
-        tokenBeginIndex = new TreeMap<>();
-        tokenEndIndex = new TreeMap<>();
-        for (AnnotationFS token : select(aJCas, getType(aJCas, Token.class))) {
-            tokenBeginIndex.put(token.getBegin(), Pair.of(token, tokenNum));
-            tokenEndIndex.put(token.getEnd(), Pair.of(token, tokenNum));
-            tokenNum++;
+        tokenPositions.build(aJCas);
+        
+        if (tokenPositions.isEmpty()) {
+            // Annotations cannot be positioned without tokens
+            return tokenCollection;
         }
         
-        // Loop over the annotations
-        for (AnnotationFS annotation : selectAll(aJCas)) {
-            // MTAS cannot index zero-width annotations, so we skip them here.
-            if (annotation.getBegin() == annotation.getEnd()) {
-                continue;
+        // Loop over the annotations of the indexed types only - annotations of other types would
+        // be skipped anyway
+        for (Type type : listIndexedTypes(aJCas)) {
+            // Annotations of subtypes of a layer type are visited with their own type (if that
+            // is indexed)
+            boolean exactTypeOnly = !isTokenOrSentence(aJCas, type);
+            for (AnnotationFS annotation : select(aJCas, type)) {
+                if (exactTypeOnly && annotation.getType() != type) {
+                    continue;
+                }
+                
+                // MTAS cannot index zero-width annotations, so we skip them here.
+                if (annotation.getBegin() == annotation.getEnd()) {
+                    continue;
+                }
+                mtasId = indexAnnotation(tokenCollection, annotation, mtasId);
             }
-            mtasId = indexAnnotation(tokenCollection, annotation, mtasId);
         }
         
-        return tokenCollection;
+        // The parser is re-used for further CASes - do not hold on to the tokens of this one
+        MtasTokenCollection result = tokenCollection;
+        tokenCollection = null;
+        return result;
+    }
+    
+    /**
+     * @return the token and sentence types followed by the types of the enabled layers which
+     *         exist in the CAS.
+     */
+    private List<Type> listIndexedTypes(CAS aCas)
+    {
+        TypeSystem ts = aCas.getTypeSystem();
+        
+        List<Type> types = new ArrayList<>();
+        types.add(getType(aCas, Token.class));
+        types.add(getType(aCas, Sentence.class));
+        for (String layer : layers.keySet()) {
+            Type type = ts.getType(layer);
+            if (type != null && ts.subsumes(aCas.getAnnotationType(), type)
+                    && !isTokenOrSentence(aCas, type)) {
+                types.add(type);
+            }
+        }
+        return types;
+    }
+    
+    private boolean isTokenOrSentence(CAS aCas, Type aType)
+    {
+        TypeSystem ts = aCas.getTypeSystem();
+        return ts.subsumes(getType(aCas, Token.class), aType)
+                || ts.subsumes(getType(aCas, Sentence.class), aType);
     }
     
     private Range getRange(AnnotationFS aAnnotation)
@@ -236,23 +266,11 @@ public class MtasUimaParser
         // 1) if the first token starts after the first char. For example, when there's
         // a space or line break in the beginning of the document.
         // 2) if the last token ends before the last char. Same as above.
-        Pair<AnnotationFS, Integer> beginToken;
-        if (tokenBeginIndex.floorEntry(aAnnotation.getBegin()) == null) {
-            beginToken = tokenBeginIndex.firstEntry().getValue();
-        }
-        else {
-            beginToken = tokenBeginIndex.floorEntry(aAnnotation.getBegin()).getValue();
-        }
-        
-        Pair<AnnotationFS, Integer> endToken;
-        if (tokenEndIndex.ceilingEntry(aAnnotation.getEnd()) == null) {
-            endToken = tokenEndIndex.lastEntry().getValue();
-        }
-        else {
-            endToken = tokenEndIndex.ceilingEntry(aAnnotation.getEnd()).getValue();
-        }
-        return new Range(beginToken.getValue(), endToken.getValue(), beginToken.getKey().getBegin(),
-                endToken.getKey().getEnd());
+        int beginSlot = tokenPositions.floorBegin(aAnnotation.getBegin());
+        int endSlot = tokenPositions.ceilingEnd(aAnnotation.getEnd());
+        return new Range(tokenPositions.getBeginToken(beginSlot),
+                tokenPositions.getEndToken(endSlot), tokenPositions.getBeginOffset(beginSlot),
+                tokenPositions.getEndOffset(endSlot));
     }
     
     private int indexAnnotation(MtasTokenCollection aTokenCollection, AnnotationFS aAnnotation,
@@ -18,18 +18,26 @@
 package de.tudarmstadt.ukp.inception.search.index.mtas;
 
 import java.nio.ByteBuffer;
+import java.util.Iterator;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.lucene.util.BytesRef;
 
+import mtas.analysis.token.MtasToken;
 import mtas.analysis.token.MtasTokenCollection;
+import mtas.analysis.token.MtasTokenString;
 import mtas.analysis.util.MtasParserException;
 
 public final class MtasUtils
 {
 	private static final Logger LOGGER = Logger.getLogger(MtasUtils.class.getName());
+
+	/**
+	 * Marks a token collection encoded by {@link #encodeTokenCollection}.
+	 */
+	private static final char TOKEN_COLLECTION_MAGIC = '\uCA5E';
 	
     private MtasUtils()
     {
@@ -93,6 +101,137 @@ public final class MtasUtils
         return chars;
     }
     
+    /**
+     * Encodes a token collection into a compact char sequence which can be passed through a
+     * Lucene {@code TextField} to the {@link MtasUimaParser}. Strings are stored as-is and all
+     * numbers are stored as two chars each, so the encoded form is roughly as large as the text
+     * of the tokens plus a small fixed overhead per token.
+     * <p>
+     * Only the properties set by the {@link MtasUimaParser} are retained: ID, prefix, postfix,
+     * position range, offsets and payload.
+     */
+    public static char[] encodeTokenCollection(MtasTokenCollection aTokenCollection)
+        throws MtasParserException
+    {
+        StringBuilder buf = new StringBuilder();
+        buf.append(TOKEN_COLLECTION_MAGIC);
+        
+        int countPos = buf.length();
+        appendInt(buf, 0);
+        
+        int count = 0;
+        Iterator<MtasToken> i = aTokenCollection.iterator();
+        while (i.hasNext()) {
+            MtasToken token = i.next();
+            appendInt(buf, token.getId());
+            appendInt(buf, token.getPositionStart());
+            appendInt(buf, token.getPositionEnd());
+            appendInt(buf, token.getOffsetStart() != null ? token.getOffsetStart() : -1);
+            appendInt(buf, token.getOffsetEnd() != null ? token.getOffsetEnd() : -1);
+            appendString(buf, token.getPrefix());
+            appendString(buf, token.getPostfix());
+            
+            BytesRef payload = token.getPayload();
+            if (payload == null) {
+                appendInt(buf, -1);
+            }
+            else {
+                appendInt(buf, payload.length);
+                for (int n = 0; n < payload.length; n++) {
+                    buf.append((char) (payload.bytes[payload.offset + n] & 0xFF));
+                }
+            }
+            
+            count++;
+        }
+        
+        buf.setCharAt(countPos, (char) (count >>> 16));
+        buf.setCharAt(countPos + 1, (char) count);
+        
+        char[] chars = new char[buf.length()];
+        buf.getChars(0, buf.length(), chars, 0);
+        return chars;
+    }
+    
+    /**
+     * Decodes a token collection encoded by {@link #encodeTokenCollection}.
+     */
+    public static MtasTokenCollection decodeTokenCollection(char[] aChars)
+    {
+        if (aChars.length == 0 || aChars[0] != TOKEN_COLLECTION_MAGIC) {
+            throw new IllegalArgumentException("Not an encoded token collection");
+        }
+        
+        int[] pos = { 1 };
+        
+        MtasTokenCollection tokenCollection = new MtasTokenCollection();
+        int count = readInt(aChars, pos);
+        for (int n = 0; n < count; n++) {
+            int id = readInt(aChars, pos);
+            int positionStart = readInt(aChars, pos);
+            int positionEnd = readInt(aChars, pos);
+            int offsetStart = readInt(aChars, pos);
+            int offsetEnd = readInt(aChars, pos);
+            String prefix = readString(aChars, pos);
+            String postfix = readString(aChars, pos);
+            
+            MtasToken token = new MtasTokenString(id, prefix, postfix, positionStart);
+            if (offsetStart >= 0) {
+                token.setOffset(offsetStart, offsetEnd);
+            }
+            token.addPositionRange(positionStart, positionEnd);
+            
+            int payloadLength = readInt(aChars, pos);
+            if (payloadLength >= 0) {
+                byte[] payload = new byte[payloadLength];
+                for (int b = 0; b < payloadLength; b++) {
+                    payload[b] = (byte) aChars[pos[0]++];
+                }
+                token.setPayload(new BytesRef(payload));
+            }
+            
+            tokenCollection.add(token);
+        }
+        
+        return tokenCollection;
+    }
+    
+    private static void appendInt(StringBuilder aBuffer, int aValue)
+    {
+        aBuffer.append((char) (aValue >>> 16));
+        aBuffer.append((char) aValue);
+    }
+    
+    private static int readInt(char[] aChars, int[] aPos)
+    {
+        int value = (aChars[aPos[0]] << 16) | aChars[aPos[0] + 1];
+        aPos[0] += 2;
+        return value;
+    }
+    
+    private static void appendString(StringBuilder aBuffer, String aValue)
+    {
+        if (aValue == null) {
+            appendInt(aBuffer, -1);
+        }
+        else {
+            appendInt(aBuffer, aValue.length());
+            aBuffer.append(aValue);
+        }
+    }
+    
+    private static String readString(char[] aChars, int[] aPos)
+    {
+        int length = readInt(aChars, aPos);
+        if (length < 0) {
+            return null;
+        }
+        
+        String value = new String(aChars, aPos[0], length);
+        aPos[0] += length;
+        return value;
+    }
+    
     public static byte[] charsToBytes(char[] aChars)
     {
         int len = ((int) aChars[0] << 16) | aChars[1];
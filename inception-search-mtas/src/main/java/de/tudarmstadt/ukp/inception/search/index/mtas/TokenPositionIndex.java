@@ -0,0 +1,177 @@
+/*
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.search.index.mtas;
+
+import static org.apache.uima.fit.util.CasUtil.getType;
+import static org.apache.uima.fit.util.CasUtil.select;
+
+import java.util.Arrays;
+
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.Type;
+import org.apache.uima.cas.text.AnnotationFS;
+
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Token;
+
+/**
+ * Index over the begin and end offsets of the tokens in a CAS which allows quickly locating the
+ * tokens covering an annotation. The offsets are kept in sorted primitive arrays which are
+ * searched using binary search. The arrays are reused when the index is built again for another
+ * CAS, so indexing many documents with the same parser does not allocate new arrays for each.
+ * <p>
+ * If several tokens begin (or end) at the same offset, the last of them in the annotation index
+ * is used.
+ */
+class TokenPositionIndex
+{
+    private long[] buffer = new long[0];
+
+    private int[] beginOffsets = new int[0];
+    private int[] beginTokens = new int[0];
+    private int beginSize;
+
+    private int[] endOffsets = new int[0];
+    private int[] endTokens = new int[0];
+    private int endSize;
+
+    /**
+     * Build the index for the tokens in the given CAS, replacing any previous state.
+     */
+    public void build(CAS aCas)
+    {
+        Type tokenType = getType(aCas, Token.class);
+        int count = aCas.getAnnotationIndex(tokenType).size();
+        ensureCapacity(count);
+
+        // Tokens are numbered in the order of the annotation index
+        int tokenNum = 0;
+        for (AnnotationFS token : select(aCas, tokenType)) {
+            buffer[tokenNum] = pack(token.getBegin(), tokenNum);
+            tokenNum++;
+        }
+        beginSize = compact(buffer, tokenNum, beginOffsets, beginTokens);
+
+        tokenNum = 0;
+        for (AnnotationFS token : select(aCas, tokenType)) {
+            buffer[tokenNum] = pack(token.getEnd(), tokenNum);
+            tokenNum++;
+        }
+        endSize = compact(buffer, tokenNum, endOffsets, endTokens);
+    }
+
+    public boolean isEmpty()
+    {
+        return beginSize == 0;
+    }
+
+    /**
+     * @return the slot of the last token beginning at or before the given offset or the slot of
+     *         the first token if there is none.
+     */
+    public int floorBegin(int aOffset)
+    {
+        int i = Arrays.binarySearch(beginOffsets, 0, beginSize, aOffset);
+        if (i >= 0) {
+            return i;
+        }
+
+        int floor = -(i + 1) - 1;
+        return floor < 0 ? 0 : floor;
+    }
+
+    /**
+     * @return the slot of the first token ending at or after the given offset or the slot of the
+     *         last token if there is none.
+     */
+    public int ceilingEnd(int aOffset)
+    {
+        int i = Arrays.binarySearch(endOffsets, 0, endSize, aOffset);
+        if (i >= 0) {
+            return i;
+        }
+
+        int ceiling = -(i + 1);
+        return ceiling >= endSize ? endSize - 1 : ceiling;
+    }
+
+    public int getBeginToken(int aSlot)
+    {
+        return beginTokens[aSlot];
+    }
+
+    public int getBeginOffset(int aSlot)
+    {
+        return beginOffsets[aSlot];
+    }
+
+    public int getEndToken(int aSlot)
+    {
+        return endTokens[aSlot];
+    }
+
+    public int getEndOffset(int aSlot)
+    {
+        return endOffsets[aSlot];
+    }
+
+    private void ensureCapacity(int aCount)
+    {
+        if (buffer.length < aCount) {
+            buffer = new long[aCount];
+            beginOffsets = new int[aCount];
+            beginTokens = new int[aCount];
+            endOffsets = new int[aCount];
+            endTokens = new int[aCount];
+        }
+    }
+
+    /**
+     * Pack offset and token number into a single value such that sorting the values sorts by
+     * offset first and by token number second. Offsets and token numbers are never negative.
+     */
+    private static long pack(int aOffset, int aTokenNum)
+    {
+        return ((long) aOffset << 32) | aTokenNum;
+    }
+
+    /**
+     * Sort the packed values and unpack them into the given arrays, keeping only the last token
+     * for each offset.
+     *
+     * @return the number of distinct offsets.
+     */
+    private static int compact(long[] aPacked, int aLength, int[] aOffsets, int[] aTokens)
+    {
+        Arrays.sort(aPacked, 0, aLength);
+
+        int size = 0;
+        for (int i = 0; i < aLength; i++) {
+            int offset = (int) (aPacked[i] >>> 32);
+            int tokenNum = (int) aPacked[i];
+            if (size > 0 && aOffsets[size - 1] == offset) {
+                aTokens[size - 1] = tokenNum;
+            }
+            else {
+                aOffsets[size] = offset;
+                aTokens[size] = tokenNum;
+                size++;
+            }
+        }
+        return size;
+    }
+}
@@ -27,7 +27,10 @@ import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -310,6 +313,104 @@ public class MtasDocumentIndexTest
                 .usingFieldByFieldElementComparator()
                 .containsExactly(expectedResult);
     }
+
+    @Test
+    public void thatResultsCanBeCountedAndPaged() throws Exception
+    {
+        Project project = new Project();
+        project.setName("ResultsCanBeCountedAndPaged");
+        project.setMode(WebAnnoConst.PROJECT_TYPE_ANNOTATION);
+
+        createProject(project);
+
+        SourceDocument sourceDocument = new SourceDocument();
+
+        sourceDocument.setName("Raw text document");
+        sourceDocument.setProject(project);
+        sourceDocument.setFormat("text");
+
+        String fileContent = "The capital of Galicia is Santiago de Compostela. "
+                + "Galicia is in Spain. Galicia has a coast.";
+
+        uploadDocument(Pair.of(sourceDocument, fileContent));
+
+        User user = userRepository.get("admin");
+
+        String query = "Galicia";
+
+        assertThat(searchService.determineNumOfQueryResults(user, project, query, null))
+                .isEqualTo(3);
+
+        List<SearchResult> all = searchService.query(user, project, query);
+        assertThat(all).hasSize(3);
+
+        List<SearchResult> page = new ArrayList<>();
+        searchService.query(user, project, query, null, null, null, 1, 1).values()
+                .forEach(page::addAll);
+        assertThat(page)
+                .usingFieldByFieldElementComparator()
+                .containsExactly(all.get(1));
+
+        List<SearchResult> lastPage = new ArrayList<>();
+        searchService.query(user, project, query, null, null, null, 2, 5).values()
+                .forEach(lastPage::addAll);
+        assertThat(lastPage)
+                .usingFieldByFieldElementComparator()
+                .containsExactly(all.get(2));
+    }
+
+    @Test
+    public void thatResultsCanBeStreamedByDocument() throws Exception
+    {
+        Project project = new Project();
+        project.setName("ResultsCanBeStreamedByDocument");
+        project.setMode(WebAnnoConst.PROJECT_TYPE_ANNOTATION);
+
+        createProject(project);
+
+        SourceDocument sourceDocument1 = new SourceDocument();
+        sourceDocument1.setName("Raw text document 1");
+        sourceDocument1.setProject(project);
+        sourceDocument1.setFormat("text");
+        String fileContent1 = "The capital of Galicia is Santiago de Compostela. Galicia is nice.";
+
+        SourceDocument sourceDocument2 = new SourceDocument();
+        sourceDocument2.setName("Raw text document 2");
+        sourceDocument2.setProject(project);
+        sourceDocument2.setFormat("text");
+        String fileContent2 = "Galicia is in Spain.";
+
+        uploadDocument(
+                Pair.of(sourceDocument1, fileContent1),
+                Pair.of(sourceDocument2, fileContent2));
+
+        User user = userRepository.get("admin");
+
+        String query = "Galicia";
+
+        Map<Long, List<SearchResult>> resultsByDocument = new HashMap<>();
+        searchService.query(user, project, query, null, (documentId, results) -> {
+            assertThat(resultsByDocument).doesNotContainKey(documentId);
+            resultsByDocument.put(documentId, results);
+            return true;
+        });
+
+        assertThat(resultsByDocument.get(sourceDocument1.getId()))
+                .extracting(SearchResult::getOffsetStart)
+                .containsExactly(15, 50);
+        assertThat(resultsByDocument.get(sourceDocument2.getId()))
+                .extracting(SearchResult::getOffsetStart)
+                .containsExactly(0);
+
+        List<Long> visitedDocuments = new ArrayList<>();
+        searchService.query(user, project, query, null, (documentId, results) -> {
+            visitedDocuments.add(documentId);
+            return false;
+        });
+
+        assertThat(visitedDocuments).hasSize(1);
+    }
+
     @Test
     public void testLimitQueryToDocument() throws Exception
     {
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.search.index.mtas;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MtasIndexShardTest
+{
+    public @Rule TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void thatShardExistsOnlyAfterCommit() throws Exception
+    {
+        MtasIndexShard shard = new MtasIndexShard(new File(folder.getRoot(), "shard"));
+
+        assertThat(shard.exists()).isFalse();
+        assertThat(shard.isOpen()).isFalse();
+        assertThat(shard.getWriter()).isNull();
+
+        IndexWriter writer = shard.open(() -> new IndexWriterConfig(new StandardAnalyzer()));
+        assertThat(shard.isOpen()).isTrue();
+        assertThat(shard.open(() -> new IndexWriterConfig(new StandardAnalyzer())))
+                .isSameAs(writer);
+
+        Document doc = new Document();
+        doc.add(new StringField("id", "1/-1", Field.Store.YES));
+        writer.addDocument(doc);
+        writer.commit();
+
+        assertThat(shard.exists()).isTrue();
+        try (DirectoryReader reader = shard.openReader()) {
+            assertThat(reader.numDocs()).isEqualTo(1);
+        }
+
+        shard.close();
+        assertThat(shard.isOpen()).isFalse();
+    }
+
+    @Test
+    public void thatShardCanBeReopenedAfterClose() throws Exception
+    {
+        MtasIndexShard shard = new MtasIndexShard(new File(folder.getRoot(), "shard"));
+
+        IndexWriter writer = shard.open(() -> new IndexWriterConfig(new StandardAnalyzer()));
+        Document doc = new Document();
+        doc.add(new StringField("id", "1/2", Field.Store.YES));
+        writer.addDocument(doc);
+        writer.commit();
+        shard.close();
+
+        shard.open(() -> new IndexWriterConfig(new StandardAnalyzer()));
+        assertThat(shard.isOpen()).isTrue();
+        try (DirectoryReader reader = shard.openReader()) {
+            assertThat(reader.numDocs()).isEqualTo(1);
+        }
+        shard.close();
+    }
+}
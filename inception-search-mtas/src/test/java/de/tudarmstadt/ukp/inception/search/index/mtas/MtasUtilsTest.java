@@ -19,6 +19,10 @@ package de.tudarmstadt.ukp.inception.search.index.mtas;
 
 import static de.tudarmstadt.ukp.inception.search.index.mtas.MtasUtils.bytesToChars;
 import static de.tudarmstadt.ukp.inception.search.index.mtas.MtasUtils.charsToBytes;
+import static de.tudarmstadt.ukp.inception.search.index.mtas.MtasUtils.decodeFSAddress;
+import static de.tudarmstadt.ukp.inception.search.index.mtas.MtasUtils.decodeTokenCollection;
+import static de.tudarmstadt.ukp.inception.search.index.mtas.MtasUtils.encodeFSAddress;
+import static de.tudarmstadt.ukp.inception.search.index.mtas.MtasUtils.encodeTokenCollection;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import java.security.NoSuchAlgorithmException;
@@ -26,6 +30,10 @@ import java.util.Random;
 
 import org.junit.Test;
 
+import mtas.analysis.token.MtasToken;
+import mtas.analysis.token.MtasTokenCollection;
+import mtas.analysis.token.MtasTokenString;
+
 public class MtasUtilsTest
 {
     @Test
@@ -50,4 +58,26 @@ public class MtasUtilsTest
 
         assertThat(output).isEqualTo(input);
     }
+
+    @Test
+    public void tokenCollectionRoundtrip() throws Exception
+    {
+        MtasTokenCollection input = new MtasTokenCollection();
+        
+        MtasToken token = new MtasTokenString(0, "Token", "Grüße", 0);
+        token.setOffset(0, 5);
+        token.addPositionRange(0, 0);
+        input.add(token);
+        
+        MtasToken annotation = new MtasTokenString(1, "Named_entity", "PER", 0);
+        annotation.setOffset(0, 12);
+        annotation.addPositionRange(0, 1);
+        annotation.setPayload(encodeFSAddress(123456789));
+        input.add(annotation);
+
+        MtasTokenCollection output = decodeTokenCollection(encodeTokenCollection(input));
+
+        assertThat(output.getList()).isEqualTo(input.getList());
+        assertThat(decodeFSAddress(output.get(1).getPayload())).isEqualTo(123456789);
+    }
 }
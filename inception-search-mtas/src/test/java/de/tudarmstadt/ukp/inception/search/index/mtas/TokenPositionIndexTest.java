@@ -0,0 +1,96 @@
+/*
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.search.index.mtas;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.apache.uima.fit.factory.JCasBuilder;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.jcas.JCas;
+import org.junit.Test;
+
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Token;
+
+public class TokenPositionIndexTest
+{
+    @Test
+    public void thatTokensAreLocatedByOffsets() throws Exception
+    {
+        // Tokens: "This" [1-5], "is" [6-8], "a" [9-10], "test" [11-15]
+        JCas jcas = JCasFactory.createJCas();
+        JCasBuilder builder = new JCasBuilder(jcas);
+        builder.add(" ");
+        builder.add("This", Token.class);
+        builder.add(" ");
+        builder.add("is", Token.class);
+        builder.add(" ");
+        builder.add("a", Token.class);
+        builder.add(" ");
+        builder.add("test", Token.class);
+        builder.add(" ");
+        builder.close();
+
+        TokenPositionIndex sut = new TokenPositionIndex();
+        sut.build(jcas.getCas());
+
+        assertThat(sut.isEmpty()).isFalse();
+
+        // Exact begin of the second token
+        int slot = sut.floorBegin(6);
+        assertThat(sut.getBeginToken(slot)).isEqualTo(1);
+        assertThat(sut.getBeginOffset(slot)).isEqualTo(6);
+
+        // Between the third and the fourth token
+        slot = sut.floorBegin(10);
+        assertThat(sut.getBeginToken(slot)).isEqualTo(2);
+
+        // Before the first token
+        slot = sut.floorBegin(0);
+        assertThat(sut.getBeginToken(slot)).isEqualTo(0);
+        assertThat(sut.getBeginOffset(slot)).isEqualTo(1);
+
+        // Within the second token
+        slot = sut.ceilingEnd(7);
+        assertThat(sut.getEndToken(slot)).isEqualTo(1);
+        assertThat(sut.getEndOffset(slot)).isEqualTo(8);
+
+        // After the last token
+        slot = sut.ceilingEnd(17);
+        assertThat(sut.getEndToken(slot)).isEqualTo(3);
+        assertThat(sut.getEndOffset(slot)).isEqualTo(15);
+    }
+
+    @Test
+    public void thatIndexCanBeRebuilt() throws Exception
+    {
+        JCas jcas = JCasFactory.createJCas();
+        JCasBuilder builder = new JCasBuilder(jcas);
+        builder.add("one", Token.class);
+        builder.add(" ");
+        builder.add("two", Token.class);
+        builder.close();
+
+        TokenPositionIndex sut = new TokenPositionIndex();
+        sut.build(jcas.getCas());
+        assertThat(sut.getEndToken(sut.ceilingEnd(7))).isEqualTo(1);
+
+        jcas.reset();
+        sut.build(jcas.getCas());
+        assertThat(sut.isEmpty()).isTrue();
+    }
+}
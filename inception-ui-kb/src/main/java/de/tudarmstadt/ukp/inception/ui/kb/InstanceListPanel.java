@@ -17,8 +17,10 @@
  */
 package de.tudarmstadt.ukp.inception.ui.kb;
 
+import static java.util.Comparator.comparing;
 import static org.apache.commons.lang3.StringUtils.isNotEmpty;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -38,6 +40,7 @@ import org.slf4j.LoggerFactory;
 
 import de.tudarmstadt.ukp.clarin.webanno.support.lambda.LambdaAjaxFormComponentUpdatingBehavior;
 import de.tudarmstadt.ukp.clarin.webanno.support.lambda.LambdaAjaxLink;
+import de.tudarmstadt.ukp.clarin.webanno.support.lambda.LambdaBehavior;
 import de.tudarmstadt.ukp.clarin.webanno.support.lambda.LambdaModel;
 import de.tudarmstadt.ukp.clarin.webanno.support.wicket.OverviewListChoice;
 import de.tudarmstadt.ukp.inception.kb.KnowledgeBaseService;
@@ -56,6 +59,13 @@ public class InstanceListPanel extends Panel {
     private IModel<KnowledgeBase> kbModel;
     private IModel<KBObject> conceptModel;
     private IModel<Boolean> showAll;
+    
+    /**
+     * Number of pages of instances to show. Instances are loaded page by page, so large concepts
+     * do not need to be loaded completely just to display the first instances.
+     */
+    private int pageCount = 1;
+    private boolean moreInstances = false;
 
     public InstanceListPanel(String aId, IModel<KnowledgeBase> aKbModel, IModel<KBObject> aConcept,
             IModel<KBObject> aInstance) {
@@ -109,9 +119,23 @@ public class InstanceListPanel extends Panel {
             }
         });
 
+        LambdaAjaxLink moreLink = new LambdaAjaxLink("more", target -> {
+            pageCount++;
+            target.add(this);
+        });
+        moreLink.add(new Label("label", new ResourceModel("instance.more")));
+        moreLink.add(LambdaBehavior.onConfigure(_this -> {
+            // Make sure the instances have been loaded so we know if there are more
+            instancesModel.getObject();
+            _this.setVisible(moreInstances);
+        }));
+        add(moreLink);
+
         CheckBox showAllCheckBox = new CheckBox("showAllInstances", showAll);
-        showAllCheckBox
-                .add(new LambdaAjaxFormComponentUpdatingBehavior("change", t -> t.add(this)));
+        showAllCheckBox.add(new LambdaAjaxFormComponentUpdatingBehavior("change", t -> {
+            pageCount = 1;
+            t.add(this);
+        }));
         add(showAllCheckBox);
     }
     
@@ -125,10 +149,28 @@ public class InstanceListPanel extends Panel {
     }
 
     private List<KBHandle> getInstances() {
+        moreInstances = false;
         if (conceptModel.getObject() != null) {
             try {
-                return kbService.listInstances(kbModel.getObject(),
-                        conceptModel.getObject().getIdentifier(), showAll.getObject());
+                KnowledgeBase kb = kbModel.getObject();
+                int pageSize = kb.getMaxResults();
+                List<KBHandle> instances = new ArrayList<>();
+                String lastIdentifier = null;
+                for (int page = 0; page < pageCount; page++) {
+                    List<KBHandle> pageInstances = kbService.listInstances(kb,
+                            conceptModel.getObject().getIdentifier(), showAll.getObject(),
+                            lastIdentifier, pageSize);
+                    instances.addAll(pageInstances);
+                    moreInstances = pageInstances.size() == pageSize;
+                    if (!moreInstances) {
+                        break;
+                    }
+                    lastIdentifier = pageInstances.get(pageInstances.size() - 1).getIdentifier();
+                }
+                
+                // Pages are ordered by identifier, but the list is shown ordered by label
+                instances.sort(comparing(KBHandle::getUiLabel, String.CASE_INSENSITIVE_ORDER));
+                return instances;
             }
             catch (QueryEvaluationException e) {
                 error("Unable to list instances: " + e.getLocalizedMessage());
@@ -19,8 +19,11 @@ package de.tudarmstadt.ukp.inception.ui.kb.search;
 
 import static de.tudarmstadt.ukp.inception.kb.IriConstants.hasImplicitNamespace;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.collections4.MultiValuedMap;
 import org.apache.commons.collections4.multimap.HashSetValuedHashMap;
@@ -28,13 +31,20 @@ import org.apache.uima.cas.text.AnnotationFS;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+
 import de.tudarmstadt.ukp.clarin.webanno.api.annotation.feature.FeatureSupport;
 import de.tudarmstadt.ukp.clarin.webanno.api.annotation.feature.FeatureSupportRegistry;
 import de.tudarmstadt.ukp.clarin.webanno.api.annotation.util.WebAnnoCasUtil;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
 import de.tudarmstadt.ukp.inception.kb.KnowledgeBaseService;
+import de.tudarmstadt.ukp.inception.kb.event.KnowledgeBaseConfigurationChangedEvent;
+import de.tudarmstadt.ukp.inception.kb.event.KnowledgeBaseStatementsChangedEvent;
 import de.tudarmstadt.ukp.inception.kb.graph.KBHandle;
 import de.tudarmstadt.ukp.inception.kb.graph.KBObject;
 import de.tudarmstadt.ukp.inception.search.FeatureIndexingSupport;
@@ -54,6 +64,15 @@ public class ConceptFeatureIndexingSupport
 
     private final FeatureSupportRegistry featureSupportRegistry;
     private final KnowledgeBaseService kbService;
+    
+    // When (re-)indexing a project, the same concepts are typically linked many times. Looking up
+    // the parent concepts of each concept only once makes the indexing time depend on the number
+    // of distinct concepts rather than on the number of annotations.
+    private final LoadingCache<Key, Optional<List<String>>> parentConceptCache = Caffeine
+        .newBuilder()
+        .maximumSize(100_000)
+        .expireAfterWrite(10, TimeUnit.MINUTES)
+        .build(key -> loadParentConceptLabels(key));
 
     @Autowired
     public ConceptFeatureIndexingSupport(FeatureSupportRegistry aFeatureSupportRegistry,
@@ -102,11 +121,11 @@ public class ConceptFeatureIndexingSupport
             return values;
         }
 
-        // Get object from the KB
-        Optional<KBObject> kbObject = kbService.readItem(aFeature.getProject(),
-                WebAnnoCasUtil.getFeature(aAnnotation, aFeature.getName()));
+        // Get the parent concepts of the object from the KB
+        Optional<List<String>> parentConceptLabels = parentConceptCache.get(new Key(
+                aFeature.getProject(), WebAnnoCasUtil.getFeature(aAnnotation, aFeature.getName())));
 
-        if (!kbObject.isPresent()) {
+        if (!parentConceptLabels.isPresent()) {
             return values;
         }
 
@@ -132,18 +151,55 @@ public class ConceptFeatureIndexingSupport
         values.put(KB_ENTITY, featureObject.getIdentifier());
         
         // Indexing super concepts with type super.concept 
+        for (String parentConceptLabel : parentConceptLabels.get()) {
+            values.put(field + aFeaturePrefix + ATTRIBUTE_SEP + aFeature.getUiName(),
+                    parentConceptLabel);
+        }
+        
+        return values;
+    }
+    
+    /**
+     * @return the labels of the parent concepts of the given KB object or nothing if the object
+     *         does not exist.
+     */
+    private Optional<List<String>> loadParentConceptLabels(Key aKey)
+    {
+        Optional<KBObject> kbObject = kbService.readItem(aKey.project, aKey.identifier);
+
+        if (!kbObject.isPresent()) {
+            return Optional.empty();
+        }
+        
         KBObject kbObj = kbObject.get();
-        List<KBHandle> listParentConcepts = kbService.getParentConceptList(kbObj.getKB(),
-                kbObj.getIdentifier(), false);
-        for (KBHandle parentConcept : listParentConcepts) {
+        List<String> labels = new ArrayList<>();
+        for (KBHandle parentConcept : kbService.getParentConceptList(kbObj.getKB(),
+                kbObj.getIdentifier(), false)) {
             if (hasImplicitNamespace(kbObj.getKB(), parentConcept.getIdentifier())) {
                 continue;
             }
-            values.put(field + aFeaturePrefix + ATTRIBUTE_SEP + aFeature.getUiName(),
-                    parentConcept.getUiLabel());
+            labels.add(parentConcept.getUiLabel());
         }
-        
-        return values;
+        return Optional.of(labels);
+    }
+    
+    @EventListener
+    public void onKnowledgeBaseStatementsChangedEvent(KnowledgeBaseStatementsChangedEvent aEvent)
+    {
+        invalidate(aEvent.getKnowledgeBase().getProject());
+    }
+
+    @EventListener
+    public void onKnowledgeBaseConfigurationChangedEvent(
+            KnowledgeBaseConfigurationChangedEvent aEvent)
+    {
+        invalidate(aEvent.getProject());
+    }
+    
+    private void invalidate(Project aProject)
+    {
+        parentConceptCache.asMap().keySet()
+                .removeIf(key -> Objects.equals(key.project.getId(), aProject.getId()));
     }
 
     @Override
@@ -153,4 +209,35 @@ public class ConceptFeatureIndexingSupport
         return aFieldPrefix + ATTRIBUTE_SEP + aFeature.getUiName() + SPECIAL_SEP + INDEX_KB_EXACT;
     }
     
+    private static final class Key
+    {
+        private final Project project;
+        private final String identifier;
+
+        public Key(Project aProject, String aIdentifier)
+        {
+            project = aProject;
+            identifier = aIdentifier;
+        }
+
+        @Override
+        public boolean equals(Object aOther)
+        {
+            if (this == aOther) {
+                return true;
+            }
+            if (!(aOther instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) aOther;
+            return Objects.equals(project.getId(), other.project.getId())
+                    && Objects.equals(identifier, other.identifier);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(project.getId(), identifier);
+        }
+    }
 }
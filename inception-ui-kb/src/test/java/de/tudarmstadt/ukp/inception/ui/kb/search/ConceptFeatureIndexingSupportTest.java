@@ -23,6 +23,8 @@ import static de.tudarmstadt.ukp.clarin.webanno.model.OverlapMode.NO_OVERLAP;
 import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
 
@@ -162,4 +164,56 @@ public class ConceptFeatureIndexingSupportTest
             .extracting(MtasToken::getPostfix)
             .contains("", "urn:dummy-concept", "Dummy concept");
     }
+    
+    @Test
+    public void testConceptLookupsAreCached() throws Exception
+    {
+        JCasBuilder builder = new JCasBuilder(jcas);
+        for (int i = 0; i < 3; i++) {
+            int begin = builder.getPosition();
+            builder.add("John", Token.class);
+            NamedEntity ne = new NamedEntity(jcas, begin, builder.getPosition());
+            ne.setIdentifier("urn:dummy-concept");
+            ne.addToIndexes();
+            builder.add(" ");
+        }
+        
+        AnnotationLayer layer = new AnnotationLayer(NamedEntity.class.getName(),
+                "Named Entity", SPAN_TYPE, project, true, TOKENS, NO_OVERLAP);
+        when(annotationSchemaService.listAnnotationLayer(any(Project.class)))
+                .thenReturn(asList(layer));
+
+        when(annotationSchemaService.listAnnotationFeature(any(AnnotationLayer.class)))
+                .thenReturn(asList(
+                        new AnnotationFeature(1l, layer, "value", CAS.TYPE_NAME_STRING),
+                        new AnnotationFeature(2l, layer, "identifier", "kb:<ANY>")));
+        
+        KBInstance kbInstance = new KBInstance("urn:dummy-concept", "Dummy concept");
+        kbInstance.setKB(kb);
+        
+        when(kbService.readItem(any(Project.class), any(String.class)))
+                .thenReturn(Optional.of(kbInstance));
+
+        when(kbService.getParentConceptList(any(KnowledgeBase.class), any(String.class),
+                any(Boolean.class))).thenReturn(asList(
+                        new KBHandle("urn:dummy-parent-concept", "Dummy Parent Concept")));
+
+        MtasUimaParser sut = new MtasUimaParser(project, annotationSchemaService,
+                featureIndexingSupportRegistry);
+        MtasTokenCollection tc = sut.createTokenCollection(jcas.getCas());
+        
+        List<MtasToken> tokens = new ArrayList<>();
+        tc.iterator().forEachRemaining(tokens::add);
+        
+        assertThat(tokens)
+            .filteredOn(t -> t.getPrefix().equals("Named_Entity.identifier"))
+            .extracting(MtasToken::getPostfix)
+            .contains("Dummy Parent Concept");
+        
+        // The concept is linked three times but looked up only once - once for its label by the
+        // feature support and once for its parent concepts by the indexing support
+        verify(kbService, times(2)).readItem(any(Project.class), any(String.class));
+        verify(kbService, times(1)).getParentConceptList(any(KnowledgeBase.class),
+                any(String.class), any(Boolean.class));
+    }
 }
@@ -17,29 +17,26 @@
  */
 package de.tudarmstadt.ukp.inception.app.ui.search.sidebar;
 
-import static de.tudarmstadt.ukp.clarin.webanno.api.annotation.util.WebAnnoCasUtil.getAddr;
 import static de.tudarmstadt.ukp.clarin.webanno.support.lambda.LambdaBehavior.visibleWhen;
-import static java.util.stream.Collectors.groupingBy;
 import static org.apache.commons.lang3.StringUtils.isBlank;
-import static org.apache.uima.fit.util.CasUtil.selectAt;
 
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 
 import org.apache.uima.cas.CAS;
-import org.apache.uima.cas.Type;
-import org.apache.uima.cas.text.AnnotationFS;
-import org.apache.uima.fit.util.CasUtil;
 import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.ajax.AbstractAjaxTimerBehavior;
 import org.apache.wicket.ajax.AjaxRequestTarget;
 import org.apache.wicket.ajax.form.AjaxFormComponentUpdatingBehavior;
 import org.apache.wicket.ajax.markup.html.form.AjaxCheckBox;
@@ -59,6 +56,7 @@ import org.apache.wicket.model.IModel;
 import org.apache.wicket.model.LoadableDetachableModel;
 import org.apache.wicket.model.Model;
 import org.apache.wicket.spring.injection.annot.SpringBean;
+import org.apache.wicket.util.time.Duration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.wicketstuff.event.annotation.OnEvent;
@@ -68,16 +66,12 @@ import de.tudarmstadt.ukp.clarin.webanno.api.AnnotationSchemaService;
 import de.tudarmstadt.ukp.clarin.webanno.api.CasProvider;
 import de.tudarmstadt.ukp.clarin.webanno.api.DocumentService;
 import de.tudarmstadt.ukp.clarin.webanno.api.annotation.action.AnnotationActionHandler;
-import de.tudarmstadt.ukp.clarin.webanno.api.annotation.adapter.SpanAdapter;
-import de.tudarmstadt.ukp.clarin.webanno.api.annotation.event.BulkAnnotationEvent;
-import de.tudarmstadt.ukp.clarin.webanno.api.annotation.exception.AnnotationException;
 import de.tudarmstadt.ukp.clarin.webanno.api.annotation.model.AnnotatorState;
 import de.tudarmstadt.ukp.clarin.webanno.api.annotation.model.FeatureState;
 import de.tudarmstadt.ukp.clarin.webanno.api.annotation.model.VID;
 import de.tudarmstadt.ukp.clarin.webanno.api.annotation.rendering.event.RenderAnnotationsEvent;
 import de.tudarmstadt.ukp.clarin.webanno.api.annotation.rendering.model.VMarker;
 import de.tudarmstadt.ukp.clarin.webanno.api.annotation.rendering.model.VTextMarker;
-import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
 import de.tudarmstadt.ukp.clarin.webanno.model.Project;
@@ -90,6 +84,10 @@ import de.tudarmstadt.ukp.clarin.webanno.support.lambda.LambdaModel;
 import de.tudarmstadt.ukp.clarin.webanno.support.spring.ApplicationEventPublisherHolder;
 import de.tudarmstadt.ukp.clarin.webanno.ui.annotation.AnnotationPage;
 import de.tudarmstadt.ukp.clarin.webanno.ui.annotation.sidebar.AnnotationSidebar_ImplBase;
+import de.tudarmstadt.ukp.inception.app.ui.search.sidebar.bulk.BulkAnnotationJob;
+import de.tudarmstadt.ukp.inception.app.ui.search.sidebar.bulk.BulkAnnotationJob.Operation;
+import de.tudarmstadt.ukp.inception.app.ui.search.sidebar.bulk.BulkAnnotationJob.Status;
+import de.tudarmstadt.ukp.inception.app.ui.search.sidebar.bulk.BulkAnnotationService;
 import de.tudarmstadt.ukp.inception.app.ui.search.sidebar.options.CreateAnnotationsOptions;
 import de.tudarmstadt.ukp.inception.app.ui.search.sidebar.options.DeleteAnnotationsOptions;
 import de.tudarmstadt.ukp.inception.app.ui.search.sidebar.options.SearchOptions;
@@ -104,11 +102,14 @@ public class SearchAnnotationSidebar
 
     private static final Logger LOG = LoggerFactory.getLogger(SearchAnnotationSidebar.class);
 
+    private static final int RESULTS_PER_PAGE = 50;
+
     private @SpringBean DocumentService documentService;
     private @SpringBean AnnotationSchemaService annotationService;
     private @SpringBean SearchService searchService;
     private @SpringBean UserDao userRepository;
     private @SpringBean ApplicationEventPublisherHolder applicationEventPublisher;
+    private @SpringBean BulkAnnotationService bulkAnnotationService;
 
     private User currentUser;
 
@@ -128,6 +129,13 @@ public class SearchAnnotationSidebar
         Collections.emptyList(), new ChoiceRenderer<>("uiName"));
 
     private SearchResult selectedResult;
+    
+    private final WebMarkupContainer bulkJobContainer;
+    private final AbstractAjaxTimerBehavior bulkJobTimer;
+    private String bulkJobId;
+    
+    private long resultCount;
+    private long currentPage;
 
     public SearchAnnotationSidebar(String aId, IModel<AnnotatorState> aModel,
             AnnotationActionHandler aActionHandler, CasProvider aCasProvider,
@@ -172,6 +180,17 @@ public class SearchAnnotationSidebar
             searchService.reindex(project);
         }));
 
+        WebMarkupContainer pagingContainer = new WebMarkupContainer("pagingContainer");
+        pagingContainer.add(visibleWhen(() -> resultCount > 0));
+        pagingContainer.add(new LambdaAjaxLink("previousPage", this::actionPreviousPage)
+                .add(visibleWhen(() -> currentPage > 0)));
+        pagingContainer.add(new Label("pageInfo", LoadableDetachableModel.of(() -> String.format(
+                "%d - %d of %d", currentPage * RESULTS_PER_PAGE + 1,
+                Math.min((currentPage + 1) * RESULTS_PER_PAGE, resultCount), resultCount))));
+        pagingContainer.add(new LambdaAjaxLink("nextPage", this::actionNextPage)
+                .add(visibleWhen(() -> (currentPage + 1) * RESULTS_PER_PAGE < resultCount)));
+        mainContainer.add(pagingContainer);
+
         resultsGroupContainer = new WebMarkupContainer("resultsGroupContainer");
         resultsGroupContainer.setOutputMarkupId(true);
         mainContainer.add(resultsGroupContainer);
@@ -203,8 +222,7 @@ public class SearchAnnotationSidebar
         Form<Void> annotationForm = new Form<>("annotateForm");
         // create annotate-button and options form
         LambdaAjaxButton<Void> annotateButton = new LambdaAjaxButton<>("annotateAllButton",
-            (target, form) -> actionApplyToSelectedResults(target,
-                this::createAnnotationAtSearchResult));
+            (target, form) -> actionStartBulkOperation(target, Operation.CREATE));
         annotationForm.add(annotateButton);
 
         Form<CreateAnnotationsOptions> annotationOptionsForm = new Form<>("createOptions",
@@ -222,8 +240,7 @@ public class SearchAnnotationSidebar
 
         // create delete-button and options form
         LambdaAjaxButton<Void> deleteButton = new LambdaAjaxButton<>("deleteButton",
-            (target, from) -> actionApplyToSelectedResults(target,
-                this::deleteAnnotationAtSearchResult));
+            (target, from) -> actionStartBulkOperation(target, Operation.DELETE));
         annotationForm.add(deleteButton);
 
         Form<DeleteAnnotationsOptions> deleteOptionsForm = new Form<>("deleteOptions",
@@ -239,7 +256,8 @@ public class SearchAnnotationSidebar
         }));
 
         annotationForm.setDefaultButton(annotateButton);
-        annotationForm.add(visibleWhen(() -> !groupedSearchResults.getObject().isEmpty()));
+        annotationForm.add(visibleWhen(() -> !groupedSearchResults.getObject().isEmpty()
+                && bulkJobId == null));
 
         
         LambdaAjaxButton<Void> clearButton = new LambdaAjaxButton<>("clearButton",
@@ -247,6 +265,29 @@ public class SearchAnnotationSidebar
         annotationForm.add(clearButton);
         
         mainContainer.add(annotationForm);
+        
+        // Bulk operations run in the background - while they run, their progress is shown
+        // instead of the annotation form
+        bulkJobContainer = new WebMarkupContainer("bulkJobContainer");
+        bulkJobContainer.setOutputMarkupPlaceholderTag(true);
+        bulkJobContainer.add(visibleWhen(() -> bulkJobId != null));
+        bulkJobContainer.add(new Label("bulkJobProgress",
+                LoadableDetachableModel.of(this::getBulkJobProgress)));
+        bulkJobContainer.add(new LambdaAjaxLink("cancelBulkJob", this::actionCancelBulkOperation));
+        bulkJobTimer = new AbstractAjaxTimerBehavior(Duration.seconds(1))
+        {
+            private static final long serialVersionUID = 6180960926366838187L;
+
+            @Override
+            protected void onTimer(AjaxRequestTarget aTarget)
+            {
+                onBulkJobProgress(aTarget);
+            }
+        };
+        // The timer is only started when a job is submitted
+        bulkJobTimer.stop(null);
+        bulkJobContainer.add(bulkJobTimer);
+        mainContainer.add(bulkJobContainer);
     }
 
     private Map<String, Boolean> initGroupLevelSelections(
@@ -308,6 +349,8 @@ public class SearchAnnotationSidebar
     private void actionSearch(AjaxRequestTarget aTarget, Form<Void> aForm)
     {
         selectedResult = null;
+        currentPage = 0;
+        resultCount = countSearchResults();
         groupedSearchResults.detach();
         aTarget.add(mainContainer);
         aTarget.addChildren(getPage(), IFeedback.class);
@@ -317,10 +360,52 @@ public class SearchAnnotationSidebar
     {
         targetQuery.setObject("");
         selectedResult = null;
+        currentPage = 0;
+        resultCount = 0;
         groupedSearchResults.detach();
         aTarget.add(mainContainer);
     }
     
+    private void actionPreviousPage(AjaxRequestTarget aTarget)
+    {
+        currentPage = Math.max(0, currentPage - 1);
+        selectedResult = null;
+        groupedSearchResults.detach();
+        aTarget.add(mainContainer);
+    }
+    
+    private void actionNextPage(AjaxRequestTarget aTarget)
+    {
+        currentPage++;
+        selectedResult = null;
+        groupedSearchResults.detach();
+        aTarget.add(mainContainer);
+    }
+    
+    /**
+     * Determine the total number of results without retrieving them, so only the current page
+     * of results needs to be retrieved.
+     */
+    private long countSearchResults()
+    {
+        if (isBlank(targetQuery.getObject())) {
+            return 0;
+        }
+        
+        try {
+            AnnotatorState state = getModelObject();
+            SourceDocument limitToDocument = searchOptions.getObject().isLimitedToCurrentDocument()
+                    ? state.getDocument()
+                    : null;
+            return searchService.determineNumOfQueryResults(currentUser, state.getProject(),
+                    targetQuery.getObject(), limitToDocument);
+        }
+        catch (Exception e) {
+            LOG.error("Unable to count search results", e);
+            return 0;
+        }
+    }
+    
     private Map<String, ResultsGroup> getSearchResultsGrouped()
     {
         if (isBlank(targetQuery.getObject())) {
@@ -346,7 +431,8 @@ public class SearchAnnotationSidebar
             SearchOptions opt = searchOptions.getObject();
             Map<String, ResultsGroup> queryResults = searchService
                     .query(currentUser, project, targetQuery.getObject(), limitToDocument,
-                            opt.getGroupingLayer(), opt.getGroupingFeature())
+                            opt.getGroupingLayer(), opt.getGroupingFeature(),
+                            currentPage * RESULTS_PER_PAGE, RESULTS_PER_PAGE)
                     .entrySet().stream().collect(Collectors.toMap(Entry::getKey, e -> 
                             new ResultsGroup(e.getKey(), e.getValue())));
 
@@ -375,189 +461,167 @@ public class SearchAnnotationSidebar
         }
     }
 
-    public void actionApplyToSelectedResults(AjaxRequestTarget aTarget,
-            Operation aConsumer)
+    private void actionStartBulkOperation(AjaxRequestTarget aTarget, Operation aOperation)
     {
         if (VID.NONE_ID.equals(getModelObject().getSelection().getAnnotation())) {
             error("No annotation selected. Please select an annotation first");
+            aTarget.addChildren(getPage(), IFeedback.class);
+            return;
         }
-        else {
-            AnnotationLayer layer = getModelObject().getSelectedAnnotationLayer();
-            try {
-                SpanAdapter adapter = (SpanAdapter) annotationService.getAdapter(layer);
-                adapter.silenceEvents();
-                
-                // Group the results by document such that we can process one CAS at a time
-                Map<Long, List<SearchResult>> resultsByDocument = groupedSearchResults.getObject()
-                        .values().stream()
-                        // the grouping can be based on some other strategy than the document, so
-                        // we re-group here
-                        .flatMap(group -> group.getResults().stream())
-                        .collect(groupingBy(SearchResult::getDocumentId));
-                
-                BulkOperationResult bulkResult = new BulkOperationResult();
-                
-                AnnotatorState state = getModelObject();
-                for (Entry<Long, List<SearchResult>> resultsGroup : resultsByDocument.entrySet()) {
-                    long documentId = resultsGroup.getKey();
-                    SourceDocument sourceDoc = documentService
-                            .getSourceDocument(state.getProject().getId(), documentId);
-
-                    AnnotationDocument annoDoc = documentService
-                            .createOrGetAnnotationDocument(sourceDoc, currentUser);
-                    
-                    switch (annoDoc.getState()) {
-                    case FINISHED: // fall-through
-                    case IGNORE:
-                        // Skip processing any documents which are finished or ignored
-                        continue;
-                    default:
-                        // Do nothing
-                    }
-                    
-                    // Load annotated document
-                    CAS cas = documentService.readAnnotationCas(sourceDoc,
-                            currentUser.getUsername());
-
-                    // Apply bulk operations to all hits from this document
-                    for (SearchResult result : resultsGroup.getValue()) {
-                        if (result.isReadOnly() || !result.isSelectedForAnnotation()) {
-                            continue;
-                        }
-                        
-                        aConsumer.apply(sourceDoc, cas, adapter, result, bulkResult);
-                    }
 
-                    // Persist annotated document
-                    writeJCasAndUpdateTimeStamp(sourceDoc, cas);
-                }
-                
-                if (bulkResult.created > 0) {
-                    success("Created annotations: " + bulkResult.created);
-                }
-                if (bulkResult.updated > 0) {
-                    success("Updated annotations: " + bulkResult.updated);
-                }
-                if (bulkResult.deleted > 0) {
-                    success("Deleted annotations: " + bulkResult.deleted);
-                }
-                if (bulkResult.conflict > 0) {
-                    warn("Annotations skipped due to conflicts: " + bulkResult.conflict);
-                }
-                
-                if (bulkResult.created == 0 && bulkResult.updated == 0 && bulkResult.deleted == 0) {
-                    info("No changes");
-                }
-                
-                applicationEventPublisher.get().publishEvent(new BulkAnnotationEvent(this,
-                        getModelObject().getProject(), currentUser.getUsername(), layer));
-            }
-            catch (ClassCastException e) {
-                error("Can only create SPAN annotations for search results.");
-                LOG.error("Can only create SPAN annotations for search results", e);
-            }
-            catch (Exception e) {
-                error("Unable to apply action to search results: " + e.getMessage());
-                LOG.error("Unable to apply action to search results: ", e);
-            }
+        if (bulkAnnotationService.getJob(bulkJobId).isPresent()) {
+            error("Please wait for the current bulk operation to finish or cancel it");
+            aTarget.addChildren(getPage(), IFeedback.class);
+            return;
         }
         
-        getAnnotationPage().actionRefreshDocument(aTarget);
+        AnnotatorState state = getModelObject();
+        
+        Map<AnnotationFeature, Object> featureValues = new LinkedHashMap<>();
+        for (FeatureState featureState : state.getFeatureStates()) {
+            featureValues.put(featureState.feature, featureState.value);
+        }
+        
+        // The results which the user has deselected on the current page are not processed.
+        // All other results of the query are processed, not only the ones on the current page.
+        List<SearchResult> excludedResults = groupedSearchResults.getObject().values().stream()
+                .flatMap(group -> group.getResults().stream())
+                .filter(result -> !result.isSelectedForAnnotation())
+                .collect(Collectors.toList());
+        
+        SourceDocument limitToDocument = searchOptions.getObject().isLimitedToCurrentDocument()
+                ? state.getDocument()
+                : null;
+        
+        BulkAnnotationJob job = bulkAnnotationService.submit(new BulkAnnotationJob(aOperation,
+                currentUser, state.getProject(), targetQuery.getObject(), limitToDocument,
+                state.getSelectedAnnotationLayer(), featureValues,
+                createOptions.getObject().isOverrideExistingAnnotations(),
+                deleteOptions.getObject().isDeleteOnlyMatchingFeatureValues(), excludedResults,
+                state.getDocument()));
+        bulkJobId = job.getId();
+        
+        bulkJobTimer.restart(aTarget);
+        aTarget.add(bulkJobContainer);
     }
-
-    private void createAnnotationAtSearchResult(SourceDocument aDocument, CAS aCas,
-            SpanAdapter aAdapter, SearchResult aSearchResult, BulkOperationResult aBulkResult)
-        throws AnnotationException
+    
+    private void actionCancelBulkOperation(AjaxRequestTarget aTarget)
     {
-        AnnotatorState state = getModelObject();
-        AnnotationLayer layer = aAdapter.getLayer();
-        List<FeatureState> featureStates = state.getFeatureStates();
+        bulkAnnotationService.getJob(bulkJobId).ifPresent(BulkAnnotationJob::cancel);
+        aTarget.add(bulkJobContainer);
+    }
+    
+    private void onBulkJobProgress(AjaxRequestTarget aTarget)
+    {
+        Optional<BulkAnnotationJob> optionalJob = bulkAnnotationService.getJob(bulkJobId);
         
-        Type type = CasUtil.getAnnotationType(aCas, aAdapter.getAnnotationTypeName());
-        AnnotationFS annoFS = selectAt(aCas, type, aSearchResult.getOffsetStart(),
-            aSearchResult.getOffsetEnd()).stream().findFirst().orElse(null);
-
-        boolean overrideExisting = createOptions.getObject().isOverrideExistingAnnotations();
-
-        // if there is already an annotation of the same type at the target location
-        // and we don't want to override it and stacking is not enabled, do nothing.
-        if (annoFS != null && !overrideExisting && !layer.isAllowStacking()) {
+        if (optionalJob.isPresent() && !optionalJob.get().isDone()) {
+            aTarget.add(bulkJobContainer);
             return;
         }
-
-        // create a new annotation if not already there or if stacking is enabled and the
-        // new annotation has different features than the existing one
-        if (annoFS == null || (!overrideExisting && !featureValuesMatchCurrentState(annoFS))) {
+        
+        bulkJobTimer.stop(aTarget);
+        bulkAnnotationService.release(bulkJobId);
+        bulkJobId = null;
+        
+        if (!optionalJob.isPresent()) {
+            aTarget.add(bulkJobContainer);
+            return;
+        }
+        
+        BulkAnnotationJob job = optionalJob.get();
+        
+        // The job leaves the document open in the editor alone - apply its results here
+        if (job.getStatus() == Status.COMPLETED) {
             try {
-                annoFS = aAdapter
-                    .add(aDocument, currentUser.getUsername(), aCas, aSearchResult.getOffsetStart(),
-                        aSearchResult.getOffsetEnd());
-                aBulkResult.created++;
+                applyEditorDocumentResults(job);
             }
-            catch (AnnotationException e) {
-                aBulkResult.conflict++;
+            catch (Exception e) {
+                error("Unable to apply action to search results in the current document: "
+                        + e.getMessage());
+                LOG.error("Unable to apply action to search results in the current document", e);
             }
         }
-        else {
-            aBulkResult.updated++;
+        
+        if (job.getStatus() == Status.FAILED) {
+            error(job.getErrorMessage());
         }
-
-        // set values for all features according to current state
-        for (FeatureState featureState : featureStates) {
-            Object featureValue = featureState.value;
-            AnnotationFeature feature = featureState.feature;
-            if (featureValue != null) {
-                int addr = getAddr(annoFS);
-                aAdapter.setFeatureValue(aDocument, currentUser.getUsername(), aCas, addr,
-                        feature, featureValue);
-            }
+        if (job.getStatus() == Status.CANCELLED) {
+            warn("Bulk operation cancelled after " + job.getProcessedResults() + " results");
+        }
+        if (job.getCreated() > 0) {
+            success("Created annotations: " + job.getCreated());
+        }
+        if (job.getUpdated() > 0) {
+            success("Updated annotations: " + job.getUpdated());
+        }
+        if (job.getDeleted() > 0) {
+            success("Deleted annotations: " + job.getDeleted());
         }
+        if (job.getConflicts() > 0) {
+            warn("Annotations skipped due to conflicts: " + job.getConflicts());
+        }
+        if (job.getSkippedDocuments() > 0) {
+            warn("Documents skipped because they were modified concurrently: "
+                    + job.getSkippedDocuments());
+        }
+        if (job.getStatus() == Status.COMPLETED && job.getCreated() == 0
+                && job.getUpdated() == 0 && job.getDeleted() == 0) {
+            info("No changes");
+        }
+        
+        groupedSearchResults.detach();
+        aTarget.add(mainContainer);
+        getAnnotationPage().actionRefreshDocument(aTarget);
     }
-
-    private void deleteAnnotationAtSearchResult(SourceDocument aDocument, CAS aCas,
-            SpanAdapter aAdapter, SearchResult aSearchResult, BulkOperationResult aBulkResult)
+    
+    private void applyEditorDocumentResults(BulkAnnotationJob aJob) throws IOException
     {
-        Type type = CasUtil.getAnnotationType(aCas, aAdapter.getAnnotationTypeName());
-        AnnotationFS annoFS = selectAt(aCas, type, aSearchResult.getOffsetStart(),
-                aSearchResult.getOffsetEnd()).stream().findFirst().orElse(null);
-
-        if (annoFS == null || !featureValuesMatchCurrentState(annoFS)
-                && deleteOptions.getObject().isDeleteOnlyMatchingFeatureValues()) {
+        SourceDocument jobDoc = aJob.getEditorDocument();
+        if (jobDoc == null || aJob.getEditorDocumentResults().isEmpty()) {
             return;
         }
         
-        aAdapter.delete(aDocument, currentUser.getUsername(), aCas, new VID(annoFS));
-        aBulkResult.deleted++;
-    }
-
-    private void writeJCasAndUpdateTimeStamp(SourceDocument aSourceDoc, CAS aCas)
-        throws IOException
-    {
         AnnotatorState state = getModelObject();
-
-        if (Objects.equals(state.getDocument().getId(), aSourceDoc.getId())) {
-            // Updating the currently open document is done through the page in order to notify the
-            // mechanism to detect concurrent modifications.
-            getAnnotationPage().writeEditorCas(aCas);
+        if (state.getDocument() != null
+                && Objects.equals(state.getDocument().getId(), jobDoc.getId())) {
+            // Updating the currently open document is done through the page in order to notify
+            // the mechanism to detect concurrent modifications.
+            CAS cas = getCasProvider().get();
+            if (bulkAnnotationService.applyEditorDocumentResults(aJob, cas)) {
+                getAnnotationPage().writeEditorCas(cas);
+            }
         }
         else {
-            documentService.writeAnnotationCas(aCas, aSourceDoc, currentUser, true);
+            // The user has switched to another document while the job was running
+            CAS cas = documentService.readAnnotationCas(jobDoc, currentUser.getUsername());
+            if (bulkAnnotationService.applyEditorDocumentResults(aJob, cas)) {
+                documentService.writeAnnotationCas(cas, jobDoc, currentUser, true);
+            }
         }
     }
-
-    private boolean featureValuesMatchCurrentState(AnnotationFS aAnnotationFS)
+    
+    private String getBulkJobProgress()
     {
-        SpanAdapter aAdapter = (SpanAdapter) annotationService
-            .getAdapter(getModelObject().getSelectedAnnotationLayer());
-        for (FeatureState state : getModelObject().getFeatureStates()) {
-            Object featureValue = state.value;
-            AnnotationFeature feature = state.feature;
-            Object valueAtFS = aAdapter.getFeatureValue(feature, aAnnotationFS);
-            if (!Objects.equals(valueAtFS, featureValue)) {
-                return false;
-            }
+        Optional<BulkAnnotationJob> optionalJob = bulkAnnotationService.getJob(bulkJobId);
+        if (!optionalJob.isPresent()) {
+            return "";
+        }
+        
+        BulkAnnotationJob job = optionalJob.get();
+        if (job.isCancelRequested() && !job.isDone()) {
+            return "Cancelling...";
+        }
+        
+        switch (job.getStatus()) {
+        case QUEUED:
+            return "Waiting for other bulk operations to finish...";
+        case RUNNING:
+            return String.format("Processed %d of %d results", job.getProcessedResults(),
+                    job.getTotalResults());
+        default:
+            return "Finishing...";
         }
-        return true;
     }
 
     private class ResultsGroup implements Serializable
@@ -651,20 +715,4 @@ public class SearchAnnotationSidebar
             add(statementList);        
         }
     }
-    
-    @FunctionalInterface
-    private interface Operation
-    {
-        void apply(SourceDocument aSourceDoc, CAS aCas, SpanAdapter aAdapter, SearchResult aResult,
-                BulkOperationResult aBulkResult)
-            throws AnnotationException;
-    }
-    
-    private class BulkOperationResult
-    {
-        public int created = 0;
-        public int deleted = 0;
-        public int updated = 0;
-        public int conflict = 0;
-    }
 }
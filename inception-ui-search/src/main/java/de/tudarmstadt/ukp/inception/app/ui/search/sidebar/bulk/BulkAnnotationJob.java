@@ -0,0 +1,335 @@
+/*
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.app.ui.search.sidebar.bulk;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableMap;
+import static java.util.Collections.unmodifiableSet;
+import static java.util.stream.Collectors.toSet;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
+import de.tudarmstadt.ukp.inception.search.SearchResult;
+
+/**
+ * Creates or deletes annotations at all results of a search query. The job captures the query
+ * and the feature values to apply when it is created, so later changes in the UI do not affect
+ * it. It is executed by the {@link BulkAnnotationService} which updates the progress counters
+ * while the job is running.
+ * <p>
+ * The document which is open in the editor of the user is not changed by the background job
+ * because the editor holds its own copy of the CAS. Instead, the results in that document are
+ * kept with the job and applied through the editor once the job has completed.
+ */
+public class BulkAnnotationJob
+{
+    public enum Operation
+    {
+        CREATE, DELETE
+    }
+
+    public enum Status
+    {
+        QUEUED, RUNNING, COMPLETED, CANCELLED, FAILED;
+
+        public boolean isDone()
+        {
+            return this == COMPLETED || this == CANCELLED || this == FAILED;
+        }
+    }
+
+    private final String id = UUID.randomUUID().toString();
+
+    private final Operation operation;
+    private final User user;
+    private final Project project;
+    private final String query;
+    private final SourceDocument limitedToDocument;
+    private final AnnotationLayer layer;
+    private final Map<AnnotationFeature, Object> featureValues;
+    private final boolean overrideExistingAnnotations;
+    private final boolean deleteOnlyMatchingFeatureValues;
+    private final Set<String> excludedResults;
+    private final SourceDocument editorDocument;
+
+    private volatile Status status = Status.QUEUED;
+    private volatile boolean cancelRequested = false;
+    private volatile String errorMessage;
+    private volatile long totalResults = -1;
+    private volatile long finishTime = -1;
+    private volatile List<SearchResult> editorDocumentResults = emptyList();
+
+    private final AtomicLong processedResults = new AtomicLong();
+    private final AtomicInteger created = new AtomicInteger();
+    private final AtomicInteger updated = new AtomicInteger();
+    private final AtomicInteger deleted = new AtomicInteger();
+    private final AtomicInteger conflicts = new AtomicInteger();
+    private final AtomicInteger skippedDocuments = new AtomicInteger();
+    private final Set<Long> modifiedDocuments = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param aLimitedToDocument
+     *            limit the query to this document or run it on the whole project if null.
+     * @param aFeatureValues
+     *            the feature values to set on created annotations and - depending on the
+     *            options - to match against existing annotations.
+     * @param aExcludedResults
+     *            results which the user has deselected and which must not be processed.
+     * @param aEditorDocument
+     *            the document open in the editor of the user or null. It is not processed in the
+     *            background.
+     */
+    public BulkAnnotationJob(Operation aOperation, User aUser, Project aProject, String aQuery,
+            SourceDocument aLimitedToDocument, AnnotationLayer aLayer,
+            Map<AnnotationFeature, Object> aFeatureValues, boolean aOverrideExistingAnnotations,
+            boolean aDeleteOnlyMatchingFeatureValues, Collection<SearchResult> aExcludedResults,
+            SourceDocument aEditorDocument)
+    {
+        operation = aOperation;
+        user = aUser;
+        project = aProject;
+        query = aQuery;
+        limitedToDocument = aLimitedToDocument;
+        layer = aLayer;
+        featureValues = unmodifiableMap(new LinkedHashMap<>(aFeatureValues));
+        overrideExistingAnnotations = aOverrideExistingAnnotations;
+        deleteOnlyMatchingFeatureValues = aDeleteOnlyMatchingFeatureValues;
+        excludedResults = unmodifiableSet(aExcludedResults.stream()
+                .map(BulkAnnotationJob::resultKey)
+                .collect(toSet()));
+        editorDocument = aEditorDocument;
+    }
+
+    public String getId()
+    {
+        return id;
+    }
+
+    public Operation getOperation()
+    {
+        return operation;
+    }
+
+    public User getUser()
+    {
+        return user;
+    }
+
+    public Project getProject()
+    {
+        return project;
+    }
+
+    public String getQuery()
+    {
+        return query;
+    }
+
+    public SourceDocument getLimitedToDocument()
+    {
+        return limitedToDocument;
+    }
+
+    public AnnotationLayer getLayer()
+    {
+        return layer;
+    }
+
+    public SourceDocument getEditorDocument()
+    {
+        return editorDocument;
+    }
+
+    public boolean isEditorDocument(long aDocumentId)
+    {
+        return editorDocument != null && editorDocument.getId() == aDocumentId;
+    }
+
+    /**
+     * @return the results in the {@link #getEditorDocument() editor document} which still need to
+     *         be applied through the editor.
+     */
+    public List<SearchResult> getEditorDocumentResults()
+    {
+        return editorDocumentResults;
+    }
+
+    public Map<AnnotationFeature, Object> getFeatureValues()
+    {
+        return featureValues;
+    }
+
+    public boolean isOverrideExistingAnnotations()
+    {
+        return overrideExistingAnnotations;
+    }
+
+    public boolean isDeleteOnlyMatchingFeatureValues()
+    {
+        return deleteOnlyMatchingFeatureValues;
+    }
+
+    /**
+     * @return whether the user deselected the given result before starting the job.
+     */
+    public boolean isExcluded(SearchResult aResult)
+    {
+        return excludedResults.contains(resultKey(aResult));
+    }
+
+    public Status getStatus()
+    {
+        return status;
+    }
+
+    public boolean isDone()
+    {
+        return status.isDone();
+    }
+
+    /**
+     * Request the job to stop. Documents which have already been processed remain changed.
+     */
+    public void cancel()
+    {
+        cancelRequested = true;
+    }
+
+    public boolean isCancelRequested()
+    {
+        return cancelRequested;
+    }
+
+    public String getErrorMessage()
+    {
+        return errorMessage;
+    }
+
+    /**
+     * @return the total number of results of the query or {@code -1} if it is not known yet.
+     */
+    public long getTotalResults()
+    {
+        return totalResults;
+    }
+
+    public long getProcessedResults()
+    {
+        return processedResults.get();
+    }
+
+    public int getCreated()
+    {
+        return created.get();
+    }
+
+    public int getUpdated()
+    {
+        return updated.get();
+    }
+
+    public int getDeleted()
+    {
+        return deleted.get();
+    }
+
+    public int getConflicts()
+    {
+        return conflicts.get();
+    }
+
+    /**
+     * @return the number of documents which were not changed because they were saved repeatedly
+     *         by someone else while the job was trying to update them.
+     */
+    public int getSkippedDocuments()
+    {
+        return skippedDocuments.get();
+    }
+
+    public boolean isDocumentModified(SourceDocument aDocument)
+    {
+        return modifiedDocuments.contains(aDocument.getId());
+    }
+
+    public long getFinishTime()
+    {
+        return finishTime;
+    }
+
+    void started(long aTotalResults)
+    {
+        totalResults = aTotalResults;
+        status = Status.RUNNING;
+    }
+
+    void documentProcessed(long aDocumentId, int aResults, boolean aModified)
+    {
+        if (aModified) {
+            modifiedDocuments.add(aDocumentId);
+        }
+        processedResults.addAndGet(aResults);
+    }
+
+    void documentSkipped(int aResults)
+    {
+        skippedDocuments.incrementAndGet();
+        processedResults.addAndGet(aResults);
+    }
+
+    void changesApplied(int aCreated, int aUpdated, int aDeleted, int aConflicts)
+    {
+        created.addAndGet(aCreated);
+        updated.addAndGet(aUpdated);
+        deleted.addAndGet(aDeleted);
+        conflicts.addAndGet(aConflicts);
+    }
+
+    void deferEditorDocumentResults(List<SearchResult> aResults)
+    {
+        editorDocumentResults = unmodifiableList(new ArrayList<>(aResults));
+    }
+
+    void finished(Status aStatus, String aErrorMessage)
+    {
+        errorMessage = aErrorMessage;
+        finishTime = System.currentTimeMillis();
+        status = aStatus;
+    }
+
+    private static String resultKey(SearchResult aResult)
+    {
+        return aResult.getDocumentId() + ":" + aResult.getOffsetStart() + "-"
+                + aResult.getOffsetEnd();
+    }
+}
@@ -0,0 +1,421 @@
+/*
+ * Copyright 2019
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.app.ui.search.sidebar.bulk;
+
+import static de.tudarmstadt.ukp.clarin.webanno.api.annotation.util.WebAnnoCasUtil.getAddr;
+import static java.lang.System.currentTimeMillis;
+import static java.util.Collections.emptyList;
+import static org.apache.uima.fit.util.CasUtil.selectAt;
+
+import java.io.IOException;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.Type;
+import org.apache.uima.cas.text.AnnotationFS;
+import org.apache.uima.fit.util.CasUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.AnnotationSchemaService;
+import de.tudarmstadt.ukp.clarin.webanno.api.DocumentService;
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.adapter.SpanAdapter;
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.event.BulkAnnotationEvent;
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.exception.AnnotationException;
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.model.VID;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.inception.app.ui.search.sidebar.bulk.BulkAnnotationJob.Status;
+import de.tudarmstadt.ukp.inception.search.SearchResult;
+import de.tudarmstadt.ukp.inception.search.SearchService;
+
+/**
+ * Runs {@link BulkAnnotationJob bulk annotation jobs} in the background. The query is first used
+ * only to determine the matching documents. Afterwards, the results of each document are fetched
+ * and applied one document at a time, so the memory needed does not grow with the number of
+ * results and no CAS is read or written while the search holds its transaction.
+ * <p>
+ * The user may continue annotating while a job is running. If a CAS is saved by someone else
+ * while the job is updating it, the job applies its changes again to the new version instead of
+ * overwriting it. The document open in the editor is left to the editor, see
+ * {@link #applyEditorDocumentResults}.
+ * <p>
+ * Jobs are executed one after the other. Finished jobs are kept until the UI has picked up their
+ * outcome via {@link #release(String)}, but not longer than an hour.
+ */
+@Component
+public class BulkAnnotationService
+    implements DisposableBean
+{
+    private static final long FINISHED_JOB_RETENTION = 60 * 60 * 1000;
+    private static final int MAX_ATTEMPTS_PER_DOCUMENT = 3;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final DocumentService documentService;
+    private final AnnotationSchemaService annotationService;
+    private final SearchService searchService;
+    private final ApplicationEventPublisher applicationEventPublisher;
+
+    private final Map<String, BulkAnnotationJob> jobs = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @Autowired
+    public BulkAnnotationService(DocumentService aDocumentService,
+            AnnotationSchemaService aAnnotationService, SearchService aSearchService,
+            ApplicationEventPublisher aApplicationEventPublisher)
+    {
+        documentService = aDocumentService;
+        annotationService = aAnnotationService;
+        searchService = aSearchService;
+        applicationEventPublisher = aApplicationEventPublisher;
+    }
+
+    @Override
+    public void destroy()
+    {
+        executor.shutdownNow();
+    }
+
+    public BulkAnnotationJob submit(BulkAnnotationJob aJob)
+    {
+        // Drop jobs whose outcome has never been picked up, e.g. because the user left the page
+        long cutoff = currentTimeMillis() - FINISHED_JOB_RETENTION;
+        jobs.values().removeIf(job -> job.isDone() && job.getFinishTime() < cutoff);
+
+        jobs.put(aJob.getId(), aJob);
+        executor.execute(() -> run(aJob));
+        return aJob;
+    }
+
+    public Optional<BulkAnnotationJob> getJob(String aId)
+    {
+        return Optional.ofNullable(aId).map(jobs::get);
+    }
+
+    /**
+     * Forget the given job. If it is still running, it is cancelled.
+     */
+    public void release(String aId)
+    {
+        BulkAnnotationJob job = jobs.remove(aId);
+        if (job != null) {
+            job.cancel();
+        }
+    }
+
+    /**
+     * Apply the results of the given job which were deferred because their document was open in
+     * the editor. This must be called from the editor after the job has completed. The caller is
+     * responsible for persisting the CAS, e.g. through the annotation page so that the mechanism
+     * to detect concurrent modifications is notified.
+     *
+     * @param aCas
+     *            the CAS of the {@link BulkAnnotationJob#getEditorDocument() editor document}.
+     * @return whether the CAS has been changed and needs to be persisted.
+     */
+    public boolean applyEditorDocumentResults(BulkAnnotationJob aJob, CAS aCas)
+    {
+        List<SearchResult> results = aJob.getEditorDocumentResults();
+        if (results.isEmpty()) {
+            return false;
+        }
+
+        SourceDocument document = aJob.getEditorDocument();
+        aJob.deferEditorDocumentResults(emptyList());
+
+        if (isFinishedOrIgnored(aJob, document)) {
+            aJob.documentProcessed(document.getId(), results.size(), false);
+            return false;
+        }
+
+        SpanAdapter adapter = (SpanAdapter) annotationService.getAdapter(aJob.getLayer());
+        adapter.silenceEvents();
+
+        applyResults(aJob, adapter, document, aCas, results).commit(aJob);
+        aJob.documentProcessed(document.getId(), results.size(), true);
+
+        return true;
+    }
+
+    private void run(BulkAnnotationJob aJob)
+    {
+        if (aJob.isCancelRequested()) {
+            aJob.finished(Status.CANCELLED, null);
+            return;
+        }
+
+        long startTime = currentTimeMillis();
+
+        try {
+            SpanAdapter adapter;
+            try {
+                adapter = (SpanAdapter) annotationService.getAdapter(aJob.getLayer());
+            }
+            catch (ClassCastException e) {
+                aJob.finished(Status.FAILED,
+                        "Can only create SPAN annotations for search results.");
+                return;
+            }
+            adapter.silenceEvents();
+
+            aJob.started(searchService.determineNumOfQueryResults(aJob.getUser(),
+                    aJob.getProject(), aJob.getQuery(), aJob.getLimitedToDocument()));
+
+            // Only collect the matching documents while the query runs - the CASes are read and
+            // written afterwards, outside the transaction of the search
+            Set<Long> documentIds = new LinkedHashSet<>();
+            searchService.query(aJob.getUser(), aJob.getProject(), aJob.getQuery(),
+                    aJob.getLimitedToDocument(), (documentId, results) -> {
+                        documentIds.add(documentId);
+                        return !isCancelled(aJob);
+                    });
+
+            for (long documentId : documentIds) {
+                if (isCancelled(aJob)) {
+                    break;
+                }
+
+                SourceDocument sourceDoc = documentService
+                        .getSourceDocument(aJob.getProject().getId(), documentId);
+                List<SearchResult> results = searchService.query(aJob.getUser(),
+                        aJob.getProject(), aJob.getQuery(), sourceDoc);
+
+                if (aJob.isEditorDocument(documentId)) {
+                    aJob.deferEditorDocumentResults(results);
+                    continue;
+                }
+
+                processDocument(aJob, adapter, sourceDoc, results);
+            }
+
+            applicationEventPublisher.publishEvent(new BulkAnnotationEvent(this,
+                    aJob.getProject(), aJob.getUser().getUsername(), aJob.getLayer()));
+
+            log.info("Bulk {} on [{}] results of query [{}] in project [{}]({}) {} after {}ms",
+                    aJob.getOperation(), aJob.getProcessedResults(), aJob.getQuery(),
+                    aJob.getProject().getName(), aJob.getProject().getId(),
+                    isCancelled(aJob) ? "cancelled" : "completed",
+                    currentTimeMillis() - startTime);
+
+            aJob.finished(isCancelled(aJob) ? Status.CANCELLED : Status.COMPLETED, null);
+        }
+        catch (Exception e) {
+            log.error("Unable to apply action to search results", e);
+            aJob.finished(Status.FAILED,
+                    "Unable to apply action to search results: " + e.getMessage());
+        }
+    }
+
+    private boolean isCancelled(BulkAnnotationJob aJob)
+    {
+        return aJob.isCancelRequested() || Thread.currentThread().isInterrupted();
+    }
+
+    private void processDocument(BulkAnnotationJob aJob, SpanAdapter aAdapter,
+            SourceDocument aDocument, List<SearchResult> aResults)
+        throws IOException
+    {
+        String username = aJob.getUser().getUsername();
+
+        // Skip processing any documents which are finished or ignored
+        if (isFinishedOrIgnored(aJob, aDocument)) {
+            aJob.documentProcessed(aDocument.getId(), aResults.size(), false);
+            return;
+        }
+
+        for (int attempt = 0; attempt < MAX_ATTEMPTS_PER_DOCUMENT; attempt++) {
+            // Load annotated document - remember the timestamp first so we notice if it is saved
+            // by someone else before we are done with it
+            Optional<Long> timestamp = documentService.getAnnotationCasTimestamp(aDocument,
+                    username);
+            CAS cas = documentService.readAnnotationCas(aDocument, username);
+
+            Changes changes = applyResults(aJob, aAdapter, aDocument, cas, aResults);
+
+            if (!timestamp.equals(documentService.getAnnotationCasTimestamp(aDocument,
+                    username))) {
+                // Re-apply the changes to the version which has been saved in the meantime
+                continue;
+            }
+
+            // Persist annotated document
+            documentService.writeAnnotationCas(cas, aDocument, aJob.getUser(), true);
+
+            changes.commit(aJob);
+            aJob.documentProcessed(aDocument.getId(), aResults.size(), true);
+            return;
+        }
+
+        log.warn("Bulk {} skipped document [{}]({}) in project [{}]({}) because it was "
+                + "modified concurrently", aJob.getOperation(), aDocument.getName(),
+                aDocument.getId(), aJob.getProject().getName(), aJob.getProject().getId());
+        aJob.documentSkipped(aResults.size());
+    }
+
+    private boolean isFinishedOrIgnored(BulkAnnotationJob aJob, SourceDocument aDocument)
+    {
+        AnnotationDocument annoDoc = documentService.createOrGetAnnotationDocument(aDocument,
+                aJob.getUser());
+
+        switch (annoDoc.getState()) {
+        case FINISHED: // fall-through
+        case IGNORE:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Apply the operation of the job to all hits from the given document. The changes are only
+     * counted in the returned tally so they can be discarded if the CAS is not persisted.
+     */
+    private Changes applyResults(BulkAnnotationJob aJob, SpanAdapter aAdapter,
+            SourceDocument aDocument, CAS aCas, List<SearchResult> aResults)
+    {
+        Changes changes = new Changes();
+        for (SearchResult result : aResults) {
+            if (result.isReadOnly() || aJob.isExcluded(result)) {
+                continue;
+            }
+
+            try {
+                switch (aJob.getOperation()) {
+                case CREATE:
+                    createAnnotationAtSearchResult(aJob, aDocument, aCas, aAdapter, result,
+                            changes);
+                    break;
+                case DELETE:
+                    deleteAnnotationAtSearchResult(aJob, aDocument, aCas, aAdapter, result,
+                            changes);
+                    break;
+                default:
+                    throw new IllegalStateException(
+                            "Unknown operation [" + aJob.getOperation() + "]");
+                }
+            }
+            catch (AnnotationException e) {
+                changes.conflicts++;
+            }
+        }
+        return changes;
+    }
+
+    private void createAnnotationAtSearchResult(BulkAnnotationJob aJob, SourceDocument aDocument,
+            CAS aCas, SpanAdapter aAdapter, SearchResult aSearchResult, Changes aChanges)
+        throws AnnotationException
+    {
+        String username = aJob.getUser().getUsername();
+
+        Type type = CasUtil.getAnnotationType(aCas, aAdapter.getAnnotationTypeName());
+        AnnotationFS annoFS = selectAt(aCas, type, aSearchResult.getOffsetStart(),
+                aSearchResult.getOffsetEnd()).stream().findFirst().orElse(null);
+
+        boolean overrideExisting = aJob.isOverrideExistingAnnotations();
+
+        // if there is already an annotation of the same type at the target location
+        // and we don't want to override it and stacking is not enabled, do nothing.
+        if (annoFS != null && !overrideExisting && !aJob.getLayer().isAllowStacking()) {
+            return;
+        }
+
+        // create a new annotation if not already there or if stacking is enabled and the
+        // new annotation has different features than the existing one
+        if (annoFS == null
+                || (!overrideExisting && !featureValuesMatch(aJob, aAdapter, annoFS))) {
+            try {
+                annoFS = aAdapter.add(aDocument, username, aCas, aSearchResult.getOffsetStart(),
+                        aSearchResult.getOffsetEnd());
+                aChanges.created++;
+            }
+            catch (AnnotationException e) {
+                aChanges.conflicts++;
+                return;
+            }
+        }
+        else {
+            aChanges.updated++;
+        }
+
+        // set values for all features according to the state at the time the job was created
+        int addr = getAddr(annoFS);
+        for (Map.Entry<AnnotationFeature, Object> featureValue : aJob.getFeatureValues()
+                .entrySet()) {
+            if (featureValue.getValue() != null) {
+                aAdapter.setFeatureValue(aDocument, username, aCas, addr, featureValue.getKey(),
+                        featureValue.getValue());
+            }
+        }
+    }
+
+    private void deleteAnnotationAtSearchResult(BulkAnnotationJob aJob, SourceDocument aDocument,
+            CAS aCas, SpanAdapter aAdapter, SearchResult aSearchResult, Changes aChanges)
+    {
+        Type type = CasUtil.getAnnotationType(aCas, aAdapter.getAnnotationTypeName());
+        AnnotationFS annoFS = selectAt(aCas, type, aSearchResult.getOffsetStart(),
+                aSearchResult.getOffsetEnd()).stream().findFirst().orElse(null);
+
+        if (annoFS == null || !featureValuesMatch(aJob, aAdapter, annoFS)
+                && aJob.isDeleteOnlyMatchingFeatureValues()) {
+            return;
+        }
+
+        aAdapter.delete(aDocument, aJob.getUser().getUsername(), aCas, new VID(annoFS));
+        aChanges.deleted++;
+    }
+
+    private boolean featureValuesMatch(BulkAnnotationJob aJob, SpanAdapter aAdapter,
+            AnnotationFS aAnnotationFS)
+    {
+        for (Map.Entry<AnnotationFeature, Object> featureValue : aJob.getFeatureValues()
+                .entrySet()) {
+            Object valueAtFS = aAdapter.getFeatureValue(featureValue.getKey(), aAnnotationFS);
+            if (!Objects.equals(valueAtFS, featureValue.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static class Changes
+    {
+        private int created;
+        private int updated;
+        private int deleted;
+        private int conflicts;
+
+        private void commit(BulkAnnotationJob aJob)
+        {
+            aJob.changesApplied(created, updated, deleted, conflicts);
+        }
+    }
+}